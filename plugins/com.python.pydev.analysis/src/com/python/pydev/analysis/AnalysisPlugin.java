@@ -34,6 +34,7 @@ import org.python.pydev.parser.jython.ast.exprType;
 import org.python.pydev.shared_core.structure.Location;
 
 import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLucene;
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemonPool;
 import com.python.pydev.analysis.mypy.MypyPrefInitializer;
 import com.python.pydev.analysis.pylint.PyLintPrefInitializer;
 
@@ -122,6 +123,7 @@ public class AnalysisPlugin extends Plugin {
     public void stop(BundleContext context) throws Exception {
         super.stop(context);
         ReferenceSearchesLucene.disposeAll();
+        ExternalAnalyzerDaemonPool.getSingleton().disposeAll();
         plugin = null;
     }
 
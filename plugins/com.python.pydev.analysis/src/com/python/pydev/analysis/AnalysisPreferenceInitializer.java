@@ -98,6 +98,12 @@ public class AnalysisPreferenceInitializer extends AbstractPreferenceInitializer
     public static final String PEP8_USE_SYSTEM = "PEP8_USE_SYSTEM";
     public static final boolean DEFAULT_PEP8_USE_SYSTEM = false;
 
+    /**
+     * Number of threads used to index the contents of modules for searches (0 means the number of processors).
+     */
+    public static final String INDEXING_PARALLELISM = "INDEXING_PARALLELISM";
+    public static final int DEFAULT_INDEXING_PARALLELISM = 0;
+
     //Disabled because we're running in a thread now.
     public static final boolean SHOW_IN_PEP8_FEATURE_ENABLED = false;
 
@@ -121,6 +127,8 @@ public class AnalysisPreferenceInitializer extends AbstractPreferenceInitializer
         //pep8 related.
         node.putBoolean(USE_PEP8_CONSOLE, DEFAULT_USE_PEP8_CONSOLE);
         node.putBoolean(PEP8_USE_SYSTEM, DEFAULT_PEP8_USE_SYSTEM);
+
+        node.putInt(INDEXING_PARALLELISM, DEFAULT_INDEXING_PARALLELISM);
     }
 
 }
@@ -11,6 +11,7 @@ package com.python.pydev.analysis;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -38,6 +39,16 @@ import com.python.pydev.analysis.visitors.OccurrencesVisitor;
  */
 public class OccurrencesAnalyzer {
 
+    private Set<String> importedModules;
+
+    /**
+     * @return the names of the modules imported by the last module analyzed or null if its analysis didn't finish
+     * (i.e.: it was canceled or its ast couldn't be visited).
+     */
+    public Set<String> getImportedModules() {
+        return importedModules;
+    }
+
     public IMessage[] analyzeDocument(IPythonNature nature, final SourceModule module,
             final IAnalysisPreferences prefs,
             final IDocument document, final IProgressMonitor monitor, IIndentPrefs indentPrefs) {
@@ -51,6 +62,8 @@ public class OccurrencesAnalyzer {
             }
         };
         t.start();
+        importedModules = null;
+        boolean visited = false;
         OccurrencesVisitor visitor = new OccurrencesVisitor(nature, module.getName(), module, prefs, document, monitor);
         try {
             SimpleNode ast = module.getAst();
@@ -58,6 +71,7 @@ public class OccurrencesAnalyzer {
                 if (nature.startRequests()) {
                     try {
                         ast.accept(visitor);
+                        visited = true;
                     } finally {
                         nature.endRequests();
                     }
@@ -71,6 +85,9 @@ public class OccurrencesAnalyzer {
 
         List<IMessage> messages = new ArrayList<IMessage>();
         if (!monitor.isCanceled()) {
+            if (visited) {
+                importedModules = visitor.scope.importChecker.getImportedModules();
+            }
             messages.addAll(visitor.getMessages());
             try {
                 FileUtils.getPythonFileEncoding(document, module.getName());
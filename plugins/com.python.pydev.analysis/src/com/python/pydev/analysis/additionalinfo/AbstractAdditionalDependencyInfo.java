@@ -57,6 +57,8 @@ import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.structure.Tuple3;
 
+import com.python.pydev.analysis.additionalinfo.dependencies.ModuleDependencies;
+
 /**
  * Adds information on the modules being tracked.
  */
@@ -77,6 +79,8 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
     public DiskCache completeIndex;
 
     private volatile IReferenceSearches referenceSearches;
+
+    private final ModuleDependencies moduleDependencies = new ModuleDependencies();
     private final Object referenceSearchesLock = new Object();
 
     public IReferenceSearches getReferenceSearches() {
@@ -149,9 +153,21 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             } catch (NullPointerException e) {
                 //that's ok... because it might be called before actually having any values
             }
+            IReferenceSearches searches = referenceSearches;
+            if (searches != null) {
+                searches.onAllInfoCleared();
+            }
+            moduleDependencies.clearFingerprints();
         }
     }
 
+    /**
+     * @return the fingerprints of the modules indexed and the imports of the modules analyzed.
+     */
+    public ModuleDependencies getModuleDependencies() {
+        return moduleDependencies;
+    }
+
     /**
      * This is mostly for whitebox testing the updateKeysIfNeededAndSave. It'll called with a tuple containing
      * the keys added and the keys removed.
@@ -340,7 +356,12 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 }
                 completeIndex.add(completeIndexKey);
 
+                IReferenceSearches searches = referenceSearches;
+                if (searches != null) {
+                    searches.onModuleIndexed(completeIndexKey);
+                }
             }
+            moduleDependencies.setFingerprint(key.name, ModuleDependencies.computeFingerprint(addAstInfo, node));
         } catch (Exception e) {
             Log.log(e);
         }
@@ -355,6 +376,11 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
             super.removeInfoFromModule(moduleName, generateDelta);
+
+            IReferenceSearches searches = referenceSearches;
+            if (searches != null) {
+                searches.onModuleRemoved(moduleName);
+            }
         }
     }
 
@@ -391,6 +417,12 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             }
 
             super.restoreSavedInfo(readFromFile.o1);
+
+            IReferenceSearches searches = referenceSearches;
+            if (searches != null) {
+                // The whole index was replaced: a full reconcile is needed.
+                searches.onAllInfoCleared();
+            }
         }
     }
 
@@ -454,36 +486,33 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                     try {
                         try {
                             FastStringBuffer line;
-                            Map<Integer, String> dictionary = null;
-                            FastStringBuffer tempBuf = new FastStringBuffer(1024);
                             while ((line = bufferedReader.readLine()) != null) {
                                 if (line.startsWith("-- ")) {
 
-                                    if (line.startsWith("-- START TREE 1")) {
-                                        superTupWithResults.o1 = TreeIO.loadTreeFrom(bufferedReader, dictionary,
-                                                tempBuf.clear(), objectsPoolMap, nature);
-
-                                    } else if (line.startsWith("-- START TREE 2")) {
-                                        superTupWithResults.o2 = TreeIO.loadTreeFrom(bufferedReader, dictionary,
-                                                tempBuf.clear(), objectsPoolMap, nature);
-
-                                    } else if (line.startsWith("-- START DICTIONARY")) {
-                                        dictionary = TreeIO.loadDictFrom(bufferedReader, tempBuf.clear(),
-                                                objectsPoolMap);
+                                    if (line.startsWith(TREES_FILE_PREFIX)) {
+                                        long stamp = Long.parseLong(
+                                                line.toString().substring(TREES_FILE_PREFIX.length()).trim());
+                                        Tuple<?, ?> trees = loadTreesFromFile(file, stamp, nature);
+                                        superTupWithResults.o1 = trees.o1;
+                                        superTupWithResults.o2 = trees.o2;
 
                                     } else if (line.startsWith("-- START DISKCACHE")) {
-                                        if (!line.startsWith("-- START DISKCACHE_" + DiskCache.VERSION)) {
+                                        if (line.startsWith("-- START DISKCACHE_" + DiskCache.VERSION)) {
+                                            tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
+
+                                        } else if (line.startsWith("-- START DISKCACHE_2")) {
+                                            // Migrate from the previous (text) format.
+                                            tupWithResults.o2 = DiskCache.loadFromVersion2(bufferedReader,
+                                                    objectsPoolMap);
+                                        } else {
                                             throw new RuntimeException("Disk cache version changed");
                                         }
-                                        tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
                                     } else if (line.startsWith("-- VERSION_")) {
                                         if (!line.endsWith(String.valueOf(AbstractAdditionalTokensInfo.version))) {
                                             throw new RuntimeException("Expected the version to be: "
                                                     + AbstractAdditionalTokensInfo.version + " Found: " + line);
                                         }
-                                    } else if (line.startsWith("-- END TREE")) {
-                                        //just skip it in this situation.
                                     } else {
                                         throw new RuntimeException("Unexpected line: " + line);
                                     }
@@ -18,6 +18,7 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
@@ -120,22 +122,112 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
 
+    /**
+     * The initials of the buckets (in topLevelInitialsToInfo and innerInitialsToInfo) which have infos declared in
+     * some module.
+     */
+    /*default*/ static final class ModuleInitials {
+
+        private static final String[] EMPTY = new String[0];
+
+        /*default*/ String[] topLevel;
+
+        /*default*/ String[] inner;
+
+        /*default*/ ModuleInitials() {
+            this(EMPTY, EMPTY);
+        }
+
+        /*default*/ ModuleInitials(String[] topLevel, String[] inner) {
+            this.topLevel = topLevel;
+            this.inner = inner;
+        }
+
+        /*default*/ void add(String initials, int doOn) {
+            String[] current = doOn == TOP_LEVEL ? topLevel : inner;
+            for (String s : current) {
+                if (s.equals(initials)) {
+                    return;
+                }
+            }
+            String[] newArray = Arrays.copyOf(current, current.length + 1);
+            newArray[current.length] = initials;
+            if (doOn == TOP_LEVEL) {
+                topLevel = newArray;
+            } else {
+                inner = newArray;
+            }
+        }
+    }
+
+    /**
+     * Reverse index (module name -> initials of the buckets with infos declared in the module), so that the info of
+     * a module can be removed by going only through the buckets which have it.
+     *
+     * Kept in sync with topLevelInitialsToInfo and innerInitialsToInfo (and persisted with them, so, it's available
+     * without decoding the buckets when the info is restored).
+     */
+    private Map<String, ModuleInitials> moduleToInitials = new HashMap<String, ModuleInitials>();
+
+    /**
+     * The module index loaded in loadTreesFromFile (used in restoreSavedInfo).
+     */
+    private Map<String, ModuleInitials> loadedModuleToInitials;
+
+    /**
+     * The stamp of the binary file with the trees which matches the current contents of the trees (0 if there's no
+     * such file) -- see saveTo.
+     */
+    private long savedTreesStamp;
+
+    /**
+     * The stamp of the file loaded in loadTreesFromFile (which will be the saved stamp when the info is restored).
+     */
+    private long loadedTreesStamp;
+
+    /**
+     * Whether the trees changed since they were loaded/saved (if not, the binary file doesn't need to be rewritten).
+     */
+    private boolean treesChangedSinceSave = true;
+
     /**
      * Should be used before re-creating the info, so that we have enough memory.
      */
     public void clearAllInfo() {
         synchronized (lock) {
-            if (topLevelInitialsToInfo != null) {
-                topLevelInitialsToInfo.clear();
-            }
-            if (innerInitialsToInfo != null) {
-                innerInitialsToInfo.clear();
+            treesLock.writeLock().lock();
+            try {
+                if (topLevelInitialsToInfo != null) {
+                    topLevelInitialsToInfo.clear();
+                }
+                if (innerInitialsToInfo != null) {
+                    innerInitialsToInfo.clear();
+                }
+                moduleToInitials = new HashMap<String, ModuleInitials>();
+                treesChangedSinceSave = true;
+            } finally {
+                treesLock.writeLock().unlock();
             }
         }
     }
 
+    /**
+     * Lock for changes in the info (writers must hold it for the whole change -- i.e.: while adding the info for a
+     * module -- so that changes are serialized).
+     */
     protected Object lock = new Object();
 
+    /**
+     * Guards the actual access to topLevelInitialsToInfo, innerInitialsToInfo and moduleToInitials: queries only
+     * acquire its read lock (so, they don't need the lock and run concurrently with other queries and with a
+     * writer which is doing some long operation) and writers acquire its write lock only around each actual
+     * structural change (i.e.: adding/removing the infos of a module or a single info).
+     *
+     * Note: a writer waiting for the lock blocks new queries (a StampedLock would let new queries acquire its read
+     * lock while other queries hold it, so, a writer could wait indefinitely if queries are always running).
+     */
+    private final ReentrantReadWriteLock treesLock = new ReentrantReadWriteLock();
+
     /**
      * The filter interface
      */
@@ -182,8 +274,9 @@ public abstract class AbstractAdditionalTokensInfo {
      * 3: Changed from string-> list to string->set
      * 4: Keeping file, line and column for entries
      * 5: Fix when restoring information
+     * 6: Trees saved in a binary file (see TreeIO.dumpTreesToFile)
      */
-    protected static final int version = 5;
+    protected static final int version = 6;
 
     public AbstractAdditionalTokensInfo() {
     }
@@ -195,31 +288,84 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected void add(IInfo info, int doOn) {
         synchronized (lock) {
-            String name = info.getName();
-            String initials = getInitials(name);
-            SortedMap<String, Set<IInfo>> initialsToInfo;
+            treesLock.writeLock().lock();
+            try {
+                addWithWriteLock(info, doOn);
+            } finally {
+                treesLock.writeLock().unlock();
+            }
+        }
+    }
 
-            if (doOn == TOP_LEVEL) {
-                if (info.getPath() != null && info.getPath().length() > 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
-                }
-                initialsToInfo = topLevelInitialsToInfo;
+    /**
+     * Adds the given info (must be called with the lock and the write lock held).
+     */
+    private void addWithWriteLock(IInfo info, int doOn) {
+        String name = info.getName();
+        String initials = getInitials(name);
+        SortedMap<String, Set<IInfo>> initialsToInfo;
+
+        if (doOn == TOP_LEVEL) {
+            if (info.getPath() != null && info.getPath().length() > 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
+            }
+            initialsToInfo = topLevelInitialsToInfo;
 
-            } else if (doOn == INNER) {
-                if (info.getPath() == null || info.getPath().length() == 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
-                                    + info);
-                }
-                initialsToInfo = innerInitialsToInfo;
+        } else if (doOn == INNER) {
+            if (info.getPath() == null || info.getPath().length() == 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
+                                + info);
+            }
+            initialsToInfo = innerInitialsToInfo;
 
-            } else {
-                throw new RuntimeException("List to add is invalid: " + doOn);
+        } else {
+            throw new RuntimeException("List to add is invalid: " + doOn);
+        }
+        Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
+        if (listForInitials.add(info)) {
+            treesChangedSinceSave = true;
+            addToModuleIndex(moduleToInitials, info, initials, doOn);
+        }
+    }
+
+    /**
+     * Adds the initials of the given info to the module index (must be called with the write lock held if the
+     * index is moduleToInitials).
+     */
+    private static void addToModuleIndex(Map<String, ModuleInitials> moduleIndex, IInfo info, String initials,
+            int doOn) {
+        String moduleName = info.getDeclaringModuleName();
+        if (moduleName == null) {
+            return;
+        }
+        ModuleInitials moduleInitials = moduleIndex.get(moduleName);
+        if (moduleInitials == null) {
+            moduleInitials = new ModuleInitials();
+            moduleIndex.put(moduleName, moduleInitials);
+        }
+        moduleInitials.add(initials, doOn);
+    }
+
+    /**
+     * Creates the module index for the given trees (only used if the index wasn't loaded with the trees, as it
+     * requires decoding all the buckets).
+     */
+    private static Map<String, ModuleInitials> createModuleIndex(SortedMap<String, Set<IInfo>> topLevel,
+            SortedMap<String, Set<IInfo>> inner) {
+        Map<String, ModuleInitials> moduleIndex = new HashMap<String, ModuleInitials>();
+        for (Entry<String, Set<IInfo>> entry : topLevel.entrySet()) {
+            for (IInfo info : entry.getValue()) {
+                addToModuleIndex(moduleIndex, info, entry.getKey(), TOP_LEVEL);
             }
-            Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
-            listForInitials.add(info);
         }
+        for (Entry<String, Set<IInfo>> entry : inner.entrySet()) {
+            for (IInfo info : entry.getValue()) {
+                addToModuleIndex(moduleIndex, info, entry.getKey(), INNER);
+            }
+        }
+        return moduleIndex;
     }
 
     /**
@@ -241,13 +387,13 @@ public abstract class AbstractAdditionalTokensInfo {
     protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
         Set<IInfo> lInfo = initialsToInfo.get(initials);
         if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
+            lInfo = new InfoBucket();
             initialsToInfo.put(initials, lInfo);
         }
         return lInfo;
     }
 
-    private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod,
+    private IInfo createAssignTargetInfo(ASTEntry entry, String moduleName, String path, boolean lastIsMethod,
             String file) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
         if (lastIsMethod) {
@@ -256,21 +402,19 @@ public abstract class AbstractAdditionalTokensInfo {
                 //at least 2 parts are required
                 if (parts.get(0).equals("self")) {
                     rep = parts.get(1);
-                    //no intern construct (locked in the loop that calls this method)
-                    AttrInfo info = new AttrInfo(ObjectsInternPool.internUnsynched(rep), moduleName,
-                            ObjectsInternPool.internUnsynched(path), false, getNature(), file,
+                    //the constructor doesn't intern (its strings are interned here with ObjectsInternPool)
+                    AttrInfo info = new AttrInfo(ObjectsInternPool.intern(rep), moduleName,
+                            ObjectsInternPool.intern(path), false, getNature(), file,
                             entry.node.beginLine, entry.node.beginColumn);
-                    add(info, doOn);
                     return info;
                 }
             }
         } else {
-            //no intern construct (locked in the loop that calls this method)
-            AttrInfo info = new AttrInfo(ObjectsInternPool.internUnsynched(FullRepIterable.getFirstPart(rep)),
+            //the constructor doesn't intern (its strings are interned here with ObjectsInternPool)
+            AttrInfo info = new AttrInfo(ObjectsInternPool.intern(FullRepIterable.getFirstPart(rep)),
                     moduleName,
-                    ObjectsInternPool.internUnsynched(path), false, getNature(), file,
+                    ObjectsInternPool.intern(path), false, getNature(), file,
                     entry.node.beginLine, entry.node.beginColumn);
-            add(info, doOn);
             return info;
         }
         return null;
@@ -348,92 +492,97 @@ public abstract class AbstractAdditionalTokensInfo {
                 Iterator<ASTEntry> entries = tup.o2;
 
                 FastStack<SimpleNode> tempStack = new FastStack<SimpleNode>(10);
+                List<Integer> doOnCreated = new ArrayList<Integer>();
 
                 synchronized (this.lock) {
-                    synchronized (ObjectsInternPool.lock) {
-                        final String file = key.file != null ? ObjectsInternPool.internUnsynched(key.file.toString())
-                                : null;
-                        key.name = ObjectsInternPool.internUnsynched(key.name);
-
-                        while (entries.hasNext()) {
-                            ASTEntry entry = entries.next();
-                            IInfo infoCreated = null;
-
-                            if (entry.parent == null) { //we only want those that are in the global scope
-                                if (entry.node instanceof ClassDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((ClassDef) entry.node).name;
-                                    ClassInfo info = new ClassInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info, TOP_LEVEL);
-                                    infoCreated = info;
-
-                                } else if (entry.node instanceof FunctionDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((FunctionDef) entry.node).name;
-                                    FuncInfo info2 = new FuncInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info2, TOP_LEVEL);
-                                    infoCreated = info2;
-
-                                } else {
-                                    //it is an assign
-                                    infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false, file);
+                    final String file = key.file != null ? ObjectsInternPool.intern(key.file.toString()) : null;
+                    key.name = ObjectsInternPool.intern(key.name);
+
+                    while (entries.hasNext()) {
+                        ASTEntry entry = entries.next();
+                        IInfo infoCreated = null;
+
+                        if (entry.parent == null) { //we only want those that are in the global scope
+                            if (entry.node instanceof ClassDef) {
+                                //the constructor doesn't intern (its strings are interned here with ObjectsInternPool)
+                                NameTok name = (NameTok) ((ClassDef) entry.node).name;
+                                ClassInfo info = new ClassInfo(
+                                        ObjectsInternPool.intern(name.id),
+                                        key.name, null, false, getNature(), file, name.beginLine,
+                                        name.beginColumn);
+                                infoCreated = info;
+
+                            } else if (entry.node instanceof FunctionDef) {
+                                //the constructor doesn't intern (its strings are interned here with ObjectsInternPool)
+                                NameTok name = (NameTok) ((FunctionDef) entry.node).name;
+                                FuncInfo info2 = new FuncInfo(
+                                        ObjectsInternPool.intern(name.id),
+                                        key.name, null, false, getNature(), file, name.beginLine,
+                                        name.beginColumn);
+                                infoCreated = info2;
 
-                                }
                             } else {
-                                if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
-                                    //ok, it has a parent, so, let's check to see if the path we got only has class definitions
-                                    //as the parent (and get that path)
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        //if the root is not valid, it is not only classes in the path (could be a method inside
-                                        //a method, or something similar).
-
-                                        if (entry.node instanceof ClassDef) {
-                                            NameTok name = ((NameTok) ((ClassDef) entry.node).name);
-                                            ClassInfo info = new ClassInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info, INNER);
-                                            infoCreated = info;
-
-                                        } else {
-                                            //FunctionDef
-                                            NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
-                                            FuncInfo info2 = new FuncInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info2, INNER);
-                                            infoCreated = info2;
-
-                                        }
-                                    }
-                                } else {
-                                    //it is an assign
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
-                                                pathToRoot.o2, file);
-                                    }
-                                }
-                            }
+                                //it is an assign
+                                infoCreated = this.createAssignTargetInfo(entry, key.name, null, false, file);
 
-                            if (infoCreated != null) {
-                                createdInfos.add(infoCreated);
                             }
+                        } else {
+                            if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
+                                //ok, it has a parent, so, let's check to see if the path we got only has class definitions
+                                //as the parent (and get that path)
+                                Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
+                                        tempStack);
+                                if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                    //if the root is not valid, it is not only classes in the path (could be a method inside
+                                    //a method, or something similar).
+
+                                    if (entry.node instanceof ClassDef) {
+                                        NameTok name = ((NameTok) ((ClassDef) entry.node).name);
+                                        ClassInfo info = new ClassInfo(
+                                                ObjectsInternPool.intern(name.id),
+                                                key.name, ObjectsInternPool.intern(pathToRoot.o1), false,
+                                                getNature(), file, name.beginLine, name.beginColumn);
+                                        infoCreated = info;
+
+                                    } else {
+                                        //FunctionDef
+                                        NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
+                                        FuncInfo info2 = new FuncInfo(
+                                                ObjectsInternPool.intern(name.id),
+                                                key.name, ObjectsInternPool.intern(pathToRoot.o1), false,
+                                                getNature(), file, name.beginLine, name.beginColumn);
+                                        infoCreated = info2;
 
-                        } //end while
-
-                    } //end lock ObjectsPool.lock
+                                    }
+                                }
+                            } else {
+                                //it is an assign
+                                Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
+                                        tempStack);
+                                if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                    infoCreated = this.createAssignTargetInfo(entry, key.name, pathToRoot.o1,
+                                            pathToRoot.o2, file);
+                                }
+                            }
+                        }
+
+                        if (infoCreated != null) {
+                            createdInfos.add(infoCreated);
+                            doOnCreated.add(entry.parent == null ? TOP_LEVEL : INNER);
+                        }
+
+                    } //end while
+
+                    //all the infos of the module are added at once (so that the write lock is acquired only once
+                    //instead of waiting for the running queries for each info).
+                    treesLock.writeLock().lock();
+                    try {
+                        for (int i = 0; i < createdInfos.size(); i++) {
+                            addWithWriteLock(createdInfos.get(i), doOnCreated.get(i));
+                        }
+                    } finally {
+                        treesLock.writeLock().unlock();
+                    }
 
                 } //end this.lock
 
@@ -461,26 +610,12 @@ public abstract class AbstractAdditionalTokensInfo {
      * @return a set with the module names that have tokens.
      */
     public Set<String> getAllModulesWithTokens() {
-        HashSet<String> ret = new HashSet<String>();
-        synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
-
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
+        treesLock.readLock().lock();
+        try {
+            return new HashSet<String>(moduleToInitials.keySet());
+        } finally {
+            treesLock.readLock().unlock();
         }
-        return ret;
-
     }
 
     /**
@@ -560,31 +695,47 @@ public abstract class AbstractAdditionalTokensInfo {
             org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, "Removing ast info from: " + moduleName);
         }
         synchronized (lock) {
-            removeInfoFromMap(moduleName, topLevelInitialsToInfo);
-            removeInfoFromMap(moduleName, innerInitialsToInfo);
+            treesLock.writeLock().lock();
+            try {
+                ModuleInitials moduleInitials = moduleToInitials.remove(moduleName);
+                if (moduleInitials != null) {
+                    treesChangedSinceSave = true;
+                    for (String initials : moduleInitials.topLevel) {
+                        removeModuleFromBucket(moduleName, initials, topLevelInitialsToInfo);
+                    }
+                    for (String initials : moduleInitials.inner) {
+                        removeModuleFromBucket(moduleName, initials, innerInitialsToInfo);
+                    }
+                }
+            } finally {
+                treesLock.writeLock().unlock();
+            }
         }
 
     }
 
     /**
-     * @param moduleName
-     * @param initialsToInfo
+     * Removes the infos declared in the given module from the bucket with the given initials (the bucket is removed
+     * if it becomes empty).
      */
-    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
-
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
-            while (it.hasNext()) {
-
-                IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
+    private void removeModuleFromBucket(String moduleName, String initials,
+            SortedMap<String, Set<IInfo>> initialsToInfo) {
+        Set<IInfo> listForInitials = initialsToInfo.get(initials);
+        if (listForInitials == null) {
+            return;
+        }
+        if (listForInitials instanceof InfoBucket) {
+            ((InfoBucket) listForInitials).removeModule(moduleName);
+        } else {
+            for (Iterator<IInfo> it = listForInitials.iterator(); it.hasNext();) {
+                if (moduleName.equals(it.next().getDeclaringModuleName())) {
+                    it.remove();
                 }
             }
         }
+        if (listForInitials.isEmpty()) {
+            initialsToInfo.remove(initials);
+        }
     }
 
     /**
@@ -594,44 +745,39 @@ public abstract class AbstractAdditionalTokensInfo {
      * @return a list of info, all starting with the given qualifier
      */
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
     }
 
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
     }
 
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
-        synchronized (lock) {
-            if (result == null) {
-                result = new ArrayList<IInfo>();
-            }
+        if (result == null) {
+            result = new ArrayList<IInfo>();
+        }
 
+        treesLock.readLock().lock();
+        try {
             if ((getWhat & TOP_LEVEL) != 0) {
                 getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
             }
             if ((getWhat & INNER) != 0) {
                 getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
             }
-            return result;
+        } finally {
+            treesLock.readLock().unlock();
         }
+        return result;
     }
 
     /**
@@ -652,6 +798,17 @@ public abstract class AbstractAdditionalTokensInfo {
         SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
 
         for (Set<IInfo> listForInitials : subMap.values()) {
+            if (listForInitials instanceof InfoBucket) {
+                //the buckets are sorted by name, so, we don't have to go through all the infos for the filters we know.
+                if (filter == startingWithFilter) {
+                    ((InfoBucket) listForInitials).addStartingWith(qualToCompare, toks);
+                    continue;
+                }
+                if (filter == equalsFilter) {
+                    ((InfoBucket) listForInitials).addEqualTo(qualToCompare, toks);
+                    continue;
+                }
+            }
 
             for (IInfo info : listForInitials) {
                 if (filter.doCompare(qualToCompare, info)) {
@@ -665,7 +822,8 @@ public abstract class AbstractAdditionalTokensInfo {
      * @return all the tokens that are in this info (top level or inner)
      */
     public Collection<IInfo> getAllTokens() {
-        synchronized (lock) {
+        treesLock.readLock().lock();
+        try {
             Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
 
             ArrayList<IInfo> toks = new ArrayList<IInfo>();
@@ -682,6 +840,8 @@ public abstract class AbstractAdditionalTokensInfo {
                 }
             }
             return toks;
+        } finally {
+            treesLock.readLock().unlock();
         }
     }
 
@@ -749,24 +909,78 @@ public abstract class AbstractAdditionalTokensInfo {
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
+            //The trees are saved in a binary file alongside the given file (which only references it), which is only
+            //rewritten if the trees changed. A new file is written each time (so, a file which is still mapped --
+            //because some of its buckets weren't decoded yet -- is never overwritten).
+            long stamp = savedTreesStamp;
+            if (treesChangedSinceSave || stamp == 0 || !getTreesFile(pathToSave, stamp).exists()) {
+                stamp = Math.max(System.currentTimeMillis(), savedTreesStamp + 1);
+                treesLock.readLock().lock();
+                try {
+                    TreeIO.dumpTreesToFile(this.topLevelInitialsToInfo, this.innerInitialsToInfo,
+                            this.moduleToInitials, stamp, getTreesFile(pathToSave, stamp));
+                } finally {
+                    treesLock.readLock().unlock();
+                }
+                //Keep the previous one (still referenced by the file being overwritten).
+                deleteOtherTreesFiles(pathToSave, stamp, savedTreesStamp);
+                savedTreesStamp = stamp;
+                treesChangedSinceSave = false;
+            }
 
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
+            tempBuf.append(TREES_FILE_PREFIX);
+            tempBuf.append(stamp);
+            tempBuf.append('\n');
+            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+        }
+    }
 
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
+    /**
+     * Line written by saveTo with the stamp of the binary file with the trees.
+     */
+    protected static final String TREES_FILE_PREFIX = "-- START TREES_FILE ";
+
+    /**
+     * Loads the trees from the binary file written by saveTo (it must be followed by a call to restoreSavedInfo).
+     *
+     * @param pathSaved the file which references the binary file.
+     * @param stamp the stamp of the binary file.
+     * @return a tuple with the top level and the inner trees.
+     */
+    protected Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> loadTreesFromFile(
+            File pathSaved, long stamp, IPythonNature nature) throws IOException {
+        Tuple3<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>, Map<String, ModuleInitials>> trees = TreeIO
+                .loadTreesFromFile(getTreesFile(pathSaved, stamp), stamp, nature);
+        loadedTreesStamp = stamp;
+        loadedModuleToInitials = trees.o3;
+        deleteOtherTreesFiles(pathSaved, stamp, stamp);
+        return new Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>>(trees.o1,
+                trees.o2);
+    }
 
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
+    private static File getTreesFile(File pathSaved, long stamp) {
+        return new File(pathSaved.getPath() + "." + stamp + ".trees");
+    }
 
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+    /**
+     * Removes the binary files with the trees related to the given file (except the ones with the given stamps).
+     * Note: the removal may fail if a file is still mapped (it'll be removed later on).
+     */
+    private static void deleteOtherTreesFiles(File pathSaved, long keepStamp1, long keepStamp2) {
+        File dir = pathSaved.getAbsoluteFile().getParentFile();
+        String prefix = pathSaved.getName() + ".";
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && name.endsWith(".trees")) {
+                String stamp = name.substring(prefix.length(), name.length() - ".trees".length());
+                if (!stamp.equals(String.valueOf(keepStamp1)) && !stamp.equals(String.valueOf(keepStamp2))) {
+                    f.delete();
+                }
+            }
         }
     }
 
@@ -788,8 +1002,23 @@ public abstract class AbstractAdditionalTokensInfo {
             if (o2 == null) {
                 throw new RuntimeException("Error in I/O (innerInitialsToInfo is null). Rebuilding internal info.");
             }
-            this.topLevelInitialsToInfo = o1;
-            this.innerInitialsToInfo = o2;
+            Map<String, ModuleInitials> moduleIndex = loadedModuleToInitials;
+            loadedModuleToInitials = null;
+            if (moduleIndex == null) {
+                //the trees aren't visible to queries yet, so, there's no need to hold the write lock for this.
+                moduleIndex = createModuleIndex(o1, o2);
+            }
+            treesLock.writeLock().lock();
+            try {
+                this.topLevelInitialsToInfo = o1;
+                this.innerInitialsToInfo = o2;
+                this.moduleToInitials = moduleIndex;
+            } finally {
+                treesLock.writeLock().unlock();
+            }
+            savedTreesStamp = loadedTreesStamp;
+            loadedTreesStamp = 0;
+            treesChangedSinceSave = savedTreesStamp == 0;
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -801,7 +1030,8 @@ public abstract class AbstractAdditionalTokensInfo {
 
     @Override
     public String toString() {
-        synchronized (lock) {
+        treesLock.readLock().lock();
+        try {
             FastStringBuffer buffer = new FastStringBuffer();
             buffer.append("AdditionalInfo{");
 
@@ -814,6 +1044,8 @@ public abstract class AbstractAdditionalTokensInfo {
 
             buffer.append("}");
             return buffer.toString();
+        } finally {
+            treesLock.readLock().unlock();
         }
     }
 
@@ -822,13 +1054,11 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param name
      */
     private void entrySetToString(FastStringBuffer buffer, Set<Entry<String, Set<IInfo>>> name) {
-        synchronized (lock) {
-            for (Entry<String, Set<IInfo>> entry : name) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    buffer.append(info.toString());
-                    buffer.append("\n");
-                }
+        for (Entry<String, Set<IInfo>> entry : name) {
+            Set<IInfo> value = entry.getValue();
+            for (IInfo info : value) {
+                buffer.append(info.toString());
+                buffer.append("\n");
             }
         }
     }
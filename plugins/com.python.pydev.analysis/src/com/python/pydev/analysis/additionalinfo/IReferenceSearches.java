@@ -7,6 +7,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.shared_core.index.IFields;
 import org.python.pydev.shared_core.structure.OrderedMap;
 
@@ -23,4 +24,19 @@ public interface IReferenceSearches {
     List<ModulesKey> search(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
             IProgressMonitor monitor) throws OperationCanceledException;
 
+    /**
+     * Called after the given module was (re)indexed in the related additional info.
+     */
+    void onModuleIndexed(CompleteIndexKey key);
+
+    /**
+     * Called after the given module was removed from the related additional info.
+     */
+    void onModuleRemoved(String moduleName);
+
+    /**
+     * Called after all the info in the related additional info was cleared.
+     */
+    void onAllInfoCleared();
+
 }
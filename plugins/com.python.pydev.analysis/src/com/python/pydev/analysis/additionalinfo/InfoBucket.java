@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.python.pydev.core.IInfo;
+
+/**
+ * The infos with the same initials in AbstractAdditionalTokensInfo.
+ *
+ * The infos are kept in an array sorted by name (ignoring the case), so, the infos starting with (or equal to) some
+ * qualifier are found with a binary search instead of comparing each info in the bucket (and each info costs a
+ * single reference instead of an entry in a HashSet).
+ *
+ * A bucket loaded by TreeIO only decodes its infos when it's first accessed (its size is available without decoding).
+ *
+ * Note: not thread-safe (the access is guarded by AbstractAdditionalTokensInfo), except for the lazy decoding (which
+ * may happen on concurrent reads).
+ */
+public final class InfoBucket extends AbstractSet<IInfo> {
+
+    private static final IInfo[] EMPTY = new IInfo[0];
+
+    /**
+     * Sorts by the name ignoring the case (so that the names with a given prefix are contiguous) and then by the
+     * fields used in AbstractInfo.equals (so that 0 is only returned for equal infos).
+     */
+    /*default*/ static final Comparator<IInfo> COMPARATOR = new Comparator<IInfo>() {
+
+        @Override
+        public int compare(IInfo o1, IInfo o2) {
+            String name1 = o1.getName();
+            String name2 = o2.getName();
+            int r = String.CASE_INSENSITIVE_ORDER.compare(name1, name2);
+            if (r != 0) {
+                return r;
+            }
+            r = name1.compareTo(name2);
+            if (r != 0) {
+                return r;
+            }
+            r = compareNullable(o1.getDeclaringModuleName(), o2.getDeclaringModuleName());
+            if (r != 0) {
+                return r;
+            }
+            r = Integer.compare(o1.getType(), o2.getType());
+            if (r != 0) {
+                return r;
+            }
+            return compareNullable(o1.getPath(), o2.getPath());
+        }
+    };
+
+    private static int compareNullable(String s1, String s2) {
+        if (s1 == null || s2 == null) {
+            return s1 == s2 ? 0 : (s1 == null ? -1 : 1);
+        }
+        return s1.compareTo(s2);
+    }
+
+    private IInfo[] infos;
+
+    private int size;
+
+    /**
+     * While not null, the infos still have to be decoded (from pos).
+     */
+    private volatile TreeIO.BucketsReader reader;
+
+    private int pos;
+
+    public InfoBucket() {
+        this.infos = EMPTY;
+    }
+
+    /**
+     * Creates a bucket with the given infos (sorted only once, so, it's much faster than adding one at a time).
+     */
+    public InfoBucket(Collection<IInfo> infos) {
+        IInfo[] array = infos.toArray(new IInfo[infos.size()]);
+        Arrays.sort(array, COMPARATOR);
+
+        //remove the duplicates
+        int newSize = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (newSize == 0 || COMPARATOR.compare(array[newSize - 1], array[i]) != 0) {
+                array[newSize] = array[i];
+                newSize++;
+            }
+        }
+        if (newSize != array.length) {
+            array = Arrays.copyOf(array, newSize);
+        }
+        this.infos = array;
+        this.size = newSize;
+    }
+
+    /**
+     * Creates a bucket whose infos are only decoded when needed.
+     */
+    /*default*/ InfoBucket(TreeIO.BucketsReader reader, int pos, int size) {
+        this.infos = EMPTY;
+        this.size = size;
+        this.pos = pos;
+        this.reader = reader;
+    }
+
+    private void ensureDecoded() {
+        if (reader != null) {
+            synchronized (this) {
+                TreeIO.BucketsReader r = reader;
+                if (r != null) {
+                    infos = r.decodeInfos(pos, size);
+                    size = infos.length;
+                    reader = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the infos of this bucket are already decoded.
+     */
+    /*default*/ boolean isDecoded() {
+        return reader == null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        ensureDecoded();
+        return o instanceof IInfo && Arrays.binarySearch(infos, 0, size, (IInfo) o, COMPARATOR) >= 0;
+    }
+
+    @Override
+    public boolean add(IInfo info) {
+        ensureDecoded();
+        int i = Arrays.binarySearch(infos, 0, size, info, COMPARATOR);
+        if (i >= 0) {
+            return false;
+        }
+        i = -(i + 1);
+        if (size == infos.length) {
+            infos = Arrays.copyOf(infos, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(infos, i, infos, i + 1, size - i);
+        infos[i] = info;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof IInfo)) {
+            return false;
+        }
+        ensureDecoded();
+        int i = Arrays.binarySearch(infos, 0, size, (IInfo) o, COMPARATOR);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Removes the infos declared in the given module.
+     *
+     * @return whether some info was removed.
+     */
+    public boolean removeModule(String moduleName) {
+        ensureDecoded();
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            IInfo info = infos[i];
+            if (!moduleName.equals(info.getDeclaringModuleName())) {
+                infos[newSize] = info;
+                newSize++;
+            }
+        }
+        if (newSize == size) {
+            return false;
+        }
+        Arrays.fill(infos, newSize, size, null);
+        size = newSize;
+        if (size == 0) {
+            infos = EMPTY;
+        }
+        return true;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        System.arraycopy(infos, i + 1, infos, i, size - i);
+        infos[size] = null;
+        if (size == 0) {
+            infos = EMPTY;
+        }
+    }
+
+    @Override
+    public void clear() {
+        reader = null;
+        infos = EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<IInfo> iterator() {
+        ensureDecoded();
+        return new Iterator<IInfo>() {
+
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public IInfo next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next++;
+                return infos[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last == -1) {
+                    throw new IllegalStateException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    /**
+     * Adds the infos whose name starts with the given qualifier (ignoring the case) to the given collection.
+     */
+    public void addStartingWith(String qualifier, Collection<IInfo> toks) {
+        ensureDecoded();
+        int len = qualifier.length();
+        for (int i = lowerBound(qualifier); i < size; i++) {
+            IInfo info = infos[i];
+            if (!info.getName().regionMatches(true, 0, qualifier, 0, len)) {
+                break;
+            }
+            toks.add(info);
+        }
+    }
+
+    /**
+     * Adds the infos whose name is equal to the given qualifier to the given collection.
+     */
+    public void addEqualTo(String qualifier, Collection<IInfo> toks) {
+        ensureDecoded();
+        for (int i = lowerBound(qualifier); i < size; i++) {
+            IInfo info = infos[i];
+            String name = info.getName();
+            if (!name.equalsIgnoreCase(qualifier)) {
+                break;
+            }
+            if (name.equals(qualifier)) {
+                toks.add(info);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first info whose name is not less than the given name (ignoring the case).
+     */
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(infos[mid].getName(), name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
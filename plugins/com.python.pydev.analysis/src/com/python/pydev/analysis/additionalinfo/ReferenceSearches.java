@@ -32,6 +32,7 @@ import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.shared_core.io.FileUtils;
@@ -172,6 +173,19 @@ public class ReferenceSearches implements IReferenceSearches {
 
     }
 
+    @Override
+    public void onModuleIndexed(CompleteIndexKey key) {
+        // No index to keep in sync (contents are always searched directly).
+    }
+
+    @Override
+    public void onModuleRemoved(String moduleName) {
+    }
+
+    @Override
+    public void onAllInfoCleared() {
+    }
+
     private void fill(FastStringBuffer bufFileContents, InputStream stream) throws IOException {
         for (int i = 0; i < 5; i++) {
             try {
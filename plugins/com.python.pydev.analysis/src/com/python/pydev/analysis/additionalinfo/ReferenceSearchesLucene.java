@@ -10,8 +10,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -19,23 +19,31 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.python.pydev.ast.codecompletion.revisited.modules.IModulesKeyForJava;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.DiskCache;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.core.preferences.PydevPrefs;
 import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.index.IndexApi;
+import org.python.pydev.shared_core.index.IndexApi.IContentsProvider;
 import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
 import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
 import org.python.pydev.shared_core.progress.AsynchronousProgressMonitorWrapper;
@@ -43,6 +51,7 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.OrderedMap;
 import org.python.pydev.shared_core.utils.Timer;
 
+import com.python.pydev.analysis.AnalysisPreferenceInitializer;
 import com.python.pydev.analysis.system_info_builder.InterpreterInfoBuilder;
 
 public class ReferenceSearchesLucene implements IReferenceSearches {
@@ -69,18 +78,88 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
     }
 
     private static final boolean DEBUG = false;
+
+    /**
+     * Time to wait after a change is notified before applying the pending changes to the index
+     * (so that changes done in a burst -- i.e.: in a build -- are applied in a single batch).
+     */
+    private static final long INDEX_MAINTAINER_DELAY = 1000;
+
     private WeakReference<AbstractAdditionalDependencyInfo> abstractAdditionalDependencyInfo;
-    private IndexApi indexApi;
+    private volatile IndexApi indexApi;
+
+    /**
+     * Whether the contents of the index were already fully reconciled with the keys in the DiskCache.
+     * After that is done, only the changes notified in onModuleIndexed/onModuleRemoved need to
+     * be applied to keep it up to date.
+     */
+    private volatile boolean indexReconciled = false;
+
+    private final Object pendingChangesLock = new Object();
+
+    /**
+     * Module name -> key to be indexed (or null if the module was removed).
+     */
+    private Map<String, CompleteIndexKey> pendingChanges = new LinkedHashMap<>();
+
+    private final Job indexMaintainerJob = new Job("Update references index") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            IndexApi api = indexApi;
+            if (api != null) {
+                synchronized (api.getLock()) {
+                    applyPendingChanges(api);
+                }
+            }
+            return Status.OK_STATUS;
+        }
+    };
 
     public ReferenceSearchesLucene(AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo) {
         this.abstractAdditionalDependencyInfo = new WeakReference<>(abstractAdditionalDependencyInfo);
+        indexMaintainerJob.setSystem(true);
+        indexMaintainerJob.setPriority(Job.DECORATE);
     }
 
     @Override
     public void dispose() {
+        indexMaintainerJob.cancel();
         if (indexApi != null) {
             indexApi = null;
         }
+        synchronized (pendingChangesLock) {
+            pendingChanges.clear();
+        }
+    }
+
+    @Override
+    public void onModuleIndexed(CompleteIndexKey key) {
+        addPendingChange(key.key.name, key);
+    }
+
+    @Override
+    public void onModuleRemoved(String moduleName) {
+        addPendingChange(moduleName, null);
+    }
+
+    @Override
+    public void onAllInfoCleared() {
+        indexReconciled = false;
+        synchronized (pendingChangesLock) {
+            pendingChanges.clear();
+        }
+    }
+
+    private void addPendingChange(String moduleName, CompleteIndexKey key) {
+        if (indexApi == null) {
+            // The index wasn't opened yet (when it's opened it'll be fully reconciled).
+            return;
+        }
+        synchronized (pendingChangesLock) {
+            pendingChanges.put(moduleName, key);
+        }
+        indexMaintainerJob.schedule(INDEX_MAINTAINER_DELAY);
     }
 
     @Override
@@ -136,17 +215,16 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
             }
         }
 
-        boolean mustCommitChange = false;
-
         final String name = "Search modules with token in: " + abstractAdditionalDependencyInfo.getUIRepresentation();
         monitor.beginTask(name, 7);
         monitor.setTaskName(name);
 
-        DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
+        final DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
 
         // Note: we should be able to deal with entries already deleted!
         boolean applyAllDeletes = false;
 
+        IndexApi indexApi = this.indexApi;
         if (indexApi == null) {
             String folderToPersist = completeIndex.getFolderToPersist();
             synchronized (lock) {
@@ -162,154 +240,315 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                     }
                 }
             }
+            // Note: set before reconciling so that changes done concurrently to the reconcile are
+            // also tracked.
+            this.indexApi = indexApi;
         }
 
         synchronized (indexApi.getLock()) {
-            final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
+            if (!indexReconciled) {
+                // Wait for the integrity check before getting the keys!
+                abstractAdditionalDependencyInfo.waitForIntegrityCheck();
 
-            IDocumentsVisitor visitor = new IDocumentsVisitor() {
+                reconcileWithDiskCache(indexApi, completeIndex, monitor);
+                indexReconciled = true;
+            }
+            // Apply any change which is still pending (usually just a few modules).
+            applyPendingChanges(indexApi);
+
+            // Ok, things should be in-place at this point... let's actually do the search now
+            incrementAndCheckProgress("Searching index", monitor);
 
-                @Override
-                public void visit(DocumentInfo documentInfo) {
-                    ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
-                    String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                    indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
-                }
-            };
             try {
-                indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
-            } catch (IOException e) {
+                if (DEBUG) {
+                    System.out.println("Searching: " + fieldNameToValues);
+                }
+                IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+                    @Override
+                    public void visit(DocumentInfo documentInfo) {
+                        try {
+                            String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
+                            String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                            if (modKey != null && modTime != null) {
+                                ModulesKey fromIO = ModulesKey.fromIO(modKey);
+                                CompleteIndexKey existing = completeIndex.get(new CompleteIndexKey(fromIO));
+                                // Deal with deleted entries still hanging around.
+                                if (existing != null && existing.lastModified == Long.parseLong(modTime)) {
+                                    // Ok, we have a match!
+                                    ret.add(existing.key);
+                                }
+                            }
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
+                    }
+                };
+                indexApi.searchWildcard(fieldNameToValues, applyAllDeletes, visitor, null, FIELD_MODULES_KEY_IO,
+                        FIELD_MODIFIED_TIME);
+            } catch (Exception e) {
                 Log.log(e);
             }
+        }
+        return ret;
+    }
 
-            incrementAndCheckProgress("Visited current index", monitor);
+    /**
+     * Makes a full check of the contents of the index against the keys in the DiskCache (only needed
+     * when the index is opened or when the related info was fully restored/cleared, as afterwards the
+     * index is kept up to date by applying the changes notified).
+     *
+     * Note: the indexApi lock must be held when calling this method.
+     */
+    private void reconcileWithDiskCache(IndexApi indexApi, DiskCache completeIndex, IProgressMonitor monitor) {
+        boolean mustCommitChange = false;
+        final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
 
-            Set<CompleteIndexKey> docsToRemove = new HashSet<>();
-            Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
-            Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
+        IDocumentsVisitor visitor = new IDocumentsVisitor() {
 
-            // Wait for the integrity check before getting the keys!
-            abstractAdditionalDependencyInfo.waitForIntegrityCheck();
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
+                String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
+            }
+        };
+        try {
+            indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
+        } catch (IOException e) {
+            Log.log(e);
+        }
 
-            final Map<CompleteIndexKey, CompleteIndexKey> currentKeys = completeIndex.keys();
+        incrementAndCheckProgress("Visited current index", monitor);
 
-            // Step 1: remove entries which were in the index but are already removed
-            // from the modules (or have a different time).
-            for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
-                CompleteIndexKey indexModule = entryInIndex.getValue();
+        Set<CompleteIndexKey> docsToRemove = new HashSet<>();
+        Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
+        Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
 
-                CompleteIndexKey currentModule = currentKeys.get(indexModule);
-                if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
-                    docsToRemove.add(indexModule);
+        final Map<CompleteIndexKey, CompleteIndexKey> currentKeys = completeIndex.keys();
+
+        // Step 1: remove entries which were in the index but are already removed
+        // from the modules (or have a different time).
+        for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
+            CompleteIndexKey indexModule = entryInIndex.getValue();
+
+            CompleteIndexKey currentModule = currentKeys.get(indexModule);
+            if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
+                docsToRemove.add(indexModule);
+
+            } else {
+                // exists, but we also need to check the modified time
+                boolean changed = currentModule.lastModified != indexModule.lastModified;
+                if (!changed) {
+                    ModulesKey keyCurrentModule = currentModule.key;
+                    ModulesKey keyIndexModule = indexModule.key;
+                    boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
+                    boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
+                    changed = currentIsZip != indexIsZip;
 
-                } else {
-                    // exists, but we also need to check the modified time
-                    boolean changed = currentModule.lastModified != indexModule.lastModified;
                     if (!changed) {
-                        ModulesKey keyCurrentModule = currentModule.key;
-                        ModulesKey keyIndexModule = indexModule.key;
-                        boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
-                        boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
-                        changed = currentIsZip != indexIsZip;
-
-                        if (!changed) {
-                            changed = !currentModule.key.file.equals(indexModule.key.file);
-                        }
+                        changed = !currentModule.key.file.equals(indexModule.key.file);
                     }
+                }
 
-                    if (changed) {
-                        // remove and add
-                        docsToRemove.add(indexModule);
+                if (changed) {
+                    // remove and add
+                    docsToRemove.add(indexModule);
 
-                        add(modulesToAdd, zipModulesToAdd, currentModule);
-                    }
+                    add(modulesToAdd, zipModulesToAdd, currentModule);
                 }
             }
-            // --- Progress
-            incrementAndCheckProgress("Updating for removal", monitor);
-
-            // Step 2: add new entries in current and not in the index
-            for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
-                CompleteIndexKey completeIndexKey = currentEntry.getValue();
-                if (!indexMap.containsKey(completeIndexKey.key)) {
-                    ModulesKey modulesKey = completeIndexKey.key;
-                    if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null
-                            || !modulesKey.file.isFile()) {
-                        //ignore this one (we can't do anything with it).
-                        continue;
-                    }
+        }
+        // --- Progress
+        incrementAndCheckProgress("Updating for removal", monitor);
+
+        // Step 2: add new entries in current and not in the index
+        for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
+            CompleteIndexKey completeIndexKey = currentEntry.getValue();
+            if (!indexMap.containsKey(completeIndexKey.key)) {
+                if (!isIndexable(completeIndexKey.key)) {
+                    //ignore this one (we can't do anything with it).
+                    continue;
+                }
 
-                    if (modulesKey instanceof ModulesKeyForZip) {
-                        ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
-                        if (!modulesKeyForZip.isFile) {
-                            continue; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
-                        }
-                    }
+                add(modulesToAdd, zipModulesToAdd, completeIndexKey);
+            }
+        }
+        // --- Progress
+        incrementAndCheckProgress("Updating for addition", monitor);
 
-                    add(modulesToAdd, zipModulesToAdd, completeIndexKey);
+        Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
+        Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
+
+        FastStringBuffer tempBuf = new FastStringBuffer();
+        for (Iterator<CompleteIndexKey> it = docsToRemove.iterator(); it.hasNext();) {
+            it.next().key.toIO(tempBuf.clear());
+            lstToRemove.add(tempBuf.toString());
+        }
+
+        incrementAndCheckProgress("Removing outdated entries", monitor);
+        if (lstToRemove.size() > 0) {
+            fieldToValuesToRemove.put(FIELD_MODULES_KEY_IO, lstToRemove);
+            try {
+                mustCommitChange = true;
+                if (DEBUG) {
+                    System.out.println("Removing: " + fieldToValuesToRemove);
                 }
+                indexApi.removeDocs(fieldToValuesToRemove);
+            } catch (IOException e) {
+                Log.log(e);
             }
-            // --- Progress
-            incrementAndCheckProgress("Updating for addition", monitor);
+        }
 
-            Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
-            Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
+        incrementAndCheckProgress("Indexing new entries", monitor);
+        if (indexModules(indexApi, modulesToAdd, zipModulesToAdd, monitor)) {
+            mustCommitChange = true;
+        }
 
-            FastStringBuffer tempBuf = new FastStringBuffer();
-            for (Iterator<CompleteIndexKey> it = docsToRemove.iterator(); it.hasNext();) {
-                it.next().key.toIO(tempBuf.clear());
-                lstToRemove.add(tempBuf.toString());
+        incrementAndCheckProgress("Committing result", monitor);
+        if (mustCommitChange) {
+            commit(indexApi);
+        }
+    }
+
+    /**
+     * Applies the changes notified since the last time it was called to the index.
+     *
+     * Note: the indexApi lock must be held when calling this method.
+     */
+    private void applyPendingChanges(IndexApi indexApi) {
+        Map<String, CompleteIndexKey> changes;
+        synchronized (pendingChangesLock) {
+            if (pendingChanges.isEmpty()) {
+                return;
             }
+            changes = pendingChanges;
+            pendingChanges = new LinkedHashMap<>();
+        }
+        if (DEBUG) {
+            System.out.println("Applying changes to index: " + changes.keySet());
+        }
 
-            incrementAndCheckProgress("Removing outdated entries", monitor);
-            if (lstToRemove.size() > 0) {
-                fieldToValuesToRemove.put(FIELD_MODULES_KEY_IO, lstToRemove);
-                try {
-                    mustCommitChange = true;
-                    if (DEBUG) {
-                        System.out.println("Removing: " + fieldToValuesToRemove);
-                    }
-                    indexApi.removeDocs(fieldToValuesToRemove);
-                } catch (IOException e) {
-                    Log.log(e);
-                }
+        Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
+        Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
+        for (CompleteIndexKey key : changes.values()) {
+            if (key != null && isIndexable(key.key)) {
+                add(modulesToAdd, zipModulesToAdd, key);
             }
+        }
 
-            incrementAndCheckProgress("Indexing new entries", monitor);
-            if (modulesToAdd.size() > 0) {
-                mustCommitChange = true;
-                for (CompleteIndexKey key : modulesToAdd) {
-                    File f = key.key.file;
-                    if (f.exists()) {
-                        if (DEBUG) {
-                            System.out.println("Indexing: " + f);
-                        }
-                        try (BufferedReader reader = new BufferedReader(new FileReader(f));) {
-                            indexApi.index(createFieldsToIndex(key, tempBuf), reader, FIELD_CONTENTS);
-                        } catch (Exception e) {
-                            Log.log(e);
-                        }
-                    }
-                }
+        // Remove any previous version of the changed modules (deletes only apply to the documents
+        // added before the delete, so, the new documents must be indexed afterwards).
+        Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
+        fieldToValuesToRemove.put(FIELD_MODULE_NAME, changes.keySet());
+        try {
+            indexApi.removeDocs(fieldToValuesToRemove);
+        } catch (IOException e) {
+            Log.log(e);
+        }
+
+        indexModules(indexApi, modulesToAdd, zipModulesToAdd, null);
+        commit(indexApi);
+    }
+
+    /**
+     * Provides the contents of a module in the filesystem to be indexed.
+     */
+    private final class FileContentsProvider implements IContentsProvider {
+
+        private final CompleteIndexKey key;
+
+        private FileContentsProvider(CompleteIndexKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public Map<String, String> getFieldsToIndex() {
+            return createFieldsToIndex(key, new FastStringBuffer());
+        }
+
+        @Override
+        public Reader openReader() throws IOException {
+            File f = key.key.file;
+            if (!f.exists()) {
+                return null;
+            }
+            if (DEBUG) {
+                System.out.println("Indexing: " + f);
             }
+            return new BufferedReader(new FileReader(f));
+        }
+    }
+
+    /**
+     * Provides the contents of a module inside a zip to be indexed.
+     */
+    private final class ZipContentsProvider implements IContentsProvider {
+
+        private final CompleteIndexKey key;
+        private final ZipFile zipFile;
+
+        private ZipContentsProvider(CompleteIndexKey key, ZipFile zipFile) {
+            this.key = key;
+            this.zipFile = zipFile;
+        }
 
+        @Override
+        public Map<String, String> getFieldsToIndex() {
+            return createFieldsToIndex(key, new FastStringBuffer());
+        }
+
+        @Override
+        public Reader openReader() throws IOException {
+            ModulesKeyForZip forZip = (ModulesKeyForZip) key.key;
+            ZipEntry entry = zipFile.getEntry(forZip.zipModulePath);
+            if (entry == null) {
+                return null;
+            }
+            if (DEBUG) {
+                System.out.println("Indexing: " + key);
+            }
+            return new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the number of threads to be used to index the contents of modules.
+     */
+    private static int getIndexingParallelism() {
+        int parallelism = 0;
+        if (!SharedCorePlugin.inTestMode()) {
+            parallelism = PydevPrefs.getAnalysisEclipsePreferences().getInt(
+                    AnalysisPreferenceInitializer.INDEXING_PARALLELISM,
+                    AnalysisPreferenceInitializer.DEFAULT_INDEXING_PARALLELISM);
+        }
+        if (parallelism <= 0) {
+            parallelism = IndexApi.getDefaultIndexingParallelism();
+        }
+        return parallelism;
+    }
+
+    /**
+     * @return true if some module was indexed (and false otherwise).
+     */
+    private boolean indexModules(IndexApi indexApi, Set<CompleteIndexKey> modulesToAdd,
+            Map<File, Set<CompleteIndexKey>> zipModulesToAdd, IProgressMonitor monitor) {
+        List<IContentsProvider> providers = new ArrayList<>(modulesToAdd.size());
+        for (CompleteIndexKey key : modulesToAdd) {
+            providers.add(new FileContentsProvider(key));
+        }
+
+        List<ZipFile> zipFiles = new ArrayList<>(zipModulesToAdd.size());
+        try {
             Set<Entry<File, Set<CompleteIndexKey>>> entrySet = zipModulesToAdd.entrySet();
             for (Entry<File, Set<CompleteIndexKey>> entry : entrySet) {
                 File f = entry.getKey();
                 if (f.exists()) {
-                    try (ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);) {
-                        Set<CompleteIndexKey> value = entry.getValue();
-                        for (CompleteIndexKey completeIndexKey2 : value) {
-                            ModulesKeyForZip forZip = (ModulesKeyForZip) completeIndexKey2.key;
-                            try (InputStream inputStream = zipFile
-                                    .getInputStream(zipFile.getEntry(forZip.zipModulePath));) {
-                                InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-                                mustCommitChange = true;
-                                if (DEBUG) {
-                                    System.out.println("Indexing: " + completeIndexKey2);
-                                }
-                                indexApi.index(createFieldsToIndex(completeIndexKey2, tempBuf), reader, FIELD_CONTENTS);
-                            }
+                    try {
+                        ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);
+                        zipFiles.add(zipFile);
+                        for (CompleteIndexKey completeIndexKey : entry.getValue()) {
+                            providers.add(new ZipContentsProvider(completeIndexKey, zipFile));
                         }
                     } catch (Exception e) {
                         Log.log(e);
@@ -317,53 +556,54 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                 }
             }
 
-            incrementAndCheckProgress("Committing result", monitor);
-            if (mustCommitChange) {
-                if (DEBUG) {
-                    System.out.println("Commit result");
-                }
+            if (providers.size() == 0) {
+                return false;
+            }
+            try {
+                indexApi.indexInParallel(providers, FIELD_CONTENTS, getIndexingParallelism(), monitor);
+            } catch (Exception e) {
+                Log.log(e);
+            }
+            return true;
+
+        } finally {
+            for (ZipFile zipFile : zipFiles) {
                 try {
-                    indexApi.commit();
+                    zipFile.close();
                 } catch (IOException e) {
                     Log.log(e);
                 }
             }
+        }
+    }
 
-            // Ok, things should be in-place at this point... let's actually do the search now
-            incrementAndCheckProgress("Searching index", monitor);
+    private void commit(IndexApi indexApi) {
+        if (DEBUG) {
+            System.out.println("Commit result");
+        }
+        try {
+            indexApi.commit();
+            indexApi.refreshSearcher();
+        } catch (IOException e) {
+            Log.log(e);
+        }
+    }
 
-            try {
-                if (DEBUG) {
-                    System.out.println("Searching: " + fieldNameToValues);
-                }
-                visitor = new IDocumentsVisitor() {
+    /**
+     * @return whether the contents of the given key can be indexed.
+     */
+    private static boolean isIndexable(ModulesKey modulesKey) {
+        if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null || !modulesKey.file.isFile()) {
+            return false;
+        }
 
-                    @Override
-                    public void visit(DocumentInfo documentInfo) {
-                        try {
-                            String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
-                            String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                            if (modKey != null && modTime != null) {
-                                ModulesKey fromIO = ModulesKey.fromIO(modKey);
-                                CompleteIndexKey existing = currentKeys.get(new CompleteIndexKey(fromIO));
-                                // Deal with deleted entries still hanging around.
-                                if (existing != null && existing.lastModified == Long.parseLong(modTime)) {
-                                    // Ok, we have a match!
-                                    ret.add(existing.key);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.log(e);
-                        }
-                    }
-                };
-                indexApi.searchWildcard(fieldNameToValues, applyAllDeletes, visitor, null, FIELD_MODULES_KEY_IO,
-                        FIELD_MODIFIED_TIME);
-            } catch (Exception e) {
-                Log.log(e);
+        if (modulesKey instanceof ModulesKeyForZip) {
+            ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
+            if (!modulesKeyForZip.isFile) {
+                return false; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
             }
         }
-        return ret;
+        return true;
     }
 
     private void incrementAndCheckProgress(String msg, IProgressMonitor monitor) throws OperationCanceledException {
@@ -6,24 +6,32 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 
 import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
-import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IPythonNature;
-import org.python.pydev.core.ObjectsInternPool;
-import org.python.pydev.core.ObjectsInternPool.ObjectsPoolMap;
 import org.python.pydev.core.log.Log;
-import org.python.pydev.shared_core.string.FastStringBuffer;
-import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple3;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.ModuleInitials;
 
 /**
  * @author Fabio
@@ -31,118 +39,318 @@ import org.python.pydev.shared_core.string.StringUtils;
  */
 public class TreeIO {
 
-    private static final char END_IINFO_SEPARATOR = '@';
-    private static final char NAME_CHAR_SEPARATOR = '!';
-    private static final char PATH_CHAR_SEPARATOR = '&';
-    private static final char FILE_CHAR_SEPARATOR = '^';
-    private static final char LINE_CHAR_SEPARATOR = '#';
-    private static final char COL_CHAR_SEPARATOR = '*';
+    private static final int MAGIC = 0x50594954;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
 
     /**
-     * Tree is written as:
-     * line 1= tree size
-     * cub|2|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
+     * The trees are written as:
+     *
+     * header: magic, version, stamp (long), position of tree 1, position of tree 2, position of the modules,
+     * position of the strings
+     * tree: number of buckets, (initials, number of infos, offset of the infos) for each bucket, the infos
+     * info: name, path + 1, file + 1, line, col, (module << 3) | type (varints where the strings are ids in the
+     * strings section and 0 is a null path/file)
+     * modules: number of modules, (module, number of initials in tree 1, initials, number of initials in tree 2,
+     * initials) for each module (varints with ids in the strings section)
+     * strings: number of strings, offset of each string, strings (varint length + utf-8)
+     *
+     * So, the file can be mapped and the infos of a bucket are only decoded when the bucket is accessed (the
+     * modules are decoded on load, so that the infos of a module can be removed by only decoding its buckets).
      */
-    public static void dumpTreeToBuffer(SortedMap<String, Set<IInfo>> tree, FastStringBuffer tempBuf,
-            Map<String, Integer> strToInt) {
-        Set<Entry<String, Set<IInfo>>> entrySet = tree.entrySet();
-        Iterator<Entry<String, Set<IInfo>>> it = entrySet.iterator();
-        tempBuf.append(entrySet.size());
-        tempBuf.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Set<IInfo>> next = it.next();
-            tempBuf.append(next.getKey());
-            Set<IInfo> value = next.getValue();
-
-            tempBuf.append('|');
-            tempBuf.append(value.size());
-            tempBuf.append('|');
-
-            Iterator<IInfo> it2 = value.iterator();
-            Integer integer;
-            while (it2.hasNext()) {
-                IInfo info = it2.next();
-                tempBuf.append(info.getName());
-                tempBuf.append(NAME_CHAR_SEPARATOR);
+    public static void dumpTreesToFile(SortedMap<String, Set<IInfo>> tree1, SortedMap<String, Set<IInfo>> tree2,
+            Map<String, ModuleInitials> moduleToInitials, long stamp, File file) throws IOException {
+        Map<String, Integer> strToInt = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        byte[] tree1Bytes = dumpTree(tree1, strToInt, strings);
+        byte[] tree2Bytes = dumpTree(tree2, strToInt, strings);
+        byte[] modulesBytes = dumpModules(moduleToInitials, strToInt, strings);
+
+        ByteArrayOutputStream stringsData = new ByteArrayOutputStream();
+        ByteBuffer stringsHeader = ByteBuffer.allocate(4 + 4 * strings.size());
+        stringsHeader.putInt(strings.size());
+        for (String s : strings) {
+            stringsHeader.putInt(stringsData.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(stringsData, bytes.length);
+            stringsData.write(bytes);
+        }
 
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(stamp);
+        header.putInt(HEADER_SIZE);
+        header.putInt(HEADER_SIZE + tree1Bytes.length);
+        header.putInt(HEADER_SIZE + tree1Bytes.length + tree2Bytes.length);
+        header.putInt(HEADER_SIZE + tree1Bytes.length + tree2Bytes.length + modulesBytes.length);
+
+        boolean ok = false;
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(header.array());
+            out.write(tree1Bytes);
+            out.write(tree2Bytes);
+            out.write(modulesBytes);
+            out.write(stringsHeader.array());
+            stringsData.writeTo(out);
+            ok = true;
+        } finally {
+            out.close();
+            if (!ok) {
+                file.delete();
+            }
+        }
+    }
+
+    private static byte[] dumpTree(SortedMap<String, Set<IInfo>> tree, Map<String, Integer> strToInt,
+            List<String> strings) {
+        ByteBuffer index = ByteBuffer.allocate(4 + 12 * tree.size());
+        index.putInt(tree.size());
+        ByteArrayOutputStream infos = new ByteArrayOutputStream();
+        for (Entry<String, Set<IInfo>> entry : tree.entrySet()) {
+            Set<IInfo> value = entry.getValue();
+            if (!(value instanceof InfoBucket)) {
+                //the infos must be written sorted.
+                value = new InfoBucket(value);
+            }
+            index.putInt(getId(entry.getKey(), strToInt, strings));
+            index.putInt(value.size());
+            index.putInt(infos.size());
+
+            for (IInfo info : value) {
+                writeVarInt(infos, getId(info.getName(), strToInt, strings));
                 String path = info.getPath();
-                if (path != null) {
-                    integer = strToInt.get(path);
-                    if (integer == null) {
-                        integer = strToInt.size() + 1;
-                        strToInt.put(path, integer);
-                    }
-                    tempBuf.append(integer);
-                    tempBuf.append(PATH_CHAR_SEPARATOR);
+                writeVarInt(infos, path != null ? getId(path, strToInt, strings) + 1 : 0);
+                String file = info.getFile();
+                writeVarInt(infos, file != null ? getId(file, strToInt, strings) + 1 : 0);
+                writeVarInt(infos, info.getLine());
+                writeVarInt(infos, info.getCol());
+                int moduleId = getId(info.getDeclaringModuleName(), strToInt, strings);
+                writeVarInt(infos, (moduleId << 3) | info.getType()); //Write a single for module+type
+            }
+        }
+        ByteBuffer ret = ByteBuffer.allocate(index.capacity() + infos.size());
+        ret.put(index.array());
+        ret.put(infos.toByteArray());
+        return ret.array();
+    }
+
+    private static byte[] dumpModules(Map<String, ModuleInitials> moduleToInitials, Map<String, Integer> strToInt,
+            List<String> strings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, moduleToInitials.size());
+        for (Entry<String, ModuleInitials> entry : moduleToInitials.entrySet()) {
+            writeVarInt(out, getId(entry.getKey(), strToInt, strings));
+            ModuleInitials moduleInitials = entry.getValue();
+            for (String[] initials : new String[][] { moduleInitials.topLevel, moduleInitials.inner }) {
+                writeVarInt(out, initials.length);
+                for (String s : initials) {
+                    writeVarInt(out, getId(s, strToInt, strings));
                 }
+            }
+        }
+        return out.toByteArray();
+    }
 
-                String file = info.getFile();
-                if (file != null) {
-                    integer = strToInt.get(file);
-                    if (integer == null) {
-                        integer = strToInt.size() + 1;
-                        strToInt.put(file, integer);
+    private static int getId(String s, Map<String, Integer> strToInt, List<String> strings) {
+        Integer integer = strToInt.get(s);
+        if (integer == null) {
+            integer = strings.size();
+            strToInt.put(s, integer);
+            strings.add(s);
+        }
+        return integer;
+    }
+
+    /**
+     * Loads the trees written by dumpTreesToFile (the file is mapped and the infos of each bucket are only
+     * decoded when the bucket is first accessed).
+     *
+     * @param stamp the stamp with which the file was written (if it doesn't match, the file isn't loaded).
+     * @return a tuple with the 2 trees and the modules (module name -> initials of its buckets).
+     */
+    public static Tuple3<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>, Map<String, ModuleInitials>> loadTreesFromFile(
+            File file, long stamp, IPythonNature nature) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buf = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("Invalid file: " + file);
+        }
+        if (buf.getLong(8) != stamp) {
+            throw new IOException("Stamp does not match. Found: " + buf.getLong(8) + ". Expected: " + stamp);
+        }
+        BucketsReader reader = new BucketsReader(buf, buf.getInt(28), nature);
+        return new Tuple3<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>, Map<String, ModuleInitials>>(
+                reader.loadTree(buf.getInt(16)), reader.loadTree(buf.getInt(20)), reader.loadModules(buf.getInt(24)));
+    }
+
+    /**
+     * Decodes the contents of a file written by dumpTreesToFile (synchronized, as the buckets may be decoded from
+     * different threads).
+     */
+    /*default*/ static final class BucketsReader {
+
+        private final ByteBuffer buf;
+        private final IPythonNature nature;
+        private final int stringsOffsetsPos;
+        private final int stringsDataPos;
+        private final String[] strings;
+
+        private BucketsReader(ByteBuffer buf, int stringsPos, IPythonNature nature) {
+            this.buf = buf;
+            this.nature = nature;
+            int size = buf.getInt(stringsPos);
+            this.stringsOffsetsPos = stringsPos + 4;
+            this.stringsDataPos = stringsOffsetsPos + 4 * size;
+            this.strings = new String[size];
+        }
+
+        /**
+         * Note: each string is decoded only once (so, the same instance is shared by all the infos).
+         */
+        private String getString(int id) {
+            String s = strings[id];
+            if (s == null) {
+                buf.position(stringsDataPos + buf.getInt(stringsOffsetsPos + 4 * id));
+                byte[] bytes = new byte[readVarInt(buf)];
+                buf.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                strings[id] = s;
+            }
+            return s;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private synchronized PyPublicTreeMap<String, Set<IInfo>> loadTree(int treePos) {
+            final int size = buf.getInt(treePos);
+            int infosPos = treePos + 4 + 12 * size;
+            final Entry[] entries = new Entry[size];
+            for (int i = 0; i < size; i++) {
+                int entryPos = treePos + 4 + 12 * i;
+                String key = getString(buf.getInt(entryPos));
+                entries[i] = new MapEntry(key,
+                        new InfoBucket(this, infosPos + buf.getInt(entryPos + 8), buf.getInt(entryPos + 4)));
+            }
+
+            PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
+            try {
+                tree.buildFromSorted(size, new Iterator() {
+                    private int iNext;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iNext < size;
                     }
-                    tempBuf.append(integer);
-                    tempBuf.append(FILE_CHAR_SEPARATOR);
-                }
-                tempBuf.append(info.getLine());
-                tempBuf.append(LINE_CHAR_SEPARATOR);
 
-                tempBuf.append(info.getCol());
-                tempBuf.append(COL_CHAR_SEPARATOR);
+                    @Override
+                    public Object next() {
+                        Object o = entries[iNext];
+                        iNext++;
+                        return o;
+                    }
 
-                String modName = info.getDeclaringModuleName();
+                    @Override
+                    public void remove() {
+                    }
 
-                integer = strToInt.get(modName);
-                if (integer == null) {
-                    integer = strToInt.size() + 1;
-                    strToInt.put(modName, integer);
-                }
+                }, null, null);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            return tree;
+        }
 
-                int v = integer << 3;
-                v |= info.getType();
-                tempBuf.append(v); //Write a single for name+type
+        private synchronized Map<String, ModuleInitials> loadModules(int modulesPos) {
+            buf.position(modulesPos);
+            int size = readVarInt(buf);
+            Map<String, ModuleInitials> moduleToInitials = new HashMap<String, ModuleInitials>(
+                    Math.max(16, (int) (size / 0.75f) + 1));
+            for (int i = 0; i < size; i++) {
+                int moduleId = readVarInt(buf);
+                int[] topLevelIds = readVarInts(buf);
+                int[] innerIds = readVarInts(buf);
+                int nextPos = buf.position(); //getString() changes the position
+                moduleToInitials.put(getString(moduleId),
+                        new ModuleInitials(getStrings(topLevelIds), getStrings(innerIds)));
+                buf.position(nextPos);
+            }
+            return moduleToInitials;
+        }
 
-                tempBuf.append('@');
+        private String[] getStrings(int[] ids) {
+            String[] ret = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                ret[i] = getString(ids[i]);
             }
-            tempBuf.append('\n');
+            return ret;
         }
-        tempBuf.append("-- END TREE\n");
-    }
 
-    /**
-     * Dict format is the following:
-     * -- START DICTIONARY
-     * dictionary size
-     * name=integer
-     */
-    public static void dumpDictToBuffer(Map<String, Integer> strToInt, FastStringBuffer buf2) {
-        Iterator<Entry<String, Integer>> it = strToInt.entrySet().iterator();
-
-        buf2.append("-- START DICTIONARY\n");
-        buf2.append(strToInt.size());
-        buf2.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Integer> next = it.next();
-            buf2.append(next.getValue());
-            buf2.append('=');
-            buf2.append(next.getKey());
-            buf2.append('\n');
+        /**
+         * @return the infos of the bucket at the given position (in the order in which they were written).
+         */
+        /*default*/ synchronized IInfo[] decodeInfos(int pos, int size) {
+            IInfo[] infos = new IInfo[size];
+            int count = 0;
+            int nextPos = pos;
+            for (int i = 0; i < size; i++) {
+                buf.position(nextPos);
+                int nameId = readVarInt(buf);
+                int pathId = readVarInt(buf);
+                int fileId = readVarInt(buf);
+                int line = readVarInt(buf);
+                int col = readVarInt(buf);
+                int moduleAndType = readVarInt(buf);
+                nextPos = buf.position(); //getString() changes the position
+
+                String infoName = getString(nameId);
+                String path = pathId != 0 ? getString(pathId - 1) : null;
+                String file = fileId != 0 ? getString(fileId - 1) : null;
+                String moduleDeclared = getString(moduleAndType >>> 3);
+                int type = moduleAndType & 0x07; //the 3 least significant bits are the type.
+
+                switch (type) {
+                    case IInfo.CLASS_WITH_IMPORT_TYPE:
+                        infos[count++] = new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+                        break;
+                    case IInfo.METHOD_WITH_IMPORT_TYPE:
+                        infos[count++] = new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+                        break;
+                    case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                        infos[count++] = new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+                        break;
+                    case IInfo.NAME_WITH_IMPORT_TYPE:
+                        infos[count++] = new NameInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+                        break;
+                    case IInfo.MOD_IMPORT_TYPE:
+                        infos[count++] = new ModInfo(infoName, false, nature, file, line, col);
+                        break;
+                    default:
+                        Log.log("Unexpected type: " + type);
+                }
+            }
+            if (count != size) {
+                infos = Arrays.copyOf(infos, count);
+            }
+            return infos;
         }
-        buf2.append("-- END DICTIONARY\n");
     }
 
     /**
      * @author Fabio
      *
      */
+    @SuppressWarnings("rawtypes")
     private static final class MapEntry implements Map.Entry {
 
         private final String key;
-        private final HashSet<IInfo> set;
+        private final Set<IInfo> set;
 
-        public MapEntry(String key, HashSet<IInfo> set) {
+        public MapEntry(String key, Set<IInfo> set) {
             this.key = key;
             this.set = set;
         }
@@ -163,208 +371,34 @@ public class TreeIO {
         }
     }
 
-    public static PyPublicTreeMap<String, Set<IInfo>> loadTreeFrom(final FastBufferedReader reader,
-            final Map<Integer, String> dictionary, FastStringBuffer buf, ObjectsPoolMap objectsPoolMap,
-            IPythonNature nature)
-            throws IOException {
-        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
-        final int size = StringUtils.parsePositiveInt(reader.readLine());
-
-        try {
-
-            final Entry[] entries = new Entry[size];
-            //each line is something as: cub|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
-            //note: the path (2nd int in record) is optional
-            for (int iEntry = 0; iEntry < size; iEntry++) {
-                buf.clear();
-                FastStringBuffer readLine = reader.readLine();
-                if (readLine == null || readLine.startsWith("-- ")) {
-                    throw new RuntimeException("Unexpected line: " + readLine);
-                }
-                char[] internalCharsArray = readLine.getInternalCharsArray();
-                int length = readLine.length();
-                String key = null;
-                String infoName = null;
-                String path = null;
-                String file = null;
-                int line = 0;
-                int col = 0;
-
-                int i = 0;
-
-                OUT: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            key = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            i++;
-                            break OUT;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
-
-                int hashSize = 0;
-                OUT2: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            hashSize = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            i++;
-                            break OUT2;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
-                HashSet<IInfo> set = new HashSet<IInfo>(hashSize);
-
-                for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case NAME_CHAR_SEPARATOR:
-                            infoName = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            break;
-
-                        case PATH_CHAR_SEPARATOR:
-                            path = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case FILE_CHAR_SEPARATOR:
-                            file = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case LINE_CHAR_SEPARATOR:
-                            line = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case COL_CHAR_SEPARATOR:
-                            col = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case END_IINFO_SEPARATOR:
-                            int dictKey = StringUtils.parsePositiveInt(buf);
-                            byte type = (byte) dictKey;
-                            type &= 0x07; //leave only the 3 least significant bits there (this is the type -- value from 0 - 8).
-
-                            dictKey = (dictKey >> 3); // the entry in the dict doesn't have the least significant bits there.
-                            buf.clear();
-                            String moduleDeclared = dictionary.get(dictKey);
-                            if (moduleDeclared == null) {
-                                throw new AssertionError("Unable to find key: " + dictKey);
-                            }
-                            if (infoName == null) {
-                                throw new AssertionError("Info name may not be null. Line: " + line);
-                            }
-                            switch (type) {
-                                case IInfo.CLASS_WITH_IMPORT_TYPE:
-                                    set.add(new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.METHOD_WITH_IMPORT_TYPE:
-                                    set.add(new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
-                                    set.add(new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.NAME_WITH_IMPORT_TYPE:
-                                    set.add(new NameInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.MOD_IMPORT_TYPE:
-                                    set.add(new ModInfo(infoName, false, nature, file, line, col));
-                                    break;
-                                default:
-                                    Log.log("Unexpected type: " + type);
-                            }
-                            file = null;
-                            infoName = null;
-                            path = null;
-                            file = null;
-                            line = 0;
-                            col = 0;
-
-                            break;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
-
-                entries[iEntry] = new MapEntry(key, set);
-            }
-
-            tree.buildFromSorted(size, new Iterator() {
-                private int iNext;
-
-                @Override
-                public boolean hasNext() {
-                    return iNext > size;
-                }
-
-                @Override
-                public Object next() {
-                    Object o = entries[iNext];
-                    iNext++;
-                    return o;
-                }
-
-                @Override
-                public void remove() {
-                }
-
-            }, null, null);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
         }
-        return tree;
+        out.write(value);
     }
 
-    public static Map<Integer, String> loadDictFrom(FastBufferedReader reader, FastStringBuffer buf,
-            ObjectsPoolMap objectsPoolMap) throws IOException {
-        int size = StringUtils.parsePositiveInt(reader.readLine());
-        HashMap<Integer, String> map = new HashMap<Integer, String>(size + 5);
+    private static int[] readVarInts(ByteBuffer buf) {
+        int[] ret = new int[readVarInt(buf)];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = readVarInt(buf);
+        }
+        return ret;
+    }
 
-        FastStringBuffer line;
-        int val = 0;
+    private static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
         while (true) {
-            line = reader.readLine();
-            if (line == null) {
-                return map;
-
-            } else if (line.startsWith("-- ")) {
-                if (line.startsWith("-- END DICTIONARY")) {
-                    return map;
-                }
-                throw new RuntimeException("Unexpected line: " + line);
-
-            } else {
-                int length = line.length();
-                //line is str=int
-                for (int i = 0; i < length; i++) {
-                    char c = line.charAt(i);
-                    if (c == '=') {
-                        val = StringUtils.parsePositiveInt(buf);
-                        buf.clear();
-                    } else {
-                        buf.appendResizeOnExc(c);
-                    }
-                }
-                String bufStr = buf.toString();
-                String interned = objectsPoolMap.get(bufStr);
-                if (interned == null) {
-                    interned = bufStr;
-                    objectsPoolMap.put(bufStr, bufStr);
-                }
-                map.put(val, interned);
-                buf.clear();
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalStateException("Invalid varint.");
             }
         }
     }
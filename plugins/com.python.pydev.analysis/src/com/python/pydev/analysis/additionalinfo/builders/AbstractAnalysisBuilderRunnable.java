@@ -82,6 +82,11 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         return resourceModificationStamp;
     }
 
+    @Override
+    public KeyForAnalysisRunnable getKey() {
+        return key;
+    }
+
     @Override
     public int getAnalysisCause() {
         return analysisCause;
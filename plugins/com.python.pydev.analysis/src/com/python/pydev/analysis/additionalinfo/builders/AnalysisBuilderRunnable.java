@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
@@ -40,8 +41,10 @@ import org.python.pydev.shared_core.resources.DocumentChanged;
 
 import com.python.pydev.analysis.AnalysisPreferences;
 import com.python.pydev.analysis.OccurrencesAnalyzer;
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
+import com.python.pydev.analysis.additionalinfo.dependencies.ModuleDependencies;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisVisitor;
 import com.python.pydev.analysis.mypy.MypyVisitorFactory;
 import com.python.pydev.analysis.pylint.PyLintVisitorFactory;
@@ -123,8 +126,10 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
         this.document = document;
         this.resource = resource;
         this.module = module;
-        this.pyLintVisitor = PyLintVisitorFactory.create(resource, document, module, internalCancelMonitor);
-        this.mypyVisitor = MypyVisitorFactory.create(resource, document, module, internalCancelMonitor);
+        this.pyLintVisitor = PyLintVisitorFactory.create(resource, document, module, internalCancelMonitor,
+                isFullBuild);
+        this.mypyVisitor = MypyVisitorFactory.create(resource, document, module, internalCancelMonitor,
+                isFullBuild);
         this.allVisitors = new IExternalCodeAnalysisVisitor[] { this.pyLintVisitor, this.mypyVisitor };
 
         // Important: we can only update the index if it was a builder... if it was the parser,
@@ -146,7 +151,7 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                 }
             }
 
-            AbstractAdditionalTokensInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
+            AbstractAdditionalDependencyInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
 
             if (info == null) {
                 Log.log("Unable to get additional info for: " + resource + " -- " + moduleName);
@@ -167,7 +172,16 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
 
             //recreate the ctx insensitive info
             if (updateIndex) {
+                ModuleDependencies dependencies = info.getModuleDependencies();
+                Long previousFingerprint = dependencies.getFingerprint(moduleName);
                 recreateCtxInsensitiveInfo(info, (SourceModule) this.module.call(moduleRequest), nature, resource);
+
+                //only the modules which import this one have to be analyzed again (and only if its public
+                //signature changed).
+                if (!isFullBuild && DependentModulesAnalysis.fingerprintChanged(previousFingerprint,
+                        dependencies.getFingerprint(moduleName))) {
+                    DependentModulesAnalysis.analyzeDependents(nature, moduleName, dependencies);
+                }
             }
 
         } catch (MisconfigurationException | CoreException e) {
@@ -252,7 +266,7 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                 Log.log("Finished analysis: null nature -- " + moduleName);
                 return;
             }
-            AbstractAdditionalTokensInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
+            AbstractAdditionalDependencyInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
 
             if (info == null) {
                 Log.log("Unable to get additional info for: " + r + " -- " + moduleName);
@@ -303,6 +317,12 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                 SourceModule module = (SourceModule) this.module.call(moduleRequest);
                 IMessage[] messages = analyzer.analyzeDocument(nature, module, analysisPreferences, document,
                         this.internalCancelMonitor, DefaultIndentPrefs.get(this.resource));
+                //only update the imports if the analysis finished (otherwise the edges from the modules it
+                //imports would be removed and its dependents wouldn't be analyzed until it's changed again).
+                Set<String> importedModules = analyzer.getImportedModules();
+                if (importedModules != null) {
+                    info.getModuleDependencies().setImports(moduleName, module.getFile(), importedModules);
+                }
 
                 checkStop();
                 if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
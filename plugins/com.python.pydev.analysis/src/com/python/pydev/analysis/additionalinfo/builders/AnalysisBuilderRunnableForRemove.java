@@ -13,6 +13,7 @@ import org.python.pydev.core.logging.DebugSettings;
 
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
+import com.python.pydev.analysis.additionalinfo.dependencies.ModuleDependencies;
 
 /**
  * This class is used to do analysis on a thread, just to remove the actual info.
@@ -39,6 +40,32 @@ public class AnalysisBuilderRunnableForRemove extends AbstractAnalysisBuilderRun
             org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, "Removing additional info from: " + moduleName);
         }
         removeInfoForModule(moduleName, nature, isFullBuild);
+
+        if (!isFullBuild && moduleName != null && nature != null) {
+            analyzeDependentsOfRemoved(moduleName, nature);
+        }
+    }
+
+    /**
+     * The modules which imported a removed module must be analyzed again (i.e.: to report the unresolved import).
+     */
+    private static void analyzeDependentsOfRemoved(String moduleName, IPythonNature nature) {
+        AbstractAdditionalDependencyInfo info;
+        try {
+            info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
+        } catch (MisconfigurationException e) {
+            Log.log(e);
+            return;
+        }
+        if (info == null) {
+            return;
+        }
+        ModuleDependencies dependencies = info.getModuleDependencies();
+        boolean wasIndexed = dependencies.getFingerprint(moduleName) != null;
+        dependencies.removeModule(moduleName);
+        if (wasIndexed) {
+            DependentModulesAnalysis.analyzeDependents(nature, moduleName, dependencies);
+        }
     }
 
     @Override
@@ -21,7 +21,6 @@ import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.parser.fastparser.FastDefinitionsParser;
@@ -31,6 +30,7 @@ import org.python.pydev.shared_core.callbacks.ICallback0;
 
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher;
 
 public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
 
@@ -39,6 +39,15 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         return PyCodeCompletionVisitor.PRIORITY_CODE_COMPLETION + 1; //just after the code-completion priority
     }
 
+    /**
+     * The analysis has no state apart from the memo (and the analysis runnables are already prepared to run
+     * concurrently as they're run as jobs in a delta build), so, it can be run concurrently in a full build.
+     */
+    @Override
+    public PyDevBuilderVisitor createConcurrentVisitor() {
+        return new AnalysisBuilderVisitor();
+    }
+
     @Override
     public void visitChangedResource(final IResource resource, final ICallback0<IDocument> document,
             final IProgressMonitor monitor) {
@@ -200,7 +209,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         if (isFullBuild() || forceAnalyzeInThisThread) {
             runnable.run();
         } else {
-            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
+            AnalysisScheduler.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
         }
     }
 
@@ -245,8 +254,14 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         }
     }
 
+    /**
+     * Whether the current visit (between visitingWillStart and visitingEnded) is a full build.
+     */
+    private boolean visitingFullBuild;
+
     @Override
     public void visitingWillStart(IProgressMonitor monitor, boolean isFullBuild, IPythonNature nature) {
+        visitingFullBuild = isFullBuild;
         if (isFullBuild) {
             AbstractAdditionalDependencyInfo info;
             try {
@@ -260,4 +275,14 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         }
     }
 
+    @Override
+    public void visitingEnded(IProgressMonitor monitor) {
+        if (visitingFullBuild) {
+            // Analyze the files still pending in batches for external analyzers (pylint/mypy) -- only files
+            // analyzed in a full build are batched.
+            visitingFullBuild = false;
+            ExternalAnalysisBatcher.getSingleton().scheduleFlush();
+        }
+    }
+
 }
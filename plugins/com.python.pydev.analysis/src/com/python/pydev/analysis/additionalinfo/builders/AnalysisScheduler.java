@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.builders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.MathUtils;
+import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.preferences.PyDevBuilderPreferences;
+
+/**
+ * Runs the analysis requests which shouldn't be run in the requesting thread (i.e.: delta builds and analysis
+ * requests from the editor) in a bounded number of jobs.
+ *
+ * The requests are prioritized (open editors first, then the dependents of changed modules, then the rest) and
+ * a request for a module which is still waiting in the queue replaces the one queued (which was already stopped
+ * by the AnalysisBuilderRunnableFactory when the new one was created).
+ *
+ * Requests to stop the threads in RunnableAsJobsPoolThread (i.e.: while applying a refactoring) are also
+ * respected here.
+ */
+public final class AnalysisScheduler {
+
+    public static final int PRIORITY_EDITOR = 0;
+    public static final int PRIORITY_DEPENDENT = 1;
+    public static final int PRIORITY_DEFAULT = 2;
+
+    public static final class Stats {
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final int activeWorkers;
+        public final long scheduled;
+        public final long coalesced;
+        public final long completed;
+        public final long totalQueueLatencyMillis;
+        public final long maxQueueLatencyMillis;
+        public final long totalRunMillis;
+
+        private Stats(int queueDepth, int maxQueueDepth, int activeWorkers, long scheduled, long coalesced,
+                long completed, long totalQueueLatencyMillis, long maxQueueLatencyMillis, long totalRunMillis) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.activeWorkers = activeWorkers;
+            this.scheduled = scheduled;
+            this.coalesced = coalesced;
+            this.completed = completed;
+            this.totalQueueLatencyMillis = totalQueueLatencyMillis;
+            this.maxQueueLatencyMillis = maxQueueLatencyMillis;
+            this.totalRunMillis = totalRunMillis;
+        }
+
+        /**
+         * @return the average time a request waited in the queue before starting to run.
+         */
+        public double getAverageQueueLatencyMillis() {
+            return completed == 0 ? 0 : ((double) totalQueueLatencyMillis) / completed;
+        }
+
+        @Override
+        public String toString() {
+            return "AnalysisScheduler.Stats [queueDepth=" + queueDepth + ", maxQueueDepth=" + maxQueueDepth
+                    + ", activeWorkers=" + activeWorkers + ", scheduled=" + scheduled + ", coalesced=" + coalesced
+                    + ", completed=" + completed + ", averageQueueLatencyMillis=" + getAverageQueueLatencyMillis()
+                    + ", maxQueueLatencyMillis=" + maxQueueLatencyMillis + ", totalRunMillis=" + totalRunMillis
+                    + "]";
+        }
+    }
+
+    private static final class Request implements Comparable<Request> {
+
+        private final KeyForAnalysisRunnable key;
+        private final IAnalysisBuilderRunnable runnable;
+        private final String name;
+        private final int priority;
+        private final long seq;
+        private final long scheduledMillis;
+
+        /**
+         * Runnables replaced by this request (they were already stopped, but still must be run so that they're
+         * marked as finished -- a new runnable waits for the previous one to finish before starting).
+         */
+        private final List<IAnalysisBuilderRunnable> superseded;
+
+        private Request(KeyForAnalysisRunnable key, IAnalysisBuilderRunnable runnable, String name, int priority,
+                long seq, long scheduledMillis, List<IAnalysisBuilderRunnable> superseded) {
+            this.key = key;
+            this.runnable = runnable;
+            this.name = name;
+            this.priority = priority;
+            this.seq = seq;
+            this.scheduledMillis = scheduledMillis;
+            this.superseded = superseded;
+        }
+
+        @Override
+        public int compareTo(Request o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+
+    private static AnalysisScheduler singleton;
+
+    public synchronized static AnalysisScheduler getSingleton() {
+        if (singleton == null) {
+            singleton = new AnalysisScheduler();
+        }
+        return singleton;
+    }
+
+    private final Object lock = new Object();
+
+    private final TreeSet<Request> queue = new TreeSet<Request>();
+
+    private final Map<KeyForAnalysisRunnable, Request> queuedByKey = new HashMap<KeyForAnalysisRunnable, Request>();
+
+    private long nextSeq;
+    private int activeWorkers;
+
+    private int maxQueueDepth;
+    private long scheduled;
+    private long coalesced;
+    private long completed;
+    private long totalQueueLatencyMillis;
+    private long maxQueueLatencyMillis;
+    private long totalRunMillis;
+
+    /**
+     * The max number of workers (if 0 it's gotten from the preferences on each request).
+     */
+    private final int maxWorkers;
+
+    private AnalysisScheduler() {
+        this(0);
+    }
+
+    /*default*/ AnalysisScheduler(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    /**
+     * @return the number of analysis jobs which may run at the same time.
+     */
+    public static int getMaxWorkers() {
+        int workers = 0;
+        try {
+            workers = PyDevBuilderPreferences.getAnalysisWorkers();
+        } catch (Throwable e) {
+            // Preferences not available (i.e.: shutting down).
+        }
+        if (workers > 0) {
+            return workers;
+        }
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        if (availableProcessors <= 1) {
+            return 2;
+        }
+        // Note: same progression used in RunnableAsJobsPoolThread (some of the work is disk-bound).
+        return (int) (availableProcessors + Math.round(MathUtils.log(availableProcessors, 1.4)));
+    }
+
+    /**
+     * @return the priority to be used for the given runnable if no explicit priority is given.
+     */
+    public static int getDefaultPriority(IAnalysisBuilderRunnable runnable) {
+        if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER) {
+            return PRIORITY_EDITOR;
+        }
+        return PRIORITY_DEFAULT;
+    }
+
+    public void scheduleToRun(IAnalysisBuilderRunnable runnable, String name) {
+        scheduleToRun(runnable, name, getDefaultPriority(runnable));
+    }
+
+    /**
+     * Schedules the given runnable to be run (replacing a request for the same module which is still in the queue).
+     *
+     * @param priority one of the PRIORITY_* constants (lower numbers are run first).
+     */
+    public void scheduleToRun(IAnalysisBuilderRunnable runnable, String name, int priority) {
+        synchronized (lock) {
+            scheduled++;
+            KeyForAnalysisRunnable key = runnable.getKey();
+            Request old = key != null ? queuedByKey.remove(key) : null;
+            Request request;
+            if (old != null) {
+                coalesced++;
+                queue.remove(old);
+                List<IAnalysisBuilderRunnable> superseded = old.superseded;
+                superseded.add(old.runnable);
+                // Keep the position in the queue (unless the new priority is higher).
+                if (priority < old.priority) {
+                    request = new Request(key, runnable, name, priority, nextSeq++, old.scheduledMillis, superseded);
+                } else {
+                    request = new Request(key, runnable, name, old.priority, old.seq, old.scheduledMillis,
+                            superseded);
+                }
+            } else {
+                request = new Request(key, runnable, name, priority, nextSeq++, System.currentTimeMillis(),
+                        new ArrayList<IAnalysisBuilderRunnable>(0));
+            }
+            queue.add(request);
+            if (key != null) {
+                queuedByKey.put(key, request);
+            }
+            int size = queue.size();
+            if (size > maxQueueDepth) {
+                maxQueueDepth = size;
+            }
+        }
+        startWorkerIfNeeded();
+    }
+
+    /**
+     * @return the next request to be run or null if there's nothing else to run (in which case the worker is
+     * considered finished).
+     */
+    private Request next(boolean workerCanceled) {
+        synchronized (lock) {
+            Request request = null;
+            if (!workerCanceled) {
+                request = queue.pollFirst();
+            }
+            if (request == null) {
+                activeWorkers--;
+                return null;
+            }
+            if (request.key != null) {
+                queuedByKey.remove(request.key);
+            }
+            long latency = System.currentTimeMillis() - request.scheduledMillis;
+            totalQueueLatencyMillis += latency;
+            if (latency > maxQueueLatencyMillis) {
+                maxQueueLatencyMillis = latency;
+            }
+            return request;
+        }
+    }
+
+    private void onFinished(long runMillis) {
+        synchronized (lock) {
+            completed++;
+            totalRunMillis += runMillis;
+        }
+    }
+
+    /**
+     * A worker which keeps on running requests while there are requests in the queue.
+     */
+    private final class Worker extends Job {
+
+        private Worker() {
+            super("PyDev: Code Analysis");
+            setPriority(Job.INTERACTIVE);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            boolean canceled = false;
+            while (true) {
+                RunnableAsJobsPoolThread.getSingleton().waitWhileStopped();
+                Request request = next(canceled);
+                if (request == null) {
+                    break;
+                }
+                int remaining;
+                synchronized (lock) {
+                    remaining = queue.size();
+                }
+                String name = request.name;
+                if (remaining > 1) {
+                    name += " (" + remaining + " scheduled)";
+                }
+                setName(name);
+                monitor.setTaskName(name);
+
+                long initialTime = System.currentTimeMillis();
+                try {
+                    for (IAnalysisBuilderRunnable r : request.superseded) {
+                        run(r, monitor);
+                    }
+                    run(request.runnable, monitor);
+                } finally {
+                    onFinished(System.currentTimeMillis() - initialTime);
+                }
+                // If the user canceled this job, stop it (another worker is started if there are still requests).
+                canceled = monitor.isCanceled();
+            }
+            if (canceled) {
+                startWorkerIfNeeded();
+            }
+            return Status.OK_STATUS;
+        }
+
+        private void run(IAnalysisBuilderRunnable r, IProgressMonitor monitor) {
+            try {
+                r.setMonitor(monitor);
+                r.run();
+            } catch (RuntimeException e) {
+                if (CorePlugin.getDefault() != null) {
+                    //Only log if eclipse still didn't shutdown.
+                    Log.log(e);
+                }
+            }
+        }
+    }
+
+    private void startWorkerIfNeeded() {
+        int maxWorkers = this.maxWorkers > 0 ? this.maxWorkers : getMaxWorkers();
+        boolean startWorker = false;
+        synchronized (lock) {
+            if (activeWorkers < maxWorkers && activeWorkers < queue.size()) {
+                activeWorkers++;
+                startWorker = true;
+            }
+        }
+        if (startWorker) {
+            new Worker().schedule();
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(queue.size(), maxQueueDepth, activeWorkers, scheduled, coalesced, completed,
+                    totalQueueLatencyMillis, maxQueueLatencyMillis, totalRunMillis);
+        }
+    }
+}
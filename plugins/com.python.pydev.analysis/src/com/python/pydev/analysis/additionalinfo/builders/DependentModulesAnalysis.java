@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.builders;
+
+import java.io.File;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.location.FindWorkspaceFiles;
+import org.python.pydev.core.FileUtilsFileBuffer;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.editor.OpenEditors;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.core.logging.DebugSettings;
+import org.python.pydev.parser.preferences.PyDevBuilderPreferences;
+import org.python.pydev.shared_core.callbacks.ICallback;
+
+import com.python.pydev.analysis.additionalinfo.dependencies.ModuleDependencies;
+
+/**
+ * Analyzes again the modules which import a module whose public signature changed (or which was removed).
+ *
+ * The dependents are analyzed as if requested from the parser (so, the index isn't updated for them, which means
+ * that the analysis doesn't cascade to their own dependents) and only the ones which would have markers shown are
+ * analyzed (i.e.: if only open editors are analyzed, only the dependents opened in an editor are analyzed).
+ */
+final class DependentModulesAnalysis {
+
+    private DependentModulesAnalysis() {
+    }
+
+    /**
+     * @return true if the public signature of the module changed (if the previous fingerprint isn't available it's
+     * considered unchanged).
+     */
+    static boolean fingerprintChanged(Long previousFingerprint, Long currentFingerprint) {
+        return previousFingerprint != null && !previousFingerprint.equals(currentFingerprint);
+    }
+
+    static void analyzeDependents(IPythonNature nature, String changedModule, ModuleDependencies dependencies) {
+        Set<String> dependents = dependencies.getDependents(changedModule);
+        if (dependents.isEmpty()) {
+            return;
+        }
+        IProject project = nature.getProject();
+        if (project == null) {
+            return;
+        }
+        boolean analyzeOnlyActiveEditor = PyDevBuilderPreferences.getAnalyzeOnlyActiveEditor();
+        if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+            org.python.pydev.shared_core.log.ToLogFile.toLogFile(DependentModulesAnalysis.class,
+                    "Signature of: " + changedModule + " changed. Dependents: " + dependents);
+        }
+
+        for (final String dependent : dependents) {
+            try {
+                final File file = dependencies.getFile(dependent);
+                if (file == null) {
+                    continue;
+                }
+                final IFile resource = FindWorkspaceFiles.getWorkspaceFile(file, project);
+                if (resource == null || !resource.exists()) {
+                    continue;
+                }
+                if (analyzeOnlyActiveEditor && !OpenEditors.isEditorOpenForResource(resource)) {
+                    continue;
+                }
+                final IDocument document = FileUtilsFileBuffer.getDocFromResource(resource);
+                if (document == null) {
+                    continue;
+                }
+                final IPythonNature dependentNature = nature;
+                ICallback<IModule, Integer> moduleCallback = new ICallback<IModule, Integer>() {
+
+                    private IModule module;
+
+                    @Override
+                    public IModule call(Integer arg) {
+                        // Only parse it when the analysis is actually run.
+                        if (module == null) {
+                            try {
+                                module = AbstractModule.createModuleFromDoc(dependent, file, document,
+                                        dependentNature, true);
+                            } catch (Exception e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+                        return module;
+                    }
+                };
+
+                IAnalysisBuilderRunnable runnable = AnalysisBuilderRunnableFactory.createRunnable(document, resource,
+                        moduleCallback, false, dependent, true, IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER,
+                        nature, System.currentTimeMillis(), resource.getModificationStamp());
+                if (runnable != null) {
+                    AnalysisScheduler.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + dependent,
+                            AnalysisScheduler.PRIORITY_DEPENDENT);
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+}
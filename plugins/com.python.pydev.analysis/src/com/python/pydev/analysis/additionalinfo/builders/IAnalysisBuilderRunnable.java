@@ -48,4 +48,9 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
     long getDocumentTime();
 
     long getResourceModificationStamp();
+
+    /**
+     * @return the key which identifies the module (and analysis cause) this runnable is analyzing.
+     */
+    KeyForAnalysisRunnable getKey();
 }
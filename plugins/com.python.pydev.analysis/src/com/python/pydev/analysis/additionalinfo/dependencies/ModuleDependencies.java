@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.dependencies;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.aliasType;
+import org.python.pydev.parser.jython.ast.argumentsType;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.parser.visitors.NodeUtils;
+
+/**
+ * Keeps the information needed to know which modules have to be analyzed again when some module changes:
+ *
+ * - A fingerprint of the public signature of each module (the tokens it declares and imports, along with the
+ * parameters of its functions and the bases of its classes, but not their positions nor their bodies).
+ *
+ * - The modules imported by each module analyzed (and the reverse: the modules which import a given module).
+ *
+ * So, the dependents of a module only need to be analyzed again when its fingerprint changes.
+ *
+ * Note: this information is not persisted (until a module is indexed again, its fingerprint is unknown and
+ * until a module is analyzed, its imports are unknown).
+ */
+public final class ModuleDependencies {
+
+    private final Object lock = new Object();
+
+    /**
+     * Module name -> fingerprint of its public signature.
+     */
+    private final Map<String, Long> fingerprints = new HashMap<String, Long>();
+
+    /**
+     * Module name -> modules it imports.
+     */
+    private final Map<String, Set<String>> imports = new HashMap<String, Set<String>>();
+
+    /**
+     * Module name -> modules which import it.
+     */
+    private final Map<String, Set<String>> importedBy = new HashMap<String, Set<String>>();
+
+    /**
+     * Module name -> file of the modules analyzed (which have imports).
+     */
+    private final Map<String, File> files = new HashMap<String, File>();
+
+    /**
+     * @return the fingerprint for the given module or null if it's not available.
+     */
+    public Long getFingerprint(String moduleName) {
+        synchronized (lock) {
+            return fingerprints.get(moduleName);
+        }
+    }
+
+    public void setFingerprint(String moduleName, long fingerprint) {
+        synchronized (lock) {
+            fingerprints.put(moduleName, fingerprint);
+        }
+    }
+
+    /**
+     * Sets the modules imported by the given module (replacing the ones previously set).
+     *
+     * @param file the file of the module (may be null).
+     */
+    public void setImports(String moduleName, File file, Collection<String> importedModules) {
+        synchronized (lock) {
+            Set<String> newImports = new HashSet<String>(importedModules);
+            newImports.remove(moduleName);
+
+            Set<String> oldImports = imports.remove(moduleName);
+            if (oldImports != null) {
+                for (String imported : oldImports) {
+                    if (!newImports.contains(imported)) {
+                        Set<String> dependents = importedBy.get(imported);
+                        if (dependents != null) {
+                            dependents.remove(moduleName);
+                            if (dependents.isEmpty()) {
+                                importedBy.remove(imported);
+                            }
+                        }
+                    }
+                }
+            }
+            if (newImports.isEmpty() || file == null) {
+                files.remove(moduleName);
+            } else {
+                files.put(moduleName, file);
+            }
+            if (newImports.isEmpty()) {
+                return;
+            }
+            imports.put(moduleName, newImports);
+            for (String imported : newImports) {
+                Set<String> dependents = importedBy.get(imported);
+                if (dependents == null) {
+                    dependents = new HashSet<String>();
+                    importedBy.put(imported, dependents);
+                }
+                dependents.add(moduleName);
+            }
+        }
+    }
+
+    /**
+     * @return the modules which import the given module (in the last time they were analyzed).
+     */
+    public Set<String> getDependents(String moduleName) {
+        synchronized (lock) {
+            Set<String> dependents = importedBy.get(moduleName);
+            if (dependents == null) {
+                return Collections.emptySet();
+            }
+            return new HashSet<String>(dependents);
+        }
+    }
+
+    /**
+     * @return the file for a module which had its imports set (or null if not available).
+     */
+    public File getFile(String moduleName) {
+        synchronized (lock) {
+            return files.get(moduleName);
+        }
+    }
+
+    /**
+     * Removes the information on a module which was removed (note that the modules which imported it are kept as
+     * its dependents, as they still import it).
+     */
+    public void removeModule(String moduleName) {
+        synchronized (lock) {
+            fingerprints.remove(moduleName);
+            setImports(moduleName, null, Collections.<String> emptySet());
+        }
+    }
+
+    /**
+     * Removes the fingerprints (i.e.: all the modules will be indexed again). The imports are kept until the modules
+     * are analyzed again.
+     */
+    public void clearFingerprints() {
+        synchronized (lock) {
+            fingerprints.clear();
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the public signature of a module.
+     *
+     * @param infos the tokens indexed for the module (see: AbstractAdditionalTokensInfo.addAstInfo).
+     * @param node the ast for the module (used to get the parameters of functions and bases of classes, which may
+     * not be available if the ast was created by the FastDefinitionsParser).
+     */
+    public static long computeFingerprint(List<IInfo> infos, SimpleNode node) {
+        // Note: the order of the tokens isn't relevant (so, the hashes are just summed).
+        long fingerprint = infos.size();
+        for (IInfo info : infos) {
+            long h = hash(FNV_OFFSET, info.getType());
+            h = hash(h, info.getPath());
+            h = hash(h, info.getName());
+            fingerprint += mix(h);
+        }
+        if (node instanceof Module) {
+            fingerprint += addSignatures(((Module) node).body, "");
+        }
+        return fingerprint;
+    }
+
+    private static long addSignatures(stmtType[] body, String path) {
+        long fingerprint = 0;
+        if (body == null) {
+            return fingerprint;
+        }
+        for (stmtType stmt : body) {
+            if (stmt instanceof FunctionDef) {
+                FunctionDef functionDef = (FunctionDef) stmt;
+                long h = hash(FNV_OFFSET, path);
+                h = hash(h, NodeUtils.getRepresentationString(functionDef.name));
+                h = hashArgs(h, functionDef.args);
+                fingerprint += mix(h);
+
+            } else if (stmt instanceof ClassDef) {
+                ClassDef classDef = (ClassDef) stmt;
+                String name = ((NameTok) classDef.name).id;
+                long h = hash(FNV_OFFSET, path);
+                h = hash(h, name);
+                h = hashExprs(h, classDef.bases);
+                fingerprint += mix(h);
+                fingerprint += addSignatures(classDef.body, path.length() == 0 ? name : path + "." + name);
+
+            } else if (stmt instanceof Import) {
+                long h = hash(FNV_OFFSET, path);
+                h = hash(h, "import");
+                h = hashAliases(h, ((Import) stmt).names);
+                fingerprint += mix(h);
+
+            } else if (stmt instanceof ImportFrom) {
+                ImportFrom importFrom = (ImportFrom) stmt;
+                long h = hash(FNV_OFFSET, path);
+                h = hash(h, "from");
+                h = hash(h, importFrom.level);
+                h = hash(h, importFrom.module != null ? NodeUtils.getRepresentationString(importFrom.module) : null);
+                h = hashAliases(h, importFrom.names);
+                fingerprint += mix(h);
+            }
+        }
+        return fingerprint;
+    }
+
+    private static long hashArgs(long h, argumentsType args) {
+        if (args == null) {
+            return hash(h, '?');
+        }
+        h = hashExprs(h, args.args);
+        // Note: the defaults have the same length of the args (with null for the args without a default).
+        h = hashDefaults(h, args.defaults);
+        h = hash(h, args.vararg != null ? NodeUtils.getRepresentationString(args.vararg) : null);
+        h = hash(h, args.kwarg != null ? NodeUtils.getRepresentationString(args.kwarg) : null);
+        h = hashExprs(h, args.kwonlyargs);
+        h = hashDefaults(h, args.kw_defaults);
+        return h;
+    }
+
+    private static long hashDefaults(long h, exprType[] defaults) {
+        if (defaults == null) {
+            return hash(h, '?');
+        }
+        for (exprType d : defaults) {
+            h = hash(h, d != null ? 1 : 0);
+        }
+        return h;
+    }
+
+    private static long hashAliases(long h, aliasType[] aliases) {
+        if (aliases == null) {
+            return hash(h, '?');
+        }
+        h = hash(h, aliases.length);
+        for (aliasType alias : aliases) {
+            h = hash(h, alias.name != null ? NodeUtils.getRepresentationString(alias.name) : null);
+            h = hash(h, alias.asname != null ? NodeUtils.getRepresentationString(alias.asname) : null);
+        }
+        return h;
+    }
+
+    private static long hashExprs(long h, exprType[] exprs) {
+        if (exprs == null) {
+            return hash(h, '?');
+        }
+        h = hash(h, exprs.length);
+        for (exprType expr : exprs) {
+            h = hash(h, expr != null ? NodeUtils.getFullRepresentationString(expr) : null);
+        }
+        return h;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long hash(long h, String s) {
+        if (s == null) {
+            return hash(h, 0);
+        }
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        // Separator (so that ["ab", "c"] is different from ["a", "bc"]).
+        return (h ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static long hash(long h, int i) {
+        return ((h ^ i) * FNV_PRIME ^ 0xfffe) * FNV_PRIME;
+    }
+
+    /**
+     * Finalizer (so that summing the hashes of the tokens doesn't cancel out similar hashes).
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,178 @@
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.ast.runners.SimplePythonRunner;
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon.DaemonNotSupportedException;
+
+/**
+ * Runs the analysis in a process from the ExternalAnalyzerDaemonPool (falling back to creating a process for the
+ * analysis if the analyzer can't be run in-process).
+ */
+public final class ExternalAnalizerDaemonWatchDoc extends Thread {
+    private final IExternalCodeAnalysisStream out;
+    private final IProgressMonitor monitor;
+    private final String[] cmdarray;
+    private final String[] envp;
+    private final File workingDir;
+    private final String target;
+    private final IExternalAnalyzer externalAnalyzer;
+    private final ICallback0<Process> createProcess;
+    private final String analyzerName;
+
+    /**
+     * @param cmdarray the command line to start pysrc/pydev_external_analyzer.py (without the target).
+     * @param createProcess creates the process to run the analysis if it can't be run in a pooled process.
+     */
+    public ExternalAnalizerDaemonWatchDoc(String analyzerName, IExternalCodeAnalysisStream out,
+            IProgressMonitor monitor, String[] cmdarray, String[] envp, File workingDir, String target,
+            IExternalAnalyzer externalAnalyzer, ICallback0<Process> createProcess) {
+        this.setDaemon(true);
+        this.analyzerName = analyzerName;
+        this.out = out;
+        this.monitor = monitor;
+        this.cmdarray = cmdarray;
+        this.envp = envp;
+        this.workingDir = workingDir;
+        this.target = target;
+        this.externalAnalyzer = externalAnalyzer;
+        this.createProcess = createProcess;
+    }
+
+    /**
+     * @return the command line to start a long-running process for the given analyzer.
+     */
+    public static String[] createCommandLine(String interpreter, String analyzer, List<String> analyzerArgs)
+            throws CoreException {
+        String script = FileUtils.getFileAbsolutePath(CorePlugin.getScriptWithinPySrc("pydev_external_analyzer.py"));
+        List<String> args = new ArrayList<String>(analyzerArgs.size() + 1);
+        args.add(analyzer);
+        args.addAll(analyzerArgs);
+        return SimplePythonRunner.preparePythonCallParameters(interpreter, script, args.toArray(new String[0]));
+    }
+
+    /**
+     * @return whether the analyzer at the given location (the executable or script configured for pylint/mypy) is
+     * the one imported by the given interpreter (only in this case the analysis may be run in a long-running process
+     * with the interpreter -- otherwise, a different version or configuration of the analyzer could be used).
+     */
+    public static boolean isAnalyzerFromInterpreter(File analyzerLocation, String analyzer,
+            IInterpreterInfo interpreterInfo) {
+        return isAnalyzerFromInterpreter(analyzerLocation, analyzer, interpreterInfo.getExecutableOrJar(),
+                interpreterInfo.getPythonPath());
+    }
+
+    /**
+     * @param analyzerLocation the executable (i.e.: bin/pylint, Scripts/pylint.exe) or the script (i.e.:
+     * site-packages/pylint/__main__.py) of the analyzer.
+     * @param analyzer the name of the analyzer module (pylint/mypy).
+     */
+    public static boolean isAnalyzerFromInterpreter(File analyzerLocation, String analyzer, String interpreter,
+            List<String> interpreterPythonPath) {
+        if (analyzerLocation == null || interpreter == null) {
+            return false;
+        }
+        Set<File> locations = getPathVariants(analyzerLocation);
+        String name = analyzerLocation.getName().toLowerCase();
+        if (name.endsWith(".py") || name.endsWith(".pyw")) {
+            // The script must be inside the analyzer package in the pythonpath of the interpreter.
+            Set<File> pythonPath = new HashSet<File>();
+            if (interpreterPythonPath != null) {
+                for (String s : interpreterPythonPath) {
+                    pythonPath.addAll(getPathVariants(new File(s)));
+                }
+            }
+            for (File location : locations) {
+                for (File dir = location.getParentFile(); dir != null; dir = dir.getParentFile()) {
+                    if (dir.getName().equals(analyzer) && pythonPath.contains(dir.getParentFile())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // The executable must be installed along with the interpreter (bin or Scripts on Windows).
+        for (File interpreterLocation : getPathVariants(new File(interpreter))) {
+            File interpreterDir = interpreterLocation.getParentFile();
+            if (interpreterDir == null) {
+                continue;
+            }
+            for (File location : locations) {
+                File dir = location.getParentFile();
+                if (interpreterDir.equals(dir) || new File(interpreterDir, "Scripts").equals(dir)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the absolute and the canonical (with links resolved) paths of the given file.
+     */
+    private static Set<File> getPathVariants(File file) {
+        Set<File> ret = new HashSet<File>(2);
+        ret.add(file.toPath().toAbsolutePath().normalize().toFile());
+        try {
+            ret.add(file.getCanonicalFile());
+        } catch (IOException e) {
+            // Just use the absolute one.
+        }
+        return ret;
+    }
+
+    @Override
+    public void run() {
+        Tuple<String, String> output;
+        try {
+            output = ExternalAnalyzerDaemonPool.getSingleton().analyze(cmdarray, envp, workingDir,
+                    Arrays.asList(target), monitor);
+        } catch (DaemonNotSupportedException e) {
+            WriteToStreamHelper.write(analyzerName + ": Unable to run in a long-running process ("
+                    + e.getMessage() + "). Starting a process for the analysis.", out);
+            runInProcess();
+            return;
+        } catch (Exception e) {
+            Log.log(e);
+            runInProcess();
+            return;
+        }
+        if (output == null || monitor.isCanceled()) {
+            return;
+        }
+        externalAnalyzer.afterRunProcess(output.o1, output.o2, out);
+    }
+
+    private void runInProcess() {
+        if (monitor.isCanceled()) {
+            return;
+        }
+        Process process;
+        try {
+            process = createProcess.call();
+        } catch (Exception e) {
+            Log.log(e);
+            return;
+        }
+        if (process != null) {
+            // Run it in this thread (this is the thread which the analyzer joins).
+            new ExternalAnalizerProcessWatchDoc(out, monitor, process, externalAnalyzer).run();
+        }
+    }
+}
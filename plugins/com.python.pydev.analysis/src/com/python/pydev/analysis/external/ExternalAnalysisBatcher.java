@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon.DaemonNotSupportedException;
+
+/**
+ * Groups the files to be analyzed by an external analyzer (pylint/mypy) during a full build so that many files
+ * are analyzed in a single invocation (instead of one invocation per file).
+ *
+ * The files are grouped by the command line, environment and working dir used (i.e.: same project/interpreter)
+ * and a batch is run when it reaches its batch size, when scheduleFlush() is called (at the end of a full build)
+ * or after FLUSH_DELAY_MILLIS without new files being added. The output of the batch is split by the file each
+ * line refers to and passed to the IExternalAnalyzer of that file.
+ *
+ * A batch which is running is stopped when the monitors of all its files are canceled.
+ */
+public final class ExternalAnalysisBatcher {
+
+    public static long FLUSH_DELAY_MILLIS = 2000;
+
+    /**
+     * Information on how a batch for some analyzer should be run.
+     */
+    public static final class BatchRunInfo {
+
+        private final String analyzerName;
+        private final String[] daemonCmdarray;
+        private final String[] envp;
+        private final File workingDir;
+        private final int batchSize;
+        private final IExternalCodeAnalysisStream out;
+        private final ICallback<Process, List<String>> createProcess;
+        private final ICallback<Tuple<String, String>, String> splitLine;
+
+        /**
+         * @param daemonCmdarray the command line to run the analyzer in a long-running process (null to always create
+         * a process for the batch).
+         * @param createProcess creates a process to analyze the given targets.
+         * @param splitLine receives a line of the output and returns a tuple with the file it refers to (null if
+         * it doesn't refer to any file) and the line to be passed to the analyzer of that file.
+         */
+        public BatchRunInfo(String analyzerName, String[] daemonCmdarray, String[] envp, File workingDir,
+                int batchSize, IExternalCodeAnalysisStream out, ICallback<Process, List<String>> createProcess,
+                ICallback<Tuple<String, String>, String> splitLine) {
+            this.analyzerName = analyzerName;
+            this.daemonCmdarray = daemonCmdarray;
+            this.envp = envp;
+            this.workingDir = workingDir;
+            this.batchSize = batchSize;
+            this.out = out;
+            this.createProcess = createProcess;
+            this.splitLine = splitLine;
+        }
+
+        private List<Object> createKey() {
+            return Arrays.asList(analyzerName,
+                    daemonCmdarray != null ? Arrays.asList(daemonCmdarray) : null,
+                    envp != null ? Arrays.asList(envp) : null, workingDir);
+        }
+    }
+
+    private static final class BatchEntry {
+
+        private final File file;
+        private final IExternalAnalyzer analyzer;
+        private final IProgressMonitor monitor;
+        private final Runnable onFinished;
+
+        private BatchEntry(File file, IExternalAnalyzer analyzer, IProgressMonitor monitor, Runnable onFinished) {
+            this.file = file;
+            this.analyzer = analyzer;
+            this.monitor = monitor;
+            this.onFinished = onFinished;
+        }
+    }
+
+    /**
+     * The monitor of a batch: canceled when the monitors of all its entries are canceled.
+     */
+    private static final class BatchMonitor extends NullProgressMonitor {
+
+        private final List<BatchEntry> entries;
+
+        private BatchMonitor(List<BatchEntry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            if (super.isCanceled()) {
+                return true;
+            }
+            for (BatchEntry entry : entries) {
+                if (!entry.monitor.isCanceled()) {
+                    return false;
+                }
+            }
+            setCanceled(true);
+            return true;
+        }
+    }
+
+    private static final class Batch {
+
+        private final BatchRunInfo info;
+        private final List<BatchEntry> entries = new ArrayList<BatchEntry>();
+
+        private Batch(BatchRunInfo info) {
+            this.info = info;
+        }
+    }
+
+    private static ExternalAnalysisBatcher singleton;
+
+    public synchronized static ExternalAnalysisBatcher getSingleton() {
+        if (singleton == null) {
+            singleton = new ExternalAnalysisBatcher();
+        }
+        return singleton;
+    }
+
+    private final Object lock = new Object();
+
+    private final Map<List<Object>, Batch> batches = new HashMap<List<Object>, Batch>();
+
+    private final Job flushJob = new Job("PyDev: External analysis (batch)") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            flushAll();
+            return Status.OK_STATUS;
+        }
+    };
+
+    /*default*/ ExternalAnalysisBatcher() {
+        flushJob.setPriority(Job.BUILD);
+        flushJob.setSystem(true);
+    }
+
+    /**
+     * Adds a file to be analyzed in a batch (if the batch is full, it's run in the current thread).
+     *
+     * @param analyzer the analyzer which will receive the output related to the given file.
+     * @param monitor if canceled, the output isn't passed to the analyzer.
+     * @param onFinished called after the output is passed to the analyzer.
+     */
+    public void add(BatchRunInfo info, String target, IExternalAnalyzer analyzer, IProgressMonitor monitor,
+            Runnable onFinished) {
+        List<Object> key = info.createKey();
+        Batch toRun = null;
+        synchronized (lock) {
+            Batch batch = batches.get(key);
+            if (batch == null) {
+                batch = new Batch(info);
+                batches.put(key, batch);
+            }
+            batch.entries.add(new BatchEntry(normalize(new File(target), info.workingDir), analyzer, monitor,
+                    onFinished));
+            if (batch.entries.size() >= Math.max(1, info.batchSize)) {
+                batches.remove(key);
+                toRun = batch;
+            }
+        }
+        if (toRun != null) {
+            run(toRun);
+        } else {
+            flushJob.schedule(FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Runs all the pending batches in a job (so that the caller -- i.e.: the builder -- isn't blocked).
+     */
+    public void scheduleFlush() {
+        flushJob.wakeUp(); // if it's already scheduled with FLUSH_DELAY_MILLIS
+        flushJob.schedule();
+    }
+
+    /**
+     * Runs all the pending batches in the current thread.
+     */
+    public void flushAll() {
+        List<Batch> toRun;
+        synchronized (lock) {
+            toRun = new ArrayList<Batch>(batches.values());
+            batches.clear();
+        }
+        for (Batch batch : toRun) {
+            run(batch);
+        }
+    }
+
+    private void run(Batch batch) {
+        BatchRunInfo info = batch.info;
+        IProgressMonitor monitor = new BatchMonitor(batch.entries);
+        if (monitor.isCanceled()) {
+            return;
+        }
+        List<String> targets = new ArrayList<String>(batch.entries.size());
+        for (BatchEntry entry : batch.entries) {
+            targets.add(entry.file.toString());
+        }
+        WriteToStreamHelper.write(info.analyzerName + ": Analyzing batch of " + targets.size() + " files.", info.out);
+
+        final Tuple<String, String> output = new Tuple<String, String>(null, null);
+        if (info.daemonCmdarray != null) {
+            try {
+                Tuple<String, String> daemonOutput = ExternalAnalyzerDaemonPool.getSingleton().analyze(
+                        info.daemonCmdarray, info.envp, info.workingDir, targets, monitor);
+                if (daemonOutput != null) {
+                    output.o1 = daemonOutput.o1;
+                    output.o2 = daemonOutput.o2;
+                }
+            } catch (DaemonNotSupportedException e) {
+                WriteToStreamHelper.write(info.analyzerName + ": Unable to run in a long-running process ("
+                        + e.getMessage() + "). Starting a process for the analysis.", info.out);
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+        if (output.o1 == null) {
+            try {
+                Process process = info.createProcess.call(targets);
+                if (process != null) {
+                    new ExternalAnalizerProcessWatchDoc(info.out, monitor, process, new IExternalAnalyzer() {
+
+                        @Override
+                        public void afterRunProcess(String stdout, String stderr, IExternalCodeAnalysisStream out) {
+                            output.o1 = stdout;
+                            output.o2 = stderr;
+                        }
+
+                        @Override
+                        public void join() {
+                        }
+                    }).run();
+                    if (monitor.isCanceled()) {
+                        process.destroy();
+                    }
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+        if (monitor.isCanceled()) {
+            WriteToStreamHelper.write(info.analyzerName + ": Batch analysis canceled.", info.out);
+            return;
+        }
+        if (output.o1 == null) {
+            output.o1 = "";
+            output.o2 = "";
+        }
+        dispatch(batch, output.o1, output.o2);
+    }
+
+    private void dispatch(Batch batch, String stdout, String stderr) {
+        BatchRunInfo info = batch.info;
+        Map<File, FastStringBuffer> fileToOutput = new HashMap<File, FastStringBuffer>();
+        for (BatchEntry entry : batch.entries) {
+            fileToOutput.put(entry.file, new FastStringBuffer());
+        }
+        for (String line : StringUtils.iterLines(stdout)) {
+            Tuple<String, String> split = info.splitLine.call(line);
+            if (split == null || split.o1 == null) {
+                continue;
+            }
+            FastStringBuffer buf = fileToOutput.get(normalize(new File(split.o1.trim()), info.workingDir));
+            if (buf != null) {
+                buf.append(split.o2);
+                if (!split.o2.endsWith("\n")) {
+                    buf.append('\n');
+                }
+            }
+        }
+
+        boolean first = true;
+        for (BatchEntry entry : batch.entries) {
+            if (entry.monitor.isCanceled()) {
+                continue;
+            }
+            try {
+                // The stderr is only reported once (it's related to the whole batch).
+                entry.analyzer.afterRunProcess(fileToOutput.get(entry.file).toString(), first ? stderr : "",
+                        info.out);
+                first = false;
+                if (!entry.monitor.isCanceled()) {
+                    entry.onFinished.run();
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private static File normalize(File file, File workingDir) {
+        if (!file.isAbsolute() && workingDir != null) {
+            file = new File(workingDir, file.getPath());
+        }
+        try {
+            return file.toPath().toAbsolutePath().normalize().toFile();
+        } catch (Exception e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.io.ThreadStreamReader;
+import org.python.pydev.shared_core.process.ProcessUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * A long-running process which runs an external analyzer (pylint/mypy) in-process for the files requested
+ * (see pysrc/pydev_external_analyzer.py for the protocol).
+ *
+ * Only one request may be active at a time (the ExternalAnalyzerDaemonPool is responsible for that).
+ */
+/*default*/ final class ExternalAnalyzerDaemon {
+
+    private static final String READY = "@@PYDEV_ANALYZER_READY@@";
+    private static final String IMPORT_ERROR = "@@PYDEV_ANALYZER_IMPORT_ERROR@@";
+    private static final String END = "@@PYDEV_ANALYZER_END@@";
+
+    /**
+     * Raised when the analyzer can't be run in-process in the given interpreter (i.e.: it's not importable).
+     */
+    /*default*/ static final class DaemonNotSupportedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        /*default*/ DaemonNotSupportedException(String msg) {
+            super(msg);
+        }
+    }
+
+    private final Process process;
+    private final BufferedReader reader;
+    private final BufferedWriter writer;
+    /**
+     * The stderr of the process is only used to report failures of the current request (so, it's cleared at each
+     * request to avoid keeping the stderr for the whole life of the process).
+     */
+    private final ThreadStreamReader stderrReader;
+
+    private volatile boolean disposed;
+    private int requestsServed;
+    private long lastUsedMillis;
+    private long maxResidentMemoryKb = -1;
+
+    private ExternalAnalyzerDaemon(Process process) {
+        this.process = process;
+        this.reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.stderrReader = new ThreadStreamReader(process.getErrorStream(), true, "utf-8");
+        this.stderrReader.start();
+        this.lastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts the process and waits for it to be ready to receive requests.
+     *
+     * @return null if the monitor was canceled while waiting for the process to start.
+     */
+    /*default*/ static ExternalAnalyzerDaemon start(String[] cmdarray, String[] envp, File workingDir,
+            IProgressMonitor monitor) throws IOException, DaemonNotSupportedException {
+        Process process = ProcessUtils.createProcess(cmdarray, envp, workingDir);
+        ExternalAnalyzerDaemon daemon = new ExternalAnalyzerDaemon(process);
+        String line = daemon.readLine(monitor);
+        if (line == null) {
+            daemon.dispose();
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            throw new IOException("External analyzer process finished before being ready. Stderr: "
+                    + daemon.stderrReader.getAndClearContents());
+        }
+        if (line.startsWith(IMPORT_ERROR)) {
+            daemon.dispose();
+            throw new DaemonNotSupportedException(line.substring(IMPORT_ERROR.length()).trim());
+        }
+        if (!line.equals(READY)) {
+            daemon.dispose();
+            throw new IOException("Unexpected output from external analyzer process: " + line);
+        }
+        daemon.stderrReader.clearContents();
+        return daemon;
+    }
+
+    /**
+     * Analyzes the given targets.
+     *
+     * @return a tuple with the stdout and stderr of the analyzer or null if the monitor was canceled (in which
+     * case the process is disposed as it can't be interrupted in the middle of the analysis).
+     */
+    /*default*/ Tuple<String, String> analyze(List<String> targets, IProgressMonitor monitor) throws IOException {
+        if (disposed) {
+            throw new IOException("External analyzer process already disposed.");
+        }
+        requestsServed++;
+        stderrReader.clearContents();
+        try {
+            writer.write("ANALYZE ");
+            writer.write(Integer.toString(targets.size()));
+            writer.write('\n');
+            for (String target : targets) {
+                writer.write(target);
+                writer.write('\n');
+            }
+            writer.flush();
+
+            FastStringBuffer stdout = new FastStringBuffer();
+            FastStringBuffer stderr = new FastStringBuffer();
+            while (true) {
+                String line = readLine(monitor);
+                if (line == null) {
+                    dispose();
+                    if (monitor.isCanceled()) {
+                        return null;
+                    }
+                    throw new IOException("External analyzer process finished unexpectedly. Stderr: "
+                            + stderrReader.getAndClearContents());
+                }
+                if (line.startsWith(END)) {
+                    try {
+                        maxResidentMemoryKb = Long.parseLong(line.substring(END.length()).trim());
+                    } catch (NumberFormatException e) {
+                        maxResidentMemoryKb = -1;
+                    }
+                    stderrReader.clearContents();
+                    break;
+                }
+                if (line.startsWith("O ")) {
+                    stdout.append(line.substring(2)).append('\n');
+                } else if (line.startsWith("E ")) {
+                    stderr.append(line.substring(2)).append('\n');
+                }
+            }
+            return new Tuple<String, String>(stdout.toString(), stderr.toString());
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        } finally {
+            lastUsedMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Reads a line from the process, checking the monitor for cancellation while no output is available.
+     *
+     * @return null if the process finished or the monitor was canceled.
+     */
+    private String readLine(IProgressMonitor monitor) throws IOException {
+        while (!reader.ready()) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            if (!process.isAlive()) {
+                return reader.readLine(); // Get what's still available (null if nothing).
+            }
+            synchronized (this) {
+                try {
+                    this.wait(20);
+                } catch (InterruptedException e) {
+                    // Just proceed to another check.
+                }
+            }
+        }
+        return reader.readLine();
+    }
+
+    /*default*/ int getRequestsServed() {
+        return requestsServed;
+    }
+
+    /*default*/ long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    /**
+     * @return the max resident memory of the process (as reported in the last request) or -1 if not available.
+     */
+    /*default*/ long getMaxResidentMemoryKb() {
+        return maxResidentMemoryKb;
+    }
+
+    /*default*/ boolean isAlive() {
+        return !disposed && process.isAlive();
+    }
+
+    /*default*/ void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        try {
+            if (process.isAlive()) {
+                try {
+                    writer.write("EXIT\n");
+                    writer.flush();
+                } catch (IOException e) {
+                    // Ignore (the process is destroyed afterwards anyways).
+                }
+            }
+            stderrReader.stopGettingOutput();
+            process.destroy();
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+}
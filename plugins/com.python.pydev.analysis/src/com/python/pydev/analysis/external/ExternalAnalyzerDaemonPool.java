@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon.DaemonNotSupportedException;
+
+/**
+ * Keeps long-running processes to run external analyzers (pylint/mypy), so that the interpreter startup and the
+ * import of the analyzer aren't paid for each analyzed file.
+ *
+ * Processes are pooled by their command line, environment and working dir. At most MAX_DAEMONS_PER_KEY processes
+ * are started for the same key (further requests wait for a process to become available) and processes are
+ * recycled after serving MAX_REQUESTS_PER_DAEMON requests, when their memory goes over MAX_DAEMON_MEMORY_KB or
+ * after being idle for IDLE_TIMEOUT_MILLIS (a job is scheduled to stop the idle processes while there are idle
+ * processes in the pool, so, they're stopped even if no other request arrives).
+ */
+public final class ExternalAnalyzerDaemonPool {
+
+    public static int MAX_DAEMONS_PER_KEY = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    public static int MAX_REQUESTS_PER_DAEMON = 200;
+
+    public static long MAX_DAEMON_MEMORY_KB = 1024 * 1024;
+
+    public static long IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Requests waiting for a process wake up at this interval to check whether their monitor was canceled.
+     */
+    private static final long WAIT_CHECK_MONITOR_MILLIS = 100;
+
+    private static final class Key {
+
+        private final List<String> cmdarray;
+        private final List<String> envp;
+        private final File workingDir;
+        private final int hash;
+
+        private Key(String[] cmdarray, String[] envp, File workingDir) {
+            this.cmdarray = Arrays.asList(cmdarray);
+            this.envp = envp != null ? Arrays.asList(envp) : null;
+            this.workingDir = workingDir;
+            int h = this.cmdarray.hashCode();
+            h = 31 * h + (this.envp != null ? this.envp.hashCode() : 0);
+            h = 31 * h + (workingDir != null ? workingDir.hashCode() : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash || !cmdarray.equals(other.cmdarray)) {
+                return false;
+            }
+            if (envp == null ? other.envp != null : !envp.equals(other.envp)) {
+                return false;
+            }
+            return workingDir == null ? other.workingDir == null : workingDir.equals(other.workingDir);
+        }
+    }
+
+    private static final class Entry {
+
+        private final ArrayDeque<ExternalAnalyzerDaemon> idle = new ArrayDeque<ExternalAnalyzerDaemon>();
+
+        /**
+         * Number of processes alive (or being started) for the key.
+         */
+        private int live;
+    }
+
+    private static ExternalAnalyzerDaemonPool singleton;
+
+    public synchronized static ExternalAnalyzerDaemonPool getSingleton() {
+        if (singleton == null) {
+            singleton = new ExternalAnalyzerDaemonPool();
+        }
+        return singleton;
+    }
+
+    private final Object lock = new Object();
+
+    private final Map<Key, Entry> entries = new HashMap<Key, Entry>();
+
+    /**
+     * Keys for which the analyzer can't be run in-process -> time when it should be checked again.
+     */
+    private final Map<Key, Long> notSupportedUntil = new HashMap<Key, Long>();
+
+    /**
+     * Stops the processes idle for more than IDLE_TIMEOUT_MILLIS (it's only rescheduled while there are idle
+     * processes in the pool).
+     */
+    private final Job reaperJob = new Job("PyDev: Stop idle external analyzers") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            reapIdle();
+            return Status.OK_STATUS;
+        }
+    };
+
+    /*default*/ ExternalAnalyzerDaemonPool() {
+        reaperJob.setPriority(Job.DECORATE);
+        reaperJob.setSystem(true);
+    }
+
+    /**
+     * Analyzes the given targets in a pooled process (waiting for a process to become available if all the
+     * processes for the given command line are busy).
+     *
+     * @param cmdarray the command line to start the process (see pysrc/pydev_external_analyzer.py).
+     *
+     * @return a tuple with stdout and stderr of the analyzer or null if the monitor was canceled.
+     *
+     * @throws DaemonNotSupportedException if the analyzer can't be run in-process (the caller should fall back to
+     * running a process for the analysis).
+     */
+    /*default*/ Tuple<String, String> analyze(String[] cmdarray, String[] envp, File workingDir, List<String> targets,
+            IProgressMonitor monitor) throws IOException, DaemonNotSupportedException {
+        Key key = new Key(cmdarray, envp, workingDir);
+        Tuple<Entry, ExternalAnalyzerDaemon> acquired = acquire(key, monitor);
+        if (acquired == null) {
+            return null;
+        }
+        try {
+            return acquired.o2.analyze(targets, monitor);
+        } finally {
+            release(key, acquired.o1, acquired.o2);
+        }
+    }
+
+    /**
+     * @return the entry which accounts for the process and the process acquired (or null if the monitor was
+     * canceled).
+     */
+    private Tuple<Entry, ExternalAnalyzerDaemon> acquire(Key key, IProgressMonitor monitor)
+            throws IOException, DaemonNotSupportedException {
+        List<ExternalAnalyzerDaemon> toDispose = new ArrayList<ExternalAnalyzerDaemon>();
+        Entry entry;
+        try {
+            synchronized (lock) {
+                long now = System.currentTimeMillis();
+                Long until = notSupportedUntil.get(key);
+                if (until != null) {
+                    if (until > now) {
+                        throw new DaemonNotSupportedException("Previously unable to run in-process.");
+                    }
+                    notSupportedUntil.remove(key);
+                }
+                removeIdle(now, toDispose);
+
+                while (true) {
+                    // Gotten at each iteration as disposeAll() may be called while waiting.
+                    entry = entries.get(key);
+                    if (entry == null) {
+                        entry = new Entry();
+                        entries.put(key, entry);
+                    }
+                    while (!entry.idle.isEmpty()) {
+                        ExternalAnalyzerDaemon daemon = entry.idle.pollLast();
+                        if (daemon.isAlive()) {
+                            return new Tuple<Entry, ExternalAnalyzerDaemon>(entry, daemon);
+                        }
+                        entry.live--;
+                        toDispose.add(daemon);
+                    }
+                    if (entry.live < MAX_DAEMONS_PER_KEY) {
+                        entry.live++;
+                        break; // Start a new one (outside of the lock).
+                    }
+                    // All busy: wait for one to be released (waking up from time to time to check the monitor).
+                    if (monitor.isCanceled()) {
+                        return null;
+                    }
+                    try {
+                        lock.wait(WAIT_CHECK_MONITOR_MILLIS);
+                    } catch (InterruptedException e) {
+                        // Just proceed to another check.
+                    }
+                }
+            }
+        } finally {
+            for (ExternalAnalyzerDaemon daemon : toDispose) {
+                daemon.dispose();
+            }
+        }
+
+        ExternalAnalyzerDaemon daemon = null;
+        try {
+            daemon = ExternalAnalyzerDaemon.start(key.cmdarray.toArray(new String[0]),
+                    key.envp != null ? key.envp.toArray(new String[0]) : null, key.workingDir, monitor);
+        } catch (DaemonNotSupportedException e) {
+            synchronized (lock) {
+                notSupportedUntil.put(key, System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS);
+            }
+            throw e;
+        } finally {
+            if (daemon == null) {
+                synchronized (lock) {
+                    entry.live--;
+                    lock.notifyAll();
+                }
+            }
+        }
+        return daemon != null ? new Tuple<Entry, ExternalAnalyzerDaemon>(entry, daemon) : null;
+    }
+
+    /**
+     * @param entry the entry which accounts for the process (see: acquire()).
+     */
+    private void release(Key key, Entry entry, ExternalAnalyzerDaemon daemon) {
+        boolean dispose;
+        synchronized (lock) {
+            dispose = !daemon.isAlive() || daemon.getRequestsServed() >= MAX_REQUESTS_PER_DAEMON
+                    || daemon.getMaxResidentMemoryKb() >= MAX_DAEMON_MEMORY_KB;
+            if (entries.get(key) != entry) {
+                // The pool was disposed in the meanwhile (a new entry may have been created for the key, but it
+                // doesn't account for this process).
+                dispose = true;
+            } else if (dispose) {
+                entry.live--;
+            } else {
+                entry.idle.addLast(daemon);
+                // Note: if the job is sleeping it's rescheduled and if it's running it's scheduled again
+                // when it finishes (so, it's never lost).
+                reaperJob.schedule(IDLE_TIMEOUT_MILLIS + 1);
+            }
+            lock.notifyAll();
+        }
+        if (dispose) {
+            daemon.dispose();
+        }
+    }
+
+    /**
+     * Stops the idle processes which timed out (and reschedules itself for the next one to time out, if any).
+     */
+    private void reapIdle() {
+        List<ExternalAnalyzerDaemon> toDispose = new ArrayList<ExternalAnalyzerDaemon>();
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            removeIdle(now, toDispose);
+            long nextTimeout = Long.MAX_VALUE;
+            for (Entry entry : entries.values()) {
+                for (ExternalAnalyzerDaemon daemon : entry.idle) {
+                    nextTimeout = Math.min(nextTimeout, daemon.getLastUsedMillis() + IDLE_TIMEOUT_MILLIS);
+                }
+            }
+            if (nextTimeout != Long.MAX_VALUE) {
+                reaperJob.schedule(Math.max(0, nextTimeout - now) + 1);
+            }
+        }
+        for (ExternalAnalyzerDaemon daemon : toDispose) {
+            daemon.dispose();
+        }
+    }
+
+    /**
+     * @return the number of processes waiting for a request.
+     */
+    /*default*/ int getIdleCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (Entry entry : entries.values()) {
+                count += entry.idle.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the number of processes alive (or being started).
+     */
+    /*default*/ int getDaemonsCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (Entry entry : entries.values()) {
+                count += entry.live;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Removes the processes idle for more than IDLE_TIMEOUT_MILLIS (must be called with the lock held).
+     */
+    private void removeIdle(long now, List<ExternalAnalyzerDaemon> toDispose) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            for (Iterator<ExternalAnalyzerDaemon> it2 = entry.idle.iterator(); it2.hasNext();) {
+                ExternalAnalyzerDaemon daemon = it2.next();
+                if (now - daemon.getLastUsedMillis() > IDLE_TIMEOUT_MILLIS || !daemon.isAlive()) {
+                    it2.remove();
+                    entry.live--;
+                    toDispose.add(daemon);
+                }
+            }
+            if (entry.live <= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Stops all the idle processes (the ones currently running are stopped when finished).
+     */
+    public void disposeAll() {
+        List<ExternalAnalyzerDaemon> toDispose = new ArrayList<ExternalAnalyzerDaemon>();
+        synchronized (lock) {
+            for (Entry entry : entries.values()) {
+                toDispose.addAll(entry.idle);
+            }
+            entries.clear();
+            notSupportedUntil.clear();
+            lock.notifyAll();
+            reaperJob.cancel();
+        }
+        for (ExternalAnalyzerDaemon daemon : toDispose) {
+            daemon.dispose();
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.python.pydev.ast.runners.SimpleRunner;
+import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
@@ -34,6 +35,9 @@ import org.python.pydev.shared_core.process.ProcessUtils;
 import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
+import com.python.pydev.analysis.external.ExternalAnalizerDaemonWatchDoc;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.BatchRunInfo;
 import com.python.pydev.analysis.external.ExternalAnalizerProcessWatchDoc;
 import com.python.pydev.analysis.external.IExternalAnalyzer;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
@@ -64,38 +68,98 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
 
     /**
      * Creates the mypy process and starts getting its output.
+     *
+     * @param onBatchFinished if not null, the file is analyzed along with other files in a batch (see
+     * ExternalAnalysisBatcher) and this callback is called after the markers are available (in which case
+     * join() doesn't wait for the analysis).
      */
-    void createMypyProcess(IExternalCodeAnalysisStream out)
+    void createMypyProcess(IExternalCodeAnalysisStream out, Runnable onBatchFinished)
             throws CoreException,
             MisconfigurationException, PythonNatureWithoutProjectException {
         String mypyExecutable = FileUtils.getFileAbsolutePath(mypyLocation);
         String target = FileUtils.getFileAbsolutePath(new File(location.toOSString()));
 
-        ArrayList<String> cmdList = new ArrayList<String>();
-        cmdList.add(mypyExecutable);
         String userArgs = StringUtils.replaceNewLines(
                 MypyPreferences.getMypyArgs(resource), " ");
         List<String> userArgsAsList = new ArrayList<>(Arrays.asList(ProcessUtils.parseArguments(userArgs)));
         if (!userArgsAsList.contains("--show-column-numbers")) {
             userArgsAsList.add("--show-column-numbers");
         }
-        cmdList.addAll(userArgsAsList);
-        cmdList.add(target);
-        String[] args = cmdList.toArray(new String[0]);
+        if (onBatchFinished != null && !userArgsAsList.contains("--show-absolute-path")) {
+            // When many files are analyzed at once, the file of each message must be matched to the targets.
+            userArgsAsList.add("--show-absolute-path");
+        }
 
         // run mypy in project location
         IProject project = resource.getProject();
         File workingDir = project.getLocation().toFile();
-        Process process;
+        PythonNature nature = PythonNature.getPythonNature(project);
+
+        boolean useDaemon = false;
+        String[] cmdarray = null;
+        String[] envp = null;
+        if (nature != null && MypyPreferences.useMypyDaemon(resource)) {
+            // mypy is run in a long-running process with the interpreter of the current project (only if the
+            // configured mypy is the one imported by that interpreter -- otherwise a process is created for the
+            // analysis as usual).
+            IInterpreterInfo interpreterInfo = nature.getProjectInterpreter();
+            useDaemon = ExternalAnalizerDaemonWatchDoc.isAnalyzerFromInterpreter(mypyLocation, "mypy",
+                    interpreterInfo);
+        }
+        if (useDaemon) {
+            IInterpreterInfo interpreterInfo = nature.getProjectInterpreter();
+            cmdarray = ExternalAnalizerDaemonWatchDoc.createCommandLine(
+                    interpreterInfo.getExecutableOrJar(), "mypy", userArgsAsList);
+            envp = SimpleRunner.getEnvironment(nature, interpreterInfo, nature.getRelatedInterpreterManager());
+        }
+
+        if (onBatchFinished != null) {
+            BatchRunInfo batchRunInfo = new BatchRunInfo("Mypy", cmdarray, envp, workingDir,
+                    MypyPreferences.getMypyBatchSize(resource), out,
+                    (targets) -> startMypyProcess(out, mypyExecutable, userArgsAsList, targets, workingDir),
+                    MypyAnalysis::splitBatchLine);
+            ExternalAnalysisBatcher.getSingleton().add(batchRunInfo, target, this, monitor, onBatchFinished);
+            return;
+        }
+
+        List<String> targets = Arrays.asList(target);
+        if (useDaemon) {
+            WriteToStreamHelper.write("Mypy: Analyzing in long-running process:", out, target);
+            this.processWatchDoc = new ExternalAnalizerDaemonWatchDoc("Mypy", out, monitor, cmdarray, envp,
+                    workingDir, target, this,
+                    () -> startMypyProcess(out, mypyExecutable, userArgsAsList, targets, workingDir));
+        } else {
+            Process process = startMypyProcess(out, mypyExecutable, userArgsAsList, targets, workingDir);
+            this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, process, this);
+        }
+        this.processWatchDoc.start();
+    }
+
+    /**
+     * Gets the file of a line of the output of a batch (the line itself is kept as is).
+     */
+    /*default*/ static Tuple<String, String> splitBatchLine(String line) {
+        Matcher m = MYPY_MATCH_PATTERN.matcher(line.trim());
+        if (!m.matches()) {
+            return null;
+        }
+        return new Tuple<String, String>(m.group(1).trim(), line);
+    }
+
+    private Process startMypyProcess(IExternalCodeAnalysisStream out, String mypyExecutable,
+            List<String> userArgsAsList, List<String> targets, File workingDir) {
+        ArrayList<String> cmdList = new ArrayList<String>();
+        cmdList.add(mypyExecutable);
+        cmdList.addAll(userArgsAsList);
+        cmdList.addAll(targets);
+        String[] args = cmdList.toArray(new String[0]);
 
         // run executable command (mypy or mypy.bat or mypy.exe)
         WriteToStreamHelper.write("Mypy: Executing command line:", out, (Object) args);
         SimpleRunner simpleRunner = new SimpleRunner();
-        Tuple<Process, String> r = simpleRunner.run(args, workingDir, PythonNature.getPythonNature(project),
-                null);
-        process = r.o1;
-        this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, process, this);
-        this.processWatchDoc.start();
+        Tuple<Process, String> r = simpleRunner.run(args, workingDir, PythonNature.getPythonNature(
+                resource.getProject()), null);
+        return r.o1;
     }
 
     @Override
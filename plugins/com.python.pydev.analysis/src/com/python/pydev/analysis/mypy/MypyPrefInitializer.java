@@ -20,6 +20,8 @@ public class MypyPrefInitializer {
 
         node.putBoolean(MypyPreferences.MYPY_USE_CONSOLE, MypyPreferences.DEFAULT_MYPY_USE_CONSOLE);
         node.put(MypyPreferences.MYPY_ARGS, MypyPreferences.DEFAULT_MYPY_ARGS);
+        node.putBoolean(MypyPreferences.MYPY_USE_DAEMON, MypyPreferences.DEFAULT_MYPY_USE_DAEMON);
+        node.putInt(MypyPreferences.MYPY_BATCH_SIZE, MypyPreferences.DEFAULT_MYPY_BATCH_SIZE);
 
     }
 
@@ -36,6 +36,12 @@ public class MypyPreferences {
     public static final String MYPY_ARGS = "MYPY_ARGS";
     public static final String DEFAULT_MYPY_ARGS = "";
 
+    public static final String MYPY_USE_DAEMON = "MYPY_USE_DAEMON";
+    public static final boolean DEFAULT_MYPY_USE_DAEMON = true;
+
+    public static final String MYPY_BATCH_SIZE = "MYPY_BATCH_SIZE";
+    public static final int DEFAULT_MYPY_BATCH_SIZE = 20;
+
     public static boolean useMypy(IAdaptable projectAdaptable) {
         return PyScopedPreferences.getBoolean(USE_MYPY, projectAdaptable);
     }
@@ -44,6 +50,21 @@ public class MypyPreferences {
         return PyScopedPreferences.getBoolean(MYPY_USE_CONSOLE, projectAdaptable);
     }
 
+    /**
+     * @return whether mypy should be run in a long-running process (instead of creating a process for each file).
+     */
+    public static boolean useMypyDaemon(IAdaptable projectAdaptable) {
+        return PyScopedPreferences.getBoolean(MYPY_USE_DAEMON, projectAdaptable);
+    }
+
+    /**
+     * @return the number of files which should be analyzed in a single mypy invocation during a full build
+     * (1 means that each file is analyzed separately).
+     */
+    public static int getMypyBatchSize(IAdaptable projectAdaptable) {
+        return PyScopedPreferences.getInt(MYPY_BATCH_SIZE, projectAdaptable, 1);
+    }
+
     public static String getMypyArgs(IAdaptable projectAdaptable) {
         return PyScopedPreferences.getString(MYPY_ARGS, projectAdaptable);
     }
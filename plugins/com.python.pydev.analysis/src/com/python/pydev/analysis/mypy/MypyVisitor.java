@@ -32,12 +32,22 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
     private IDocument document;
     private IProgressMonitor monitor;
+    private final boolean analyzeInBatch;
 
+    /**
+     * Whether the analysis was added to a batch (in which case the markers are set when the batch finishes).
+     */
+    private volatile boolean batched;
+
+    /**
+     * @param analyzeInBatch whether this file may be analyzed along with other files (i.e.: in a full build).
+     */
     /*default*/ MypyVisitor(IResource resource, IDocument document, ICallback<IModule, Integer> module,
-            IProgressMonitor monitor) {
+            IProgressMonitor monitor, boolean analyzeInBatch) {
         super(resource);
         this.document = document;
         this.monitor = monitor;
+        this.analyzeInBatch = analyzeInBatch;
     }
 
     private MypyAnalysis mypyRunnable;
@@ -89,7 +99,15 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
                 try {
                     IExternalCodeAnalysisStream out = MypyPreferences.getConsoleOutputStream(project);
-                    mypyRunnable.createMypyProcess(out);
+                    if (analyzeInBatch && MypyPreferences.getMypyBatchSize(resource) > 1) {
+                        batched = true;
+                        final MypyAnalysis analysis = mypyRunnable;
+                        final IResource r = resource;
+                        mypyRunnable.createMypyProcess(out, () -> PyMarkerUtils.replaceMarkers(analysis.markers, r,
+                                MYPY_PROBLEM_MARKER, true, monitor));
+                    } else {
+                        mypyRunnable.createMypyProcess(out, null);
+                    }
                 } catch (final Exception e) {
                     Log.log(e);
                 }
@@ -106,12 +124,20 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
     @Override
     public List<PyMarkerUtils.MarkerInfo> getMarkers() {
-        if (mypyRunnable == null) {
+        if (mypyRunnable == null || batched) {
             return null;
         }
         return mypyRunnable.markers;
     }
 
+    @Override
+    public void deleteMarkers() {
+        if (batched) {
+            return; // The markers are replaced when the batch finishes.
+        }
+        super.deleteMarkers();
+    }
+
     @Override
     public boolean getRequiresAnalysis() {
         return true;
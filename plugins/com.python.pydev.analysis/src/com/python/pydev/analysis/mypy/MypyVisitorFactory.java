@@ -19,10 +19,19 @@ public class MypyVisitorFactory {
     public static IExternalCodeAnalysisVisitor create(IResource resource, IDocument document,
             ICallback<IModule, Integer> module,
             IProgressMonitor internalCancelMonitor) {
+        return create(resource, document, module, internalCancelMonitor, false);
+    }
+
+    /**
+     * @param analyzeInBatch whether the file may be analyzed along with other files (i.e.: in a full build).
+     */
+    public static IExternalCodeAnalysisVisitor create(IResource resource, IDocument document,
+            ICallback<IModule, Integer> module,
+            IProgressMonitor internalCancelMonitor, boolean analyzeInBatch) {
         if (MypyPreferences.useMypy(resource) == false) {
             return new OnlyRemoveMarkersMypyVisitor(resource);
         } else {
-            return new MypyVisitor(resource, document, module, internalCancelMonitor);
+            return new MypyVisitor(resource, document, module, internalCancelMonitor, analyzeInBatch);
         }
     }
 }
@@ -2,6 +2,7 @@ package com.python.pydev.analysis.pylint;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,7 @@ import org.eclipse.jface.text.IRegion;
 import org.python.pydev.ast.runners.SimplePythonRunner;
 import org.python.pydev.ast.runners.SimpleRunner;
 import org.python.pydev.core.CheckAnalysisErrors;
+import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
@@ -28,6 +30,9 @@ import org.python.pydev.shared_core.markers.PyMarkerUtils;
 import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
+import com.python.pydev.analysis.external.ExternalAnalizerDaemonWatchDoc;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.BatchRunInfo;
 import com.python.pydev.analysis.external.ExternalAnalizerProcessWatchDoc;
 import com.python.pydev.analysis.external.IExternalAnalyzer;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
@@ -58,8 +63,12 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
 
     /**
      * Creates the pylint process and starts getting its output.
+     *
+     * @param onBatchFinished if not null, the file is analyzed along with other files in a batch (see
+     * ExternalAnalysisBatcher) and this callback is called after the markers are available (in which case
+     * join() doesn't wait for the analysis).
      */
-    void createPyLintProcess(IExternalCodeAnalysisStream out)
+    void createPyLintProcess(IExternalCodeAnalysisStream out, Runnable onBatchFinished)
             throws CoreException,
             MisconfigurationException, PythonNatureWithoutProjectException {
         String script = FileUtils.getFileAbsolutePath(pyLintLocation);
@@ -68,11 +77,7 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
         // check whether lint.py module or pylint executable has been specified
         boolean isPyScript = script.endsWith(".py") || script.endsWith(".pyw");
 
-        ArrayList<String> cmdList = new ArrayList<String>();
-        // pylint executable
-        if (!isPyScript) {
-            cmdList.add(script);
-        }
+        ArrayList<String> pyLintArgs = new ArrayList<String>();
         //user args
         String userArgs = StringUtils.replaceNewLines(
                 PyLintPreferences.getPyLintArgs(), " ");
@@ -88,17 +93,117 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
             if (token.startsWith("--output-format=")) {
                 continue;
             }
-            cmdList.add(token);
+            pyLintArgs.add(token);
+        }
+        pyLintArgs.add("--output-format=text");
+        if (onBatchFinished != null) {
+            // When many files are analyzed at once, the file of each message must be known.
+            pyLintArgs.add("--msg-template='{abspath}" + BATCH_PATH_SEPARATOR
+                    + "{C}:{line:3d},{column:2d}: {msg} ({symbol})'");
+        } else {
+            pyLintArgs.add("--msg-template='{C}:{line:3d},{column:2d}: {msg} ({symbol})'");
         }
-        cmdList.add("--output-format=text");
-        cmdList.add("--msg-template='{C}:{line:3d},{column:2d}: {msg} ({symbol})'");
-        // target file to be linted
-        cmdList.add(target);
-        String[] args = cmdList.toArray(new String[0]);
 
         // run pylint in project location
         IProject project = resource.getProject();
         File workingDir = project.getLocation().toFile();
+        PythonNature nature = PythonNature.getPythonNature(project);
+        if (isPyScript && nature == null) {
+            Throwable e = new RuntimeException("PyLint ERROR: Nature not configured for: " + project);
+            Log.log(e);
+            return;
+        }
+
+        boolean useDaemon = false;
+        String[] cmdarray = null;
+        String[] envp = null;
+        if (nature != null && PyLintPreferences.usePyLintDaemon()) {
+            // pylint is run in a long-running process with the interpreter of the current project (only if the
+            // configured pylint is the one imported by that interpreter -- otherwise a process is created for the
+            // analysis as usual).
+            IInterpreterInfo interpreterInfo = nature.getProjectInterpreter();
+            useDaemon = ExternalAnalizerDaemonWatchDoc.isAnalyzerFromInterpreter(pyLintLocation, "pylint",
+                    interpreterInfo);
+        }
+        if (useDaemon) {
+            IInterpreterInfo interpreterInfo = nature.getProjectInterpreter();
+            cmdarray = ExternalAnalizerDaemonWatchDoc.createCommandLine(
+                    interpreterInfo.getExecutableOrJar(), "pylint", pyLintArgs);
+            envp = SimpleRunner.getEnvironment(nature, interpreterInfo, nature.getRelatedInterpreterManager());
+        }
+
+        if (onBatchFinished != null) {
+            BatchRunInfo batchRunInfo = new BatchRunInfo("PyLint", cmdarray, envp, workingDir,
+                    PyLintPreferences.getPyLintBatchSize(), out, (targets) -> {
+                        try {
+                            return startPyLintProcess(out, script, isPyScript, pyLintArgs, targets, workingDir);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }, PyLintAnalysis::splitBatchLine);
+            ExternalAnalysisBatcher.getSingleton().add(batchRunInfo, target, this, monitor, onBatchFinished);
+            return;
+        }
+
+        List<String> targets = Arrays.asList(target);
+        if (useDaemon) {
+            WriteToStreamHelper.write("PyLint: Analyzing in long-running process:", out, target);
+            this.processWatchDoc = new ExternalAnalizerDaemonWatchDoc("PyLint", out, monitor, cmdarray, envp,
+                    workingDir, target, this, () -> {
+                        try {
+                            return startPyLintProcess(out, script, isPyScript, pyLintArgs, targets, workingDir);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+        } else {
+            Process process = startPyLintProcess(out, script, isPyScript, pyLintArgs, targets, workingDir);
+            if (process == null) {
+                return;
+            }
+            this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, process, this);
+        }
+        this.processWatchDoc.start();
+    }
+
+    private static final String BATCH_PATH_SEPARATOR = "|@|";
+
+    /**
+     * Splits a line of the output of a batch (in the format: '{abspath}|@|{C}:...') in the file and the line in the
+     * format expected for the analysis of a single file.
+     */
+    /*default*/ static Tuple<String, String> splitBatchLine(String line) {
+        int i = line.indexOf(BATCH_PATH_SEPARATOR);
+        if (i == -1) {
+            return null;
+        }
+        String path = line.substring(0, i).trim();
+        String contents = line.substring(i + BATCH_PATH_SEPARATOR.length());
+        if (path.startsWith("'")) {
+            // If the quotes in the template were kept, remove them.
+            path = path.substring(1);
+            contents = StringUtils.rightTrim(contents);
+            if (contents.endsWith("'")) {
+                contents = contents.substring(0, contents.length() - 1);
+            }
+        }
+        return new Tuple<String, String>(path, contents);
+    }
+
+    private Process startPyLintProcess(IExternalCodeAnalysisStream out, String script, boolean isPyScript,
+            List<String> pyLintArgs, List<String> targets, File workingDir)
+            throws MisconfigurationException, PythonNatureWithoutProjectException {
+        ArrayList<String> cmdList = new ArrayList<String>();
+        // pylint executable
+        if (!isPyScript) {
+            cmdList.add(script);
+        }
+        cmdList.addAll(pyLintArgs);
+        // target files to be linted
+        cmdList.addAll(targets);
+        String[] args = cmdList.toArray(new String[0]);
+
+        IProject project = resource.getProject();
         Process process;
         if (isPyScript) {
             // run Python script (lint.py) with the interpreter of current project
@@ -106,7 +211,7 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
             if (nature == null) {
                 Throwable e = new RuntimeException("PyLint ERROR: Nature not configured for: " + project);
                 Log.log(e);
-                return;
+                return null;
             }
             String interpreter = nature.getProjectInterpreter().getExecutableOrJar();
             WriteToStreamHelper.write("PyLint: Executing command line:", out, script, args);
@@ -123,8 +228,7 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
                     null);
             process = r.o1;
         }
-        this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, process, this);
-        this.processWatchDoc.start();
+        return process;
     }
 
     @Override
@@ -29,6 +29,8 @@ public class PyLintPrefInitializer {
 
         node.putBoolean(PyLintPreferences.USE_CONSOLE, PyLintPreferences.DEFAULT_USE_CONSOLE);
         node.put(PyLintPreferences.PYLINT_ARGS, PyLintPreferences.DEFAULT_PYLINT_ARGS);
+        node.putBoolean(PyLintPreferences.USE_PYLINT_DAEMON, PyLintPreferences.DEFAULT_USE_PYLINT_DAEMON);
+        node.putInt(PyLintPreferences.PYLINT_BATCH_SIZE, PyLintPreferences.DEFAULT_PYLINT_BATCH_SIZE);
 
     }
 
@@ -54,6 +54,14 @@ public class PyLintPreferences {
     public static final String PYLINT_ARGS = "PYLINT_ARGS";
     public static final String DEFAULT_PYLINT_ARGS = "";
 
+    //long-running process
+    public static final String USE_PYLINT_DAEMON = "USE_PYLINT_DAEMON";
+    public static final boolean DEFAULT_USE_PYLINT_DAEMON = true;
+
+    //files analyzed in a single invocation in a full build
+    public static final String PYLINT_BATCH_SIZE = "PYLINT_BATCH_SIZE";
+    public static final int DEFAULT_PYLINT_BATCH_SIZE = 20;
+
     /**
      * should we use py lint?
      *
@@ -67,6 +75,21 @@ public class PyLintPreferences {
         return PydevPrefs.getEclipsePreferences().getBoolean(USE_CONSOLE, DEFAULT_USE_CONSOLE);
     }
 
+    /**
+     * @return whether pylint should be run in a long-running process (instead of creating a process for each file).
+     */
+    public static boolean usePyLintDaemon() {
+        return PydevPrefs.getEclipsePreferences().getBoolean(USE_PYLINT_DAEMON, DEFAULT_USE_PYLINT_DAEMON);
+    }
+
+    /**
+     * @return the number of files which should be analyzed in a single pylint invocation during a full build
+     * (1 means that each file is analyzed separately).
+     */
+    public static int getPyLintBatchSize() {
+        return Math.max(1, PydevPrefs.getEclipsePreferences().getInt(PYLINT_BATCH_SIZE, DEFAULT_PYLINT_BATCH_SIZE));
+    }
+
     public static String getPyLintArgs() {
         return PydevPrefs.getEclipsePreferences().get(PYLINT_ARGS, DEFAULT_PYLINT_ARGS);
     }
@@ -39,12 +39,22 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
     private IDocument document;
     private IProgressMonitor monitor;
+    private final boolean analyzeInBatch;
 
+    /**
+     * Whether the analysis was added to a batch (in which case the markers are set when the batch finishes).
+     */
+    private volatile boolean batched;
+
+    /**
+     * @param analyzeInBatch whether this file may be analyzed along with other files (i.e.: in a full build).
+     */
     /*default*/ PyLintVisitor(IResource resource, IDocument document, ICallback<IModule, Integer> module,
-            IProgressMonitor monitor) {
+            IProgressMonitor monitor, boolean analyzeInBatch) {
         super(resource);
         this.document = document;
         this.monitor = monitor;
+        this.analyzeInBatch = analyzeInBatch;
     }
 
     private PyLintAnalysis pyLintRunnable;
@@ -91,7 +101,15 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
                 try {
                     IExternalCodeAnalysisStream out = PyLintPreferences.getConsoleOutputStream();
-                    pyLintRunnable.createPyLintProcess(out);
+                    if (analyzeInBatch && PyLintPreferences.getPyLintBatchSize() > 1) {
+                        batched = true;
+                        final PyLintAnalysis analysis = pyLintRunnable;
+                        final IResource r = resource;
+                        pyLintRunnable.createPyLintProcess(out, () -> PyMarkerUtils.replaceMarkers(analysis.markers, r,
+                                PYLINT_PROBLEM_MARKER, true, monitor));
+                    } else {
+                        pyLintRunnable.createPyLintProcess(out, null);
+                    }
                 } catch (final Exception e) {
                     Log.log(e);
                 }
@@ -108,12 +126,20 @@ import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 
     @Override
     public List<PyMarkerUtils.MarkerInfo> getMarkers() {
-        if (pyLintRunnable == null) {
+        if (pyLintRunnable == null || batched) {
             return null;
         }
         return pyLintRunnable.markers;
     }
 
+    @Override
+    public void deleteMarkers() {
+        if (batched) {
+            return; // The markers are replaced when the batch finishes.
+        }
+        super.deleteMarkers();
+    }
+
     @Override
     public boolean getRequiresAnalysis() {
         return true;
@@ -68,10 +68,15 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
 
     @Override
     public BuilderResult syncInfoToPythonPath(IProgressMonitor monitor, InterpreterInfo info) {
-        PythonPathHelper pythonPathHelper = new PythonPathHelper();
-        pythonPathHelper.setPythonPath(info.libs);
-
         ISystemModulesManager modulesManager = info.getModulesManager();
+
+        // Reuse the (persisted) listing of the folders of the interpreter so that only the folders which changed
+        // are listed again.
+        PythonPathHelper currentPythonPathHelper = (PythonPathHelper) modulesManager.getPythonPathHelper();
+        PythonPathHelper pythonPathHelper = currentPythonPathHelper != null
+                ? new PythonPathHelper(currentPythonPathHelper.getDirectoryListingCache())
+                : new PythonPathHelper();
+        pythonPathHelper.setPythonPath(info.libs);
         IInterpreterManager manager = modulesManager.getInterpreterManager();
         AbstractAdditionalDependencyInfo additionalInfo;
         try {
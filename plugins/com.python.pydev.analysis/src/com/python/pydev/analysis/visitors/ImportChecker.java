@@ -9,6 +9,9 @@
  */
 package com.python.pydev.analysis.visitors;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.python.pydev.ast.codecompletion.revisited.AbstractASTManager;
 import org.python.pydev.ast.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceToken;
@@ -47,6 +50,11 @@ public final class ImportChecker {
 
     private final AbstractScopeAnalyzerVisitor visitor;
 
+    /**
+     * The modules where the imports visited were found.
+     */
+    private final Set<String> importedModules = new HashSet<String>();
+
     /**
      * This is the information stored about some import:
      * Contains the actual module, the representation in the current module and whether it was resolved or not.
@@ -165,7 +173,22 @@ public final class ImportChecker {
      * token we were looking for.
      */
     public ImportInfo visitImportToken(IToken token, boolean reportUndefinedImports, ICompletionCache completionCache) {
-        return visitImportToken(reportUndefinedImports, token, moduleName, nature, visitor, completionCache);
+        ImportInfo info = visitImportToken(reportUndefinedImports, token, moduleName, nature, visitor, completionCache);
+        if (info.mod != null) {
+            String name = info.mod.getName();
+            if (name != null && !name.equals(moduleName)) {
+                importedModules.add(name);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * @return the names of the modules where the imports visited were found (even if the token imported was not
+     * found in the module).
+     */
+    public Set<String> getImportedModules() {
+        return importedModules;
     }
 
     /**
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.markers.PyMarkerUtils;
+
+/**
+ * Runs a full build in a pipeline:
+ *
+ * - The items are prepared in a pool of threads (see: prepare()).
+ *
+ * - The items are then visited in the builder thread (the one which called run()) in the same order they were
+ * passed (see: visit()), which may submit tasks to be run concurrently in the pool (see: submitConcurrent()).
+ *
+ * The number of items in memory is bounded (prepared items usually keep the document and the ast).
+ *
+ * The threads in the pool never change markers: PyMarkerUtils.replaceMarkers() in those threads is deferred to the
+ * builder thread, which applies the markers while it waits for the pool. So, the builder thread never blocks waiting
+ * for a thread which is waiting for the workspace lock.
+ *
+ * The progress should only be reported from the builder thread (the threads in the pool should just check whether
+ * the monitor was canceled -- see: getWorkerMonitor()).
+ */
+public abstract class FullBuildPipeline<T, P> {
+
+    /**
+     * Added to the builder thread tasks when some task in the pool finishes (so that the builder thread stops
+     * waiting for the tasks to run).
+     */
+    private static final Runnable WAKE_UP = new Runnable() {
+
+        @Override
+        public void run() {
+        }
+    };
+
+    private final int nThreads;
+
+    private final IProgressMonitor monitor;
+
+    private final IProgressMonitor workerMonitor;
+
+    private final LinkedBlockingQueue<Runnable> builderThreadTasks = new LinkedBlockingQueue<Runnable>();
+
+    private final Executor builderThreadExecutor = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            builderThreadTasks.add(command);
+        }
+    };
+
+    private final Deque<Future<?>> visiting = new ArrayDeque<Future<?>>();
+
+    private ThreadPoolExecutor executor;
+
+    public FullBuildPipeline(int nThreads, final IProgressMonitor monitor) {
+        this.nThreads = nThreads;
+        this.monitor = monitor;
+        this.workerMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+    }
+
+    /**
+     * Called in a thread of the pool.
+     *
+     * @return the prepared item or null if it shouldn't be visited.
+     */
+    protected abstract P prepare(T item);
+
+    /**
+     * Called in the builder thread for each item (in the order they were passed).
+     *
+     * @param i the index of the item.
+     * @param prepared the prepared item (null if it shouldn't be visited).
+     */
+    protected abstract void visit(int i, T item, P prepared);
+
+    /**
+     * @return a monitor to be used in the threads of the pool (which only checks whether the build was canceled).
+     */
+    public IProgressMonitor getWorkerMonitor() {
+        return workerMonitor;
+    }
+
+    /**
+     * Runs the given task in the pool (must be called from visit()).
+     */
+    public void submitConcurrent(Runnable task) {
+        visiting.add(submit(new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                if (!workerMonitor.isCanceled()) {
+                    task.run();
+                }
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Runs the given task in the builder thread (may be called from any thread while the pipeline is running and
+     * it's always run before run() returns).
+     */
+    public void runInBuilderThread(Runnable task) {
+        builderThreadExecutor.execute(task);
+    }
+
+    /**
+     * Prepares and visits the given items (returns when all the items are visited or the monitor is canceled and
+     * all the tasks in the pool finished).
+     */
+    public void run(Iterator<T> items) {
+        executor = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread thread = new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                PyMarkerUtils.setMarkersExecutorForThread(builderThreadExecutor);
+                                r.run();
+                            }
+                        }, "PyDev: Full build " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        int maxInFlight = nThreads * 4;
+        Deque<T> preparingItems = new ArrayDeque<T>();
+        Deque<Future<P>> preparing = new ArrayDeque<Future<P>>();
+        try {
+            int i = 0;
+            while (monitor.isCanceled() == false) {
+                while (preparing.size() < maxInFlight && items.hasNext()) {
+                    final T item = items.next();
+                    preparingItems.add(item);
+                    preparing.add(submit(new Callable<P>() {
+
+                        @Override
+                        public P call() throws Exception {
+                            if (workerMonitor.isCanceled()) {
+                                return null;
+                            }
+                            return prepare(item);
+                        }
+                    }));
+                }
+                Future<P> next = preparing.poll();
+                if (next == null) {
+                    break;
+                }
+                T item = preparingItems.poll();
+                P prepared = waitFor(next);
+                if (monitor.isCanceled()) {
+                    break;
+                }
+                visit(i, item, prepared);
+                i += 1;
+
+                while (visiting.size() > maxInFlight && monitor.isCanceled() == false) {
+                    waitFor(visiting.poll());
+                }
+            }
+            while (visiting.size() > 0 && monitor.isCanceled() == false) {
+                waitFor(visiting.poll());
+            }
+        } finally {
+            for (Future<P> future : preparing) {
+                future.cancel(false);
+            }
+            for (Future<?> future : visiting) {
+                future.cancel(false);
+            }
+            visiting.clear();
+            // Note: don't interrupt the threads (the visitors are not prepared for that) and wait for the
+            // running tasks to finish (when canceled they'll check the monitor and should finish soon) so that
+            // nothing is running when the visitors are notified that the visiting ended.
+            executor.shutdown();
+            try {
+                while (!executor.isTerminated()) {
+                    runBuilderThreadTasks(500);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The tasks may still add something when finishing.
+            for (Runnable task = builderThreadTasks.poll(); task != null; task = builderThreadTasks.poll()) {
+                runTask(task);
+            }
+        }
+    }
+
+    private <V> Future<V> submit(Callable<V> callable) {
+        FutureTask<V> task = new FutureTask<V>(callable) {
+            @Override
+            protected void done() {
+                builderThreadTasks.add(WAKE_UP);
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs the tasks which should run in the builder thread (waiting at most the given millis for one to be
+     * available).
+     */
+    private void runBuilderThreadTasks(long timeoutMillis) throws InterruptedException {
+        Runnable task = builderThreadTasks.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        while (task != null) {
+            runTask(task);
+            task = builderThreadTasks.poll();
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
+    /**
+     * Waits for the given future (running the builder thread tasks and checking the monitor for cancellation in
+     * the meanwhile).
+     *
+     * @return the result of the future or null if it failed or the monitor was canceled.
+     */
+    private <V> V waitFor(Future<V> future) {
+        try {
+            while (!future.isDone()) {
+                if (monitor.isCanceled()) {
+                    return null;
+                }
+                runBuilderThreadTasks(100);
+            }
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.log(e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
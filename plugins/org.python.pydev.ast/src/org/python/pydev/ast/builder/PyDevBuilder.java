@@ -16,6 +16,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -50,6 +52,19 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
 
     private static final boolean DEBUG = false;
 
+    /**
+     * The number of threads used in a full build to prepare the resources (resolve the module name, load the
+     * document and parse it) and to run the visitors which can visit resources concurrently.
+     *
+     * If 1, the full build is done sequentially in the builder thread.
+     */
+    public static final int FULL_BUILD_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Full builds with fewer resources than this are always done sequentially.
+     */
+    private static final int MIN_RESOURCES_FOR_PARALLEL_BUILD = 20;
+
     /**
      *
      * @return a list of visitors for building the application.
@@ -263,7 +278,8 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     }
 
     /**
-     * Default implementation. Visits each resource once at a time. May be overridden if a better implementation is needed.
+     * Default implementation. Visits the resources (in parallel if FULL_BUILD_THREADS > 1). May be overridden if a
+     * better implementation is needed.
      *
      * @param resourcesToParse list of resources from project that are python files.
      * @param monitor
@@ -271,6 +287,19 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
      */
     public void buildResources(List<IFile> resourcesToParse, IProgressMonitor monitor,
             List<PyDevBuilderVisitor> visitors) {
+        int nThreads = FULL_BUILD_THREADS;
+        if (nThreads <= 1 || resourcesToParse.size() < MIN_RESOURCES_FOR_PARALLEL_BUILD) {
+            buildResourcesSequentially(resourcesToParse, monitor, visitors);
+        } else {
+            buildResourcesInParallel(resourcesToParse, monitor, visitors, nThreads);
+        }
+    }
+
+    /**
+     * Visits each resource once at a time.
+     */
+    private void buildResourcesSequentially(List<IFile> resourcesToParse, IProgressMonitor monitor,
+            List<PyDevBuilderVisitor> visitors) {
 
         // we have 100 units here
         double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
@@ -356,6 +385,204 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
         }
     }
 
+    /**
+     * A resource which had its module name resolved, its document loaded and its contents parsed (all available in
+     * its memo).
+     */
+    private static final class PreparedResource {
+
+        private final IFile resource;
+        private final VisitorMemo memo;
+        private final ICallback0<IDocument> doc;
+
+        private PreparedResource(IFile resource, VisitorMemo memo, ICallback0<IDocument> doc) {
+            this.resource = resource;
+            this.memo = memo;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * Does the same as buildResourcesSequentially, but in a FullBuildPipeline:
+     *
+     * - The resources are prepared (module name resolved, document loaded and contents parsed) in a pool of threads
+     * (each resource with its own memo).
+     *
+     * - The visitors are then called in the builder thread in the same order the resources were passed, except for
+     * the visitors which can visit resources concurrently (see: PyDevBuilderVisitor.createConcurrentVisitor()), which
+     * are called in the pool of threads (and have their markers applied in the builder thread).
+     */
+    private void buildResourcesInParallel(List<IFile> resourcesToParse, final IProgressMonitor monitor,
+            List<PyDevBuilderVisitor> visitors, int nThreads) {
+        // we have 100 units here
+        final double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
+        final int totalResources = resourcesToParse.size();
+
+        final List<PyDevBuilderVisitor> sequentialVisitors = new ArrayList<PyDevBuilderVisitor>();
+        final List<PyDevBuilderVisitor> concurrentVisitors = new ArrayList<PyDevBuilderVisitor>();
+        for (PyDevBuilderVisitor visitor : visitors) {
+            PyDevBuilderVisitor concurrentVisitor = null;
+            try {
+                concurrentVisitor = visitor.createConcurrentVisitor();
+            } catch (Throwable e) {
+                Log.log(e);
+            }
+            if (concurrentVisitor != null) {
+                concurrentVisitors.add(visitor);
+            } else {
+                sequentialVisitors.add(visitor);
+            }
+        }
+
+        final AtomicBoolean loggedMisconfiguration = new AtomicBoolean();
+        final AtomicReference<Object> memoSharedProjectState = new AtomicReference<Object>();
+        final PyDevBuilderVisitor progressVisitor = visitors.size() > 0 ? visitors.get(0) : null;
+
+        new FullBuildPipeline<IFile, PreparedResource>(nThreads, monitor) {
+
+            private final FastStringBuffer bufferToCreateString = new FastStringBuffer();
+            private long lastProgressTime = 0;
+            private double total = 0;
+
+            @Override
+            protected PreparedResource prepare(IFile r) {
+                return prepareResource(r, loggedMisconfiguration);
+            }
+
+            @Override
+            protected void visit(int i, IFile r, final PreparedResource prepared) {
+                total += inc;
+                if (prepared != null) {
+                    IPythonNature nature = PythonNature.getPythonNature(prepared.resource);
+                    if (nature != null && nature.startRequests()) {
+                        try {
+                            VisitorMemo memo = prepared.memo;
+                            memo.setSharedProjectState(memoSharedProjectState.get());
+
+                            long currentTimeMillis = System.currentTimeMillis();
+                            if (currentTimeMillis - lastProgressTime > 300 && progressVisitor != null) {
+                                communicateProgress(monitor, totalResources, i + 1, prepared.resource,
+                                        progressVisitor, bufferToCreateString);
+                                lastProgressTime = currentTimeMillis;
+                            }
+
+                            for (Iterator<PyDevBuilderVisitor> it = sequentialVisitors.iterator(); it.hasNext()
+                                    && monitor.isCanceled() == false;) {
+                                try {
+                                    PyDevBuilderVisitor visitor = it.next();
+                                    visitor.memo = memo; //setting the memo must be the first thing.
+
+                                    //on a full build, all visits are as some add...
+                                    visitor.visitAddedResource(prepared.resource, prepared.doc, monitor);
+                                } catch (Exception e) {
+                                    Log.log(e);
+                                }
+                            }
+                            memoSharedProjectState.accumulateAndGet(memo.getSharedProjectState(),
+                                    VisitorMemo::mergeSharedProjectStates);
+
+                            for (PyDevBuilderVisitor visitor : concurrentVisitors) {
+                                final PyDevBuilderVisitor concurrentVisitor = visitor.createConcurrentVisitor();
+                                concurrentVisitor.memo = new VisitorMemo(memo);
+                                submitConcurrent(new Runnable() {
+
+                                    @Override
+                                    public void run() {
+                                        visitConcurrently(concurrentVisitor, prepared, getWorkerMonitor(),
+                                                memoSharedProjectState);
+                                    }
+                                });
+                            }
+                        } finally {
+                            nature.endRequests();
+                        }
+                    }
+                }
+
+                if (total > 1) {
+                    monitor.worked((int) total);
+                    total -= (int) total;
+                }
+            }
+        }.run(resourcesToParse.iterator());
+    }
+
+    /**
+     * Resolves the module name, loads the document and parses the contents of the given resource in its own memo.
+     *
+     * @return the prepared resource or null if it shouldn't be visited.
+     */
+    private PreparedResource prepareResource(IFile r, AtomicBoolean loggedMisconfiguration) {
+        CorePlugin.markAsPyDevFileIfDetected(r);
+
+        IPythonNature nature = PythonNature.getPythonNature(r);
+        if (nature == null) {
+            return null;
+        }
+        if (!nature.startRequests()) {
+            return null;
+        }
+        try {
+            String moduleName;
+            try {
+                //we visit external because we must index them
+                moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
+                if (moduleName == null) {
+                    return null; // we only analyze resources that are in the pythonpath
+                }
+            } catch (Exception e1) {
+                if (loggedMisconfiguration.compareAndSet(false, true)) {
+                    Log.log(e1); //No point in logging it over and over again.
+                }
+                return null;
+            }
+
+            //create new memo for each resource
+            VisitorMemo memo = new VisitorMemo();
+            memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+
+            ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
+            IDocument document = doc.call(); // the callback caches it.
+            memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+
+            PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+
+            // Parsing is usually the slowest part, so, do it here (the visitors get it from the memo).
+            if (document != null && r.getRawLocation() != null) {
+                try {
+                    PyDevBuilderVisitor.setModuleInCache(memo, r,
+                            PyDevBuilderVisitor.createSourceModule(r, document, moduleName));
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
+            return new PreparedResource(r, memo, doc);
+        } finally {
+            nature.endRequests();
+        }
+    }
+
+    private void visitConcurrently(PyDevBuilderVisitor visitor, PreparedResource prepared, IProgressMonitor monitor,
+            AtomicReference<Object> memoSharedProjectState) {
+        if (monitor.isCanceled()) {
+            return;
+        }
+        IPythonNature nature = PythonNature.getPythonNature(prepared.resource);
+        if (nature == null || !nature.startRequests()) {
+            return;
+        }
+        try {
+            //on a full build, all visits are as some add...
+            visitor.visitAddedResource(prepared.resource, prepared.doc, monitor);
+            memoSharedProjectState.accumulateAndGet(visitor.memo.getSharedProjectState(),
+                    VisitorMemo::mergeSharedProjectStates);
+        } catch (Exception e) {
+            Log.log(e);
+        } finally {
+            nature.endRequests();
+        }
+    }
+
     /**
      * Used so that we can communicate the progress to the user
      *
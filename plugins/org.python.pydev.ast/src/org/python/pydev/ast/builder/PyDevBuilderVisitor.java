@@ -99,6 +99,19 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
         return PRIORITY_DEFAULT;
     }
 
+    /**
+     * In a full build, visitors which can visit resources concurrently may return a new instance here (by default
+     * null is returned and the visitor is always called from the builder thread).
+     *
+     * The returned instance will only receive the visitAddedResource call (each time with its own memo) and may be
+     * called from any thread (visitingWillStart/visitingEnded are still only called in the original visitor).
+     *
+     * Note: the markers replaced through PyMarkerUtils in that instance are applied later on in the builder thread.
+     */
+    public PyDevBuilderVisitor createConcurrentVisitor() {
+        return null;
+    }
+
     /**
      * This field acts like a memory.
      *
@@ -168,6 +181,13 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @param module this is the module to set in the cache
      */
     protected void setModuleInCache(IResource resource, IModule module) {
+        setModuleInCache(memo, resource, module);
+    }
+
+    /**
+     * Sets the module in the given memo (so that visitors which receive that memo don't need to recreate it).
+     */
+    public static void setModuleInCache(Map<String, Object> memo, IResource resource, IModule module) {
         memo.put(MODULE_CACHE + resource.getModificationStamp(), module);
     }
 
@@ -179,6 +199,15 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      */
     protected SourceModule createSoureModule(IResource resource, IDocument document, String moduleName)
             throws MisconfigurationException {
+        return createSourceModule(resource, document, moduleName);
+    }
+
+    /**
+     * Creates the module for the given resource (with the given document contents). Also used by the full build to
+     * parse the resources before they reach the visitors.
+     */
+    public static SourceModule createSourceModule(IResource resource, IDocument document, String moduleName)
+            throws MisconfigurationException {
         SourceModule module;
         PythonNature nature = PythonNature.getPythonNature(resource.getProject());
         IFile f = (IFile) resource;
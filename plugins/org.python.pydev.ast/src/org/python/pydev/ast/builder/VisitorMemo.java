@@ -64,6 +64,31 @@ public class VisitorMemo extends HashMap<String, Object> {
         return new Tuple3(fCacheNature, onlyProjectPythonPathStrExternal, onlyProjectPythonPathStrNonExternal);
     }
 
+    /**
+     * Merges the shared project state gotten from 2 memos (which may have been filled concurrently). The information
+     * available in any of them is kept (if they're related to different natures, the other one is returned).
+     */
+    public static Object mergeSharedProjectStates(Object state, Object other) {
+        if (state == null) {
+            return other;
+        }
+        if (other == null) {
+            return state;
+        }
+        Tuple3 t = (Tuple3) state;
+        Tuple3 o = (Tuple3) other;
+        if (o.o1 == null) {
+            return state;
+        }
+        if (t.o1 != o.o1) {
+            return other;
+        }
+        if ((t.o2 != null || o.o2 == null) && (t.o3 != null || o.o3 == null)) {
+            return state; // Nothing new.
+        }
+        return new Tuple3(t.o1, t.o2 != null ? t.o2 : o.o2, t.o3 != null ? t.o3 : o.o3);
+    }
+
     public void setSharedProjectState(Object memoSharedProjectState) {
         if (memoSharedProjectState != null) {
             Tuple3 t = (Tuple3) memoSharedProjectState;
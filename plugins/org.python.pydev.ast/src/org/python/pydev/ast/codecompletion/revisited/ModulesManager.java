@@ -49,6 +49,7 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.cache.ModulesKeysFile;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.preferences.FileTypesPreferences;
 import org.python.pydev.parser.PyParser;
@@ -199,6 +200,11 @@ public abstract class ModulesManager implements IModulesManager {
     protected final PyPublicTreeMap<ModulesKey, ModulesKey> modulesKeys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
     protected final Object modulesKeysLock = new Object();
 
+    /**
+     * The modules of this manager in the cache (used to enforce its quota).
+     */
+    final ModulesManagerCache.ManagerEntries cacheEntries = new ModulesManagerCache.ManagerEntries();
+
     protected static final ModulesManagerCache cache = new ModulesManagerCache();
     private static final CachePyiModules cachePyiModules = new CachePyiModules();
 
@@ -227,58 +233,23 @@ public abstract class ModulesManager implements IModulesManager {
 
         File modulesKeysFile = new File(workspaceMetadataFile, "modulesKeys");
         File pythonpatHelperFile = new File(workspaceMetadataFile, "pythonpath");
-        FastStringBuffer buf;
-        HashMap<String, Integer> commonTokens = new HashMap<String, Integer>();
-
+        ArrayList<ModulesKey> keys;
         synchronized (modulesKeysLock) {
-            buf = new FastStringBuffer(this.modulesKeys.size() * 50);
-            buf.append(MODULES_MANAGER_V2);
-
-            for (Iterator<ModulesKey> iter = this.modulesKeys.keySet().iterator(); iter.hasNext();) {
-                ModulesKey next = iter.next();
-                buf.append(next.name);
-                if (next.file != null) {
-                    buf.append("|");
-                    if (next instanceof ModulesKeyForZip) {
-                        ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) next;
-                        if (modulesKeyForZip.zipModulePath != null) {
-                            String fileStr = next.file.toString();
-                            Integer t = commonTokens.get(fileStr);
-                            if (t == null) {
-                                t = commonTokens.size();
-                                commonTokens.put(fileStr, t);
-                            }
-                            buf.append(t);
-                            buf.append("|");
-
-                            buf.append(modulesKeyForZip.zipModulePath);
-                            buf.append("|");
-                            buf.append(modulesKeyForZip.isFile ? '1' : '0');
-                        }
-                    } else {
-                        buf.append(next.file.toString());
-                    }
-                }
-                buf.append('\n');
-            }
+            keys = new ArrayList<ModulesKey>(this.modulesKeys.keySet());
         }
-        if (commonTokens.size() > 0) {
-            FastStringBuffer header = new FastStringBuffer(buf.length() + (commonTokens.size() * 50));
-            header.append(MODULES_MANAGER_V2);
-            header.append("--COMMON--\n");
-            for (Map.Entry<String, Integer> entries : commonTokens.entrySet()) {
-                header.append(entries.getValue());
-                header.append('=');
-                header.append(entries.getKey());
-                header.append('\n');
-            }
-            header.append("--END-COMMON--\n");
-            header.append(buf);
-            buf = header;
+        try {
+            // Saved in sorted order (so that it can be restored with buildFromSorted).
+            ModulesKeysFile.writeModulesKeys(modulesKeysFile, 0, keys.size(), keys.iterator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        FileUtils.writeStrToFile(buf.toString(), modulesKeysFile);
 
         this.pythonPathHelper.saveToFile(pythonpatHelperFile);
+        try {
+            this.pythonPathHelper.saveDirectoryListingCache(new File(workspaceMetadataFile, "dirListing"));
+        } catch (IOException e) {
+            Log.log(e);
+        }
     }
 
     /**
@@ -299,6 +270,55 @@ public abstract class ModulesManager implements IModulesManager {
             throw new IOException("Expecting: " + pythonpatHelperFile + " to exist (and be a file).");
         }
 
+        if (ModulesKeysFile.isModulesKeysFile(modulesKeysFile)) {
+            ModulesKeysFile keysFile = ModulesKeysFile.open(modulesKeysFile);
+            int size = keysFile.size();
+            ArrayList<ModulesKey> lst = new ArrayList<ModulesKey>(size);
+            for (int i = 0; i < size; i++) {
+                lst.add(keysFile.getKey(i));
+            }
+            buildModulesKeysFromSorted(modulesManager, lst);
+        } else {
+            // Previous (text) format: it's converted to the binary format in the next save.
+            loadFromFileVersion2(modulesManager, modulesKeysFile);
+        }
+
+        if (modulesManager.pythonPathHelper == null) {
+            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
+                    + " dir:" + workspaceMetadataFile);
+        }
+        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
+
+        File directoryListingCacheFile = new File(workspaceMetadataFile, "dirListing");
+        if (directoryListingCacheFile.isFile()) {
+            try {
+                modulesManager.pythonPathHelper.loadDirectoryListingCache(directoryListingCacheFile);
+            } catch (IOException e) {
+                // Not really a problem (the folders will just be listed again).
+                Log.log(e);
+            }
+        }
+
+        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
+            throw new IOException("Pythonpath helper pythonpath not properly restored. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
+            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
+            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
+            //Note: changed to a really low value because we now make a check after it's restored anyways.
+            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+    }
+
+    private static void loadFromFileVersion2(ModulesManager modulesManager, File modulesKeysFile) {
         String fileContents = FileUtils.getFileContents(modulesKeysFile);
         if (!fileContents.startsWith(MODULES_MANAGER_V2)) {
             throw new RuntimeException(
@@ -332,30 +352,6 @@ public abstract class ModulesManager implements IModulesManager {
         }
 
         handleFileContents(modulesManager, fileContents, intToString);
-
-        if (modulesManager.pythonPathHelper == null) {
-            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
-                    + " dir:" + workspaceMetadataFile);
-        }
-        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
-
-        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
-            throw new IOException("Pythonpath helper pythonpath not properly restored. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
-            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
-            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
-            //Note: changed to a really low value because we now make a check after it's restored anyways.
-            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
     }
 
     /**
@@ -369,8 +365,7 @@ public abstract class ModulesManager implements IModulesManager {
      *
      *  and was changed to be faster (as this was one of the slow things in startup).
      */
-    /*default*/@SuppressWarnings("rawtypes")
-    static void handleFileContents(ModulesManager modulesManager, String fileContents,
+    /*default*/static void handleFileContents(ModulesManager modulesManager, String fileContents,
             HashMap<Integer, String> intToString) {
         String string = fileContents;
         int len = string.length();
@@ -431,6 +426,11 @@ public abstract class ModulesManager implements IModulesManager {
             handleLineParts(modulesManager, intToString, parts, partsFound, lst);
         }
 
+        buildModulesKeysFromSorted(modulesManager, lst);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void buildModulesKeysFromSorted(ModulesManager modulesManager, final List<ModulesKey> lst) {
         try {
             final int size = lst.size();
             //As we saved in sorted order, we can build in sorted order too (which is MUCH faster than adding items one
@@ -1011,7 +1011,8 @@ public abstract class ModulesManager implements IModulesManager {
     private AbstractModule decorateModule(AbstractModule n, IPythonNature nature) {
         if (n instanceof SourceModule) {
             if ("django.db.models.base".equals(n.getName())) {
-                SourceModule sourceModule = (SourceModule) n;
+                SourceModule sourceModule = copyToChangeAst((SourceModule) n);
+                n = sourceModule;
                 SimpleNode ast = sourceModule.getAst();
                 boolean found = false;
                 Module module = (Module) ast;
@@ -1057,7 +1058,8 @@ public abstract class ModulesManager implements IModulesManager {
                 }
 
             } else if ("django.db.models.manager".equals(n.getName())) {
-                SourceModule sourceModule = (SourceModule) n;
+                SourceModule sourceModule = copyToChangeAst((SourceModule) n);
+                n = sourceModule;
                 SimpleNode ast = sourceModule.getAst();
                 Module module = (Module) ast;
                 stmtType[] body = module.body;
@@ -1106,6 +1108,20 @@ public abstract class ModulesManager implements IModulesManager {
         return n;
     }
 
+    /**
+     * The ast of a module may be shared with other clients (see AstCache), so, it has to be copied before being
+     * changed.
+     */
+    private static SourceModule copyToChangeAst(SourceModule sourceModule) {
+        if (sourceModule.getAst() == null) {
+            return sourceModule;
+        }
+        SourceModule copy = new SourceModule(sourceModule.getName(), sourceModule.getFile(),
+                sourceModule.getAst().createCopy(), sourceModule.parseError, sourceModule.getNature());
+        copy.zipFilePath = sourceModule.zipFilePath;
+        return copy;
+    }
+
     /**
      * Hook called to give clients a chance to override the module created (still experimenting, so, it's not public).
      */
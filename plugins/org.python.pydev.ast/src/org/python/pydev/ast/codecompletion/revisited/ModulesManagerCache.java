@@ -6,71 +6,410 @@
  */
 package org.python.pydev.ast.codecompletion.revisited;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.shared_core.cache.LRUCache;
-import org.python.pydev.shared_core.structure.Tuple;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
- * the memory at any time.
+ * This is a 'global' cache implementation (shared by all the managers), which is bounded by the estimated
+ * memory retained by the modules in it (and not by the number of modules).
+ *
+ * The cache is split in segments (each with its own lock and LRU order) so that threads accessing different
+ * modules don't contend. Also, each manager has a quota (so that a big interpreter doesn't evict all the
+ * modules of the projects), enforced through an LRU list with the entries of the manager in all the segments
+ * (see: ManagerEntries).
+ *
+ * Locks are always acquired in this order: segment, then the entries of a manager.
+ *
+ * Note: as ModulesKey.equals/hashCode only considers the name, the cache is keyed by the module name and
+ * the manager (so, no key needs to be created to access it).
  */
 final class ModulesManagerCache {
+
+    /**
+     * Number of segments (must be a power of 2).
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Defines the (estimated) maximum memory that the modules in the cache may retain (for all the managers).
+     */
+    static final long DEFAULT_MAX_RETAINED_SIZE = Math.max(16L * 1024 * 1024,
+            Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 10));
+
+    /**
+     * Defines the percentage of the cache a single manager may use.
+     */
+    private static final double MANAGER_QUOTA = 0.6;
+
+    /**
+     * Sizes used to estimate the memory retained by a module.
+     */
+    private static final long EMPTY_MODULE_SIZE = 512;
+    private static final long COMPILED_MODULE_SIZE = 64 * 1024;
+    private static final long SOURCE_MODULE_SIZE = 64 * 1024;
+    private static final long SOURCE_MODULE_SIZE_PER_BYTE = 10;
+
+    private static final class Entry {
+        private final String name;
+        private final ModulesManager modulesManager;
+        private final int hash;
+        private final AbstractModule module;
+        private final long retainedSize;
+
+        /**
+         * Links in the LRU list of the manager (guarded by its ManagerEntries).
+         */
+        private Entry before;
+        private Entry after;
+
+        private Entry(String name, ModulesManager modulesManager, int hash, AbstractModule module,
+                long retainedSize) {
+            this.name = name;
+            this.modulesManager = modulesManager;
+            this.hash = hash;
+            this.module = module;
+            this.retainedSize = retainedSize;
+        }
+    }
+
+    /**
+     * The entries of a manager in the cache (from the least to the most recently used) and the memory they
+     * retain. The access is synchronized on the instance itself (and entries are only linked/unlinked with
+     * the lock of their segment held, so, an entry is in this list if and only if it's in its segment).
+     */
+    static final class ManagerEntries {
+        private Entry head;
+        private Entry tail;
+        private long retainedSize;
+
+        /**
+         * @return the estimated memory retained by the modules of the manager in the cache.
+         */
+        synchronized long getRetainedSize() {
+            return retainedSize;
+        }
+
+        private synchronized void linkLast(Entry entry) {
+            addLast(entry);
+            retainedSize += entry.retainedSize;
+        }
+
+        private synchronized void unlink(Entry entry) {
+            remove(entry);
+            retainedSize -= entry.retainedSize;
+        }
+
+        private synchronized void moveToLast(Entry entry) {
+            if (tail != entry) {
+                remove(entry);
+                addLast(entry);
+            }
+        }
+
+        /**
+         * @return the least recently used entry (ignoring the given entry) or null if the manager is within the
+         * given quota.
+         */
+        private synchronized Entry getEldestOverQuota(long quota, Entry keep) {
+            if (retainedSize <= quota) {
+                return null;
+            }
+            return head != keep ? head : keep.after;
+        }
+
+        private void addLast(Entry entry) {
+            entry.before = tail;
+            entry.after = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.after = entry;
+            }
+            tail = entry;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.before == null) {
+                head = entry.after;
+            } else {
+                entry.before.after = entry.after;
+            }
+            if (entry.after == null) {
+                tail = entry.before;
+            } else {
+                entry.after.before = entry.before;
+            }
+            entry.before = null;
+            entry.after = null;
+        }
+    }
+
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Key used in the segments. Each segment has an instance which is reused to do the lookups (so, it may only be
+     * changed with the segment lock held).
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final class EntryKey {
+        private String name;
+        private ModulesManager modulesManager;
+        private int hash;
+
+        private EntryKey set(String name, ModulesManager modulesManager, int hash) {
+            this.name = name;
+            this.modulesManager = modulesManager;
+            this.hash = hash;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) obj;
+            return modulesManager == other.modulesManager && name.equals(other.name);
+        }
+    }
 
     /**
-     * The access to the cache is synchronized
+     * The access to each segment is synchronized on the segment itself.
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final class Segment {
+        private final LinkedHashMap<EntryKey, Entry> map = new LinkedHashMap<EntryKey, Entry>(16, 0.75f, true);
+        private final EntryKey lookupKey = new EntryKey();
+        private long retainedSize;
+    }
+
+    /**
+     * Statistics on the cache usage.
+     */
+    static final class Stats {
+        final long hits;
+        final long misses;
+        final long evictions;
+        final int size;
+        final long retainedSize;
+
+        private Stats(long hits, long misses, long evictions, int size, long retainedSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.retainedSize = retainedSize;
+        }
+
+        @Override
+        public String toString() {
+            return "ModulesManagerCache.Stats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", size=" + size + ", retainedSize=" + retainedSize + "]";
+        }
+    }
+
+    private final Segment[] segments;
+    private final long maxRetainedSizePerSegment;
+    private final long maxRetainedSizePerManager;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        this(DEFAULT_MAX_RETAINED_SIZE, (long) (DEFAULT_MAX_RETAINED_SIZE * MANAGER_QUOTA));
+    }
+
+    ModulesManagerCache(long maxRetainedSize, long maxRetainedSizePerManager) {
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        this.maxRetainedSizePerSegment = Math.max(1, maxRetainedSize / SEGMENTS);
+        this.maxRetainedSizePerManager = maxRetainedSizePerManager;
+    }
+
+    private static int hash(String name, ModulesManager modulesManager) {
+        int h = name.hashCode() * 31 + System.identityHashCode(modulesManager);
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash & (SEGMENTS - 1)];
     }
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        String name = key.name;
+        int hash = hash(name, modulesManager);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            Entry entry = segment.map.get(segment.lookupKey.set(name, modulesManager, hash));
+            if (entry != null) {
+                modulesManager.cacheEntries.moveToLast(entry);
+                hits.incrementAndGet();
+                return entry.module;
+            }
+        }
+        misses.incrementAndGet();
+
+        // The manager lock must be held while adding so that we don't add a module which is being removed.
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
-                }
-                return obj;
+            ModulesKey realKey = modulesManager.modulesKeys.get(key); //get the 'real' key
+            if (realKey == null) {
+                return null;
             }
+            return put(segment, hash, realKey.name, modulesManager, AbstractModule.createEmptyModule(realKey),
+                    false);
         }
     }
 
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
+        String name = key.name;
+        int hash = hash(name, modulesManager);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            Entry entry = segment.map.remove(segment.lookupKey.set(name, modulesManager, hash));
+            if (entry != null) {
+                onRemoved(segment, entry);
             }
         }
     }
 
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
+        String name = key.name;
+        int hash = hash(name, modulesManager);
+        put(segmentFor(hash), hash, name, modulesManager, n, true);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.map.values()) {
+                    entry.modulesManager.cacheEntries.unlink(entry);
+                }
+                segment.map.clear();
+                segment.retainedSize = 0;
             }
         }
     }
 
-    public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
+    /**
+     * @return the current statistics of the cache.
+     */
+    Stats getStats() {
+        int size = 0;
+        long retainedSize = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+                retainedSize += segment.retainedSize;
+            }
+        }
+        return new Stats(hits.get(), misses.get(), evictions.get(), size, retainedSize);
+    }
+
+    /**
+     * Puts a module in the cache (evicting other modules if needed).
+     *
+     * @param replace if false and there's already a module for the given name, the existing module is kept.
+     * @return the module in the cache.
+     */
+    private AbstractModule put(Segment segment, int hash, String name, ModulesManager modulesManager,
+            AbstractModule module, boolean replace) {
+        long retainedSize = estimateRetainedSize(module);
+        AbstractModule ret;
+        Entry entry = null;
+        synchronized (segment) {
+            EntryKey lookupKey = segment.lookupKey.set(name, modulesManager, hash);
+            Entry existing = segment.map.get(lookupKey);
+            if (existing != null && !replace) {
+                ret = existing.module;
+            } else {
+                entry = new Entry(name, modulesManager, hash, module, retainedSize);
+                existing = segment.map.put(new EntryKey().set(name, modulesManager, hash), entry);
+                if (existing != null) {
+                    onRemoved(segment, existing);
+                }
+                segment.retainedSize += retainedSize;
+                modulesManager.cacheEntries.linkLast(entry);
+                ret = module;
+
+                // Evict the least recently used (but always keep the one just added).
+                Iterator<Entry> it = segment.map.values().iterator();
+                while (segment.retainedSize > maxRetainedSizePerSegment && it.hasNext()) {
+                    Entry eldest = it.next();
+                    if (eldest == entry) {
+                        break;
+                    }
+                    it.remove();
+                    onRemoved(segment, eldest);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        if (entry != null) {
+            evictFromManager(modulesManager.cacheEntries, entry);
+        }
+        return ret;
+    }
+
+    /**
+     * Evicts the least recently used modules of a manager until it's within its quota (keeping the given entry).
+     */
+    private void evictFromManager(ManagerEntries entries, Entry keep) {
+        while (true) {
+            Entry eldest = entries.getEldestOverQuota(maxRetainedSizePerManager, keep);
+            if (eldest == null) {
+                return;
+            }
+            // The segment lock must be acquired before the lock of the entries, so, the entry may have been
+            // removed in the meanwhile (in which case the next eldest is checked).
+            Segment segment = segmentFor(eldest.hash);
+            synchronized (segment) {
+                // Note: remove(key, value) doesn't change the access order.
+                if (segment.map.remove(segment.lookupKey.set(eldest.name, eldest.modulesManager, eldest.hash),
+                        eldest)) {
+                    onRemoved(segment, eldest);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called with the segment lock held.
+     */
+    private static void onRemoved(Segment segment, Entry entry) {
+        segment.retainedSize -= entry.retainedSize;
+        entry.modulesManager.cacheEntries.unlink(entry);
+    }
+
+    /**
+     * @return an estimate on the memory retained by the given module.
+     */
+    static long estimateRetainedSize(AbstractModule module) {
+        if (module instanceof SourceModule) {
+            // Note: the length of the source is kept in the module (no need to access the filesystem).
+            int length = ((SourceModule) module).getSourceLength();
+            if (length > 0) {
+                // The AST is much bigger than the source it was created from.
+                return EMPTY_MODULE_SIZE + (length * SOURCE_MODULE_SIZE_PER_BYTE);
+            }
+            return SOURCE_MODULE_SIZE;
+        }
+        if (module instanceof CompiledModule) {
+            return COMPILED_MODULE_SIZE;
         }
+        return EMPTY_MODULE_SIZE;
     }
-}
\ No newline at end of file
+}
@@ -40,7 +40,9 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.python.pydev.ast.codecompletion.IPythonModuleResolver;
 import org.python.pydev.ast.codecompletion.revisited.ModulesFoundStructure.ZipContents;
+import org.python.pydev.ast.listing_utils.DirectoryListingCache;
 import org.python.pydev.ast.listing_utils.PyFileListing;
+import org.python.pydev.ast.listing_utils.PyFileListing.IFileFilterWithKnownType;
 import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
 import org.python.pydev.core.ExtensionHelper;
 import org.python.pydev.core.IPythonPathNature;
@@ -72,6 +74,12 @@ public final class PythonPathHelper implements IPythonPathHelper {
     private volatile List<String> pythonpath = Collections.unmodifiableList(new ArrayList<String>());
     private List<IPath> searchPaths = Collections.unmodifiableList(new ArrayList<IPath>());
 
+    /**
+     * Cache of the folders listed in getModulesFoundStructure (so that unchanged folders aren't listed again).
+     * Also persisted.
+     */
+    private final DirectoryListingCache directoryListingCache;
+
     /**
      * The array of module resolvers from all org.python.pydev.pydev_python_module_resolver extensions.
      * Initialized lazily by {@link getPythonModuleResolvers}.
@@ -93,6 +101,22 @@ public final class PythonPathHelper implements IPythonPathHelper {
     }
 
     public PythonPathHelper() {
+        this(new DirectoryListingCache());
+    }
+
+    /**
+     * @param directoryListingCache the cache of the folders listed (may be shared with another helper for the
+     * same folders, e.g.: the one of the modules manager being synchronized).
+     */
+    public PythonPathHelper(DirectoryListingCache directoryListingCache) {
+        this.directoryListingCache = directoryListingCache;
+    }
+
+    /**
+     * @return the cache of the folders listed in getModulesFoundStructure.
+     */
+    public DirectoryListingCache getDirectoryListingCache() {
+        return directoryListingCache;
     }
 
     /**
@@ -108,34 +132,49 @@ public final class PythonPathHelper implements IPythonPathHelper {
         }
 
         if (root.isDirectory()) {
-            Set<File> otherRoots = new HashSet<>();
-            for (String p : allPythonpathEntries) {
-                otherRoots.add(new File(p));
-            }
-            otherRoots.remove(root);
-
-            FileFilter filter = new FileFilter() {
-
-                @Override
-                public boolean accept(File file) {
-                    if (file.isFile()) {
-                        return isValidFileMod(FileUtils.getFileAbsolutePath(file));
-                    } else if (file.isDirectory()) {
-                        if (otherRoots.contains(file)) {
-                            // We should not go into other roots.
-                            return false;
-                        }
-                        return isValidModuleLastPart(file.getName());
-                    } else {
-                        return false;
-                    }
+            return PyFileListing.getPyFilesBelowInParallel(new File[] { root },
+                    new FileFilter[] { createModulesFilter(root, allPythonpathEntries) }, monitor)[0];
+        }
+        return null;
+    }
+
+    /**
+     * @return a filter which accepts valid module files and folders below the given root (but which doesn't enter
+     * other roots in the pythonpath).
+     */
+    private static FileFilter createModulesFilter(File root, List<String> allPythonpathEntries) {
+        Set<File> otherRoots = new HashSet<>();
+        for (String p : allPythonpathEntries) {
+            otherRoots.add(new File(p));
+        }
+        otherRoots.remove(root);
+
+        return new IFileFilterWithKnownType() {
+
+            @Override
+            public boolean accept(File file) {
+                if (file.isFile()) {
+                    return accept(file, false);
+                } else if (file.isDirectory()) {
+                    return accept(file, true);
+                } else {
+                    return false;
                 }
+            }
 
-            };
-            return PyFileListing.getPyFilesBelow(root, filter, monitor);
+            @Override
+            public boolean accept(File file, boolean isDirectory) {
+                if (!isDirectory) {
+                    return isValidFileMod(FileUtils.getFileAbsolutePath(file));
+                }
+                if (otherRoots.contains(file)) {
+                    // We should not go into other roots.
+                    return false;
+                }
+                return isValidModuleLastPart(file.getName());
+            }
 
-        }
-        return null;
+        };
     }
 
     /**
@@ -611,17 +650,31 @@ public final class PythonPathHelper implements IPythonPathHelper {
         ModulesFoundStructure ret = new ModulesFoundStructure();
 
         List<String> pythonpathList = getPythonpath();
-        FastStringBuffer tempBuf = new FastStringBuffer();
-        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
-            String element = iter.next();
 
+        //the slow part is getting the files: all the folders are listed in parallel (the results are
+        //still handled in the pythonpath order below).
+        int size = pythonpathList.size();
+        File[] roots = new File[size];
+        FileFilter[] filters = new FileFilter[size];
+        for (int i = 0; i < size; i++) {
+            roots[i] = new File(pythonpathList.get(i));
+            filters[i] = createModulesFilter(roots[i], pythonpathList);
+        }
+        int walk = directoryListingCache.startWalk();
+        PyFileListing[] listings = PyFileListing.getPyFilesBelowInParallel(roots, filters, monitor,
+                directoryListingCache);
+        if (!monitor.isCanceled()) {
+            directoryListingCache.removeNotUsedSince(walk);
+        }
+
+        FastStringBuffer tempBuf = new FastStringBuffer();
+        for (int i = 0; i < size; i++) {
             if (monitor.isCanceled()) {
                 break;
             }
 
-            //the slow part is getting the files... not much we can do (I think).
-            File root = new File(element);
-            PyFileListing below = getModulesBelow(root, monitor, pythonpathList);
+            File root = roots[i];
+            PyFileListing below = listings[i];
             if (below != null) {
 
                 Iterator<PyFileInfo> e1 = below.getFoundPyFileInfos().iterator();
@@ -674,6 +727,20 @@ public final class PythonPathHelper implements IPythonPathHelper {
                 pythonpatHelperFile);
     }
 
+    /**
+     * Loads the cache of the folders listed (previously saved with saveDirectoryListingCache).
+     */
+    public void loadDirectoryListingCache(File directoryListingCacheFile) throws IOException {
+        directoryListingCache.loadFromFile(directoryListingCacheFile);
+    }
+
+    /**
+     * Saves the cache of the folders listed in getModulesFoundStructure.
+     */
+    public void saveDirectoryListingCache(File directoryListingCacheFile) throws IOException {
+        directoryListingCache.saveToFile(directoryListingCacheFile);
+    }
+
     public static boolean canAddAstInfoForSourceModule(ModulesKey key) {
         if (key.file != null && key.file.exists()) {
 
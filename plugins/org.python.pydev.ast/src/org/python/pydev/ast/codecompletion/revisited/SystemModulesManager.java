@@ -24,6 +24,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesCacheFile;
 import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.PredefinedSourceModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
@@ -51,7 +52,6 @@ import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
 import org.python.pydev.shared_core.string.FastStringBuffer;
-import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
@@ -61,6 +61,8 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
 
     private static final String DIR_NAME_FOR_COMPILED_CACHE = "shell";
 
+    private static final String FILE_NAME_FOR_COMPILED_CACHE = "compiled_modules.cache";
+
     /**
      * The system modules manager may have a nature if we create a SystemASTManager
      */
@@ -439,14 +441,16 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
             File ioDirectory = getIoDirectory();
             if (ioDirectory != null) {
                 File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
+                CompiledModulesCacheFile.get(new File(d, FILE_NAME_FOR_COMPILED_CACHE)).clear();
                 if (d.exists()) {
+                    //Also removes the files from older versions (which had one file per compiled module).
                     File[] files = d.listFiles();
                     if (files != null) {
 
                         for (int i = 0; i < files.length; ++i) {
                             File f = files[i];
 
-                            if (f.isFile()) {
+                            if (f.isFile() && !f.getName().equals(FILE_NAME_FOR_COMPILED_CACHE)) {
                                 try {
                                     FileUtils.deleteFile(f);
                                 } catch (IOException e) {
@@ -464,32 +468,14 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
     }
 
     /**
-     * Gets the directory where compiled modules should be saved.
+     * Gets the file where compiled modules should be saved.
      */
     @Override
-    public File getCompiledModuleCacheFile(String name) {
+    public File getCompiledModulesCacheFile() {
         File ioDirectory = getIoDirectory();
         if (ioDirectory != null) {
             File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
-            if (!d.exists()) {
-                d.mkdirs();
-            }
-            int len = name.length();
-            String pre = "";
-            if (len >= 3) {
-                pre = name.substring(0, 3);
-
-            } else if (len >= 2) {
-                pre = name.substring(0, 2);
-
-            } else if (len >= 1) {
-                pre = name.substring(0, 1);
-
-            }
-
-            //Already separate dotted from non dotted (i.e.: top level) modules.
-            String post = name.contains(".") ? ".top" : ".inn";
-            return new File(d, StringUtils.join("", pre, "_", StringUtils.md5(name), post));
+            return new File(d, FILE_NAME_FOR_COMPILED_CACHE);
         }
         return null;
     }
@@ -313,13 +313,14 @@ public abstract class AbstractModule implements IModule {
 
         if (f != null) {
             if (!checkForPath || PythonPathHelper.isValidSourceFile(f.getName())) {
-                ParseOutput obj = PyParser.reparseDocument(new PyParser.ParserInfo(doc, grammarVersionProvider, name,
-                        f));
-                return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+                ParseOutput obj = PyParser.reparseDocumentUsingCache(new PyParser.ParserInfo(doc,
+                        grammarVersionProvider, name, f));
+                return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature, doc.getLength());
             }
         } else {
-            ParseOutput obj = PyParser.reparseDocument(new PyParser.ParserInfo(doc, grammarVersionProvider, name, f));
-            return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+            ParseOutput obj = PyParser.reparseDocumentUsingCache(new PyParser.ParserInfo(doc, grammarVersionProvider,
+                    name, f));
+            return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature, doc.getLength());
         }
         return null;
     }
@@ -11,24 +11,14 @@
  */
 package org.python.pydev.ast.codecompletion.revisited.modules;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -49,7 +39,6 @@ import org.python.pydev.core.IToken;
 import org.python.pydev.core.IterTokenEntry;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.core.ObjectsInternPool;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.TokensList;
 import org.python.pydev.core.concurrency.IRunnableWithMonitor;
@@ -205,21 +194,31 @@ public class CompiledModule extends AbstractModule {
     /**
      * @return the file to be used to write/read the cache.
      */
-    private static File getCacheFile(String name, IModulesManager manager) {
+    /*default*/ static CompiledModulesCacheFile getCacheFile(IModulesManager manager) {
         if (manager instanceof ISystemModulesManager) {
             ISystemModulesManager systemModulesManager = (ISystemModulesManager) manager;
-            return systemModulesManager.getCompiledModuleCacheFile(name);
+            File f = systemModulesManager.getCompiledModulesCacheFile();
+            if (f != null) {
+                return CompiledModulesCacheFile.get(f);
+            }
         }
         return null;
     }
 
+    /**
+     * @return whether the given info should be kept in the CompiledModulesCacheFile.
+     */
+    /*default*/ static boolean isCacheable(Tuple<File, IToken[]> info) {
+        return info != null && info.o2 != null && info.o2.length > 10; //Don't cache anything less than 10 tokens.
+    }
+
     /**
      * Updates the file with the cache to have the given information.
      */
     private static void updateCache(final String name, IModulesManager manager, final Tuple<File, IToken[]> info) {
         try {
-            if (info != null && info.o2 != null && info.o2.length > 10) { //Don't cache anything less than 10 tokens.
-                File f = getCacheFile(name, manager);
+            if (isCacheable(info)) {
+                CompiledModulesCacheFile f = getCacheFile(manager);
 
                 //Only cache modules that are in the system modules manager.
                 if (f == null && !(manager instanceof ISystemModulesManager)) {
@@ -230,13 +229,13 @@ public class CompiledModule extends AbstractModule {
                     //a project we don't cache it for now).
                     for (String part : new FullRepIterable(name)) {
                         if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                            f = getCacheFile(name, systemModulesManager);
+                            f = getCacheFile(systemModulesManager);
                             break;
                         }
                         if (!part.contains(".")) {
                             part += ".__init__";
                             if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                                f = getCacheFile(name, systemModulesManager);
+                                f = getCacheFile(systemModulesManager);
                                 break;
                             }
                         }
@@ -244,41 +243,12 @@ public class CompiledModule extends AbstractModule {
                 }
 
                 if (f != null) {
-                    final File cacheFile = f;
+                    final CompiledModulesCacheFile cacheFile = f;
                     IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
 
                         @Override
                         public void run() {
-                            try (OutputStream out = new FileOutputStream(cacheFile)) {
-                                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
-                                    try (BufferedOutputStream buf = new BufferedOutputStream(gzip)) {
-                                        try (ObjectOutputStream stream = new ObjectOutputStream(buf)) {
-                                            stream.writeObject(name);
-                                            stream.writeObject(info.o1);
-
-                                            IToken[] toks = info.o2;
-                                            int size = toks.length;
-                                            stream.writeInt(size);
-
-                                            //Write in 2 batches (leave the docstring in a separate batch as it's usually
-                                            //the big part of the info -- that way we can partially read it without reading
-                                            //the docstrings later on).
-                                            for (int i = 0; i < size; i++) {
-                                                IToken tok = toks[i];
-                                                stream.writeObject(tok.getRepresentation());
-                                                stream.writeInt(tok.getType());
-                                                stream.writeObject(tok.getArgs());
-                                                stream.writeObject(tok.getParentPackage());
-                                            }
-                                            for (int i = 0; i < size; i++) {
-                                                stream.writeObject(toks[i].getDocStr());
-                                            }
-                                        }
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.log(e);
-                            }
+                            cacheFile.write(name, info.o1, info.o2);
                         }
 
                         @Override
@@ -298,41 +268,9 @@ public class CompiledModule extends AbstractModule {
      */
     private static Tuple<File, IToken[]> getCached(String name, IModulesManager manager) {
         ISystemModulesManager systemModulesManager = manager.getSystemModulesManager();
-        File f = getCacheFile(name, systemModulesManager);
-
-        if (f != null && f.exists()) {
-            try {
-                IToken[] toks = null;
-                File file = null;
-                try (FileInputStream fin = new FileInputStream(f)) {
-                    try (InputStream in = new BufferedInputStream(new GZIPInputStream(fin))) {
-                        try (ObjectInputStream stream = new ObjectInputStream(in)) {
-                            ObjectsInternPool.ObjectsPoolMap map = new ObjectsInternPool.ObjectsPoolMap();
-                            @SuppressWarnings("unused")
-                            Object _name = stream.readObject(); //we already have the name set (so, it's only there for completeness).
-                            file = (File) stream.readObject();
-                            int size = stream.readInt();
-
-                            toks = new IToken[size];
-                            IPythonNature nature = systemModulesManager.getNature();
-                            for (int i = 0; i < size; i++) {
-                                //Note intern (we probably have many empty strings -- or the same for parentPackage)
-                                String rep = ObjectsInternPool.internLocal(map, (String) stream.readObject());
-                                int type = stream.readInt();
-                                String args = ObjectsInternPool.internLocal(map, (String) stream.readObject());
-                                String parentPackage = ObjectsInternPool.internLocal(map, (String) stream.readObject());
-                                toks[i] = new CompiledToken(rep, "", args, parentPackage, type, nature);
-                            }
-                            for (int i = 0; i < size; i++) {
-                                toks[i].setDocStr(ObjectsInternPool.internLocal(map, (String) stream.readObject()));
-                            }
-                        }
-                    }
-                }
-                return new Tuple<File, IToken[]>(file, toks);
-            } catch (Exception e) {
-                Log.log("Unable to read contents from: " + f, e); //Unable to read: just log it
-            }
+        CompiledModulesCacheFile f = getCacheFile(systemModulesManager);
+        if (f != null) {
+            return f.read(name, systemModulesManager.getNature());
         }
         return null;
     }
@@ -359,7 +297,7 @@ public class CompiledModule extends AbstractModule {
         return toks;
     }
 
-    private static List<String> getCompletePythonpath(IModulesManager manager, final IPythonNature nature)
+    /*default*/ static List<String> getCompletePythonpath(IModulesManager manager, final IPythonNature nature)
             throws MisconfigurationException, PythonNatureWithoutProjectException {
         return manager.getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager());
     }
@@ -380,6 +318,15 @@ public class CompiledModule extends AbstractModule {
             Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
                     + completions.o2.size() + " completions."), null);
         }
+        return createTokens(name, completions, nature);
+    }
+
+    /**
+     * @param completions the completions for the module (as received from the shell).
+     * @return a tuple with the file for the module and its tokens.
+     */
+    /*default*/ static Tuple<File, IToken[]> createTokens(String name, Tuple<String, List<String[]>> completions,
+            final IPythonNature nature) {
         File file = null;
         String fPath = completions.o1;
         if (fPath != null) {
@@ -0,0 +1,650 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.ObjectsInternPool;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.structure.Tuple;
+import org.python.pydev.shared_core.utils.PlatformUtils;
+
+/**
+ * Keeps the tokens of all the compiled modules of an interpreter in a single file (instead of one file per module).
+ *
+ * The file is append-only: it has a header followed by one record per cached module (a module cached again just
+ * appends a new record which supersedes the previous one). The index (module name -> record offset) is built
+ * when the file is opened by scanning only the record headers and the file is memory-mapped for reading (on Windows
+ * positional reads are used instead: a mapped file can't be truncated or replaced until the mapping is
+ * garbage-collected and the lazy docstrings would keep it alive).
+ *
+ * Each record is:
+ *
+ * int record size (not including this int)
+ * string module name
+ * string module file ("" if not available)
+ * string table (varint size + strings): the representation, args and parent package of the tokens refer to it.
+ * varint tokens count
+ * for each token: varint rep index, varint type, varint args index, varint parent package index,
+ *                 varint docstring offset (from the record start), varint docstring length (in bytes)
+ * docstrings (utf-8)
+ *
+ * Strings are written as a varint with the length in bytes followed by the utf-8 bytes. The docstrings are the
+ * biggest part of the info, so, they're only decoded when actually requested (see CompiledToken.getDocStr()).
+ *
+ * When opened, if most of the file is taken by superseded records, the file is compacted.
+ */
+public final class CompiledModulesCacheFile {
+
+    private static final int MAGIC = 0x50594343; // PYCC
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * After reaching this size, new modules aren't added to the cache.
+     */
+    public static long MAX_FILE_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * Compact the file when opening if more than this amount of bytes is taken by superseded records (and they're
+     * more than half of the file).
+     */
+    public static long COMPACT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Whether new instances should memory-map the file for reading (otherwise positional reads are used).
+     */
+    public static boolean USE_MEMORY_MAPPING = !PlatformUtils.isWindowsPlatform();
+
+    private static final Map<File, CompiledModulesCacheFile> files = new HashMap<File, CompiledModulesCacheFile>();
+
+    /**
+     * @return the cache for the given file (only one instance is kept for each file).
+     */
+    public static CompiledModulesCacheFile get(File file) {
+        file = file.getAbsoluteFile();
+        synchronized (files) {
+            CompiledModulesCacheFile cache = files.get(file);
+            if (cache == null) {
+                cache = new CompiledModulesCacheFile(file);
+                files.put(file, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Docstring which is still in the file (only decoded when requested).
+     */
+    /*default*/ static final class LazyDocStr {
+
+        private final CompiledModulesCacheFile cacheFile;
+        private final int generation;
+        private final long position;
+        private final int length;
+
+        private LazyDocStr(CompiledModulesCacheFile cacheFile, int generation, long position, int length) {
+            this.cacheFile = cacheFile;
+            this.generation = generation;
+            this.position = position;
+            this.length = length;
+        }
+
+        /*default*/ String load() {
+            try {
+                return cacheFile.readString(generation, position, length);
+            } catch (Exception e) {
+                Log.log("Unable to read docstring from: " + cacheFile.file, e);
+                return "";
+            }
+        }
+    }
+
+    private final File file;
+
+    private final Object lock = new Object();
+
+    private final boolean useMemoryMapping;
+
+    /**
+     * Module name -> offset of its record in the file.
+     */
+    private final Map<String, Long> index = new ConcurrentHashMap<String, Long>();
+
+    private FileChannel channel;
+
+    /**
+     * Only used if useMemoryMapping == true.
+     */
+    private volatile MappedByteBuffer mapped;
+
+    /**
+     * The end of the valid contents of the file (where new records are appended).
+     */
+    private long end;
+
+    private boolean opened;
+
+    /**
+     * Incremented when the file is cleared (lazy docstrings from a previous generation are no longer valid).
+     */
+    private volatile int generation;
+
+    /*default*/ CompiledModulesCacheFile(File file) {
+        this.file = file;
+        this.useMemoryMapping = USE_MEMORY_MAPPING;
+    }
+
+    private void ensureOpened() throws IOException {
+        if (opened) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long superseded = scan();
+            if (superseded > COMPACT_THRESHOLD && superseded * 2 > end) {
+                compact();
+            }
+            if (useMemoryMapping) {
+                remap();
+            }
+        } catch (IOException e) {
+            index.clear();
+            try {
+                channel.close();
+            } catch (IOException e1) {
+                //Ignore (already reporting the original error).
+            }
+            channel = null;
+            throw e;
+        }
+        opened = true;
+    }
+
+    /**
+     * Builds the index from the record headers (a truncated/invalid tail is discarded).
+     *
+     * @return the number of bytes taken by superseded records.
+     */
+    private long scan() throws IOException {
+        index.clear();
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size < HEADER_SIZE || readFully(header, 0) != HEADER_SIZE || header.getInt(0) != MAGIC
+                || header.getInt(4) != VERSION) {
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+            end = HEADER_SIZE;
+            return 0;
+        }
+
+        Map<String, Integer> recordSizes = new HashMap<String, Integer>();
+        long superseded = 0;
+        long pos = HEADER_SIZE;
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        while (pos + 4 < size) {
+            buf.clear();
+            int read = readFully(buf, pos);
+            if (read < 5) {
+                break;
+            }
+            int recordSize = buf.getInt(0);
+            if (recordSize <= 0 || pos + 4 + recordSize > size) {
+                break;
+            }
+            buf.position(4);
+            buf.limit(read);
+            String name;
+            try {
+                int nameLen = readVarInt(buf);
+                if (nameLen > buf.remaining()) {
+                    ByteBuffer nameBuf = ByteBuffer.allocate(nameLen);
+                    readFully(nameBuf, pos + buf.position());
+                    name = new String(nameBuf.array(), 0, nameLen, StandardCharsets.UTF_8);
+                } else {
+                    name = new String(buf.array(), buf.position(), nameLen, StandardCharsets.UTF_8);
+                }
+            } catch (Exception e) {
+                break;
+            }
+            Integer previous = recordSizes.put(name, recordSize);
+            if (previous != null) {
+                superseded += 4 + previous;
+            }
+            index.put(name, pos);
+            pos += 4 + recordSize;
+        }
+        end = pos;
+        if (end < size) {
+            channel.truncate(end);
+        }
+        return superseded;
+    }
+
+    /**
+     * Rewrites the file with only the current records.
+     */
+    private void compact() throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        Map<String, Long> newIndex = new HashMap<String, Long>();
+        long newEnd = HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            out.write(header, 0);
+            ByteBuffer sizeBuf = ByteBuffer.allocate(4);
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                long pos = entry.getValue();
+                sizeBuf.clear();
+                readFully(sizeBuf, pos);
+                int total = 4 + sizeBuf.getInt(0);
+                long transferred = 0;
+                while (transferred < total) {
+                    long n = channel.transferTo(pos + transferred, total - transferred, out.position(newEnd
+                            + transferred));
+                    if (n <= 0) {
+                        throw new IOException("Unable to compact: " + file);
+                    }
+                    transferred += n;
+                }
+                newIndex.put(entry.getKey(), newEnd);
+                newEnd += total;
+            }
+        }
+        channel.close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(newIndex);
+        end = newEnd;
+    }
+
+    private void remap() throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    }
+
+    private int readFully(ByteBuffer buf, long pos) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * @return a view of the mapped contents which includes the given position (remapping if it was appended after
+     * the last mapping) or null if the file was cleared in the meanwhile.
+     */
+    private ByteBuffer getContents(int expectedGeneration, long position) throws IOException {
+        MappedByteBuffer m = mapped;
+        if (m == null || position >= m.capacity()) {
+            synchronized (lock) {
+                if (expectedGeneration != generation) {
+                    return null;
+                }
+                ensureOpened();
+                if (mapped == null || position >= mapped.capacity()) {
+                    remap();
+                }
+                m = mapped;
+            }
+        }
+        if (expectedGeneration != generation) {
+            return null;
+        }
+        return m.duplicate();
+    }
+
+    /**
+     * @return a buffer with the record at the given position (index 0 is the record start, the limit is the record
+     * end and it's positioned after the record size) or null if the file was cleared in the meanwhile.
+     */
+    private ByteBuffer getRecord(int expectedGeneration, long position) throws IOException {
+        if (useMemoryMapping) {
+            ByteBuffer contents = getContents(expectedGeneration, position);
+            if (contents == null) {
+                return null;
+            }
+            contents.position((int) position);
+            int recordSize = contents.getInt();
+            contents.limit((int) (position + 4 + recordSize));
+            contents.position((int) position);
+            ByteBuffer record = contents.slice();
+            record.position(4);
+            return record;
+        }
+        synchronized (lock) {
+            if (expectedGeneration != generation) {
+                return null;
+            }
+            ensureOpened();
+            ByteBuffer sizeBuf = ByteBuffer.allocate(4);
+            if (readFully(sizeBuf, position) != 4) {
+                throw new IOException("Unexpected end of file: " + file);
+            }
+            ByteBuffer record = ByteBuffer.allocate(4 + sizeBuf.getInt(0));
+            if (readFully(record, position) != record.capacity()) {
+                throw new IOException("Unexpected end of file: " + file);
+            }
+            record.position(4);
+            return record;
+        }
+    }
+
+    private String readString(int expectedGeneration, long position, int length) throws IOException {
+        if (length == 0) {
+            return "";
+        }
+        if (!useMemoryMapping) {
+            synchronized (lock) {
+                if (expectedGeneration != generation) {
+                    return "";
+                }
+                ensureOpened();
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                if (readFully(buf, position) != length) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+                return new String(buf.array(), 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        ByteBuffer contents = getContents(expectedGeneration, position);
+        if (contents == null) {
+            return "";
+        }
+        contents.position((int) position);
+        byte[] bytes = new byte[length];
+        contents.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a tuple with the file of the module and its tokens (with docstrings lazily loaded) or null if the
+     * given module isn't in the cache.
+     */
+    public Tuple<File, IToken[]> read(String name, IPythonNature nature) {
+        int currGeneration;
+        synchronized (lock) {
+            try {
+                ensureOpened();
+            } catch (IOException e) {
+                Log.log("Unable to open: " + file, e);
+                return null;
+            }
+            currGeneration = generation;
+        }
+        Long recordPos = index.get(name);
+        if (recordPos == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buf = getRecord(currGeneration, recordPos);
+            if (buf == null) {
+                return null;
+            }
+            long start = recordPos;
+
+            readString(buf); //we already have the name (it's only there to build the index).
+            String path = readString(buf);
+            File moduleFile = path.isEmpty() ? null : new File(path);
+
+            int stringsLen = readVarInt(buf);
+            String[] strings = new String[stringsLen];
+            for (int i = 0; i < stringsLen; i++) {
+                //Note intern (we probably have many empty strings -- or the same for parentPackage)
+                strings[i] = ObjectsInternPool.intern(readString(buf));
+            }
+
+            int size = readVarInt(buf);
+            IToken[] toks = new IToken[size];
+            for (int i = 0; i < size; i++) {
+                String rep = strings[readVarInt(buf)];
+                int type = readVarInt(buf);
+                String args = strings[readVarInt(buf)];
+                String parentPackage = strings[readVarInt(buf)];
+                int docOffset = readVarInt(buf);
+                int docLength = readVarInt(buf);
+                CompiledToken tok = new CompiledToken(rep, "", args, parentPackage, type, nature);
+                if (docLength > 0) {
+                    tok.setLazyDocStr(new LazyDocStr(this, currGeneration, start + docOffset, docLength));
+                }
+                toks[i] = tok;
+            }
+            return new Tuple<File, IToken[]>(moduleFile, toks);
+        } catch (Exception e) {
+            Log.log("Unable to read contents of: " + name + " from: " + file, e); //Unable to read: just log it
+            return null;
+        }
+    }
+
+    /**
+     * @return the current generation (incremented whenever the cache is cleared).
+     */
+    /*default*/ int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return whether the given module is in the cache.
+     */
+    public boolean contains(String name) {
+        synchronized (lock) {
+            try {
+                ensureOpened();
+            } catch (IOException e) {
+                Log.log("Unable to open: " + file, e);
+                return false;
+            }
+        }
+        return index.containsKey(name);
+    }
+
+    /**
+     * Adds (or replaces) the tokens of the given module.
+     */
+    public void write(String name, File moduleFile, IToken[] toks) {
+        byte[] record;
+        try {
+            record = createRecord(name, moduleFile, toks);
+        } catch (IOException e) {
+            Log.log(e);
+            return;
+        }
+        synchronized (lock) {
+            try {
+                ensureOpened();
+                if (end + record.length > MAX_FILE_SIZE) {
+                    return;
+                }
+                ByteBuffer buf = ByteBuffer.wrap(record);
+                long pos = end;
+                while (buf.hasRemaining()) {
+                    pos += channel.write(buf, pos);
+                }
+                index.put(name, end);
+                end = pos;
+            } catch (IOException e) {
+                Log.log("Unable to write to: " + file, e);
+            }
+        }
+    }
+
+    private static byte[] createRecord(String name, File moduleFile, IToken[] toks) throws IOException {
+        Map<String, Integer> stringToIndex = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        int size = toks.length;
+        int[] indexes = new int[size * 3];
+        byte[][] docs = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            IToken tok = toks[i];
+            indexes[i * 3] = addString(stringToIndex, strings, tok.getRepresentation());
+            indexes[i * 3 + 1] = addString(stringToIndex, strings, tok.getArgs());
+            indexes[i * 3 + 2] = addString(stringToIndex, strings, tok.getParentPackage());
+            String doc = tok.getDocStr();
+            docs[i] = doc != null ? doc.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+
+        ByteArrayOutputStream tokensOut = new ByteArrayOutputStream();
+        writeString(tokensOut, name);
+        writeString(tokensOut, moduleFile != null ? moduleFile.toString() : "");
+        writeVarInt(tokensOut, strings.size());
+        for (String s : strings) {
+            writeString(tokensOut, s);
+        }
+        writeVarInt(tokensOut, size);
+
+        //The docstrings offsets depend on the size of the tokens section (which depends on the offsets), so,
+        //write the tokens with the offsets relative to the docstrings section and fix it until it's stable.
+        int docsStart = 4;
+        byte[] tokensSection;
+        while (true) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int docOffset = docsStart;
+            for (int i = 0; i < size; i++) {
+                writeVarInt(out, indexes[i * 3]);
+                writeVarInt(out, toks[i].getType());
+                writeVarInt(out, indexes[i * 3 + 1]);
+                writeVarInt(out, indexes[i * 3 + 2]);
+                writeVarInt(out, docOffset);
+                writeVarInt(out, docs[i].length);
+                docOffset += docs[i].length;
+            }
+            tokensSection = out.toByteArray();
+            int newDocsStart = 4 + tokensOut.size() + tokensSection.length;
+            if (newDocsStart == docsStart) {
+                break;
+            }
+            docsStart = newDocsStart;
+        }
+        tokensOut.write(tokensSection);
+        for (byte[] doc : docs) {
+            tokensOut.write(doc);
+        }
+
+        byte[] body = tokensOut.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(4 + body.length);
+        record.putInt(body.length);
+        record.put(body);
+        return record.array();
+    }
+
+    private static int addString(Map<String, Integer> stringToIndex, List<String> strings, String s) {
+        if (s == null) {
+            s = "";
+        }
+        Integer i = stringToIndex.get(s);
+        if (i == null) {
+            i = strings.size();
+            stringToIndex.put(s, i);
+            strings.add(s);
+        }
+        return i;
+    }
+
+    /**
+     * Removes all the contents of the cache (i.e.: when the pythonpath changes).
+     */
+    public void clear() {
+        synchronized (lock) {
+            generation++;
+            index.clear();
+            mapped = null;
+            opened = false;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Log.log(e);
+                }
+                channel = null;
+            }
+            if (file.exists() && !file.delete()) {
+                //i.e.: on Windows the file can't be removed while still mapped (make it invalid so that it's
+                //truncated when opened again).
+                try (FileChannel c = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    c.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+                } catch (IOException e) {
+                    Log.log("Unable to clear: " + file, e);
+                }
+            }
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalStateException("Invalid varint.");
+            }
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = readVarInt(buf);
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+        } else {
+            byte[] bytes = new byte[len];
+            buf.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+}
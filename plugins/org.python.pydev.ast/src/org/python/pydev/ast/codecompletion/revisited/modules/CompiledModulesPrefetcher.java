@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell;
+import org.python.pydev.core.ICodeCompletionASTManager;
+import org.python.pydev.core.IModulesManager;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.ISystemModulesManager;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Warms the CompiledModulesCacheFile in the background for compiled modules which are probably going to be
+ * requested (i.e.: the ones imported in open editors), so that the first code-completion for those doesn't have
+ * to wait for the shell to introspect each module.
+ *
+ * Modules are requested to the shell in batches of MAX_MODULES_PER_REQUEST (a single round trip for each batch).
+ * The shell serves one request at a time, so, a foreground request (i.e.: a code-completion) which needs the shell
+ * while a batch is being introspected waits for that batch to finish: batches are kept small and the next batch is
+ * only sent when no other request is waiting for the shell.
+ *
+ * The creation lock of each module (see IModulesManager.getCompiledModuleCreationLock) is only held while its
+ * results are written to the cache (so, a CompiledModule being created concurrently either finds the prefetched
+ * info in the cache or requests it itself).
+ */
+public final class CompiledModulesPrefetcher {
+
+    public static int MAX_MODULES_PER_REQUEST = 5;
+
+    /**
+     * Time to wait before checking again whether the shell is still needed by some other request.
+     */
+    public static long YIELD_MILLIS = 50;
+
+    public static long PREFETCH_DELAY_MILLIS = 500;
+
+    private static CompiledModulesPrefetcher singleton;
+
+    public synchronized static CompiledModulesPrefetcher getSingleton() {
+        if (singleton == null) {
+            singleton = new CompiledModulesPrefetcher();
+        }
+        return singleton;
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * Nature -> modules still to be prefetched.
+     */
+    private final Map<IPythonNature, Set<String>> pending = new HashMap<IPythonNature, Set<String>>();
+
+    /**
+     * Cache file -> tuple(generation, modules already requested). Used so that the modules which can't be
+     * introspected (or are too small to be cached) aren't requested again (until the cache is cleared).
+     */
+    private final Map<CompiledModulesCacheFile, Tuple<Integer, Set<String>>> requested = new HashMap<>();
+
+    private final Job job = new Job("PyDev: Prefetch compiled modules") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            prefetchPending(monitor);
+            return Status.OK_STATUS;
+        }
+    };
+
+    private CompiledModulesPrefetcher() {
+        job.setPriority(Job.DECORATE);
+        job.setSystem(true);
+    }
+
+    /**
+     * Schedules the given modules to be prefetched (only the ones which are compiled modules for the interpreter
+     * of the nature and which are still not in the cache are actually requested).
+     */
+    public void prefetch(IPythonNature nature, Collection<String> moduleNames) {
+        if (!CompiledModule.COMPILED_MODULES_ENABLED || nature == null || moduleNames.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            Set<String> set = pending.get(nature);
+            if (set == null) {
+                set = new LinkedHashSet<String>();
+                pending.put(nature, set);
+            }
+            set.addAll(moduleNames);
+        }
+        job.schedule(PREFETCH_DELAY_MILLIS);
+    }
+
+    private void prefetchPending(IProgressMonitor monitor) {
+        while (!monitor.isCanceled()) {
+            IPythonNature nature;
+            Set<String> names;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Map.Entry<IPythonNature, Set<String>> entry = pending.entrySet().iterator().next();
+                nature = entry.getKey();
+                names = entry.getValue();
+                pending.remove(nature);
+            }
+            try {
+                prefetch(nature, names, monitor);
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void prefetch(IPythonNature nature, Set<String> names, IProgressMonitor monitor) throws Exception {
+        ICodeCompletionASTManager astManager = nature.getAstManager();
+        if (astManager == null) {
+            return;
+        }
+        IModulesManager modulesManager = astManager.getModulesManager();
+        ISystemModulesManager systemModulesManager = modulesManager.getSystemModulesManager();
+        CompiledModulesCacheFile cacheFile = CompiledModule.getCacheFile(systemModulesManager);
+        if (cacheFile == null) {
+            return;
+        }
+
+        String[] builtins = systemModulesManager.getBuiltins();
+        List<String> toFetch = new ArrayList<String>();
+        synchronized (lock) {
+            Tuple<Integer, Set<String>> alreadyRequested = requested.get(cacheFile);
+            int generation = cacheFile.getGeneration();
+            if (alreadyRequested == null || alreadyRequested.o1 != generation) {
+                alreadyRequested = new Tuple<Integer, Set<String>>(generation, new HashSet<String>());
+                requested.put(cacheFile, alreadyRequested);
+            }
+            for (String name : names) {
+                if (isForcedBuiltin(builtins, name) && !cacheFile.contains(name)
+                        && alreadyRequested.o2.add(name)) {
+                    toFetch.add(name);
+                }
+            }
+        }
+
+        List<String> pythonpath = CompiledModule.getCompletePythonpath(modulesManager, nature);
+        for (int i = 0; i < toFetch.size(); i += MAX_MODULES_PER_REQUEST) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            List<String> batch = toFetch.subList(i, Math.min(toFetch.size(), i + MAX_MODULES_PER_REQUEST));
+            AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
+            while (shell.hasWaitingRequests()) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                Thread.sleep(YIELD_MILLIS);
+            }
+            Map<String, Tuple<String, List<String[]>>> results = shell.getImportCompletionsBatch(batch, pythonpath);
+
+            for (Map.Entry<String, Tuple<String, List<String[]>>> entry : results.entrySet()) {
+                String name = entry.getKey();
+                synchronized (systemModulesManager.getCompiledModuleCreationLock(name)) {
+                    if (!cacheFile.contains(name)) {
+                        Tuple<File, IToken[]> info = CompiledModule.createTokens(name, entry.getValue(),
+                                systemModulesManager.getNature());
+                        if (CompiledModule.isCacheable(info)) {
+                            cacheFile.write(name, info.o1, info.o2);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isForcedBuiltin(String[] builtins, String name) {
+        if (builtins == null) {
+            return false;
+        }
+        for (String builtin : builtins) {
+            if (name.startsWith(builtin)
+                    && (name.length() == builtin.length() || name.charAt(builtin.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
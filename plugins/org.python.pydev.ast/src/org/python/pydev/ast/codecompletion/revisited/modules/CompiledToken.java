@@ -11,6 +11,9 @@
  */
 package org.python.pydev.ast.codecompletion.revisited.modules;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
 import org.python.pydev.ast.codecompletion.revisited.AbstractToken;
 import org.python.pydev.core.IPythonNature;
 
@@ -25,4 +28,34 @@ public class CompiledToken extends AbstractToken {
         super(rep, doc, args, parentPackage, type, nature);
     }
 
+    /**
+     * If set, the docstring is still in the CompiledModulesCacheFile (and is only loaded when requested).
+     */
+    private transient volatile CompiledModulesCacheFile.LazyDocStr lazyDocStr;
+
+    /*default*/ void setLazyDocStr(CompiledModulesCacheFile.LazyDocStr lazyDocStr) {
+        this.lazyDocStr = lazyDocStr;
+    }
+
+    @Override
+    public String getDocStr() {
+        CompiledModulesCacheFile.LazyDocStr lazy = lazyDocStr;
+        if (lazy != null) {
+            this.doc = lazy.load();
+            lazyDocStr = null;
+        }
+        return doc;
+    }
+
+    @Override
+    public void setDocStr(String docStr) {
+        lazyDocStr = null;
+        super.setDocStr(docStr);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getDocStr(); //make sure the lazy docstring is loaded before writing.
+        out.defaultWriteObject();
+    }
+
 }
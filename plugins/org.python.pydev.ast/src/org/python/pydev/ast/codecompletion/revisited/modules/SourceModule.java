@@ -135,6 +135,11 @@ public class SourceModule extends AbstractModule implements ISourceModule {
      */
     private long lastModified;
 
+    /**
+     * The length of the source this module was created from (-1 if not known).
+     */
+    private final int sourceLength;
+
     /**
      * The object may be a SourceToken or a List<SourceToken>
      */
@@ -399,7 +404,16 @@ public class SourceModule extends AbstractModule implements ISourceModule {
      * @param n
      */
     public SourceModule(String name, File f, SimpleNode n, Throwable parseError, IPythonNature nature) {
+        this(name, f, n, parseError, nature, -1);
+    }
+
+    /**
+     * @param sourceLength the length of the source the ast was created from (-1 if not known).
+     */
+    public SourceModule(String name, File f, SimpleNode n, Throwable parseError, IPythonNature nature,
+            int sourceLength) {
         super(name);
+        this.sourceLength = sourceLength;
         this.ast = n;
         this.file = f;
         this.parseError = parseError;
@@ -1443,6 +1457,13 @@ public class SourceModule extends AbstractModule implements ISourceModule {
         return FileUtils.lastModified(this.file) == this.lastModified;
     }
 
+    /**
+     * @return the length of the source this module was created from (-1 if not known).
+     */
+    public int getSourceLength() {
+        return sourceLength;
+    }
+
     @Override
     public SimpleNode getAst() {
         return ast;
@@ -20,7 +20,10 @@ import java.net.URLEncoder;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -101,6 +104,11 @@ public abstract class AbstractShell {
      */
     private final Semaphore semaphore = new Semaphore(1);
 
+    /**
+     * Number of threads waiting to acquire the semaphore (so that background requests may yield to them).
+     */
+    private final AtomicInteger waitingToAcquire = new AtomicInteger();
+
     private final Object ioLock = new Object();
 
     private static void dbg(String string, int priority) {
@@ -666,7 +674,12 @@ public abstract class AbstractShell {
     @SuppressWarnings("unused")
     private AutoCloseable acquire(String msg) {
         final Timer timer = new Timer();
-        semaphore.acquire();
+        waitingToAcquire.incrementAndGet();
+        try {
+            semaphore.acquire();
+        } finally {
+            waitingToAcquire.decrementAndGet();
+        }
         if (DEBUG_SHELL >= 1) {
             String name = Thread.currentThread().getName();
             msg += " (" + name + ")";
@@ -685,6 +698,14 @@ public abstract class AbstractShell {
         };
     }
 
+    /**
+     * @return whether some request is waiting for the shell to become available (requests done in the
+     * background should yield the shell to those).
+     */
+    public boolean hasWaitingRequests() {
+        return waitingToAcquire.get() > 0;
+    }
+
     private FastStringBuffer writeAndGetResults(String... str) throws CoreException {
 
         try {
@@ -759,6 +780,27 @@ public abstract class AbstractShell {
         return ShellConvert.convertStringToCompletions(read);
     }
 
+    /**
+     * Gets the completions for many modules in a single request (modules which can't be introspected are not
+     * in the result).
+     *
+     * @return a map with the module name -> tuple(module file, list with new String[]{token, description, args, type})
+     * @see #getImportCompletions(String, List)
+     */
+    public Map<String, Tuple<String, List<String[]>>> getImportCompletionsBatch(Collection<String> modules,
+            List<String> pythonpath) throws Exception {
+        FastStringBuffer read = null;
+
+        String str = URLEncoder.encode(StringUtils.join("\n", modules), ENCODING_UTF_8);
+
+        try (AutoCloseable permit = acquire(
+                StringUtils.join("", "getImportCompletionsBatch: ", String.valueOf(modules.size())))) {
+            internalChangePythonPath(pythonpath);
+            read = this.writeAndGetResults("@@IMPORTS_BATCH:", str, "\nEND@@");
+        }
+        return ShellConvert.convertStringToBatchCompletions(read);
+    }
+
     /**
      * @param moduleName the name of the module where the token is defined
      * @param token the token we are looking for
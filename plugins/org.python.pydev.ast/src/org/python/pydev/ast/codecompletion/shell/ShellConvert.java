@@ -3,7 +3,9 @@ package org.python.pydev.ast.codecompletion.shell;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.python.pydev.core.IToken;
@@ -89,4 +91,36 @@ import org.python.pydev.shared_core.structure.Tuple;
         }
         return new Tuple<String, List<String[]>>(file, list);
     }
+
+    /**
+     * @param read the contents in the format: (quoted module name:quoted completions,...) where the completions
+     * are in the format expected by convertStringToCompletions.
+     * @return a map with the module name -> completions for the module.
+     */
+    static/*default*/Map<String, Tuple<String, List<String[]>>> convertStringToBatchCompletions(
+            FastStringBuffer read) throws IOException {
+        Map<String, Tuple<String, List<String[]>>> ret = new HashMap<String, Tuple<String, List<String[]>>>();
+        if (read == null) {
+            return ret;
+        }
+        String string = read.toString().trim();
+        if (string.startsWith("(")) {
+            string = string.substring(1);
+        }
+        if (string.endsWith(")")) {
+            string = string.substring(0, string.length() - 1);
+        }
+        StringTokenizer tokenizer = new StringTokenizer(string, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            int i = token.indexOf(':');
+            if (i == -1) {
+                continue;
+            }
+            String moduleName = URLDecoder.decode(token.substring(0, i), ENCODING_UTF_8);
+            String completions = URLDecoder.decode(token.substring(i + 1), ENCODING_UTF_8);
+            ret.put(moduleName, convertStringToCompletions(new FastStringBuffer(completions, 0)));
+        }
+        return ret;
+    }
 }
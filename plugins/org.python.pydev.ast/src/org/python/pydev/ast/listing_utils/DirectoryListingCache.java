@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.listing_utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the contents of directories along with the directory modification time, so that a directory which
+ * wasn't changed doesn't need to be listed again (i.e.: a single stat is done for the directory instead of
+ * listing it and checking the type of each of its children).
+ *
+ * Note that the modification time of a directory changes when children are added, removed or renamed (which is
+ * what we're interested in), not when the contents of a child file change.
+ *
+ * The cache is thread-safe (it may be used by multiple threads listing different folders) and may be persisted
+ * (so that it's available across restarts).
+ */
+public final class DirectoryListingCache {
+
+    private static final int MAGIC = 0x50594443; // "PYDC"
+
+    private static final int VERSION = 1;
+
+    public static final byte TYPE_OTHER = 0;
+    public static final byte TYPE_FILE = 1;
+    public static final byte TYPE_DIRECTORY = 2;
+
+    /**
+     * Directories changed less than this time ago aren't cached (as the filesystem may not have the precision to
+     * detect a new change done in the same time slot).
+     */
+    private static final long MIN_AGE_TO_CACHE_MILLIS = 2000;
+
+    /**
+     * The listing of a directory.
+     */
+    public static final class Listing {
+        public final File[] children;
+
+        /**
+         * One of TYPE_OTHER, TYPE_FILE, TYPE_DIRECTORY for each child.
+         */
+        public final byte[] types;
+
+        private Listing(File[] children, byte[] types) {
+            this.children = children;
+            this.types = types;
+        }
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+        private final String[] names;
+        private final byte[] types;
+        private volatile int lastUsedWalk;
+
+        private Entry(long lastModified, String[] names, byte[] types, int lastUsedWalk) {
+            this.lastModified = lastModified;
+            this.names = names;
+            this.types = types;
+            this.lastUsedWalk = lastUsedWalk;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicInteger currentWalk = new AtomicInteger();
+
+    /**
+     * Should be called before starting to walk the directories.
+     *
+     * @return an id to be passed to removeNotUsedSince after the walk (to remove entries of directories which are
+     * no longer reached).
+     */
+    public int startWalk() {
+        return currentWalk.incrementAndGet();
+    }
+
+    /**
+     * Removes the entries which weren't accessed in the walk with the given id (nor in any later walk).
+     */
+    public void removeNotUsedSince(int walk) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().lastUsedWalk < walk) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of directories in the cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the listing of the given directory (or null if it's not a directory or can't be listed).
+     */
+    public Listing list(File dir) {
+        String path = dir.getPath();
+        long lastModified = dir.lastModified();
+        if (lastModified == 0) {
+            // Does not exist (or some I/O error happened).
+            entries.remove(path);
+            return null;
+        }
+        int walk = currentWalk.get();
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified == lastModified) {
+            entry.lastUsedWalk = walk;
+            File[] children = new File[entry.names.length];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = new File(dir, entry.names[i]);
+            }
+            return new Listing(children, entry.types);
+        }
+
+        String[] names = dir.list();
+        if (names == null) {
+            entries.remove(path);
+            return null;
+        }
+        File[] children = new File[names.length];
+        byte[] types = new byte[names.length];
+        for (int i = 0; i < names.length; i++) {
+            File child = new File(dir, names[i]);
+            children[i] = child;
+            if (child.isDirectory()) {
+                types[i] = TYPE_DIRECTORY;
+            } else if (child.isFile()) {
+                types[i] = TYPE_FILE;
+            } else {
+                types[i] = TYPE_OTHER;
+            }
+        }
+        if (System.currentTimeMillis() - lastModified > MIN_AGE_TO_CACHE_MILLIS) {
+            entries.put(path, new Entry(lastModified, names, types, walk));
+        } else {
+            entries.remove(path);
+        }
+        return new Listing(children, types);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Saves the current contents to the given file.
+     */
+    public void saveToFile(File file) throws IOException {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // Note: the entries may change while writing (so, the size is not known beforehand).
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                out.writeBoolean(true);
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeInt(entry.names.length);
+                for (int i = 0; i < entry.names.length; i++) {
+                    out.writeUTF(entry.names[i]);
+                    out.writeByte(entry.types[i]);
+                }
+            }
+            out.writeBoolean(false);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads the contents previously saved with saveToFile (replacing the current contents).
+     */
+    public void loadFromFile(File file) throws IOException {
+        entries.clear();
+        int walk = currentWalk.get();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unexpected directory listing cache format in: " + file);
+            }
+            while (in.readBoolean()) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                int size = in.readInt();
+                String[] names = new String[size];
+                byte[] types = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = in.readUTF();
+                    types[i] = in.readByte();
+                }
+                entries.put(path, new Entry(lastModified, names, types, walk));
+            }
+        } catch (IOException e) {
+            entries.clear();
+            throw e;
+        }
+    }
+}
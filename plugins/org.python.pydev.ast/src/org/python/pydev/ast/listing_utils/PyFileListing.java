@@ -11,9 +11,20 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -194,6 +205,363 @@ public class PyFileListing {
         return getPyFilesBelow(file, filter, monitor, true);
     }
 
+    /**
+     * A filter which may also be checked when the type of the file is already known (i.e.: when the listing comes
+     * from a DirectoryListingCache, so, no additional stat is needed for each file).
+     */
+    public interface IFileFilterWithKnownType extends FileFilter {
+
+        /**
+         * @param isDirectory true if the file is a directory and false if it's a regular file.
+         */
+        boolean accept(File file, boolean isDirectory);
+    }
+
+    /**
+     * Pool used to list folders in parallel (the listing is mostly bound by the filesystem, so, it's interesting
+     * to have some threads even in machines with few cores).
+     */
+    private static volatile ForkJoinPool listingPool;
+
+    private static ForkJoinPool getListingPool() {
+        ForkJoinPool pool = listingPool;
+        if (pool == null) {
+            synchronized (PyFileListing.class) {
+                pool = listingPool;
+                if (pool == null) {
+                    int parallelism = Math.max(4, Math.min(8, Runtime.getRuntime().availableProcessors() * 2));
+                    pool = listingPool = new ForkJoinPool(parallelism);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * State shared among the tasks of a parallel listing.
+     *
+     * Note: the progress monitor is only accessed by the thread which requested the listing (the workers just
+     * update the state, which is then reported to the monitor).
+     */
+    private static final class ParallelListingState {
+        private volatile boolean canceled;
+        private final AtomicInteger found = new AtomicInteger();
+        private volatile File lastFound;
+        private final DirectoryListingCache listingCache;
+
+        private ParallelListingState(DirectoryListingCache listingCache) {
+            this.listingCache = listingCache;
+        }
+    }
+
+    /**
+     * The contents found in a folder (kept as a tree so that the results can be flattened in the same order
+     * the sequential listing would provide).
+     */
+    private static final class FolderContents {
+        private final List<PyFileInfo> pyFileInfos = new ArrayList<PyFileInfo>();
+        private File folder;
+        private List<FolderContents> subFolders;
+
+        /**
+         * Set while this is a placeholder for a symlinked folder which still wasn't listed (see: resolveLinks).
+         */
+        private FolderListingTask pendingLink;
+        private File linkCanonical;
+    }
+
+    private static final class FolderListingTask extends RecursiveTask<FolderContents> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final FileFilter filter;
+        private final int level;
+        private final String currModuleRep;
+        private final ParallelListingState state;
+
+        /**
+         * The canonical folders listed for the root being listed.
+         */
+        private final Set<File> canonicalFolders;
+
+        /**
+         * The canonical path of the parent folder (null when this task starts the listing of a root or of a
+         * symlinked folder).
+         */
+        private final File parentCanonical;
+
+        private FolderListingTask(File file, FileFilter filter, int level, String currModuleRep,
+                ParallelListingState state, Set<File> canonicalFolders, File parentCanonical) {
+            this.file = file;
+            this.filter = filter;
+            this.level = level;
+            this.currModuleRep = currModuleRep;
+            this.state = state;
+            this.canonicalFolders = canonicalFolders;
+            this.parentCanonical = parentCanonical;
+        }
+
+        @Override
+        protected FolderContents compute() {
+            FolderContents ret = new FolderContents();
+            if (state.canceled) {
+                return ret;
+            }
+            String moduleRep = currModuleRep;
+            if (level != 0) {
+                FastStringBuffer newModuleRep = new FastStringBuffer(currModuleRep, 128);
+                if (newModuleRep.length() != 0) {
+                    newModuleRep.append('.');
+                }
+                newModuleRep.append(file.getName());
+                moduleRep = newModuleRep.toString();
+            }
+
+            File canonicalizedDir;
+            try {
+                canonicalizedDir = file.getCanonicalFile();
+            } catch (IOException e) {
+                // Too many levels of symbolic links (see comment in the sequential version).
+                return ret;
+            }
+            if (parentCanonical != null && !canonicalizedDir.equals(new File(parentCanonical, file.getName()))) {
+                // A symlinked folder: it's only listed after the other folders (see: resolveLinks), so, the
+                // folder which is listed doesn't depend on the timing of the threads.
+                ret.pendingLink = new FolderListingTask(file, filter, level, currModuleRep, state,
+                        canonicalFolders, null);
+                ret.linkCanonical = canonicalizedDir;
+                return ret;
+            }
+            canonicalFolders.add(canonicalizedDir);
+
+            File[] files;
+            byte[] types = null;
+            if (state.listingCache != null) {
+                DirectoryListingCache.Listing listing = state.listingCache.list(file);
+                if (listing == null) {
+                    return ret;
+                }
+                files = listing.children;
+                types = listing.types;
+            } else if (filter != null) {
+                files = file.listFiles(filter);
+            } else {
+                files = file.listFiles();
+            }
+            if (files == null) {
+                return ret;
+            }
+
+            List<FolderListingTask> foldersLater = new ArrayList<FolderListingTask>();
+            for (int i = 0; i < files.length; i++) {
+                File file2 = files[i];
+                if (state.canceled) {
+                    break;
+                }
+                boolean isFile;
+                if (types != null) {
+                    // Listing from the cache: the filter still needs to be applied.
+                    byte type = types[i];
+                    if (type == DirectoryListingCache.TYPE_OTHER) {
+                        continue;
+                    }
+                    isFile = type == DirectoryListingCache.TYPE_FILE;
+                    if (filter instanceof IFileFilterWithKnownType) {
+                        if (!((IFileFilterWithKnownType) filter).accept(file2, !isFile)) {
+                            continue;
+                        }
+                    } else if (filter != null && !filter.accept(file2)) {
+                        continue;
+                    }
+                } else {
+                    isFile = file2.isFile();
+                }
+                if (isFile) {
+                    ret.pyFileInfos.add(new PyFileInfo(file2, moduleRep));
+                    state.found.incrementAndGet();
+                    state.lastFound = file2;
+
+                } else if (types != null || file2.isDirectory()) {
+                    foldersLater.add(new FolderListingTask(file2, filter, level + 1, moduleRep, state,
+                            canonicalFolders, canonicalizedDir));
+                }
+            }
+            ret.folder = file;
+
+            if (foldersLater.size() > 0 && !state.canceled) {
+                ret.subFolders = new ArrayList<FolderContents>(foldersLater.size());
+                for (FolderListingTask task : invokeAll(foldersLater)) {
+                    ret.subFolders.add(task.join());
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Lists the symlinked folders found in the given contents (which are placeholders until then).
+     *
+     * The links are handled one at a time ordered by their path and a link is only listed if its canonical folder
+     * wasn't listed yet. As the folders which are not symlinks are all listed before, they're preferred over the
+     * links (and among links to the same folder, the one with the lexicographically first path is listed).
+     */
+    private static void resolveLinks(FolderContents root, ParallelListingState state) {
+        PriorityQueue<FolderContents> pending = new PriorityQueue<FolderContents>(11,
+                new Comparator<FolderContents>() {
+
+                    @Override
+                    public int compare(FolderContents o1, FolderContents o2) {
+                        return o1.pendingLink.file.compareTo(o2.pendingLink.file);
+                    }
+                });
+        addPendingLinks(root, pending);
+        while (!pending.isEmpty() && !state.canceled) {
+            FolderContents placeholder = pending.poll();
+            FolderListingTask task = placeholder.pendingLink;
+            placeholder.pendingLink = null;
+            // Note: also skips links to the folder itself or to a parent folder (symlink loops).
+            if (task.canonicalFolders.add(placeholder.linkCanonical)) {
+                FolderContents contents = task.invoke();
+                placeholder.pyFileInfos.addAll(contents.pyFileInfos);
+                placeholder.folder = contents.folder;
+                placeholder.subFolders = contents.subFolders;
+                addPendingLinks(placeholder, pending);
+            }
+        }
+    }
+
+    private static void addPendingLinks(FolderContents root, Collection<FolderContents> pending) {
+        // Iterative (the structure could be deep).
+        LinkedList<FolderContents> stack = new LinkedList<FolderContents>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            FolderContents contents = stack.pop();
+            if (contents.pendingLink != null) {
+                pending.add(contents);
+            } else if (contents.subFolders != null) {
+                for (FolderContents sub : contents.subFolders) {
+                    stack.push(sub);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as getPyFilesBelow(file, filter, monitor) for multiple folders, but the folders (and their sub-folders)
+     * are listed in parallel.
+     *
+     * @param roots the folders to be listed.
+     * @param filters the filter for each folder.
+     * @return the listing for each of the passed roots (null if the root is not a directory).
+     */
+    public static PyFileListing[] getPyFilesBelowInParallel(File[] roots, FileFilter[] filters,
+            IProgressMonitor monitor) {
+        return getPyFilesBelowInParallel(roots, filters, monitor, null);
+    }
+
+    /**
+     * Same as getPyFilesBelowInParallel(roots, filters, monitor), but the given cache is used to get the contents
+     * of the folders (so, only the folders changed since they were cached are actually listed).
+     *
+     * @param listingCache may be null (in which case all the folders are listed).
+     */
+    public static PyFileListing[] getPyFilesBelowInParallel(File[] roots, FileFilter[] filters,
+            IProgressMonitor monitor, DirectoryListingCache listingCache) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        final ParallelListingState state = new ParallelListingState(listingCache);
+        final List<FolderListingTask> tasks = new ArrayList<FolderListingTask>(roots.length);
+        for (int i = 0; i < roots.length; i++) {
+            if (roots[i].isDirectory()) {
+                tasks.add(new FolderListingTask(roots[i], filters[i], 0, "", state,
+                        ConcurrentHashMap.<File> newKeySet(), null));
+            } else {
+                tasks.add(null);
+            }
+        }
+
+        ForkJoinTask<?> all = getListingPool().submit(new Runnable() {
+
+            @Override
+            public void run() {
+                List<FolderListingTask> toInvoke = new ArrayList<FolderListingTask>(tasks.size());
+                for (FolderListingTask task : tasks) {
+                    if (task != null) {
+                        toInvoke.add(task);
+                    }
+                }
+                ForkJoinTask.invokeAll(toInvoke);
+                for (FolderListingTask task : toInvoke) {
+                    resolveLinks(task.join(), state);
+                }
+            }
+        });
+
+        // Wait for the listing reporting the progress (and checking for cancellation) in this thread.
+        FastStringBuffer buf = new FastStringBuffer(128);
+        int reported = 0;
+        while (true) {
+            try {
+                all.get(50, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                if (monitor.isCanceled()) {
+                    state.canceled = true;
+                }
+                int found = state.found.get();
+                if (found != reported) {
+                    monitor.worked(found - reported);
+                    reported = found;
+                    File lastFound = state.lastFound;
+                    if (lastFound != null) {
+                        monitor.setTaskName(buf.clear().append("Found:").append(lastFound.toString()).toString());
+                    }
+                }
+            } catch (InterruptedException e) {
+                state.canceled = true;
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        PyFileListing[] ret = new PyFileListing[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            FolderListingTask task = tasks.get(i);
+            // Note: the links are resolved after the tasks finish, so, also check that everything finished.
+            if (task != null && all.isDone() && task.isDone() && !task.isCompletedAbnormally()) {
+                PyFileListing result = new PyFileListing();
+                result.addFolderContents(task.join());
+                ret[i] = result;
+            } else if (task != null) {
+                ret[i] = new PyFileListing(); // interrupted before finishing
+            }
+        }
+        return ret;
+    }
+
+    private void addFolderContents(FolderContents root) {
+        // Iterative (the structure could be deep).
+        LinkedList<FolderContents> stack = new LinkedList<FolderContents>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            FolderContents contents = stack.pop();
+            pyFileInfos.addAll(contents.pyFileInfos);
+            if (contents.folder != null) {
+                foldersFound.add(contents.folder);
+            }
+            List<FolderContents> subFolders = contents.subFolders;
+            if (subFolders != null) {
+                for (int i = subFolders.size() - 1; i >= 0; i--) {
+                    stack.push(subFolders.get(i));
+                }
+            }
+        }
+    }
+
     /**
      * @param includeDirs determines if we can include subdirectories
      * @return a file filter only for python files (and other dirs if specified)
@@ -187,6 +187,9 @@ CMD_GET_EXCEPTION_DETAILS = 155
 
 CMD_SUSPEND_ON_BREAKPOINT_EXCEPTION = 156
 
+# Gets the contents of many variables (and optionally of the containers inside them) in a single request.
+CMD_GET_VARIABLES_BATCH = 157
+
 CMD_REDIRECT_OUTPUT = 200
 CMD_GET_NEXT_STATEMENT_TARGETS = 201
 CMD_SET_PROJECT_ROOTS = 202
@@ -255,6 +258,7 @@ ID_TO_MEANING = {
     '154': 'CMD_STOP_ON_START',
     '155': 'CMD_GET_EXCEPTION_DETAILS',
     '156': 'CMD_SUSPEND_ON_BREAKPOINT_EXCEPTION',
+    '157': 'CMD_GET_VARIABLES_BATCH',
 
     '200': 'CMD_REDIRECT_OUTPUT',
     '201': 'CMD_GET_NEXT_STATEMENT_TARGETS',
@@ -902,6 +906,12 @@ class NetCommandFactory:
             return self.make_error_message(seq, get_exception_traceback_str())
 
 
+    def make_get_variables_batch_message(self, seq, payload):
+        try:
+            return NetCommand(CMD_GET_VARIABLES_BATCH, seq, payload)
+        except Exception:
+            return self.make_error_message(seq, get_exception_traceback_str())
+
     def make_get_array_message(self, seq, payload):
         try:
             return NetCommand(CMD_GET_ARRAY, seq, payload)
@@ -1250,6 +1260,82 @@ class InternalGetVariable(InternalThreadCommand):
             dbg.writer.add_command(cmd)
 
 
+#=======================================================================================================================
+# InternalGetVariablesBatch
+#=======================================================================================================================
+class InternalGetVariablesBatch(InternalThreadCommand):
+    """ gets the contents of many variables (and of the containers inside them up to the given depth) """
+
+    # Upper bound on the number of containers resolved in a single request.
+    MAX_CONTAINERS = 200
+
+    def __init__(self, seq, thread_id, depth, max_items, locators):
+        self.sequence = seq
+        self.thread_id = thread_id
+        self.depth = depth
+        self.max_items = max_items
+        self.locators = locators
+
+    def _is_container(self, val):
+        try:
+            return val.__class__ != pydevd_xml.ExceptionOnEvaluate and pydevd_xml.get_type(val)[2] is not None
+        except:
+            return False
+
+    def do_it(self, dbg):
+        """ Writes <vars locator="..."><var .../>*</vars> for each resolved container """
+        try:
+            xml = StringIO.StringIO()
+            xml.write("<xml>")
+            pending = [(locator, 1) for locator in self.locators]
+            resolved = 0
+            while pending and resolved < self.MAX_CONTAINERS:
+                locator, level = pending.pop(0)
+                resolved += 1
+                quoted_locator = pydevd_xml.make_valid_xml_value(quote(locator, '/_'))
+                try:
+                    thread_id, frame_id, scopeattrs = locator.split('\t', 2)
+                    if scopeattrs.find('\t') != -1:  # there are attributes beyond scope
+                        scope, attrs = scopeattrs.split('\t', 1)
+                    else:
+                        scope, attrs = (scopeattrs, None)
+
+                    _typeName, val_dict = pydevd_vars.resolve_compound_variable_fields(thread_id, frame_id, scope, attrs)
+                    if val_dict is None:
+                        val_dict = {}
+
+                    keys = dict_keys(val_dict)
+                    if len(keys) > self.max_items:
+                        # Too big to be prefetched: the client gets it with a CMD_GET_VARIABLE if expanded.
+                        xml.write('<vars locator="%s" error="True"></vars>' % (quoted_locator,))
+                        continue
+
+                    if not (_typeName == "OrderedDict" or val_dict.__class__.__name__ == "OrderedDict" or IS_PY36_OR_GREATER):
+                        keys.sort(key=compare_object_attrs_key)
+
+                    contents = ['<vars locator="%s">' % (quoted_locator,)]
+                    for k in keys:
+                        val = val_dict[k]
+                        evaluate_full_value = pydevd_xml.should_evaluate_full_value(val)
+                        contents.append(pydevd_xml.var_to_xml(val, k, evaluate_full_value=evaluate_full_value))
+                        if level < self.depth and self._is_container(val):
+                            pending.append((locator + '\t' + to_string(k), level + 1))
+                    contents.append('</vars>')
+                    xml.write(''.join(contents))
+                except Exception:
+                    # The client falls back to getting this container with a CMD_GET_VARIABLE.
+                    xml.write('<vars locator="%s" error="True"></vars>' % (quoted_locator,))
+
+            xml.write("</xml>")
+            cmd = dbg.cmd_factory.make_get_variables_batch_message(self.sequence, xml.getvalue())
+            xml.close()
+            dbg.writer.add_command(cmd)
+        except Exception:
+            cmd = dbg.cmd_factory.make_error_message(
+                self.sequence, "Error resolving variables %s" % (get_exception_traceback_str(),))
+            dbg.writer.add_command(cmd)
+
+
 #=======================================================================================================================
 # InternalGetArray
 #=======================================================================================================================
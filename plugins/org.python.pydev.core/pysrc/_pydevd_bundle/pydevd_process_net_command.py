@@ -21,7 +21,8 @@ from _pydevd_bundle.pydevd_comm import (CMD_RUN, CMD_VERSION, CMD_LIST_THREADS,
     CMD_SHOW_RETURN_VALUES, ID_TO_MEANING, CMD_GET_DESCRIPTION, InternalGetDescription, InternalLoadFullValue,
     CMD_LOAD_FULL_VALUE, CMD_REDIRECT_OUTPUT, CMD_GET_NEXT_STATEMENT_TARGETS, InternalGetNextStatementTargets, CMD_SET_PROJECT_ROOTS,
     CMD_GET_THREAD_STACK, CMD_THREAD_DUMP_TO_STDERR, CMD_STOP_ON_START, CMD_GET_EXCEPTION_DETAILS, NetCommand,
-    CMD_SET_PROTOCOL, CMD_SUSPEND_ON_BREAKPOINT_EXCEPTION)
+    CMD_SET_PROTOCOL, CMD_SUSPEND_ON_BREAKPOINT_EXCEPTION, CMD_GET_VARIABLES_BATCH, InternalGetVariablesBatch,
+    unquote_plus)
 from _pydevd_bundle.pydevd_constants import (get_thread_id, IS_PY3K, DebugInfoHolder, dict_keys, STATE_RUN,
     NEXT_VALUE_SEPARATOR, IS_WINDOWS)
 from _pydevd_bundle.pydevd_additional_thread_info import set_additional_thread_info
@@ -294,6 +295,24 @@ def process_net_command(py_db, cmd_id, seq, text):
                 except:
                     traceback.print_exc()
 
+            elif cmd_id == CMD_GET_VARIABLES_BATCH:
+                # we received some command to get many variables at once
+                # the text is: depth\tmax_items\tquoted_locator*
+                # (each locator is: thread_id\tframe_id\tFRAME|GLOBAL\tattributes*)
+                try:
+                    splitted = text.split('\t')
+                    depth = int(splitted[0])
+                    max_items = int(splitted[1])
+                    locators = [unquote_plus(locator) for locator in splitted[2:] if locator]
+                    thread_id = locators[0].split('\t', 1)[0]
+                    int_cmd = InternalGetVariablesBatch(seq, thread_id, depth, max_items, locators)
+                    py_db.post_internal_command(int_cmd, thread_id)
+
+                except:
+                    traceback.print_exc()
+                    # The client is waiting for the response.
+                    cmd = py_db.cmd_factory.make_error_message(seq, "Error getting variables batch: %s" % (text,))
+
             elif cmd_id == CMD_GET_FRAME:
                 thread_id, frame_id, scope = text.split('\t', 2)
 
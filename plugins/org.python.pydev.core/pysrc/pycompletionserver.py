@@ -87,6 +87,7 @@ MSG_JYTHON_INVALID_REQUEST = '@@JYTHON_INVALID_REQUEST'
 MSG_CHANGE_DIR = '@@CHANGE_DIR:'
 MSG_OK = '@@MSG_OK_END@@'
 MSG_IMPORTS = '@@IMPORTS:'
+MSG_IMPORTS_BATCH = '@@IMPORTS_BATCH:'
 MSG_PYTHONPATH = '@@PYTHONPATH_END@@'
 MSG_CHANGE_PYTHONPATH = '@@CHANGE_PYTHONPATH:'
 MSG_JEDI = '@@MSG_JEDI:'
@@ -173,6 +174,26 @@ class Processor:
 
         return '%s(%s)%s' % (MSG_COMPLETIONS, ''.join(compMsg), MSG_END)
 
+    def format_batch_completion_message(self, modulesAndCompletions):
+        '''
+        Format the completions for many modules in a single message:
+        @@COMPLETIONS(quoted module name:quoted completions,quoted module name:quoted completions)END@@
+
+        Where the completions are in the same format used in format_completion_message (without the
+        @@COMPLETIONS and END@@).
+        '''
+        compMsg = []
+        for moduleName, defFile, completionsList in modulesAndCompletions:
+            if compMsg:
+                compMsg.append(',')
+            msg = self.format_completion_message(defFile, completionsList)
+            msg = msg[len(MSG_COMPLETIONS):-len(MSG_END)]
+            compMsg.append(quote_plus(moduleName))
+            compMsg.append(':')
+            compMsg.append(quote_plus(msg))
+
+        return '%s(%s)%s' % (MSG_COMPLETIONS, ''.join(compMsg), MSG_END)
+
 class Exit(Exception):
     pass
 
@@ -287,6 +308,23 @@ class CompletionServer:
                                 defFile, comps = _pydev_imports_tipper.generate_tip(data, log)
                                 self.send(self.get_completions_message(defFile, comps))
 
+                            elif data.startswith(MSG_IMPORTS_BATCH):
+                                data = data[len(MSG_IMPORTS_BATCH):]
+                                data = unquote_plus(data)
+                                results = []
+                                for moduleName in data.split('\n'):
+                                    moduleName = moduleName.strip()
+                                    if not moduleName:
+                                        continue
+                                    try:
+                                        defFile, comps = _pydev_imports_tipper.generate_tip(moduleName, log)
+                                    except:
+                                        # Modules which can't be introspected are just not part of the result.
+                                        dbg(SERVER_NAME + ' error introspecting: ' + moduleName, INFO2)
+                                        continue
+                                    results.append((moduleName, defFile, comps))
+                                self.send(self.processor.format_batch_completion_message(results))
+
                             elif data.startswith(MSG_CHANGE_PYTHONPATH):
                                 data = data[len(MSG_CHANGE_PYTHONPATH):]
                                 data = unquote_plus(data)
@@ -0,0 +1,169 @@
+'''
+Long-running process used by PyDev to run pylint/mypy without paying the interpreter startup and the import
+of the analyzer for each analyzed file.
+
+Usage:
+    python pydev_external_analyzer.py <pylint|mypy> <analyzer args...>
+
+Protocol (utf-8, line-based):
+
+    On startup it writes "@@PYDEV_ANALYZER_READY@@" (or "@@PYDEV_ANALYZER_IMPORT_ERROR@@ <msg>" and exits if the
+    analyzer can't be imported in this interpreter).
+
+    Then, for each request it reads from stdin:
+        ANALYZE <number of targets>
+        <target 1>
+        ...
+        <target n>
+
+    and writes each line of the stdout of the analyzer prefixed with "O " and each line of its stderr prefixed
+    with "E ", followed by "@@PYDEV_ANALYZER_END@@ <max resident memory in kb or -1>".
+
+    The process exits on "EXIT" or when stdin is closed.
+'''
+import sys
+import traceback
+
+READY = '@@PYDEV_ANALYZER_READY@@'
+IMPORT_ERROR = '@@PYDEV_ANALYZER_IMPORT_ERROR@@'
+END = '@@PYDEV_ANALYZER_END@@'
+
+try:
+    from io import StringIO
+except ImportError:
+    from StringIO import StringIO
+
+
+def _get_protocol_streams():
+    if hasattr(sys.stdout, 'buffer'):
+        import io
+        stdin = io.TextIOWrapper(sys.stdin.buffer, encoding='utf-8')
+        stdout = io.TextIOWrapper(sys.stdout.buffer, encoding='utf-8', line_buffering=False)
+        return stdin, stdout
+    return sys.stdin, sys.stdout
+
+
+def _get_max_rss_kb():
+    try:
+        import resource
+        max_rss = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        if sys.platform == 'darwin':
+            max_rss //= 1024  # bytes on mac
+        return max_rss
+    except Exception:
+        return -1
+
+
+class _PyLintRunner(object):
+
+    def __init__(self):
+        from pylint import lint
+        self._lint = lint
+
+    def run(self, args):
+        try:
+            # Caches must be cleared as the files may have changed since the last run.
+            from astroid import MANAGER
+            MANAGER.clear_cache()
+        except Exception:
+            pass
+
+        stdout = StringIO()
+        stderr = StringIO()
+        original_stdout, original_stderr = sys.stdout, sys.stderr
+        sys.stdout, sys.stderr = stdout, stderr
+        try:
+            try:
+                try:
+                    self._lint.Run(args, exit=False)
+                except TypeError:
+                    self._lint.Run(args, do_exit=False)  # Older versions of pylint.
+            except SystemExit:
+                pass
+            except Exception:
+                traceback.print_exc()
+        finally:
+            sys.stdout, sys.stderr = original_stdout, original_stderr
+        return stdout.getvalue(), stderr.getvalue()
+
+
+class _MypyRunner(object):
+
+    def __init__(self):
+        from mypy import api
+        self._api = api
+
+    def run(self, args):
+        try:
+            result = self._api.run(args)
+            return result[0], result[1]
+        except SystemExit:
+            return '', ''
+        except Exception:
+            return '', traceback.format_exc()
+
+
+def _write_lines(out, prefix, contents):
+    if not contents:
+        return
+    for line in contents.splitlines():
+        out.write(prefix)
+        out.write(line)
+        out.write('\n')
+
+
+def main():
+    stdin, out = _get_protocol_streams()
+    if len(sys.argv) < 2:
+        out.write(IMPORT_ERROR + ' Analyzer not specified.\n')
+        out.flush()
+        return
+
+    analyzer = sys.argv[1]
+    analyzer_args = sys.argv[2:]
+    try:
+        if analyzer == 'pylint':
+            runner = _PyLintRunner()
+        elif analyzer == 'mypy':
+            runner = _MypyRunner()
+        else:
+            raise ImportError('Unexpected analyzer: %s' % (analyzer,))
+    except Exception as e:
+        out.write('%s %s\n' % (IMPORT_ERROR, str(e).replace('\n', ' ')))
+        out.flush()
+        return
+
+    out.write(READY + '\n')
+    out.flush()
+
+    while True:
+        line = stdin.readline()
+        if not line:
+            return
+        line = line.strip()
+        if not line:
+            continue
+        if line == 'EXIT':
+            return
+        if not line.startswith('ANALYZE '):
+            out.write('E Unexpected command: %s\n' % (line,))
+            out.write('%s %s\n' % (END, _get_max_rss_kb()))
+            out.flush()
+            continue
+
+        targets = []
+        for _i in range(int(line.split()[1])):
+            targets.append(stdin.readline().rstrip('\r\n'))
+
+        try:
+            stdout_contents, stderr_contents = runner.run(analyzer_args + targets)
+        except Exception:
+            stdout_contents, stderr_contents = '', traceback.format_exc()
+        _write_lines(out, 'O ', stdout_contents)
+        _write_lines(out, 'E ', stderr_contents)
+        out.write('%s %s\n' % (END, _get_max_rss_kb()))
+        out.flush()
+
+
+if __name__ == '__main__':
+    main()
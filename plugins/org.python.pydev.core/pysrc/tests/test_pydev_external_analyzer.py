@@ -0,0 +1,106 @@
+import os
+import subprocess
+import sys
+
+import pytest
+
+READY = '@@PYDEV_ANALYZER_READY@@'
+IMPORT_ERROR = '@@PYDEV_ANALYZER_IMPORT_ERROR@@'
+END = '@@PYDEV_ANALYZER_END@@'
+
+_FAKE_LINT = '''
+import sys
+
+def Run(args, exit=True):
+    assert not exit
+    sys.stdout.write('analyzed: %s\\n' % (' '.join(args),))
+    sys.stderr.write('some warning\\n')
+'''
+
+
+@pytest.fixture
+def fake_pylint_dir(tmpdir):
+    pylint_dir = tmpdir.mkdir('pylint')
+    pylint_dir.join('__init__.py').write('')
+    pylint_dir.join('lint.py').write(_FAKE_LINT)
+    return str(tmpdir)
+
+
+def _start(analyzer, pythonpath, *args):
+    script = os.path.join(os.path.dirname(os.path.dirname(__file__)), 'pydev_external_analyzer.py')
+    env = os.environ.copy()
+    env['PYTHONPATH'] = pythonpath
+    return subprocess.Popen(
+        [sys.executable, script, analyzer] + list(args),
+        stdin=subprocess.PIPE, stdout=subprocess.PIPE, stderr=subprocess.PIPE, env=env)
+
+
+def _readline(process):
+    return process.stdout.readline().decode('utf-8').rstrip('\r\n')
+
+
+def _request(process, command, targets=()):
+    contents = command + '\n' + ''.join(target + '\n' for target in targets)
+    process.stdin.write(contents.encode('utf-8'))
+    process.stdin.flush()
+    lines = []
+    while True:
+        line = _readline(process)
+        assert line, 'Process finished before the end of the request.'
+        if line.startswith(END):
+            return lines, line[len(END):].strip()
+        lines.append(line)
+
+
+def test_analyze(fake_pylint_dir):
+    process = _start('pylint', fake_pylint_dir, '--rcfile=foo')
+    try:
+        assert _readline(process) == READY
+
+        lines, rss = _request(process, 'ANALYZE 2', ['a.py', 'b.py'])
+        assert lines == ['O analyzed: --rcfile=foo a.py b.py', 'E some warning']
+        assert int(rss) > 0 or rss == '-1'
+
+        # The same process keeps serving requests.
+        lines, _rss = _request(process, 'ANALYZE 1', ['c.py'])
+        assert lines == ['O analyzed: --rcfile=foo c.py', 'E some warning']
+
+        lines, _rss = _request(process, 'FOO')
+        assert lines == ['E Unexpected command: FOO']
+
+        process.stdin.write(b'EXIT\n')
+        process.stdin.flush()
+        assert process.wait() == 0
+    finally:
+        if process.poll() is None:
+            process.kill()
+        process.stdout.close()
+        process.stderr.close()
+        process.stdin.close()
+
+
+def test_exit_on_stdin_closed(fake_pylint_dir):
+    process = _start('pylint', fake_pylint_dir)
+    assert _readline(process) == READY
+    process.stdin.close()
+    assert process.wait() == 0
+    process.stdout.close()
+    process.stderr.close()
+
+
+@pytest.mark.parametrize('analyzer', ['pylint', 'unknown'])
+def test_import_error(tmpdir, analyzer):
+    # An empty dir in the PYTHONPATH: the fake pylint isn't available (unless really installed).
+    if analyzer == 'pylint':
+        try:
+            import pylint  # @UnusedImport
+            pytest.skip('pylint is installed.')
+        except ImportError:
+            pass
+    process = _start(analyzer, str(tmpdir))
+    line = _readline(process)
+    assert line.startswith(IMPORT_ERROR)
+    assert process.wait() == 0
+    process.stdout.close()
+    process.stderr.close()
+    process.stdin.close()
@@ -53,6 +53,19 @@ class TestCPython(unittest.TestCase):
         msg = t.processor.format_completion_message(None, l)
         self.assertEqual('@@COMPLETIONS(None,(Def,desc%2C%2Cr%2C%2Ci%28%29ption, ),(Def%281,descriptio%28n1, ),(De%2Cf%292,de%2Cs%2Cc%2Cription2, ))END@@', msg)
 
+    def test_batch_message(self):
+        t = pycompletionserver.CompletionServer(0)
+
+        msg = t.processor.format_batch_completion_message([
+            ('mod1', None, [('Def', 'description', 'args')]),
+            ('mod.2', '/f,1.py', [('De,f)2', 'de,s', '')]),
+        ])
+        self.assertEqual('@@COMPLETIONS(mod1:%28None%2C%28Def%2Cdescription%2Cargs%29%29,mod.2:%28%2Ff%2C1.py%2C%28De%252Cf%25292%2Cde%252Cs%2C+%29%29)END@@', msg)
+
+        self.assertEqual(
+            '(/f,1.py,(De%2Cf%292,de%2Cs, ))',
+            unquote_plus(msg[len('@@COMPLETIONS(mod1:%28None%2C%28Def%2Cdescription%2Cargs%29%29,mod.2:'):-len(')END@@')]))
+
     def create_connections(self):
         '''
         Creates the connections needed for testing.
@@ -122,6 +135,15 @@ class TestCPython(unittest.TestCase):
             found = self.read_msg()
             self.assertTrue('sort' in found, 'Could not find sort in: %s' % (found,))
 
+            #now, test many modules at once (the ones which can't be introspected aren't in the result)
+            msg = quote_plus('%s\nnot_existent_module_xxx\ninspect' % BUILTIN_MOD)
+            send(socket, '@@IMPORTS_BATCH:%s\nEND@@' % msg)
+            found = self.read_msg()
+            self.assertTrue(found.startswith('@@COMPLETIONS(%s:' % BUILTIN_MOD), found)
+            self.assertTrue(',inspect:' in found, found)
+            self.assertTrue('not_existent_module_xxx' not in found, found)
+            self.assertTrue(quote_plus(quote_plus('ismodule')) in found, found)
+
             #now, test search
             msg = quote_plus('inspect.ismodule')
             send(socket, '@@SEARCH%sEND@@' % msg)  #math completions
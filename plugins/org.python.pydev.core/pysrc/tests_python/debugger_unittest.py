@@ -76,6 +76,7 @@ CMD_THREAD_DUMP_TO_STDERR = 153  # This is mostly for unit-tests to diagnose err
 CMD_STOP_ON_START = 154
 CMD_GET_EXCEPTION_DETAILS = 155
 CMD_SUSPEND_ON_BREAKPOINT_EXCEPTION = 156
+CMD_GET_VARIABLES_BATCH = 157
 
 CMD_REDIRECT_OUTPUT = 200
 CMD_GET_NEXT_STATEMENT_TARGETS = 201
@@ -829,6 +830,12 @@ class AbstractWriterThread(threading.Thread):
     def write_get_variable(self, thread_id, frame_id, var_attrs):
         self.write("%s\t%s\t%s\t%s\tFRAME\t%s" % (CMD_GET_VARIABLE, self.next_seq(), thread_id, frame_id, var_attrs))
 
+    def write_get_variables_batch(self, thread_id, frame_id, vars_attrs, depth=1, max_items=100):
+        locators = ['%s\t%s\tFRAME\t%s' % (thread_id, frame_id, var_attrs) for var_attrs in vars_attrs]
+        self.write("%s\t%s\t%s\t%s\t%s" % (
+            CMD_GET_VARIABLES_BATCH, self.next_seq(), depth, max_items,
+            '\t'.join(quote_plus(locator) for locator in locators)))
+
     def write_step_over(self, thread_id):
         self.write("%s\t%s\t%s" % (CMD_STEP_OVER, self.next_seq(), thread_id,))
 
@@ -0,0 +1,8 @@
+def Call():
+    inner = [1, 2]
+    outer = {'inner': inner, 'value': 10}
+    print('break here')
+
+if __name__ == '__main__':
+    Call()
+    print('TEST SUCEEDED!')
@@ -452,6 +452,32 @@ def test_case_7(case_setup):
         writer.finished_ok = True
 
 
+def test_case_get_variables_batch(case_setup):
+    with case_setup.test_file('_debugger_case_variables_batch.py') as writer:
+        writer.write_add_breakpoint(4, 'Call')
+        writer.write_make_initial_run()
+
+        hit = writer.wait_for_breakpoint_hit('111')
+
+        # Depth 2: the contents of 'outer' and of the list inside it are returned in a single message.
+        writer.write_get_variables_batch(hit.thread_id, hit.frame_id, ['outer'], depth=2)
+        writer.wait_for_multiple_vars((
+            '<vars locator="%s\t%s\tFRAME\touter">' % (hit.thread_id, hit.frame_id),
+            '<var name="\'value\'',
+            '<var name="0" type="int"',
+        ))
+
+        # Containers with more than max_items aren't resolved (the client gets them one at a time if expanded).
+        writer.write_get_variables_batch(hit.thread_id, hit.frame_id, ['outer'], depth=2, max_items=1)
+        writer.wait_for_multiple_vars((
+            '<vars locator="%s\t%s\tFRAME\touter" error="True">' % (hit.thread_id, hit.frame_id),
+        ))
+
+        writer.write_run_thread(hit.thread_id)
+
+        writer.finished_ok = True
+
+
 def test_case_8(case_setup):
     with case_setup.test_file('_debugger_case89.py') as writer:
         writer.write_add_breakpoint(10, 'Method3')
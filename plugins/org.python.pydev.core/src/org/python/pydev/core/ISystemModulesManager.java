@@ -44,5 +44,9 @@ public interface ISystemModulesManager extends IModulesManager {
 
     public abstract IInterpreterManager getInterpreterManager();
 
-    public abstract File getCompiledModuleCacheFile(String name);
+    /**
+     * @return the file where the tokens of the compiled modules of the interpreter are cached (a single file
+     * for all the compiled modules).
+     */
+    public abstract File getCompiledModulesCacheFile();
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This pool is to be regarded as a way to have less object instances for a given class,
@@ -20,7 +21,10 @@ import java.util.WeakHashMap;
  * to save memory. Note that it is created with weak-references for both, the key and the value,
  * so, it should be safe to assume that it will be available for garbage collecting once
  * no other place has a reference to the same string.
- * 
+ *
+ * The pool is split in STRIPES maps (chosen by the hash of the string), each with its own lock, so, threads
+ * interning different strings usually don't contend for the same lock.
+ *
  * Still, use this with care...
  */
 public final class ObjectsInternPool {
@@ -28,72 +32,117 @@ public final class ObjectsInternPool {
     private ObjectsInternPool() {
     }
 
-    private static final Map<String, WeakReference<String>> weakHashMap = new WeakHashMap<String, WeakReference<String>>();
-    public static final Object lock = new Object();
+    /**
+     * Must be a power of 2.
+     */
+    private static final int STRIPES = 32;
 
     /**
-     * This is a way to intern a String in the regular heap (instead of the String.intern which uses the perm-gen).
+     * The maximum number of strings in the pool (when a part of the pool is full, new strings are returned without
+     * being interned until the strings in it are garbage-collected). Note: each part holds at least 1 string.
      */
-    public static String intern(String o) {
-        if (o == null) {
-            return null;
-        }
-        synchronized (lock) {
-            WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-            if (w == null) {
-                //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
-                //passed, it'll create a new array only with the parts we want.
-                o = new String(o);
-                //garbage collected or still not there...
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
+    public static int MAX_SIZE = Integer.MAX_VALUE;
 
-            } else {
-                final String ret = w.get();
-                if (ret == null && o != null) {
-                    //garbage collected just in time hum?
-                    o = new String(o);
-                    weakHashMap.put(o, new WeakReference<String>(o));
-                    return o;
+    @SuppressWarnings("unchecked")
+    private static final Map<String, WeakReference<String>>[] weakHashMaps = new Map[STRIPES];
 
-                } else {
-                    return ret;
-                }
-            }
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            weakHashMaps[i] = new WeakHashMap<String, WeakReference<String>>();
         }
     }
 
+    private static final LongAdder requests = new LongAdder();
+
+    private static final LongAdder hits = new LongAdder();
+
     /**
-     * Same thing as intern, but the client is responsible for synchronizing on the lock object of this class!
-     * 
-     * Note that this should be done on a fast process where many objects will be added (but only on fast processes
-     * that want to avoid synchronizing at each step).
+     * @return the maximum number of strings in each part of the pool (at least 1, even if MAX_SIZE < STRIPES).
      */
-    public static String internUnsynched(String o) {
+    /*default*/ static int getMaxStripeSize() {
+        return Math.max(1, MAX_SIZE / STRIPES);
+    }
+
+    /**
+     * This is a way to intern a String in the regular heap (instead of the String.intern which uses the perm-gen).
+     */
+    public static String intern(String o) {
         if (o == null) {
             return null;
         }
-        WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-        if (w == null) {
+        requests.increment();
+        int h = o.hashCode();
+        Map<String, WeakReference<String>> weakHashMap = weakHashMaps[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (weakHashMap) {
+            WeakReference<String> w = weakHashMap.get(o);
+            if (w != null) {
+                final String ret = w.get();
+                if (ret != null) {
+                    hits.increment();
+                    return ret;
+                }
+                //garbage collected just in time hum?
+            }
+            if (weakHashMap.size() >= getMaxStripeSize()) {
+                return o;
+            }
             //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
             //passed, it'll create a new array only with the parts we want.
             o = new String(o);
             //garbage collected or still not there...
             weakHashMap.put(o, new WeakReference<String>(o));
             return o;
+        }
+    }
 
-        } else {
-            final String ret = w.get();
-            if (ret == null && o != null) {
-                //garbage collected just in time hum?
-                o = new String(o);
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
+    /**
+     * Same thing as intern (kept for backward compatibility: it was used by clients which synchronized on the lock
+     * of this class to intern many strings at once, which is no longer needed).
+     */
+    public static String internUnsynched(String o) {
+        return intern(o);
+    }
 
-            } else {
-                return ret;
+    /**
+     * @return the number of strings currently in the pool (note: strings already garbage-collected may still be
+     * counted until the pool is accessed again).
+     */
+    public static int getSize() {
+        int size = 0;
+        for (Map<String, WeakReference<String>> weakHashMap : weakHashMaps) {
+            synchronized (weakHashMap) {
+                size += weakHashMap.size();
             }
         }
+        return size;
+    }
+
+    /**
+     * @return the number of calls to intern since the start (or since resetCounters was called).
+     */
+    public static long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return the number of calls to intern which returned a string already in the pool (i.e.: the number of
+     * strings which could be garbage-collected because of the pool).
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return getHits() / getRequests() (0 if there were no requests).
+     */
+    public static double getHitRatio() {
+        long r = requests.sum();
+        return r == 0 ? 0 : ((double) hits.sum()) / r;
+    }
+
+    public static void resetCounters() {
+        requests.reset();
+        hits.reset();
     }
 
     /**
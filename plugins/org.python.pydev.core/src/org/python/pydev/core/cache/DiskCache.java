@@ -8,8 +8,10 @@ package org.python.pydev.core.cache;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.ModulesKey;
@@ -28,7 +30,12 @@ public final class DiskCache {
 
     private static final boolean DEBUG = false;
 
-    public static final int VERSION = 2;
+    public static final int VERSION = 3;
+
+    /**
+     * Name of the file (in the folder to persist) where the keys are written.
+     */
+    private static final String KEYS_FILE = "diskcache_keys.bin";
 
     private final Object lock = new Object();
 
@@ -39,46 +46,95 @@ public final class DiskCache {
 
     /**
      * The keys will be in memory all the time... only the values will come and go to the disk.
+     *
+     * Note: a concurrent map is used so that adding/removing keys doesn't contend with readers
+     * (which may iterate it without copying it).
      */
-    private Map<CompleteIndexKey, CompleteIndexKey> keys = new HashMap<CompleteIndexKey, CompleteIndexKey>();
+    private final ConcurrentHashMap<CompleteIndexKey, CompleteIndexKey> keys = new ConcurrentHashMap<CompleteIndexKey, CompleteIndexKey>();
+
+    /**
+     * Read-only view of the keys (returned to clients).
+     */
+    private final Map<CompleteIndexKey, CompleteIndexKey> keysView = Collections.unmodifiableMap(keys);
 
     /**
      * Writes this cache in a format that may later be restored with loadFrom.
+     *
+     * Only a small header is written to the buffer: the keys themselves are written in a binary file
+     * (see ModulesKeysFile) in the folder to persist, which has a stamp that must match the one in the header.
      */
-    public void writeTo(FastStringBuffer tempBuf) {
+    public void writeTo(FastStringBuffer tempBuf) throws IOException {
+        String folder = getFolderToPersist();
+        File dir = new File(folder);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        long stamp = System.currentTimeMillis() ^ System.nanoTime();
+        // Note: concurrent changes to the keys while writing are Ok (the iteration is weakly consistent).
+        ModulesKeysFile.writeCompleteIndexKeys(new File(dir, KEYS_FILE), stamp, keys.size(),
+                keys.values().iterator());
+
         tempBuf.append("-- START DISKCACHE_" + DiskCache.VERSION + "\n");
-        tempBuf.append(folderToPersist);
+        tempBuf.append(folder);
+        tempBuf.append('\n');
+        tempBuf.append(stamp);
         tempBuf.append('\n');
-        for (CompleteIndexKey key : keys.values()) {
-            ModulesKey modKey = key.key;
-            tempBuf.append(modKey.name);
-            tempBuf.append('|');
-            tempBuf.append(key.lastModified);
-            tempBuf.append('|');
-            if (modKey.file != null) {
-                tempBuf.append(modKey.file.toString());
-            } else {
-                //could be null!
-            }
-            if (modKey instanceof ModulesKeyForZip) {
-                ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modKey;
-                tempBuf.append('|');
-                tempBuf.append(modulesKeyForZip.zipModulePath);
-                tempBuf.append('|');
-                tempBuf.append(modulesKeyForZip.isFile ? '0' : '1');
-            }
-            tempBuf.append('\n');
-        }
         tempBuf.append("-- END DISKCACHE\n");
     }
 
     /**
-     * Loads from a reader a string that was acquired from writeTo.
-     * @param objectsPoolMap
+     * Loads from a reader a string that was acquired from writeTo (along with the binary file it references).
+     *
+     * @throws RuntimeException if the binary file is not available or doesn't match the stamp written (in
+     * which case the info must be regenerated).
      */
     public static DiskCache loadFrom(FastBufferedReader reader, ObjectsPoolMap objectsPoolMap) throws IOException {
         DiskCache diskCache = new DiskCache();
 
+        FastStringBuffer line = reader.readLine();
+        if (line == null || line.startsWith("-- ")) {
+            throw new RuntimeException("Unexpected line: " + line);
+        }
+        diskCache.folderToPersist = line.toString();
+
+        line = reader.readLine();
+        if (line == null || line.startsWith("-- ")) {
+            throw new RuntimeException("Unexpected line: " + line);
+        }
+        long stamp = Long.parseLong(line.toString());
+
+        line = reader.readLine();
+        if (line == null || !line.startsWith("-- END DISKCACHE")) {
+            throw new RuntimeException("Unexpected line: " + line);
+        }
+
+        File keysFile = new File(diskCache.folderToPersist, KEYS_FILE);
+        if (!keysFile.exists()) {
+            throw new RuntimeException("Disk cache keys not available in: " + keysFile);
+        }
+        ModulesKeysFile modulesKeysFile = ModulesKeysFile.open(keysFile);
+        if (modulesKeysFile.getStamp() != stamp) {
+            throw new RuntimeException("Disk cache keys in: " + keysFile + " don't match the saved info.");
+        }
+        int size = modulesKeysFile.size();
+        for (int i = 0; i < size; i++) {
+            ModulesKey modulesKey = modulesKeysFile.getKey(i);
+            modulesKey.name = ObjectsInternPool.internLocal(objectsPoolMap, modulesKey.name);
+            diskCache.add(new CompleteIndexKey(modulesKey, modulesKeysFile.getLastModified(i)));
+        }
+        return diskCache;
+    }
+
+    /**
+     * Loads from a reader the text format used in version 2 (where all the keys were written as text).
+     *
+     * Kept so that the info saved by previous versions can be migrated (the next save will write it in the
+     * current format).
+     */
+    public static DiskCache loadFromVersion2(FastBufferedReader reader, ObjectsPoolMap objectsPoolMap)
+            throws IOException {
+        DiskCache diskCache = new DiskCache();
+
         FastStringBuffer line = reader.readLine();
         if (line.startsWith("-- ")) {
             throw new RuntimeException("Unexpected line: " + line);
@@ -180,45 +236,62 @@ public final class DiskCache {
      * Removes both: from the memory and from the disk
      */
     public void remove(CompleteIndexKey key) {
-        synchronized (lock) {
-            if (DEBUG) {
-                System.out.println("Disk cache - Removing: " + key);
-            }
-            keys.remove(key);
+        if (DEBUG) {
+            System.out.println("Disk cache - Removing: " + key);
         }
+        keys.remove(key);
     }
 
     /**
      * Adds to both: the memory and the disk
      */
     public void add(CompleteIndexKey key) {
-        synchronized (lock) {
-            if (DEBUG) {
-                System.out.println("Disk cache - Adding: " + key);
-            }
-            keys.put(key, key);
+        if (DEBUG) {
+            System.out.println("Disk cache - Adding: " + key);
         }
+        keys.put(key, key);
     }
 
     /**
      * Clear the whole cache.
      */
     public void clear() {
-        synchronized (lock) {
-            if (DEBUG) {
-                System.out.println("Disk cache - clear");
-            }
-            keys.clear();
+        if (DEBUG) {
+            System.out.println("Disk cache - clear");
         }
+        keys.clear();
     }
 
     /**
-     * @return a copy of the keys available
+     * @return the key stored for the given module (or null if the module is not in the cache).
+     */
+    public CompleteIndexKey get(CompleteIndexKey key) {
+        return keys.get(key);
+    }
+
+    /**
+     * @return a read-only view of the keys available (no copy is done).
+     *
+     * Note: the view reflects changes done afterwards and its iteration is weakly consistent (i.e.: it
+     * never throws ConcurrentModificationException and reflects the keys at some point at or since the
+     * creation of the iterator). Use snapshot() if a point-in-time copy is really needed.
      */
     public Map<CompleteIndexKey, CompleteIndexKey> keys() {
-        synchronized (lock) {
-            return new HashMap<CompleteIndexKey, CompleteIndexKey>(keys);
-        }
+        return keysView;
+    }
+
+    /**
+     * @return a point-in-time copy of the keys available.
+     */
+    public Map<CompleteIndexKey, CompleteIndexKey> snapshot() {
+        return new HashMap<CompleteIndexKey, CompleteIndexKey>(keys);
+    }
+
+    /**
+     * @return the number of keys available.
+     */
+    public int size() {
+        return keys.size();
     }
 
     public void setFolderToPersist(String folderToPersist) {
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2018 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.shared_core.utils.PlatformUtils;
+
+/**
+ * Binary format to persist modules keys (used by the DiskCache and the ModulesManager).
+ *
+ * The format is:
+ *
+ * int: MAGIC
+ * int: VERSION
+ * long: stamp (provided by the client to check that the file matches some other persisted info)
+ * int: number of keys
+ * int: number of strings
+ * int: size (in bytes) of the strings data
+ * int[number of strings]: offset of each string in the strings data
+ * byte[size of strings data]: strings data (utf-8)
+ * records[number of keys]: fixed-width records (see RECORD_SIZE)
+ *
+ * Each record has:
+ *
+ * int: name (index in the strings table)
+ * int: file (index in the strings table or -1 if it has no file)
+ * int: zip module path (index in the strings table or -1 if it's null)
+ * byte: flags (FLAG_ZIP and FLAG_ZIP_IS_FILE)
+ * long: last modified time
+ *
+ * Names and paths are only written once in the strings table (zip files are usually repeated for many keys),
+ * and as the records are fixed-width, a given key may be decoded directly from the file (which is memory-mapped
+ * when read, so, only the parts actually accessed are loaded).
+ */
+public final class ModulesKeysFile {
+
+    /**
+     * "PYMK": used to identify the file (as it's not text, this also distinguishes it from the old text format).
+     */
+    public static final int MAGIC = 0x50594D4B;
+
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = (5 * 4) + 8;
+
+    private static final int RECORD_SIZE = 4 + 4 + 4 + 1 + 8;
+
+    private static final byte FLAG_ZIP = 1;
+
+    private static final byte FLAG_ZIP_IS_FILE = 2;
+
+    private final ByteBuffer buffer;
+    private final long stamp;
+    private final int size;
+    private final int stringsOffsetsStart;
+    private final int stringsDataStart;
+    private final int recordsStart;
+    private final String[] strings;
+
+    private ModulesKeysFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a modules keys file.");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Modules keys file version changed. Expected: " + VERSION + ". Found: " + version);
+        }
+        this.stamp = buffer.getLong(8);
+        this.size = buffer.getInt(16);
+        int stringsCount = buffer.getInt(20);
+        int stringsDataLen = buffer.getInt(24);
+        this.stringsOffsetsStart = HEADER_SIZE;
+        this.stringsDataStart = stringsOffsetsStart + (stringsCount * 4);
+        this.recordsStart = stringsDataStart + stringsDataLen;
+        if (size < 0 || stringsCount < 0 || stringsDataLen < 0
+                || (long) recordsStart + ((long) size * RECORD_SIZE) != buffer.limit()) {
+            throw new IOException("Modules keys file is corrupted.");
+        }
+        this.strings = new String[stringsCount];
+    }
+
+    /**
+     * @return true if the given file seems to be in this format (checks only the magic number).
+     */
+    public static boolean isModulesKeysFile(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a file previously written with writeModulesKeys or writeCompleteIndexKeys. Note that the keys are only decoded on request.
+     */
+    public static ModulesKeysFile open(File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Modules keys file too big: " + file);
+            }
+            ByteBuffer buffer;
+            if (PlatformUtils.isWindowsPlatform()) {
+                // On Windows a mapped file can't be replaced until the mapping is garbage-collected
+                // (and we need to overwrite it when saving), so, read it fully in this case.
+                buffer = ByteBuffer.allocate((int) fileSize);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) == -1) {
+                        throw new IOException("Unexpected end of file: " + file);
+                    }
+                }
+                buffer.flip();
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            }
+            return new ModulesKeysFile(buffer);
+        }
+    }
+
+    /**
+     * @return the stamp passed when the file was written.
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the number of keys in the file.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the key at the given position (decoded from the file at each call, although the strings are
+     * shared among the keys created).
+     */
+    public ModulesKey getKey(int i) {
+        int pos = recordPosition(i);
+        String name = getString(buffer.getInt(pos));
+        int fileIndex = buffer.getInt(pos + 4);
+        int zipPathIndex = buffer.getInt(pos + 8);
+        byte flags = buffer.get(pos + 12);
+
+        File file = fileIndex == -1 ? null : new File(getString(fileIndex));
+        if ((flags & FLAG_ZIP) == 0) {
+            return new ModulesKey(name, file);
+        }
+        return new ModulesKeyForZip(name, file, zipPathIndex == -1 ? null : getString(zipPathIndex),
+                (flags & FLAG_ZIP_IS_FILE) != 0);
+    }
+
+    /**
+     * @return the last modified time stored for the key at the given position.
+     */
+    public long getLastModified(int i) {
+        return buffer.getLong(recordPosition(i) + 13);
+    }
+
+    private int recordPosition(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + " Size: " + size);
+        }
+        return recordsStart + (i * RECORD_SIZE);
+    }
+
+    private String getString(int index) {
+        String s = strings[index];
+        if (s == null) {
+            int start = buffer.getInt(stringsOffsetsStart + (index * 4));
+            int end;
+            if (index + 1 < strings.length) {
+                end = buffer.getInt(stringsOffsetsStart + ((index + 1) * 4));
+            } else {
+                end = recordsStart - stringsDataStart;
+            }
+            byte[] bytes = new byte[end - start];
+            ByteBuffer dup = buffer.duplicate();
+            dup.position(stringsDataStart + start);
+            dup.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Writes the given keys (with a 0 last modified time).
+     */
+    public static void writeModulesKeys(File file, long stamp, int size, Iterator<ModulesKey> keys)
+            throws IOException {
+        List<ModulesKey> lst = new ArrayList<>(size);
+        while (keys.hasNext()) {
+            lst.add(keys.next());
+        }
+        write(file, stamp, lst, null);
+    }
+
+    /**
+     * Writes the given keys along with their last modified time.
+     */
+    public static void writeCompleteIndexKeys(File file, long stamp, int size, Iterator<CompleteIndexKey> keys)
+            throws IOException {
+        List<ModulesKey> lst = new ArrayList<>(size);
+        long[] lastModified = new long[size];
+        while (keys.hasNext()) {
+            CompleteIndexKey next = keys.next();
+            if (lst.size() == lastModified.length) {
+                long[] newLastModified = new long[lastModified.length * 2 + 1];
+                System.arraycopy(lastModified, 0, newLastModified, 0, lastModified.length);
+                lastModified = newLastModified;
+            }
+            lastModified[lst.size()] = next.lastModified;
+            lst.add(next.key);
+        }
+        write(file, stamp, lst, lastModified);
+    }
+
+    private static void write(File file, long stamp, List<ModulesKey> keys, long[] lastModified) throws IOException {
+        Map<String, Integer> stringToIndex = new HashMap<>();
+        List<byte[]> stringsData = new ArrayList<>();
+        int[] records = new int[keys.size() * 3];
+        int stringsDataLen = 0;
+
+        int i = 0;
+        for (ModulesKey key : keys) {
+            String[] parts = new String[] { key.name, key.file != null ? key.file.toString() : null,
+                    key instanceof ModulesKeyForZip ? ((ModulesKeyForZip) key).zipModulePath : null };
+            for (int j = 0; j < 3; j++) {
+                String s = parts[j];
+                int index = -1;
+                if (s != null) {
+                    Integer existing = stringToIndex.get(s);
+                    if (existing == null) {
+                        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                        existing = stringsData.size();
+                        stringToIndex.put(s, existing);
+                        stringsData.add(bytes);
+                        stringsDataLen += bytes.length;
+                    }
+                    index = existing;
+                }
+                records[i * 3 + j] = index;
+            }
+            i++;
+        }
+
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(keys.size());
+            out.writeInt(stringsData.size());
+            out.writeInt(stringsDataLen);
+            int offset = 0;
+            for (byte[] bytes : stringsData) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            for (byte[] bytes : stringsData) {
+                out.write(bytes);
+            }
+            i = 0;
+            for (ModulesKey key : keys) {
+                out.writeInt(records[i * 3]);
+                out.writeInt(records[i * 3 + 1]);
+                out.writeInt(records[i * 3 + 2]);
+                int flags = 0;
+                if (key instanceof ModulesKeyForZip) {
+                    flags |= FLAG_ZIP;
+                    if (((ModulesKeyForZip) key).isFile) {
+                        flags |= FLAG_ZIP_IS_FILE;
+                    }
+                }
+                out.writeByte(flags);
+                out.writeLong(lastModified != null ? lastModified[i] : 0L);
+                i++;
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -76,6 +76,31 @@ public class RunnableAsJobsPoolThread extends Thread {
         }
     }
 
+    /**
+     * Waits until there are no requests to stop the threads (see: pushStopThreads/popStopThreads).
+     *
+     * Also used by other pools which should respect those requests.
+     */
+    public void waitWhileStopped() {
+        int local = 0;
+        while (true) {
+            synchronized (stopThreadsLock) {
+                local = stopThreads;
+            }
+            if (local == 0) {
+                break;
+            } else {
+                synchronized (stopThreadsLock) {
+                    try {
+                        stopThreadsLock.wait(200);
+                    } catch (InterruptedException e) {
+                        Log.log(e);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * We'll stay here until the end of times (or at least until the vm finishes)
      */
@@ -97,23 +122,7 @@ public class RunnableAsJobsPoolThread extends Thread {
                 }
             }
 
-            int local = 0;
-            while (true) {
-                synchronized (stopThreadsLock) {
-                    local = stopThreads;
-                }
-                if (local == 0) {
-                    break;
-                } else {
-                    synchronized (stopThreadsLock) {
-                        try {
-                            stopThreadsLock.wait(200);
-                        } catch (InterruptedException e) {
-                            Log.log(e);
-                        }
-                    }
-                }
-            }
+            waitWhileStopped();
 
             if (execute != null) {
                 //this will make certain that only X jobs are running.
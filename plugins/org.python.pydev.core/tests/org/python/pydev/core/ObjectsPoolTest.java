@@ -34,4 +34,54 @@ public class ObjectsPoolTest extends TestCase {
         //        }
         //        t.printDiff();
     }
+
+    public void testObjectsPoolCounters() throws Exception {
+        ObjectsInternPool.resetCounters();
+        String intern = ObjectsInternPool.intern(new String("testObjectsPoolCounters"));
+        assertSame(intern, ObjectsInternPool.intern(new String("testObjectsPoolCounters")));
+        assertSame(intern, ObjectsInternPool.internUnsynched(new String("testObjectsPoolCounters")));
+        assertNull(ObjectsInternPool.intern(null));
+
+        assertEquals(3, ObjectsInternPool.getRequests());
+        assertEquals(2, ObjectsInternPool.getHits());
+        assertEquals(2.0 / 3, ObjectsInternPool.getHitRatio(), 0.001);
+        assertTrue(ObjectsInternPool.getSize() > 0);
+    }
+
+    public void testObjectsPoolSmallMaxSize() throws Exception {
+        int initial = ObjectsInternPool.MAX_SIZE;
+        ObjectsInternPool.MAX_SIZE = 1;
+        try {
+            //even with a max size smaller than the number of parts, each part must be able to keep a string.
+            assertEquals(1, ObjectsInternPool.getMaxStripeSize());
+            ObjectsInternPool.MAX_SIZE = 320;
+            assertEquals(10, ObjectsInternPool.getMaxStripeSize());
+        } finally {
+            ObjectsInternPool.MAX_SIZE = initial;
+        }
+    }
+
+    public void testObjectsPoolConcurrent() throws Exception {
+        final String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        ObjectsInternPool.intern("str" + j);
+                    }
+                    results[index] = ObjectsInternPool.intern(new String("testObjectsPoolConcurrent"));
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertSame(results[0], result);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package org.python.pydev.core.cache;
 
 import java.io.File;
 import java.io.StringReader;
+import java.util.Map;
 
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.ModulesKey;
@@ -66,6 +67,35 @@ public class DiskCacheTest extends TestCase {
         mod = loadFrom.keys().get(new CompleteIndexKey("mod3"));
         zip = (ModulesKeyForZip) mod.key;
         assertEquals(zip.zipModulePath, "path2");
-        assertTrue(zip.isFile);
+        assertFalse(zip.isFile); // Note: the text format used in version 2 always restored it as true.
+    }
+
+    public void testKeysViewWhileChanging() throws Exception {
+        DiskCache cache = new DiskCache(new File(baseDir, ".cache"), "_test_disk_cache");
+        for (int i = 0; i < 100; i++) {
+            cache.add(new CompleteIndexKey(new ModulesKey("mod" + i, null), i));
+        }
+        Map<CompleteIndexKey, CompleteIndexKey> snapshot = cache.snapshot();
+        Map<CompleteIndexKey, CompleteIndexKey> keys = cache.keys();
+
+        // Changing while iterating must not fail.
+        for (CompleteIndexKey key : keys.values()) {
+            if (key.key.name.startsWith("mod")) {
+                cache.remove(key);
+                cache.add(new CompleteIndexKey(new ModulesKey("other_" + key.key.name, null), 0));
+            }
+        }
+        assertEquals(100, snapshot.size());
+        assertEquals(100, cache.size());
+        assertEquals(100, keys.size()); // The view reflects the changes.
+        assertNotNull(snapshot.get(new CompleteIndexKey("mod0")));
+        assertNull(keys.get(new CompleteIndexKey("mod0")));
+
+        try {
+            keys.clear();
+            fail("Expected view to be read-only.");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
     }
 }
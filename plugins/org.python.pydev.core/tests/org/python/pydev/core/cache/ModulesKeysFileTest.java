@@ -0,0 +1,203 @@
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.python.pydev.core.FastBufferedReader;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.ObjectsInternPool.ObjectsPoolMap;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.utils.Timer;
+
+import junit.framework.TestCase;
+
+public class ModulesKeysFileTest extends TestCase {
+
+    private File baseDir;
+
+    public static void main(String[] args) throws Exception {
+        // Benchmark: restore of the DiskCache in the previous (text) format vs. the binary format.
+        ModulesKeysFileTest test = new ModulesKeysFileTest();
+        test.setUp();
+        try {
+            int keysCount = 100000;
+            DiskCache cache = new DiskCache(new File(test.baseDir, ".cache"), "_test_disk_cache");
+            for (int i = 0; i < keysCount; i++) {
+                String name = "pack" + (i % 100) + ".mod" + i;
+                if (i % 3 == 0) {
+                    cache.add(new CompleteIndexKey(new ModulesKeyForZip(name,
+                            new File(test.baseDir, "lib" + (i % 10) + ".zip"), "pack/mod" + i + ".py", true), i));
+                } else {
+                    cache.add(new CompleteIndexKey(new ModulesKey(name, new File(test.baseDir, name + ".py")), i));
+                }
+            }
+            // Both are read from the disk (as it'd happen at startup).
+            File version2File = new File(test.baseDir, "version2");
+            FileUtils.writeStrToFile(writeVersion2(cache).toString(), version2File);
+            File currentFile = new File(test.baseDir, "current");
+            FastStringBuffer current = new FastStringBuffer();
+            cache.writeTo(current);
+            FileUtils.writeStrToFile(current.toString(), currentFile);
+
+            for (int i = 0; i < 10; i++) {
+                Timer timer = new Timer();
+                FastBufferedReader reader = new FastBufferedReader(
+                        new InputStreamReader(new FileInputStream(version2File)));
+                try {
+                    reader.readLine();
+                    DiskCache.loadFromVersion2(reader, new ObjectsPoolMap());
+                } finally {
+                    reader.close();
+                }
+                timer.printDiff("Load version 2 (text)");
+
+                reader = new FastBufferedReader(
+                        new InputStreamReader(new FileInputStream(currentFile)));
+                try {
+                    reader.readLine();
+                    DiskCache.loadFrom(reader, new ObjectsPoolMap());
+                } finally {
+                    reader.close();
+                }
+                timer.printDiff("Load version " + DiskCache.VERSION + " (binary)");
+            }
+        } finally {
+            test.tearDown();
+        }
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_modules_keys_file_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testModulesKeysRoundtrip() throws Exception {
+        List<ModulesKey> keys = Arrays.asList(
+                new ModulesKey("mod1", new File(baseDir, "f1.py")),
+                new ModulesKey("modnull", null),
+                new ModulesKey("médulo", new File(baseDir, "médulo.py")),
+                new ModulesKeyForZip("mod2", new File(baseDir, "my.zip"), "path", true),
+                new ModulesKeyForZip("mod3", new File(baseDir, "my.zip"), "path2", false),
+                new ModulesKeyForZip("mod4", new File(baseDir, "my.zip"), null, false));
+
+        File file = new File(baseDir, "modulesKeys");
+        ModulesKeysFile.writeModulesKeys(file, 10, keys.size(), keys.iterator());
+        assertTrue(ModulesKeysFile.isModulesKeysFile(file));
+
+        ModulesKeysFile keysFile = ModulesKeysFile.open(file);
+        assertEquals(10, keysFile.getStamp());
+        assertEquals(keys.size(), keysFile.size());
+        List<ModulesKey> loaded = new ArrayList<>();
+        for (int i = 0; i < keysFile.size(); i++) {
+            loaded.add(keysFile.getKey(i));
+            assertEquals(0, keysFile.getLastModified(i));
+        }
+        assertEquals(keys, loaded);
+        for (int i = 0; i < keys.size(); i++) {
+            ModulesKey expected = keys.get(i);
+            ModulesKey found = loaded.get(i);
+            assertEquals(expected.getClass(), found.getClass());
+            assertEquals(expected.file, found.file);
+            if (expected instanceof ModulesKeyForZip) {
+                assertEquals(((ModulesKeyForZip) expected).zipModulePath, ((ModulesKeyForZip) found).zipModulePath);
+                assertEquals(((ModulesKeyForZip) expected).isFile, ((ModulesKeyForZip) found).isFile);
+            }
+        }
+
+        // The same zip file must share the string.
+        assertSame(loaded.get(3).file.toString(), loaded.get(4).file.toString());
+    }
+
+    public void testNotModulesKeysFile() throws Exception {
+        File file = new File(baseDir, "modulesKeys");
+        FileUtils.writeStrToFile("MODULES_MANAGER_V2\nmod1|f1.py\nmod2|f2.py\nmod3|f3.py\nmod4|f4.py\n", file);
+        assertFalse(ModulesKeysFile.isModulesKeysFile(file));
+        try {
+            ModulesKeysFile.open(file);
+            fail("Expected IOException.");
+        } catch (java.io.IOException e) {
+            // expected
+        }
+    }
+
+    public void testDiskCacheMigrateFromVersion2() throws Exception {
+        DiskCache cache = new DiskCache(new File(baseDir, ".cache"), "_test_disk_cache");
+        cache.add(new CompleteIndexKey(new ModulesKey("mod1", new File(baseDir, "f1")), 100));
+        cache.add(new CompleteIndexKey(new ModulesKeyForZip("mod2", new File(baseDir, "my.zip"), "path", true), 20));
+
+        FastBufferedReader reader = new FastBufferedReader(new StringReader(writeVersion2(cache).toString()));
+        assertEquals("-- START DISKCACHE_2", reader.readLine().toString());
+        DiskCache loaded = DiskCache.loadFromVersion2(reader, new ObjectsPoolMap());
+        assertEquals(cache.keys(), loaded.keys());
+        assertEquals(20, loaded.get(new CompleteIndexKey("mod2")).lastModified);
+    }
+
+    public void testDiskCacheStampMismatch() throws Exception {
+        DiskCache cache = new DiskCache(new File(baseDir, ".cache"), "_test_disk_cache");
+        cache.add(new CompleteIndexKey(new ModulesKey("mod1", new File(baseDir, "f1")), 100));
+
+        FastStringBuffer first = new FastStringBuffer();
+        cache.writeTo(first);
+        Thread.sleep(1);
+        cache.writeTo(new FastStringBuffer()); // Overwrites the binary file with a new stamp.
+
+        FastBufferedReader reader = new FastBufferedReader(new StringReader(first.toString()));
+        reader.readLine();
+        try {
+            DiskCache.loadFrom(reader, new ObjectsPoolMap());
+            fail("Expected the stamp not to match.");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Writes the cache as it was written in version 2 (to check the migration).
+     */
+    private static FastStringBuffer writeVersion2(DiskCache cache) {
+        FastStringBuffer tempBuf = new FastStringBuffer();
+        tempBuf.append("-- START DISKCACHE_2\n");
+        tempBuf.append(cache.getFolderToPersist());
+        tempBuf.append('\n');
+        for (CompleteIndexKey key : cache.keys().values()) {
+            ModulesKey modKey = key.key;
+            tempBuf.append(modKey.name);
+            tempBuf.append('|');
+            tempBuf.append(key.lastModified);
+            tempBuf.append('|');
+            if (modKey.file != null) {
+                tempBuf.append(modKey.file.toString());
+            }
+            if (modKey instanceof ModulesKeyForZip) {
+                ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modKey;
+                tempBuf.append('|');
+                tempBuf.append(modulesKeyForZip.zipModulePath);
+                tempBuf.append('|');
+                tempBuf.append(modulesKeyForZip.isFile ? '0' : '1');
+            }
+            tempBuf.append('\n');
+        }
+        tempBuf.append("-- END DISKCACHE\n");
+        return tempBuf;
+    }
+}
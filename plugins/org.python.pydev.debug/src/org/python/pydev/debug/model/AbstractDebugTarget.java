@@ -7,6 +7,7 @@
 package org.python.pydev.debug.model;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -117,6 +118,33 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
 
     private Set<Integer> currentBreakpointsAdded = new HashSet<>();
 
+    /**
+     * Incremented whenever a thread is resumed (variables prefetched before that are no longer valid).
+     */
+    private volatile int resumeCount;
+
+    /**
+     * Set when pydevd doesn't answer CMD_GET_VARIABLES_BATCH (i.e.: older version), in which case variables
+     * are no longer prefetched.
+     */
+    private volatile boolean variablesBatchUnsupported;
+
+    /*default*/ int getResumeCount() {
+        return resumeCount;
+    }
+
+    /*default*/ void invalidatePrefetchedVariables() {
+        resumeCount++;
+    }
+
+    /*default*/ boolean isVariablesBatchUnsupported() {
+        return variablesBatchUnsupported;
+    }
+
+    /*default*/ void setVariablesBatchUnsupported() {
+        variablesBatchUnsupported = true;
+    }
+
     @Override
     public abstract boolean canTerminate();
 
@@ -403,6 +431,52 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
         return null;
     }
 
+    /**
+     * Same as processCommand(String, String, String) but with the payload still in the (utf-8) bytes received.
+     *
+     * The threads created/suspended are parsed directly from those bytes (the other commands have their payload
+     * decoded to a String and are passed on to processCommand(String, String, String)).
+     */
+    public void processCommand(String sCmdCode, String sSeqCode, byte[] bytes, int offset, int length) {
+        int cmdCode = Integer.parseInt(sCmdCode);
+        if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_CREATED
+                || cmdCode == AbstractDebuggerCommand.CMD_THREAD_SUSPEND) {
+            if (DEBUG) {
+                System.out.println("process command:" + sCmdCode +
+                        "\tseq:" + sSeqCode +
+                        "\tpayload:" + new String(bytes, offset, length, StandardCharsets.UTF_8) +
+                        "\n\n");
+            }
+            try {
+                if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_CREATED) {
+                    PyThread[] newThreads;
+                    try {
+                        newThreads = XMLUtils.ThreadsFromXML(this, bytes, offset, length);
+                    } catch (CoreException e) {
+                        PydevDebugPlugin.errorDialog("Error in processThreadCreated", e);
+                        return;
+                    }
+                    processThreadCreated(newThreads);
+
+                } else {
+                    StoppedStack threadNstack;
+                    try {
+                        threadNstack = XMLUtils.XMLToStack(this, bytes, offset, length);
+                    } catch (CoreException e) {
+                        PydevDebugPlugin.errorDialog("Error reading ThreadSuspended", e);
+                        return;
+                    }
+                    processThreadSuspended(threadNstack);
+                }
+            } catch (Exception e) {
+                PydevDebugPlugin.log(IStatus.ERROR, "Error processing: " + sCmdCode +
+                        "\npayload: " + new String(bytes, offset, length, StandardCharsets.UTF_8), e);
+            }
+        } else {
+            processCommand(sCmdCode, sSeqCode, new String(bytes, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
     /**
      * When a command that originates from daemon is received,
      * this routine processes it.
@@ -501,6 +575,10 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
             PydevDebugPlugin.errorDialog("Error in processThreadCreated", e);
             return;
         }
+        processThreadCreated(newThreads);
+    }
+
+    private void processThreadCreated(PyThread[] newThreads) {
 
         // Hide Pydevd threads if requested
         if (PydevDebugPlugin.getDefault().getPreferenceStore()
@@ -574,7 +652,10 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
             PydevDebugPlugin.errorDialog("Error reading ThreadSuspended", e);
             return;
         }
+        processThreadSuspended(threadNstack);
+    }
 
+    private void processThreadSuspended(StoppedStack threadNstack) {
         PyThread t = threadNstack.thread;
         int reason = DebugEvent.UNSPECIFIED;
         String stopReason = threadNstack.stopReason;
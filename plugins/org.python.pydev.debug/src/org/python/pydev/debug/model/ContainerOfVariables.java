@@ -17,6 +17,11 @@ public class ContainerOfVariables {
     private volatile boolean gettingInitialVariables = false;
     private final VariablesLoader variablesLoader;
 
+    /**
+     * Where the variables should be gotten from on the next fetch (if they were prefetched).
+     */
+    private volatile PrefetchedVariables prefetchedVariables;
+
     public IVariable[] getInternalVariables() {
         return this.variables;
     }
@@ -68,8 +73,26 @@ public class ContainerOfVariables {
         return this.variables;
     }
 
+    /* default */ boolean needsVariables() {
+        return onAskGetNewVars;
+    }
+
+    /* default */ void setPrefetchedVariables(PrefetchedVariables prefetchedVariables) {
+        this.prefetchedVariables = prefetchedVariables;
+    }
+
+    /**
+     * @return the prefetched variables to be used in the current fetch (they're only used once).
+     */
+    /* default */ PrefetchedVariables takePrefetchedVariables() {
+        PrefetchedVariables p = this.prefetchedVariables;
+        this.prefetchedVariables = null;
+        return p;
+    }
+
     public void forceGetNewVariables() {
         this.onAskGetNewVars = true;
+        this.prefetchedVariables = null;
         IVariablesContainerParent p = this.parent.get();
         if (p == null) {
             return;
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.debug.model.remote.GetVariablesBatchCommand;
+import org.python.pydev.shared_core.log.Log;
+import org.xml.sax.Attributes;
+
+/**
+ * The variables of many containers gotten in a single GetVariablesBatchCommand (see VariablesLoader).
+ *
+ * It's shared by the ContainerOfVariables of those containers and is only valid until some thread is resumed.
+ */
+/*default*/ final class PrefetchedVariables {
+
+    private final AbstractDebugTarget target;
+    private final GetVariablesBatchCommand command;
+    private final int resumeCount;
+
+    /**
+     * Lazily created from the response (guarded by this).
+     */
+    private Map<String, List<Attributes>> locationToVariables;
+
+    /*default*/ PrefetchedVariables(AbstractDebugTarget target, GetVariablesBatchCommand command) {
+        this.target = target;
+        this.command = command;
+        this.resumeCount = target.getResumeCount();
+    }
+
+    /**
+     * @return the attributes of the variables of the container at the given location (waiting up to timeoutMillis
+     * for the response) or null if they're not available.
+     */
+    /*default*/ List<Attributes> get(String location, long timeoutMillis, IProgressMonitor monitor) {
+        if (target.getResumeCount() != resumeCount) {
+            return null;
+        }
+        if (!command.waitForResponse(timeoutMillis, monitor)) {
+            return null;
+        }
+        if (target.getResumeCount() != resumeCount) {
+            return null;
+        }
+        return getLocationToVariables().get(location);
+    }
+
+    /**
+     * @return whether the variables of the container at the given location are available (only meaningful after
+     * the response arrived).
+     */
+    /*default*/ boolean has(String location) {
+        return target.getResumeCount() == resumeCount && command.getResponseFuture().isDone()
+                && getLocationToVariables().containsKey(location);
+    }
+
+    private synchronized Map<String, List<Attributes>> getLocationToVariables() {
+        if (locationToVariables == null) {
+            try {
+                locationToVariables = XMLUtils.XMLToVariablesBatch(command.getResponse());
+            } catch (CoreException e) {
+                // I.e.: pydevd doesn't support the command (the variables are gotten one container at a time).
+                target.setVariablesBatchUnsupported();
+                locationToVariables = Collections.emptyMap();
+            } catch (RuntimeException e) {
+                Log.log(e);
+                locationToVariables = Collections.emptyMap();
+            }
+        }
+        return locationToVariables;
+    }
+}
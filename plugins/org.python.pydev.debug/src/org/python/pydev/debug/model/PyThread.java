@@ -64,6 +64,9 @@ public class PyThread extends PlatformObject implements IThread {
      */
     public void setSuspended(boolean state, IStackFrame[] stack) {
         isSuspended = state;
+        if (!state) {
+            target.invalidatePrefetchedVariables();
+        }
         if (stack != null) {
             // Only save the stack when it's paused (otherwise, it should be null, but we
             // don't want to reset it because we want to reuse the stack later on so that
@@ -79,6 +79,14 @@ public class PyVariableCollection extends PyVariable
         this.variableContainer.forceGetNewVariables();
     }
 
+    /* default */ boolean needsVariables() {
+        return this.variableContainer.needsVariables();
+    }
+
+    /* default */ void setPrefetchedVariables(PrefetchedVariables prefetchedVariables) {
+        this.variableContainer.setPrefetchedVariables(prefetchedVariables);
+    }
+
     @Override
     public boolean hasVariables() throws DebugException {
         return true;
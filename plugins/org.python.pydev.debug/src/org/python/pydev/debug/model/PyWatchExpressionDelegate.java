@@ -30,6 +30,11 @@ import org.python.pydev.debug.model.remote.ICommandResponseListener;
 public class PyWatchExpressionDelegate implements IWatchExpressionDelegate, IWatchExpressionResult,
         ICommandResponseListener {
 
+    /**
+     * Time to wait for the evaluation before reporting it as failed.
+     */
+    public static long EVALUATE_TIMEOUT_MILLIS = 30 * 1000;
+
     private final Object sync = new Object();
     protected IValue value = null;
     protected IDebugElement context;
@@ -51,10 +56,18 @@ public class PyWatchExpressionDelegate implements IWatchExpressionDelegate, IWat
                 return; //disposed
             }
 
-            // send the command, and then busy-wait
+            // send the command (the listener is notified when the response arrives or on timeout)
             EvaluateExpressionCommand cmd = new EvaluateExpressionCommand(target, expression, ((PyStackFrame) context)
                     .getLocalsLocator().getPyDBLocation(), false);
-            cmd.setCompletionListener(this);
+            cmd.getResponseFuture().whenComplete((completedCmd, e) -> {
+                if (e != null) {
+                    addError("Evaluation of " + this.getExpressionText() + " failed: " + e.getMessage());
+                    listener.watchEvaluationFinished(this);
+                } else {
+                    commandComplete(completedCmd);
+                }
+            });
+            cmd.setResponseTimeout(EVALUATE_TIMEOUT_MILLIS);
             target.postCommand(cmd);
 
         } else {
@@ -8,17 +8,41 @@ package org.python.pydev.debug.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.debug.core.DebugException;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariablesBatchCommand;
 import org.python.pydev.debug.model.remote.ICommandResponseListener;
 import org.python.pydev.shared_core.log.Log;
+import org.xml.sax.Attributes;
 
 public class VariablesLoader implements ICommandResponseListener {
 
+    /**
+     * Time to wait for the variables before returning (if they arrive later, the parent is notified asynchronously).
+     */
+    public static long WAIT_FOR_VARIABLES_MILLIS = 1500;
+
+    /**
+     * When a container is expanded, the variables of the containers among its variables are prefetched in a single
+     * request (with this depth). 0 means that each container gets its variables only when expanded.
+     */
+    public static int PREFETCH_DEPTH = 1;
+
+    /**
+     * Max number of containers whose variables are prefetched in a single request.
+     */
+    public static int MAX_PREFETCH_CONTAINERS = 20;
+
+    /**
+     * Containers with more items than this are not prefetched (they're only gotten if expanded).
+     */
+    public static int MAX_PREFETCH_ITEMS = 100;
+
     private volatile PyVariable[] currentVariables;
     private volatile PyVariable[] oldVariables;
     private final ContainerOfVariables parent;
@@ -45,29 +69,36 @@ public class VariablesLoader implements ICommandResponseListener {
         if (target == null) {
             return new PyVariable[0];
         }
+        PrefetchedVariables prefetched = this.parent.takePrefetchedVariables();
+        if (prefetched != null) {
+            IVariableLocator locator = getLocator();
+            if (locator != null) {
+                List<Attributes> attributes = prefetched.get(locator.getPyDBLocation(), WAIT_FOR_VARIABLES_MILLIS,
+                        this.monitor);
+                if (attributes != null) {
+                    onVariablesReceived(target, XMLUtils.createVariables(target, locator, attributes), prefetched);
+                    if (currentVariables != null) {
+                        return currentVariables;
+                    }
+                    return new PyVariable[0];
+                }
+            }
+            // Not prefetched: go on to get it as usual.
+        }
         GetVariableCommand variableCommand = this.parent.getVariableCommand(target);
         variableCommand.setCompletionListener(this);
         target.postCommand(variableCommand);
-        return waitForCommand();
+        return waitForCommand(variableCommand);
     }
 
-    private PyVariable[] waitForCommand() {
-        try {
-            // VariablesView does not deal well with children changing asynchronously.
-            // it causes unneeded scrolling, because view preserves selection instead
-            // of visibility.
-            // I try to minimize the occurrence here, by giving pydevd time to complete the
-            // task before we are forced to do asynchronous notification.
-            int i = 150; //up to 1.5 seconds
-            while (--i > 0 && currentVariables == null) {
-                if (this.monitor != null && this.monitor.isCanceled() == true) {
-                    //canceled request... let's return
-                    return new PyVariable[0];
-                }
-                Thread.sleep(10); //10 millis
-            }
-        } catch (InterruptedException e) {
-            Log.log(e);
+    private PyVariable[] waitForCommand(GetVariableCommand variableCommand) {
+        // VariablesView does not deal well with children changing asynchronously.
+        // it causes unneeded scrolling, because view preserves selection instead
+        // of visibility.
+        // I try to minimize the occurrence here, by giving pydevd time to complete the
+        // task before we are forced to do asynchronous notification.
+        if (!variableCommand.waitForResponse(WAIT_FOR_VARIABLES_MILLIS, this.monitor)) {
+            return new PyVariable[0];
         }
 
         if (currentVariables != null) {
@@ -84,7 +115,14 @@ public class VariablesLoader implements ICommandResponseListener {
             return;
         }
         PyVariable[] temp = PyVariableCollection.getCommandVariables(cmd, target, locator);
+        onVariablesReceived(target, temp, null);
+    }
 
+    /**
+     * @param prefetched the prefetch from where the variables were gotten (null if they were gotten with a
+     * GetVariableCommand).
+     */
+    private void onVariablesReceived(AbstractDebugTarget target, PyVariable[] temp, PrefetchedVariables prefetched) {
         if (addGlobalsVariable) {
             PyVariable[] temp1 = new PyVariable[temp.length + 1];
             System.arraycopy(temp, 0, temp1, 1, temp.length);
@@ -94,10 +132,54 @@ public class VariablesLoader implements ICommandResponseListener {
         }
 
         PyVariable[] newVars = this.verifyVariablesModified(temp, oldVariables);
+        prefetchContainers(target, newVars, prefetched);
 
         currentVariables = parent.setVariables(newVars);
     }
 
+    /**
+     * Makes the containers among the given variables get their variables from a prefetch when expanded: the
+     * one where the given variables came from (if it already has them, i.e.: it was requested with depth > 1)
+     * or a new one, which requests the variables of all the others in a single command.
+     *
+     * Only done for the variables of a container which was expanded (the variables of a frame are gotten on
+     * each suspend/step, when it's still not known whether any of its containers will be expanded -- note that
+     * addGlobalsVariable is only set for frames).
+     */
+    private void prefetchContainers(AbstractDebugTarget target, PyVariable[] vars, PrefetchedVariables prefetched) {
+        if (PREFETCH_DEPTH <= 0 || addGlobalsVariable || target.isVariablesBatchUnsupported()) {
+            return;
+        }
+        List<PyVariableCollection> toPrefetch = new ArrayList<>();
+        List<String> locations = new ArrayList<>();
+        for (int i = 0; i < vars.length; i++) {
+            if (!(vars[i] instanceof PyVariableCollection)) {
+                continue;
+            }
+            PyVariableCollection collection = (PyVariableCollection) vars[i];
+            if (!collection.needsVariables()) {
+                continue;
+            }
+            String location = collection.getPyDBLocation();
+            if (prefetched != null && prefetched.has(location)) {
+                collection.setPrefetchedVariables(prefetched);
+            } else if (toPrefetch.size() < MAX_PREFETCH_CONTAINERS) {
+                toPrefetch.add(collection);
+                locations.add(location);
+            }
+        }
+        if (toPrefetch.isEmpty()) {
+            return;
+        }
+        GetVariablesBatchCommand cmd = new GetVariablesBatchCommand(target, locations, PREFETCH_DEPTH,
+                MAX_PREFETCH_ITEMS);
+        PrefetchedVariables newPrefetched = new PrefetchedVariables(target, cmd);
+        for (PyVariableCollection collection : toPrefetch) {
+            collection.setPrefetchedVariables(newPrefetched);
+        }
+        target.postCommand(cmd);
+    }
+
     /**
      * Compares stack frames to check for modified variables (and mark them as modified in the new stack).
      * Tries to reuse variables from the old list so that the tree state is kept on the variables view.
@@ -13,11 +13,14 @@ package org.python.pydev.debug.model;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -34,10 +37,12 @@ import org.python.pydev.debug.newconsole.EvaluateDebugConsoleExpression;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
@@ -73,6 +78,50 @@ public class XMLUtils {
         return parser;
     }
 
+    /**
+     * Parser reused by each thread (so that a new SAXParser isn't created for each message).
+     */
+    private static final ThreadLocal<SAXParser> threadParser = new ThreadLocal<SAXParser>();
+
+    /**
+     * Parses the given payload with the parser of the current thread (the payload is read directly from the
+     * string, without encoding it to bytes first).
+     */
+    private static void parse(String payload, DefaultHandler handler) throws CoreException, SAXException,
+            IOException {
+        parse(new InputSource(new StringReader(payload)), handler);
+    }
+
+    /**
+     * @return a source which feeds the payload in the given (utf-8) bytes directly to the parser (without decoding
+     * it to a String first).
+     */
+    private static InputSource createInputSource(byte[] bytes, int offset, int length) {
+        InputSource source = new InputSource(new ByteArrayInputStream(bytes, offset, length));
+        source.setEncoding("UTF-8");
+        return source;
+    }
+
+    private static void parse(InputSource source, DefaultHandler handler) throws CoreException, SAXException,
+            IOException {
+        SAXParser parser = threadParser.get();
+        if (parser == null) {
+            parser = getSAXParser();
+        } else {
+            threadParser.set(null); // A nested parse in the meanwhile gets a new parser.
+        }
+        try {
+            parser.parse(source, handler);
+        } finally {
+            try {
+                parser.reset();
+                threadParser.set(parser);
+            } catch (UnsupportedOperationException e) {
+                // Can't be reused.
+            }
+        }
+    }
+
     private static String decode(String value) {
         if (value != null) {
             try {
@@ -125,10 +174,21 @@ public class XMLUtils {
      * Creates IThread[] from the XML response
      */
     static public PyThread[] ThreadsFromXML(AbstractDebugTarget target, String payload) throws CoreException {
+        return ThreadsFromXML(target, new InputSource(new StringReader(payload)));
+    }
+
+    /**
+     * Creates IThread[] from the XML response in the given utf-8 bytes.
+     */
+    static public PyThread[] ThreadsFromXML(AbstractDebugTarget target, byte[] bytes, int offset, int length)
+            throws CoreException {
+        return ThreadsFromXML(target, createInputSource(bytes, offset, length));
+    }
+
+    private static PyThread[] ThreadsFromXML(AbstractDebugTarget target, InputSource source) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToThreadInfo info = new XMLToThreadInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(source, info);
             return info.threads.toArray(new PyThread[0]);
 
         } catch (CoreException e) {
@@ -279,6 +339,21 @@ public class XMLUtils {
 
     }
 
+    /**
+     * Same as XMLToStack(AbstractDebugTarget, String) but parsing the payload from the utf-8 bytes received.
+     */
+    public static StoppedStack XMLToStack(AbstractDebugTarget target, byte[] bytes, int offset, int length)
+            throws CoreException {
+        try {
+            XMLToStackInfo info = new XMLToStackInfo(target);
+            parse(createInputSource(bytes, offset, length), info);
+            return new StoppedStack(info.thread, info.stopReason, info.stack.toArray(new IStackFrame[0]));
+        } catch (SAXException | IOException e) {
+            // The string version tries to fix the xml (and reports the payload if it still fails).
+            return XMLToStack(target, new String(bytes, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
     /**
      * @param payload
      * @return an array of [thread_id, stopReason, IStackFrame[]]
@@ -287,15 +362,14 @@ public class XMLUtils {
         IStackFrame[] stack = new IStackFrame[0];
         StoppedStack retVal;
         try {
-            SAXParser parser = getSAXParser();
             XMLToStackInfo info = null;
             try {
                 info = new XMLToStackInfo(target);
-                parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+                parse(payload, info);
             } catch (SAXParseException e) {
                 info = new XMLToStackInfo(target);
                 FastStringBuffer buf2 = fixXml(payload);
-                parser.parse(new ByteArrayInputStream(buf2.getBytes()), info);
+                parse(buf2.toString(), info);
                 Log.log("Received wrong xml which was fixed but indicates problem in the debugger in the server-side (please report error):\n"
                         + payload, e);
             }
@@ -387,9 +461,8 @@ public class XMLUtils {
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             PyVariable[] vars = new PyVariable[info.vars.size()];
             for (int i = 0; i < info.vars.size(); i++) {
                 vars[i] = info.vars.get(i);
@@ -404,6 +477,68 @@ public class XMLUtils {
         }
     }
 
+    /**
+     * Processes CMD_GET_VARIABLES_BATCH return
+     * <xml><vars locator="..."><var .../>*</vars>*</xml>
+     *
+     * Containers which couldn't be resolved (<vars locator="..." error="True">) are not added.
+     */
+    static class XMLToVariablesBatchInfo extends DefaultHandler {
+        public final Map<String, List<Attributes>> locationToVariables = new HashMap<String, List<Attributes>>();
+        private List<Attributes> current;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            if (qName.equals("vars")) {
+                current = null;
+                if (!"True".equals(attributes.getValue("error"))) {
+                    current = new ArrayList<Attributes>();
+                    locationToVariables.put(decodeIgnoreError(attributes.getValue("locator")), current);
+                }
+            } else if (qName.equals("var")) {
+                if (current != null) {
+                    // The attributes passed are reused by the parser (so, a copy must be kept).
+                    current.add(new AttributesImpl(attributes));
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (qName.equals("vars")) {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * @return a map with the location of each container to the attributes of its variables (the variables
+     * are created later on with createVariables, when the container is actually expanded).
+     */
+    public static Map<String, List<Attributes>> XMLToVariablesBatch(String payload) throws CoreException {
+        try {
+            XMLToVariablesBatchInfo info = new XMLToVariablesBatchInfo();
+            parse(payload, info);
+            return info.locationToVariables;
+        } catch (CoreException e) {
+            throw e;
+        } catch (SAXException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        } catch (IOException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        }
+    }
+
+    static PyVariable[] createVariables(AbstractDebugTarget target, IVariableLocator locator,
+            List<Attributes> attributes) {
+        PyVariable[] vars = new PyVariable[attributes.size()];
+        for (int i = 0; i < vars.length; i++) {
+            vars[i] = createVariable(target, locator, attributes.get(i));
+        }
+        return vars;
+    }
+
     // Processing referrers --------------------------------------------------------------------------------------------
 
     /**
@@ -487,9 +622,8 @@ public class XMLUtils {
             final IVariableLocator locationInDb,
             String payload) {
         try {
-            SAXParser parser = getSAXParser();
             XMLToReferrersInfoHandler info = new XMLToReferrersInfoHandler(target, locationInDb);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
 
             PyVariable[] vars = info.vars.toArray(new PyVariable[info.vars.size()]);
 
@@ -531,9 +665,8 @@ public class XMLUtils {
 
     public static List<Object[]> convertXMLcompletionsFromConsole(String payload) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToCompletionsInfo info = new XMLToCompletionsInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             return info.completions;
         } catch (CoreException e) {
             throw e;
@@ -614,10 +747,8 @@ public class XMLUtils {
             throws CoreException {
         EvaluateDebugConsoleExpression.PydevDebugConsoleMessage debugConsoleMessage = new EvaluateDebugConsoleExpression.PydevDebugConsoleMessage();
         try {
-            SAXParser parser = getSAXParser();
-
             DebugConsoleMessageInfo info = new DebugConsoleMessageInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             debugConsoleMessage = info.debugConsoleMessage;
 
         } catch (SAXException e) {
@@ -721,9 +852,8 @@ public class XMLUtils {
             AbstractDebugTarget target, String payload) throws CoreException {
         List<PyConditionalBreakPointManager.ExceptionStackTrace> exceptionStackTraceList = new ArrayList<PyConditionalBreakPointManager.ExceptionStackTrace>();
         try {
-            SAXParser parser = getSAXParser();
             ExceptionStackTraceXMLInfo info = new ExceptionStackTraceXMLInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), info);
+            parse(payload, info);
             exceptionStackTraceList = info.exceptionStackTraceList;
         } catch (SAXException e) {
             throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
@@ -6,12 +6,19 @@
  */
 package org.python.pydev.debug.model;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.XMLUtils.StoppedStack;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.utils.Timer;
+import org.xml.sax.Attributes;
 
 /**
  * @author Fabio
@@ -19,19 +26,65 @@ import org.eclipse.debug.core.model.IProcess;
  */
 public class XMLUtilsTest extends TestCase {
 
-    public void testXmlUtils() throws Exception {
-        String payload = "" + "<xml><comp p0=\"pow\" p1=\"%25\" p2=\"(x, y)\" p3=\"2\"/>" + "</xml>\n" + "\n" + "";
-        List<Object[]> xmlToCompletions = XMLUtils.convertXMLcompletionsFromConsole(payload);
-        for (Object[] objects : xmlToCompletions) {
-            assertEquals("%", objects[1]);
+    public static void main(String[] args) throws Exception {
+        // Benchmark: parsing the messages handled in the reader thread (a thread suspended with a deep stack and
+        // the threads created) from the bytes received vs. decoding them to a String first.
+        AbstractDebugTarget target = createTarget();
+        byte[] stackMessage = createMessage("106\t5\t", createStackPayload(60));
+        FastStringBuffer threads = new FastStringBuffer("<xml>", 5000);
+        for (int i = 0; i < 50; i++) {
+            threads.append("<thread name=\"Thread-").append(i).append("\" id=\"pid25170_seq").append(i)
+                    .append("\" />");
+        }
+        threads.append("</xml>");
+        byte[] threadsMessage = createMessage("103\t7\t", threads.toString());
+        int offset = 6;
+        int iterations = 20000;
+
+        for (int i = 0; i < 5; i++) {
+            Timer timer = new Timer();
+            for (int j = 0; j < iterations; j++) {
+                XMLUtils.XMLToStack(target, new String(stackMessage, offset, stackMessage.length - offset,
+                        StandardCharsets.UTF_8));
+            }
+            timer.printDiff("Stack (decoded to String)");
+            for (int j = 0; j < iterations; j++) {
+                XMLUtils.XMLToStack(target, stackMessage, offset, stackMessage.length - offset);
+            }
+            timer.printDiff("Stack (bytes)");
+
+            for (int j = 0; j < iterations; j++) {
+                XMLUtils.ThreadsFromXML(target, new String(threadsMessage, offset, threadsMessage.length - offset,
+                        StandardCharsets.UTF_8));
+            }
+            timer.printDiff("Threads (decoded to String)");
+            for (int j = 0; j < iterations; j++) {
+                XMLUtils.ThreadsFromXML(target, threadsMessage, offset, threadsMessage.length - offset);
+            }
+            timer.printDiff("Threads (bytes)");
         }
     }
 
-    public void testXmlUtils2() throws Exception {
-        String payload = "<xml><thread id=\"pid25170_seq1\" stop_reason=\"111\">\n"
-                + "<frame id=\"28191216\" name=\"<module>\" file=\"helloWorld.py\" line=\"6\"></frame><frame id=\"27818048\" name=\"run\" file=\"pydevd.py\" line=\"1355\">\"</frame>\n"
-                + "<frame id=\"25798272\" name=\"<module>\" file=\"pydevd.py\" line=\"1738\"></frame></thread></xml>";
-        AbstractDebugTarget target = new AbstractDebugTarget() {
+    /**
+     * @return the bytes of a message as received by the DebuggerReader (cmdCode\tseqCode\tpayload).
+     */
+    private static byte[] createMessage(String codes, String payload) {
+        return (codes + payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String createStackPayload(int frames) {
+        FastStringBuffer buf = new FastStringBuffer("<xml><thread id=\"pid25170_seq1\" stop_reason=\"111\">", 10000);
+        for (int i = 0; i < frames; i++) {
+            buf.append("<frame id=\"").append(28191216 + i).append("\" name=\"fun\u00e7\u00e3o").append(i)
+                    .append("\" file=\"%2Fhome%2Fuser%2Fprojects%2Fa%C3%A7%C3%A3o%2Fmod").append(i)
+                    .append(".py\" line=\"").append(i + 1).append("\"></frame>");
+        }
+        buf.append("</thread></xml>");
+        return buf.toString();
+    }
+
+    private static AbstractDebugTarget createTarget() {
+        return new AbstractDebugTarget() {
 
             @Override
             public void launchRemoved(ILaunch launch) {
@@ -58,6 +111,78 @@ public class XMLUtilsTest extends TestCase {
                 return new PyThread(this, "bar", "10");
             }
         };
+    }
+
+    public void testXmlUtils() throws Exception {
+        String payload = "" + "<xml><comp p0=\"pow\" p1=\"%25\" p2=\"(x, y)\" p3=\"2\"/>" + "</xml>\n" + "\n" + "";
+        List<Object[]> xmlToCompletions = XMLUtils.convertXMLcompletionsFromConsole(payload);
+        for (Object[] objects : xmlToCompletions) {
+            assertEquals("%", objects[1]);
+        }
+    }
+
+    public void testXmlUtils2() throws Exception {
+        String payload = "<xml><thread id=\"pid25170_seq1\" stop_reason=\"111\">\n"
+                + "<frame id=\"28191216\" name=\"<module>\" file=\"helloWorld.py\" line=\"6\"></frame><frame id=\"27818048\" name=\"run\" file=\"pydevd.py\" line=\"1355\">\"</frame>\n"
+                + "<frame id=\"25798272\" name=\"<module>\" file=\"pydevd.py\" line=\"1738\"></frame></thread></xml>";
+        AbstractDebugTarget target = createTarget();
         XMLUtils.XMLToStack(target, payload);
+
+        // The xml is also fixed when parsing from the bytes.
+        byte[] message = createMessage("106\t5\t", payload);
+        StoppedStack stoppedStack = XMLUtils.XMLToStack(target, message, 6, message.length - 6);
+        assertEquals(3, stoppedStack.stack.length);
+        assertTrue(stoppedStack.stack[0].getName().startsWith("<module> [helloWorld.py:6]"));
+    }
+
+    public void testXmlUtilsFromBytes() throws Exception {
+        AbstractDebugTarget target = createTarget();
+        byte[] message = createMessage("106\t5\t", createStackPayload(2));
+        StoppedStack stoppedStack = XMLUtils.XMLToStack(target, message, 6, message.length - 6);
+        assertEquals("111", stoppedStack.stopReason);
+        assertEquals(2, stoppedStack.stack.length);
+        assertTrue(stoppedStack.stack[1].getName().startsWith("fun\u00e7\u00e3o1 [mod1.py:2]"));
+
+        message = createMessage("103\t7\t", "<xml><thread name=\"a%C3%A7%C3%A3o\" id=\"pid1_seq2\" /></xml>");
+        PyThread[] threads = XMLUtils.ThreadsFromXML(target, message, 6, message.length - 6);
+        assertEquals(1, threads.length);
+        assertTrue(threads[0].getName().startsWith("a\u00e7\u00e3o"));
+        assertEquals("pid1_seq2", threads[0].getId());
+    }
+
+    public void testXmlToVariablesBatch() throws Exception {
+        String payload = "<xml>"
+                + "<vars locator=\"10%09f1%09FRAME%09outer\"><var name=\"a\" type=\"int\" value=\"int%3A 1\" />\n"
+                + "<var name=\"b\" type=\"list\" value=\"list%3A %5B%5D\" isContainer=\"True\" />\n</vars>"
+                + "<vars locator=\"10%09f1%09FRAME%09other\" error=\"True\"></vars>"
+                + "<vars locator=\"10%09f1%09FRAME%09outer%09b\"></vars>"
+                + "</xml>";
+        Map<String, List<Attributes>> batch = XMLUtils.XMLToVariablesBatch(payload);
+        assertEquals(2, batch.size());
+
+        List<Attributes> outer = batch.get("10\tf1\tFRAME\touter");
+        assertEquals(2, outer.size());
+        assertEquals("a", outer.get(0).getValue("name"));
+        assertEquals("True", outer.get(1).getValue("isContainer"));
+
+        assertEquals(0, batch.get("10\tf1\tFRAME\touter\tb").size());
+        assertNull(batch.get("10\tf1\tFRAME\tother"));
+    }
+
+    public void testXmlUtilsParserReused() throws Exception {
+        // The parser of the thread is reused (so, parse many times, including a payload with an error).
+        for (int i = 0; i < 3; i++) {
+            String payload = "<xml><comp p0=\"a\u00e7\u00e3o\" p1=\"%25\" p2=\"\" p3=\"" + i + "\"/></xml>";
+            List<Object[]> xmlToCompletions = XMLUtils.convertXMLcompletionsFromConsole(payload);
+            assertEquals(1, xmlToCompletions.size());
+            assertEquals("a\u00e7\u00e3o", xmlToCompletions.get(0)[0]);
+            assertEquals(String.valueOf(i), xmlToCompletions.get(0)[3]);
+            try {
+                XMLUtils.convertXMLcompletionsFromConsole("<xml><comp ");
+                fail("Expected error");
+            } catch (CoreException e) {
+                // expected
+            }
+        }
     }
 }
@@ -10,7 +10,16 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -35,6 +44,7 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  *         cmd.processResponse()
  *     else
  *         cmd.processErrorResponse()
+ *     and then the response future is completed (see getResponseFuture()).
  *
  */
 public abstract class AbstractDebuggerCommand {
@@ -86,6 +96,7 @@ public abstract class AbstractDebuggerCommand {
     static public final int CMD_SHOW_RETURN_VALUES = 146;
     static public final int CMD_INPUT_REQUESTED = 147;
     static public final int CMD_PROCESS_CREATED = 149;
+    static public final int CMD_GET_VARIABLES_BATCH = 157;
 
     static public final int CMD_ERROR = 901;
     static public final int CMD_VERSION = 501;
@@ -96,6 +107,16 @@ public abstract class AbstractDebuggerCommand {
     protected ICommandResponseListener responseListener;
     int sequence;
 
+    /**
+     * Completed (with this command) after the response is processed.
+     */
+    private final CompletableFuture<AbstractDebuggerCommand> responseFuture = new CompletableFuture<AbstractDebuggerCommand>();
+
+    /**
+     * Used to fail the response future of commands which set a response timeout.
+     */
+    private static Timer responseTimeoutTimer;
+
     public AbstractDebuggerCommand(AbstractDebugTarget debugger) {
         this.target = debugger;
         this.responseListener = null;
@@ -142,14 +163,92 @@ public abstract class AbstractDebuggerCommand {
      * Called when command completes, if needResponse was true
      */
     public final void processResponse(int cmdCode, String payload) {
-        if (cmdCode / 100 == 9) {
-            processErrorResponse(cmdCode, payload);
-        } else {
-            processOKResponse(cmdCode, payload);
+        try {
+            if (cmdCode / 100 == 9) {
+                processErrorResponse(cmdCode, payload);
+            } else {
+                processOKResponse(cmdCode, payload);
+            }
+
+            if (responseListener != null) {
+                responseListener.commandComplete(this);
+            }
+        } finally {
+            responseFuture.complete(this);
+        }
+    }
+
+    /**
+     * Called when the connection with the debugger is finished before the response arrives.
+     */
+    /*default*/ final void processNoResponse(Throwable reason) {
+        responseFuture.completeExceptionally(reason);
+    }
+
+    /**
+     * @return a future which is completed with this command after its response is processed (it's completed
+     * exceptionally if the connection with the debugger is finished before the response arrives or if a
+     * response timeout was set and the response didn't arrive in time).
+     *
+     * Note: only meaningful if needResponse() returns true.
+     */
+    public CompletableFuture<AbstractDebuggerCommand> getResponseFuture() {
+        return responseFuture;
+    }
+
+    /**
+     * Makes the response future complete exceptionally with a TimeoutException if the response doesn't
+     * arrive in the given time (for clients which don't block waiting for the response).
+     */
+    public void setResponseTimeout(long timeoutMillis) {
+        if (responseFuture.isDone()) {
+            return;
+        }
+        TimerTask task = new TimerTask() {
+
+            @Override
+            public void run() {
+                responseFuture.completeExceptionally(new TimeoutException(
+                        "Timed out waiting for the response to " + AbstractDebuggerCommand.this.getClass().getName()));
+            }
+        };
+        synchronized (AbstractDebuggerCommand.class) {
+            if (responseTimeoutTimer == null) {
+                responseTimeoutTimer = new Timer("pydevd.responseTimeout", true);
+            }
+            responseTimeoutTimer.schedule(task, timeoutMillis);
         }
+        responseFuture.whenComplete((cmd, e) -> task.cancel());
+    }
 
-        if (responseListener != null) {
-            responseListener.commandComplete(this);
+    /**
+     * Blocks until the response is processed, the timeout elapses or the monitor is canceled.
+     *
+     * @param monitor may be null.
+     * @return true if the response was processed and false otherwise.
+     */
+    public boolean waitForResponse(long timeoutMillis, IProgressMonitor monitor) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return responseFuture.isDone() && !responseFuture.isCompletedExceptionally();
+            }
+            try {
+                // When there's a monitor wake up from time to time to check it (completion is notified
+                // right away regardless of that).
+                responseFuture.get(monitor != null ? Math.min(remaining, 50) : remaining, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                if (monitor != null && monitor.isCanceled()) {
+                    return false;
+                }
+            } catch (ExecutionException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Log.log(e);
+                return false;
+            }
         }
     }
 
@@ -6,13 +6,10 @@
  */
 package org.python.pydev.debug.model.remote;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.Dictionary;
-import java.util.Hashtable;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
@@ -46,7 +43,7 @@ public class DebuggerReader implements Runnable {
     /**
      * commands waiting for response. Their keys are the sequence ids
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private final ResponseQueue responseQueue = new ResponseQueue();
 
     /**
      * we read from this
@@ -77,42 +74,64 @@ public class DebuggerReader implements Runnable {
      */
     public void done() {
         this.done = true;
+        failPendingResponses();
     }
 
     /**
      * @param cmd
      */
     public void addToResponseQueue(AbstractDebuggerCommand cmd) {
-        int sequence = cmd.getSequence();
-        synchronized (responseQueue) {
-            responseQueue.put(sequence, cmd);
+        responseQueue.put(cmd);
+        if (done) {
+            // The reader may have finished in the meanwhile (so, the response won't arrive).
+            failPendingResponses();
         }
     }
 
     /**
-     * Parses & dispatches the command
+     * Completes the response future of the commands still waiting for a response (called when the reader finishes).
      */
-    private void processCommand(String cmdLine) {
+    private void failPendingResponses() {
+        IOException reason = new IOException("Connection with the debugger finished before the response arrived.");
+        for (AbstractDebuggerCommand cmd : responseQueue.removeAll()) {
+            cmd.processNoResponse(reason);
+        }
+    }
+
+    /**
+     * Parses & dispatches the command (cmdCode\tseqCode\tpayload) in the first length bytes of the given buffer.
+     *
+     * The codes are parsed directly from the bytes. Commands sent by the debugger are passed on with the payload
+     * still in the buffer (so that the xml can be parsed directly from it) and only the payload of responses is
+     * decoded to a String (the commands keep it after the buffer is reused).
+     */
+    private void processCommand(byte[] bytes, int length) {
         try {
-            String[] cmdParsed = cmdLine.split("\t", 3);
-            int cmdCode = Integer.parseInt(cmdParsed[0]);
-            int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = cmdParsed[2];
+            int firstTab = indexOf(bytes, 0, length, (byte) '\t');
+            int secondTab = indexOf(bytes, firstTab + 1, length, (byte) '\t');
+            if (firstTab == -1 || secondTab == -1) {
+                throw new IllegalArgumentException("Unexpected message from pydevd: "
+                        + new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            String sCmdCode = new String(bytes, 0, firstTab, StandardCharsets.US_ASCII);
+            String sSeqCode = new String(bytes, firstTab + 1, secondTab - firstTab - 1, StandardCharsets.US_ASCII);
+            int cmdCode = Integer.parseInt(sCmdCode);
+            int seqCode = Integer.parseInt(sSeqCode);
+            int payloadStart = secondTab + 1;
+            int payloadLength = length - payloadStart;
 
             // is there a response waiting
-            AbstractDebuggerCommand cmd;
-            synchronized (responseQueue) {
-                cmd = responseQueue.remove(new Integer(seqCode));
-            }
+            AbstractDebuggerCommand cmd = responseQueue.remove(seqCode);
 
             if (cmd == null) {
                 if (remote != null) {
-                    remote.processCommand(cmdParsed[0], cmdParsed[1], payload);
+                    remote.processCommand(sCmdCode, sSeqCode, bytes, payloadStart, payloadLength);
                 } else {
                     PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
                 }
             } else {
-                cmd.processResponse(cmdCode, payload);
+                cmd.processResponse(cmdCode,
+                        new String(bytes, payloadStart, payloadLength, StandardCharsets.UTF_8));
             }
         } catch (Exception e) {
             Log.log(e);
@@ -120,6 +139,18 @@ public class DebuggerReader implements Runnable {
         }
     }
 
+    private static int indexOf(byte[] bytes, int start, int end, byte b) {
+        if (start < 0) {
+            return -1;
+        }
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * keep reading until we finish (that should happen when an exception is thrown, or if it is set as
      * done from outside)
@@ -130,14 +161,12 @@ public class DebuggerReader implements Runnable {
     public void run() {
         try {
             while (!done) {
-                String contents;
                 try {
-                    if ((contents = readContents()) == null) {
+                    int length = readContents();
+                    if (length < 0) {
                         done = true;
-                    } else {
-                        if (contents.length() > 0) {
-                            processCommand(contents.toString());
-                        }
+                    } else if (length > 0) {
+                        processCommand(payloadBuffer, length);
                     }
                 } catch (Exception e1) {
                     done = true;
@@ -157,17 +186,30 @@ public class DebuggerReader implements Runnable {
                 }
             }
         } finally {
-            buffer = null;
+            done = true;
+            failPendingResponses();
+            payloadBuffer = null;
             contents = null;
-            byteArrayOutputStream = null;
         }
     }
 
-    private byte[] buffer = new byte[32 * 1024];
+    /**
+     * Messages bigger than this don't have their buffer kept for the next message.
+     */
+    private static final int MAX_KEPT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The message is read directly into this buffer (which is reused for the next messages).
+     */
+    private byte[] payloadBuffer = new byte[32 * 1024];
     private FastStringBuffer contents = new FastStringBuffer();
-    private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
-    private String readContents() throws IOException {
+    /**
+     * Reads a message into the payloadBuffer.
+     *
+     * @return the number of bytes of the message or -1 if no more messages can be read.
+     */
+    private int readContents() throws IOException {
         int bytesToRead = -1;
 
         while (true) {
@@ -176,20 +218,24 @@ public class DebuggerReader implements Runnable {
 
             if (contents.length() == 0) {
                 // Ok, real payload ahead.
-                // Read once from stdin and print result to stdout
+                // Read it directly into the payload buffer (decoded only when processing the command).
                 if (bytesToRead == -1) {
                     Log.log("Error. pydevd did not respect protocol (Content-Length not passed in header).");
-                    return null;
+                    return -1;
                 }
 
-                int bytesRead;
-                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
-                    byteArrayOutputStream.write(buffer, 0, bytesRead);
-                    bytesToRead -= bytesRead;
+                if (payloadBuffer.length < bytesToRead || payloadBuffer.length > MAX_KEPT_BUFFER_SIZE) {
+                    payloadBuffer = new byte[Math.max(bytesToRead, 32 * 1024)];
+                }
+                int read = 0;
+                while (read < bytesToRead) {
+                    int bytesRead = in.read(payloadBuffer, read, bytesToRead - read);
+                    if (bytesRead < 0) {
+                        throw new IOException("Connection closed while reading message from pydevd.");
+                    }
+                    read += bytesRead;
                 }
-                byte[] bytes = byteArrayOutputStream.toByteArray();
-                byteArrayOutputStream.reset();
-                return new String(bytes, StandardCharsets.UTF_8);
+                return bytesToRead;
             } else {
                 // Header found
                 String contentLen = "Content-Length: ";
@@ -211,7 +257,7 @@ public class DebuggerReader implements Runnable {
                         PyDialogHelpers.openCritical("Error", msg);
                     });
                     Log.log(msg);
-                    return null;
+                    return -1;
                 }
             }
         }
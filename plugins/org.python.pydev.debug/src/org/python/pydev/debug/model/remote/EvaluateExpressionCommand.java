@@ -20,7 +20,7 @@ import org.python.pydev.shared_core.string.StringUtils;
  * GetVariable network command.
  *
  * GetVariable gets the value of the variable from network as XML.
- * The caller can busy-wait for the response.
+ * The caller can wait for the response (see getResponseFuture()).
  */
 public class EvaluateExpressionCommand extends AbstractDebuggerCommand {
 
@@ -19,7 +19,7 @@ import org.python.pydev.debug.model.AbstractDebugTarget;
  * GetVariable network command.
  * 
  * GetVariable gets the value of the variable from network as XML.
- * The caller can busy-wait for the response.
+ * The caller can wait for the response (see getResponseFuture()).
  */
 public class GetVariableCommand extends AbstractDebuggerCommand {
 
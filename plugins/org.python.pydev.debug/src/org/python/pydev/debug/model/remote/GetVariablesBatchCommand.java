@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.python.pydev.debug.core.PydevDebugPlugin;
+import org.python.pydev.debug.model.AbstractDebugTarget;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * GetVariablesBatch network command.
+ *
+ * Gets the contents of many variables (all in the same thread) in a single request. If depth > 1, the
+ * contents of the containers inside those variables are also gotten (up to the given depth). Containers with
+ * more than maxItems items are not resolved (they're marked with error="True").
+ *
+ * The response is: <xml><vars locator="..."><var .../>*</vars>*</xml> (see XMLUtils.XMLToVariablesBatch).
+ */
+public class GetVariablesBatchCommand extends AbstractDebuggerCommand {
+
+    private final List<String> locators;
+    private final int depth;
+    private final int maxItems;
+
+    private boolean isError = false;
+    private String payload;
+
+    /**
+     * @param locators the locations of the variables (as in GetVariableCommand).
+     */
+    public GetVariablesBatchCommand(AbstractDebugTarget debugger, List<String> locators, int depth,
+            int maxItems) {
+        super(debugger);
+        this.locators = locators;
+        this.depth = depth;
+        this.maxItems = maxItems;
+    }
+
+    @Override
+    public String getOutgoing() {
+        FastStringBuffer buf = new FastStringBuffer(locators.size() * 40);
+        buf.append(depth).append('\t').append(maxItems);
+        try {
+            for (String locator : locators) {
+                // Each locator has tabs, so, it's quoted.
+                buf.append('\t').append(URLEncoder.encode(locator, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return makeCommand(CMD_GET_VARIABLES_BATCH, sequence, buf.toString());
+    }
+
+    @Override
+    public boolean needResponse() {
+        return true;
+    }
+
+    @Override
+    public void processOKResponse(int cmdCode, String payload) {
+        if (cmdCode == CMD_GET_VARIABLES_BATCH) {
+            this.payload = payload;
+        } else {
+            isError = true;
+            PydevDebugPlugin.log(IStatus.ERROR, "Unexpected response to GetVariablesBatchCommand", null);
+        }
+    }
+
+    @Override
+    public void processErrorResponse(int cmdCode, String payload) {
+        this.payload = payload;
+        isError = true;
+    }
+
+    public String getResponse() throws CoreException {
+        if (isError) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "pydevd error:" + payload, null));
+        } else {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The commands waiting for a response, keyed by their sequence id.
+ *
+ * It's a map from ints to commands with open addressing (linear probing), so, the sequence ids are never boxed
+ * (all the methods are synchronized: it's accessed by the reader and the threads posting commands).
+ */
+/*default*/ final class ResponseQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] sequences = new int[INITIAL_CAPACITY];
+
+    private AbstractDebuggerCommand[] commands = new AbstractDebuggerCommand[INITIAL_CAPACITY];
+
+    private int size;
+
+    private int indexFor(int sequence) {
+        // Sequences are usually consecutive (odd) numbers, so, mixing the bits isn't really needed.
+        return (sequence >>> 1) & (commands.length - 1);
+    }
+
+    /**
+     * Adds the command (replacing a command with the same sequence if there's one).
+     */
+    public synchronized void put(AbstractDebuggerCommand cmd) {
+        int sequence = cmd.getSequence();
+        int mask = commands.length - 1;
+        int i = indexFor(sequence);
+        while (commands[i] != null) {
+            if (sequences[i] == sequence) {
+                commands[i] = cmd;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        sequences[i] = sequence;
+        commands[i] = cmd;
+        size++;
+        if (size * 2 > commands.length) {
+            resize(commands.length * 2);
+        }
+    }
+
+    /**
+     * @return the command removed or null if no command with the given sequence was there.
+     */
+    public synchronized AbstractDebuggerCommand remove(int sequence) {
+        int mask = commands.length - 1;
+        int i = indexFor(sequence);
+        while (commands[i] != null) {
+            if (sequences[i] == sequence) {
+                AbstractDebuggerCommand cmd = commands[i];
+                removeAt(i);
+                return cmd;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all the commands.
+     *
+     * @return the commands removed.
+     */
+    public synchronized List<AbstractDebuggerCommand> removeAll() {
+        List<AbstractDebuggerCommand> removed = new ArrayList<AbstractDebuggerCommand>(size);
+        for (int i = 0; i < commands.length; i++) {
+            if (commands[i] != null) {
+                removed.add(commands[i]);
+                commands[i] = null;
+            }
+        }
+        size = 0;
+        return removed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Removes the entry at the given slot, shifting back the entries after it which would no longer be found.
+     */
+    private void removeAt(int i) {
+        int mask = commands.length - 1;
+        commands[i] = null;
+        size--;
+        int j = (i + 1) & mask;
+        while (commands[j] != null) {
+            int home = indexFor(sequences[j]);
+            // Move the entry to the empty slot if that slot is between its home and its current position.
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                sequences[i] = sequences[j];
+                commands[i] = commands[j];
+                commands[j] = null;
+                i = j;
+            }
+            j = (j + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldSequences = sequences;
+        AbstractDebuggerCommand[] oldCommands = commands;
+        sequences = new int[capacity];
+        commands = new AbstractDebuggerCommand[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldCommands.length; j++) {
+            if (oldCommands[j] != null) {
+                int i = indexFor(oldSequences[j]);
+                while (commands[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                sequences[i] = oldSequences[j];
+                commands[i] = oldCommands[j];
+            }
+        }
+    }
+}
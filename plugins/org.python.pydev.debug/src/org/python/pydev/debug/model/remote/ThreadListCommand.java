@@ -35,14 +35,9 @@ public class ThreadListCommand extends AbstractDebuggerCommand {
     }
 
     public void waitUntilDone(int timeout) throws InterruptedException {
-        while (!done && timeout > 0) {
-            timeout -= 100;
-            synchronized (this) {
-                Thread.sleep(100);
-            }
-        }
-        if (timeout < 0)
+        if (!waitForResponse(timeout, null) || !done) {
             throw new InterruptedException();
+        }
     }
 
     public PyThread[] getThreads() {
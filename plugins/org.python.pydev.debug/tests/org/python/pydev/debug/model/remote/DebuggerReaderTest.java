@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+import junit.framework.TestCase;
+
+public class DebuggerReaderTest extends TestCase {
+
+    /**
+     * A target which just provides the sequences (and records whether it was terminated).
+     */
+    /*default*/ static class TestTarget extends AbstractDebugTarget {
+
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        @Override
+        public boolean canTerminate() {
+            return true;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminated.getCount() == 0;
+        }
+
+        @Override
+        public void terminate() {
+            terminated.countDown();
+        }
+
+        @Override
+        public IProcess getProcess() {
+            return null;
+        }
+
+        @Override
+        public void launchRemoved(ILaunch launch) {
+        }
+    }
+
+    private static class TestCommand extends AbstractDebuggerCommand {
+
+        private volatile String okPayload;
+
+        private TestCommand(AbstractDebugTarget debugger) {
+            super(debugger);
+        }
+
+        @Override
+        public String getOutgoing() {
+            return makeCommand(CMD_VERSION, sequence, "");
+        }
+
+        @Override
+        public boolean needResponse() {
+            return true;
+        }
+
+        @Override
+        public void processOKResponse(int cmdCode, String payload) {
+            okPayload = payload;
+        }
+    }
+
+    private TestTarget target;
+    private ServerSocket serverSocket;
+    private Socket pydevdSocket;
+    private Socket readerSocket;
+    private DebuggerReader reader;
+    private Thread readerThread;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        target = new TestTarget();
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        pydevdSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        readerSocket = serverSocket.accept();
+        reader = new DebuggerReader(readerSocket, target);
+        readerThread = new Thread(reader, "pydevd.reader");
+        readerThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        reader.done();
+        pydevdSocket.close();
+        readerSocket.close();
+        serverSocket.close();
+        readerThread.join(10000);
+        super.tearDown();
+    }
+
+    /**
+     * Sends a message as pydevd would.
+     */
+    private void send(int cmdCode, int sequence, String payload) throws IOException {
+        byte[] bytes = AbstractDebuggerCommand.makeCommand(cmdCode, sequence, payload).getBytes(
+                StandardCharsets.UTF_8);
+        OutputStream out = pydevdSocket.getOutputStream();
+        out.write(("Content-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private TestCommand addCommand() {
+        TestCommand cmd = new TestCommand(target);
+        reader.addToResponseQueue(cmd);
+        return cmd;
+    }
+
+    private static void assertFailedWith(Class<?> expected, AbstractDebuggerCommand cmd) throws Exception {
+        try {
+            cmd.getResponseFuture().get(10, TimeUnit.SECONDS);
+            fail("Expected the response future to fail.");
+        } catch (ExecutionException e) {
+            assertTrue("Found: " + e.getCause(), expected.isInstance(e.getCause()));
+        }
+    }
+
+    public void testResponse() throws Exception {
+        TestCommand cmd = addCommand();
+        TestCommand other = addCommand();
+        send(AbstractDebuggerCommand.CMD_VERSION, cmd.getSequence(), "payloadá");
+
+        assertTrue(cmd.waitForResponse(10000, null));
+        assertEquals("payloadá", cmd.okPayload);
+        assertFalse(other.getResponseFuture().isDone());
+    }
+
+    public void testWaitForResponseTimeout() throws Exception {
+        TestCommand cmd = addCommand();
+        long initial = System.currentTimeMillis();
+        assertFalse(cmd.waitForResponse(100, null));
+        assertTrue(System.currentTimeMillis() - initial >= 100);
+        assertFalse(cmd.waitForResponse(100, new NullProgressMonitor()));
+
+        // The response may still arrive later on.
+        send(AbstractDebuggerCommand.CMD_VERSION, cmd.getSequence(), "late");
+        assertTrue(cmd.waitForResponse(10000, null));
+        assertEquals("late", cmd.okPayload);
+    }
+
+    public void testWaitForResponseCanceled() throws Exception {
+        TestCommand cmd = addCommand();
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        final CountDownLatch waiting = new CountDownLatch(1);
+        Thread cancelThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waiting.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                monitor.setCanceled(true);
+            }
+        };
+        cancelThread.start();
+        waiting.countDown();
+        // Returns when the monitor is canceled (well before the timeout).
+        assertFalse(cmd.waitForResponse(60000, monitor));
+        assertTrue(monitor.isCanceled());
+        assertFalse(cmd.getResponseFuture().isDone());
+        cancelThread.join();
+    }
+
+    public void testResponseTimeout() throws Exception {
+        TestCommand cmd = addCommand();
+        cmd.setResponseTimeout(50);
+        assertFailedWith(TimeoutException.class, cmd);
+        assertFalse(cmd.waitForResponse(10000, null));
+    }
+
+    public void testFailPendingResponsesOnDisconnect() throws Exception {
+        TestCommand cmd1 = addCommand();
+        TestCommand cmd2 = addCommand();
+        pydevdSocket.close();
+
+        assertFailedWith(IOException.class, cmd1);
+        assertFailedWith(IOException.class, cmd2);
+        // Doesn't wait for the timeout.
+        assertFalse(cmd1.waitForResponse(60000, null));
+        assertTrue(target.terminated.await(10, TimeUnit.SECONDS));
+        readerThread.join(10000);
+        assertFalse(readerThread.isAlive());
+    }
+
+    public void testFailPendingResponsesOnDone() throws Exception {
+        TestCommand cmd = addCommand();
+        reader.done();
+        assertFailedWith(IOException.class, cmd);
+
+        // Commands added after the reader is done fail right away.
+        TestCommand after = addCommand();
+        assertFailedWith(IOException.class, after);
+        assertNull(after.okPayload);
+    }
+}
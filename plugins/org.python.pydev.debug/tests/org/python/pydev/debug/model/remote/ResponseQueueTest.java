@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ResponseQueueTest extends TestCase {
+
+    private static class TestCommand extends AbstractDebuggerCommand {
+
+        private TestCommand(int sequence) {
+            super(new DebuggerReaderTest.TestTarget());
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String getOutgoing() {
+            return "";
+        }
+    }
+
+    public void testPutRemove() throws Exception {
+        ResponseQueue queue = new ResponseQueue();
+        TestCommand cmd1 = new TestCommand(1);
+        TestCommand cmd3 = new TestCommand(3);
+        queue.put(cmd1);
+        queue.put(cmd3);
+        assertEquals(2, queue.size());
+
+        assertNull(queue.remove(5));
+        assertSame(cmd3, queue.remove(3));
+        assertNull(queue.remove(3));
+        assertEquals(1, queue.size());
+
+        TestCommand other1 = new TestCommand(1);
+        queue.put(other1);
+        assertEquals(1, queue.size());
+        assertSame(other1, queue.remove(1));
+        assertEquals(0, queue.size());
+    }
+
+    public void testRemoveAll() throws Exception {
+        ResponseQueue queue = new ResponseQueue();
+        for (int i = 1; i < 100; i += 2) {
+            queue.put(new TestCommand(i));
+        }
+        List<AbstractDebuggerCommand> removed = queue.removeAll();
+        assertEquals(50, removed.size());
+        assertEquals(0, queue.size());
+        assertNull(queue.remove(1));
+        assertEquals(0, queue.removeAll().size());
+    }
+
+    public void testCollisions() throws Exception {
+        // Same slot (the table starts with 16 slots) and negative sequences.
+        ResponseQueue queue = new ResponseQueue();
+        int[] sequences = new int[] { 1, 33, 65, 97, -31, 3 };
+        for (int sequence : sequences) {
+            queue.put(new TestCommand(sequence));
+        }
+        assertEquals(33, queue.remove(33).getSequence());
+        assertEquals(97, queue.remove(97).getSequence());
+        assertEquals(-31, queue.remove(-31).getSequence());
+        assertEquals(1, queue.remove(1).getSequence());
+        assertEquals(65, queue.remove(65).getSequence());
+        assertEquals(3, queue.remove(3).getSequence());
+        assertEquals(0, queue.size());
+    }
+
+    public void testRandomAgainstMap() throws Exception {
+        ResponseQueue queue = new ResponseQueue();
+        Map<Integer, AbstractDebuggerCommand> expected = new HashMap<Integer, AbstractDebuggerCommand>();
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            int sequence = random.nextInt(200) * 2 + 1;
+            if (random.nextBoolean()) {
+                TestCommand cmd = new TestCommand(sequence);
+                queue.put(cmd);
+                expected.put(sequence, cmd);
+            } else {
+                assertSame(expected.remove(sequence), queue.remove(sequence));
+            }
+            assertEquals(expected.size(), queue.size());
+        }
+        List<AbstractDebuggerCommand> removed = queue.removeAll();
+        assertEquals(new HashSet<AbstractDebuggerCommand>(expected.values()),
+                new HashSet<AbstractDebuggerCommand>(removed));
+        assertEquals(expected.size(), removed.size());
+        assertEquals(new ArrayList<AbstractDebuggerCommand>(), queue.removeAll());
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.shared_core.model.ISimpleNode;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * A process-wide cache of the asts parsed, keyed by the contents parsed (along with the grammar version), so that
+ * the same contents parsed by different clients (i.e.: the editor, the builders and the code-completion) are only
+ * parsed once.
+ *
+ * The asts in this cache are shared, so, clients must not change them (if some change is needed, a copy must be
+ * done -- see: SimpleNode.createCopy()).
+ *
+ * The cache is bounded by an estimate of the memory retained by the asts and the least recently used entries are
+ * removed when that limit is reached.
+ */
+public final class AstCache {
+
+    /**
+     * Note: an ast usually takes about 10x the memory of the contents which generated it (and the contents are
+     * also kept in the key).
+     */
+    private static final int RETAINED_SIZE_PER_CHAR = 12;
+
+    /**
+     * Contents smaller than this aren't cached (parsing is fast enough).
+     */
+    private static final int MIN_CONTENTS_LEN = 256;
+
+    public static final long DEFAULT_MAX_RETAINED_SIZE = Math.max(8L * 1024 * 1024,
+            Math.min(128L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 20));
+
+    private static final AstCache instance = new AstCache(DEFAULT_MAX_RETAINED_SIZE);
+
+    public static AstCache get() {
+        return instance;
+    }
+
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int size;
+        public final long retainedSize;
+
+        private Stats(long hits, long misses, long evictions, int size, long retainedSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.retainedSize = retainedSize;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : ((double) hits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return "AstCache.Stats [hits=" + hits + ", misses=" + misses + ", hitRate=" + getHitRate()
+                    + ", evictions=" + evictions + ", size=" + size + ", retainedSize=" + retainedSize + "]";
+        }
+    }
+
+    private static final class Key {
+        private final String contents;
+        private final int grammarVersion;
+        private final int[] additionalGrammarVersions;
+        private final int hash;
+
+        private Key(String contents, int grammarVersion, int[] additionalGrammarVersions) {
+            this.contents = contents;
+            this.grammarVersion = grammarVersion;
+            this.additionalGrammarVersions = additionalGrammarVersions;
+            this.hash = (contents.hashCode() * 31 + grammarVersion) * 31 + Arrays.hashCode(additionalGrammarVersions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            // Note: the contents are compared last (as it's the slowest one).
+            return hash == other.hash && grammarVersion == other.grammarVersion
+                    && Arrays.equals(additionalGrammarVersions, other.additionalGrammarVersions)
+                    && contents.equals(other.contents);
+        }
+    }
+
+    private static final class Entry {
+        private final ISimpleNode ast;
+        private final Throwable error;
+        private final long retainedSize;
+
+        private Entry(ISimpleNode ast, Throwable error, long retainedSize) {
+            this.ast = ast;
+            this.error = error;
+            this.retainedSize = retainedSize;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * Parses currently in progress (so that concurrent requests for the same contents wait for the same parse).
+     */
+    private final Map<Key, FutureTask<Entry>> pending = new HashMap<Key, FutureTask<Entry>>();
+
+    private final long maxRetainedSize;
+
+    private long retainedSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public AstCache(long maxRetainedSize) {
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    /**
+     * @return the key to be used for the given info/contents or null if it shouldn't be cached.
+     */
+    private static Key createKey(ParserInfo info, String contents) {
+        if (!info.generateTree || info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON
+                || contents.length() < MIN_CONTENTS_LEN) {
+            return null;
+        }
+        int[] additionalGrammarVersions = null;
+        AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
+        if (additionalGrammarVersionsToCheck != null) {
+            Set<Integer> versions = additionalGrammarVersionsToCheck.getGrammarVersions();
+            if (versions.size() > 0) {
+                additionalGrammarVersions = new int[versions.size()];
+                int i = 0;
+                for (Integer v : versions) {
+                    additionalGrammarVersions[i++] = v;
+                }
+                Arrays.sort(additionalGrammarVersions);
+            }
+        }
+        return new Key(contents, info.grammarVersion, additionalGrammarVersions);
+    }
+
+    /**
+     * @return the ast for the given contents (from the cache or parsing it if it's still not there).
+     */
+    public ParseOutput reparseDocument(final ParserInfo info, final long modifiedTime, final String contents) {
+        final Key key = createKey(info, contents);
+        if (key == null) {
+            return PyParser.reparseDocument(info, modifiedTime, contents);
+        }
+
+        FutureTask<Entry> task;
+        boolean runTask = false;
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return new ParseOutput(entry.ast, entry.error, modifiedTime);
+            }
+            task = pending.get(key);
+            if (task != null) {
+                hits++; // Some other thread is parsing it right now.
+            } else {
+                misses++;
+                task = new FutureTask<Entry>(() -> {
+                    ParseOutput output = PyParser.reparseDocument(info, modifiedTime, contents);
+                    return new Entry(output.ast, output.error, estimateRetainedSize(contents));
+                });
+                pending.put(key, task);
+                runTask = true;
+            }
+        }
+
+        if (runTask) {
+            try {
+                task.run();
+                Entry entry = task.get();
+                if (entry.ast != null) {
+                    put(key, entry);
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                // Handled below.
+            } finally {
+                synchronized (lock) {
+                    pending.remove(key);
+                }
+            }
+        }
+        Entry entry;
+        try {
+            entry = task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Just parse in this thread.
+            return PyParser.reparseDocument(info, modifiedTime, contents);
+        }
+        return new ParseOutput(entry.ast, entry.error, modifiedTime);
+    }
+
+    /**
+     * Adds an ast which was created for the given contents to the cache (only asts without errors are
+     * added here).
+     */
+    public void put(ParserInfo info, String contents, ParseOutput output) {
+        if (output.ast == null || output.error != null) {
+            return;
+        }
+        Key key = createKey(info, contents);
+        if (key != null) {
+            put(key, new Entry(output.ast, null, estimateRetainedSize(contents)));
+        }
+    }
+
+    private void put(Key key, Entry entry) {
+        if (entry.retainedSize > maxRetainedSize / 4) {
+            return; // Too big to be cached.
+        }
+        synchronized (lock) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                retainedSize -= old.retainedSize;
+            }
+            retainedSize += entry.retainedSize;
+            if (retainedSize > maxRetainedSize) {
+                Iterator<Entry> it = entries.values().iterator();
+                while (retainedSize > maxRetainedSize && it.hasNext()) {
+                    Entry removed = it.next();
+                    it.remove();
+                    retainedSize -= removed.retainedSize;
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    public static long estimateRetainedSize(String contents) {
+        return (long) contents.length() * RETAINED_SIZE_PER_CHAR;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            entries.clear();
+            retainedSize = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(hits, misses, evictions, entries.size(), retainedSize);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * Keeps the last tree parsed for a document so that when an edit is confined to a single top-level statement
+ * (or a group of top-level statements which share lines), only that statement is parsed again and the new nodes
+ * are spliced into a new Module which reuses the nodes of all the other statements (so, as with the AstCache,
+ * the trees generated must not be changed).
+ *
+ * The top-level statements are split in chunks: a chunk starts at the line where a statement starts at the
+ * first column and goes up to the line before the next chunk (so, comments and blank lines after a statement are
+ * a part of its chunk -- which is also where the parser puts them).
+ *
+ * A full parse is done whenever the incremental reparse is not possible or we're not sure it'd give the same
+ * result, i.e.:
+ *
+ * - the previous parse had errors (or the edited chunk has errors);
+ * - the edit crosses chunk boundaries;
+ * - the number of lines changed and the edit isn't in the last chunk (the nodes of the following statements are
+ *   shared with the previous tree, so, their lines can't be fixed in place);
+ * - the document has a __future__ import (which changes how the grammar works for the whole document).
+ *
+ * Note: not thread-safe, but each parser only does one parse at a time.
+ */
+final class IncrementalReparser {
+
+    /**
+     * The document contents which generated the last tree (null if the last parse wasn't error-free).
+     */
+    private String lastDoc;
+
+    private Module lastAst;
+
+    private int lastGrammarVersion;
+
+    /**
+     * The offset where each line starts in the last document.
+     */
+    private int[] lastLineStarts;
+
+    /**
+     * For each statement in the last tree, the line (0-based) where it starts if it starts a chunk or -1
+     * if it doesn't (i.e.: it shares its first line with the previous statement).
+     */
+    private int[] lastChunkLines;
+
+    /**
+     * Statistics (mostly for tests).
+     */
+    int incrementalParses;
+    int fullParses;
+
+    /**
+     * Parses the document in the given info, reusing the last tree if possible.
+     */
+    ParseOutput reparse(ParserInfo info, long modifiedTime, String doc) {
+        ParseOutput output = null;
+        if (lastDoc != null) {
+            try {
+                output = reparseIncrementally(info, modifiedTime, doc);
+            } catch (Throwable e) {
+                // Something unexpected happened: just go on to do a full parse.
+                output = null;
+            }
+        }
+        if (output == null) {
+            fullParses++;
+            output = AstCache.get().reparseDocument(info, modifiedTime, doc);
+            if (output.error == null && output.ast instanceof Module) {
+                setLast(doc, (Module) output.ast, info.grammarVersion, null);
+            } else {
+                clear();
+            }
+        } else {
+            incrementalParses++;
+            AstCache.get().put(info, doc, output);
+        }
+        return output;
+    }
+
+    void clear() {
+        lastDoc = null;
+        lastAst = null;
+        lastLineStarts = null;
+        lastChunkLines = null;
+    }
+
+    private void setLast(String doc, Module ast, int grammarVersion, int[] chunkLines) {
+        if (!canReparseIncrementally(doc, grammarVersion)) {
+            clear();
+            return;
+        }
+        lastDoc = doc;
+        lastAst = ast;
+        lastGrammarVersion = grammarVersion;
+        lastLineStarts = computeLineStarts(doc);
+        lastChunkLines = chunkLines != null ? chunkLines : computeChunkLines(ast.body);
+    }
+
+    private static boolean canReparseIncrementally(String doc, int grammarVersion) {
+        return grammarVersion != IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON
+                && !doc.startsWith(FileUtils.BOM_UTF8) && !doc.startsWith(FileUtils.BOM_UNICODE)
+                && doc.indexOf("__future__") == -1;
+    }
+
+    /**
+     * @return the output of the incremental reparse or null if a full reparse is needed.
+     */
+    private ParseOutput reparseIncrementally(ParserInfo info, long modifiedTime, String doc) {
+        if (info.grammarVersion != lastGrammarVersion || !info.generateTree
+                || !canReparseIncrementally(doc, info.grammarVersion)) {
+            return null;
+        }
+        String oldDoc = lastDoc;
+        int oldLen = oldDoc.length();
+        int newLen = doc.length();
+        int minLen = Math.min(oldLen, newLen);
+
+        // Compute the changed region: [changeStart, oldChangeEnd) in the old doc.
+        int changeStart = 0;
+        while (changeStart < minLen && oldDoc.charAt(changeStart) == doc.charAt(changeStart)) {
+            changeStart++;
+        }
+        if (changeStart == oldLen && oldLen == newLen) {
+            // Unchanged: the last tree can be reused as is.
+            return new ParseOutput(lastAst, null, modifiedTime);
+        }
+        int suffix = 0;
+        while (suffix < minLen - changeStart
+                && oldDoc.charAt(oldLen - 1 - suffix) == doc.charAt(newLen - 1 - suffix)) {
+            suffix++;
+        }
+        int oldChangeEnd = oldLen - suffix;
+
+        // Find the chunk which contains the change.
+        stmtType[] body = lastAst.body;
+        int[] chunkLines = lastChunkLines;
+        int[] lineStarts = lastLineStarts;
+        int chunkStmt = -1; // The index of the first statement in the chunk.
+        for (int i = 0; i < body.length; i++) {
+            // Note: the first chunk always starts at the start of the document.
+            if (i == 0 || (chunkLines[i] >= 0 && lineStarts[chunkLines[i]] <= changeStart)) {
+                chunkStmt = i;
+            }
+        }
+        if (chunkStmt == -1) {
+            return null;
+        }
+        int nextChunkStmt = chunkStmt + 1;
+        while (nextChunkStmt < body.length && chunkLines[nextChunkStmt] < 0) {
+            nextChunkStmt++;
+        }
+        boolean lastChunk = nextChunkStmt == body.length;
+        if (chunkStmt == 0 && lastChunk) {
+            return null; // A single chunk: it's the same as doing a full parse.
+        }
+
+        int chunkLine = chunkStmt == 0 ? 0 : chunkLines[chunkStmt];
+        int chunkStart = lineStarts[chunkLine];
+        int oldChunkEnd = lastChunk ? oldLen : lineStarts[chunkLines[nextChunkStmt]];
+        if (oldChangeEnd > oldChunkEnd) {
+            return null; // The change crosses to the next chunk.
+        }
+        int newChunkEnd = oldChunkEnd + (newLen - oldLen);
+        if (newChunkEnd <= chunkStart) {
+            return null;
+        }
+        String newChunk = doc.substring(chunkStart, newChunkEnd);
+        if (!lastChunk) {
+            char c = newChunk.charAt(newChunk.length() - 1);
+            if (c != '\n' && c != '\r') {
+                return null; // The chunk would be joined with the next one.
+            }
+            if (countLines(newChunk, 0, newChunk.length()) != countLines(oldDoc, chunkStart, oldChunkEnd)) {
+                return null;
+            }
+        }
+
+        // Parse only the chunk (with empty lines before it so that the lines in the nodes are correct).
+        char[] charArray = createCharArrayToParse(chunkLine, newChunk);
+        Module chunkAst = parseChunk(info, charArray);
+        if (chunkAst == null || chunkAst.body.length == 0) {
+            return null;
+        }
+        stmtType[] chunkBody = chunkAst.body;
+        int[] newChunkLines = computeChunkLines(chunkBody);
+        if (chunkStmt > 0 && newChunkLines[0] != chunkLine) {
+            // Something as a comment or an empty line at the start of the chunk: those would be added to the
+            // previous statement in a full parse.
+            return null;
+        }
+
+        // Splice the new nodes.
+        int newBodyLen = body.length - (nextChunkStmt - chunkStmt) + chunkBody.length;
+        stmtType[] newBody = new stmtType[newBodyLen];
+        int[] newBodyChunkLines = new int[newBodyLen];
+        System.arraycopy(body, 0, newBody, 0, chunkStmt);
+        System.arraycopy(chunkLines, 0, newBodyChunkLines, 0, chunkStmt);
+        System.arraycopy(chunkBody, 0, newBody, chunkStmt, chunkBody.length);
+        System.arraycopy(newChunkLines, 0, newBodyChunkLines, chunkStmt, chunkBody.length);
+        System.arraycopy(body, nextChunkStmt, newBody, chunkStmt + chunkBody.length, body.length - nextChunkStmt);
+        System.arraycopy(chunkLines, nextChunkStmt, newBodyChunkLines, chunkStmt + chunkBody.length,
+                body.length - nextChunkStmt);
+
+        Module newAst = new Module(newBody);
+        newAst.beginLine = lastAst.beginLine;
+        newAst.beginColumn = lastAst.beginColumn;
+        newAst.specialsBefore = copySpecials(chunkStmt == 0 ? chunkAst.specialsBefore : lastAst.specialsBefore);
+        if (lastChunk) {
+            newAst.specialsAfter = chunkAst.specialsAfter;
+        } else {
+            newAst.specialsAfter = copySpecials(lastAst.specialsAfter);
+            if (chunkAst.specialsAfter != null && chunkAst.specialsAfter.size() > 0) {
+                // Comments at the end of the chunk: in a full parse they're added to the statement before them.
+                chunkBody[chunkBody.length - 1].getSpecialsAfter().addAll(chunkAst.specialsAfter);
+            }
+        }
+
+        setLast(doc, newAst, info.grammarVersion, newBodyChunkLines);
+        return new ParseOutput(newAst, null, modifiedTime);
+    }
+
+    private static List<Object> copySpecials(List<Object> specials) {
+        return specials != null ? new ArrayList<Object>(specials) : null;
+    }
+
+    /**
+     * @return the module for the chunk or null if it couldn't be parsed without errors.
+     */
+    private static Module parseChunk(ParserInfo info, char[] charArray) {
+        IGrammar grammar = PyParser.createGrammar(true, info.grammarVersion, charArray);
+        SimpleNode root;
+        try {
+            root = grammar.file_input();
+        } catch (Throwable e) {
+            return null;
+        }
+        if (grammar.getErrorOnParsing() != null || !(root instanceof Module)) {
+            return null;
+        }
+        AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
+        if (additionalGrammarVersionsToCheck != null) {
+            for (int grammarVersion : additionalGrammarVersionsToCheck.getGrammarVersions()) {
+                if (grammarVersion == info.grammarVersion) {
+                    continue;
+                }
+                grammar = PyParser.createGrammar(false, grammarVersion, charArray);
+                try {
+                    grammar.file_input();
+                } catch (Throwable e) {
+                    return null;
+                }
+                if (grammar.getErrorOnParsing() != null) {
+                    return null;
+                }
+            }
+        }
+        return (Module) root;
+    }
+
+    private static char[] createCharArrayToParse(int emptyLines, String chunk) {
+        int len = chunk.length();
+        char last = chunk.charAt(len - 1);
+        int addAtEnd = last != '\n' && last != '\r' ? 1 : 0;
+        char[] charArray = new char[emptyLines + len + addAtEnd];
+        for (int i = 0; i < emptyLines; i++) {
+            charArray[i] = '\n';
+        }
+        chunk.getChars(0, len, charArray, emptyLines);
+        if (addAtEnd > 0) {
+            charArray[charArray.length - 1] = '\n';
+        }
+        return charArray;
+    }
+
+    /**
+     * Visitor to get the position where a statement starts.
+     */
+    private static final class FirstPositionVisitor extends VisitorBase {
+
+        private int line;
+        private int col;
+
+        private void reset() {
+            line = Integer.MAX_VALUE;
+            col = Integer.MAX_VALUE;
+        }
+
+        private void check(int beginLine, int beginCol) {
+            if (beginLine > 0 && (beginLine < line || (beginLine == line && beginCol < col))) {
+                line = beginLine;
+                col = beginCol;
+            }
+        }
+
+        private void checkSpecials(List<Object> specials) {
+            if (specials != null) {
+                for (Object o : specials) {
+                    // Comments aren't considered (only things as parenthesis, '@', etc).
+                    if (o instanceof ISpecialStr) {
+                        ISpecialStr s = (ISpecialStr) o;
+                        check(s.getBeginLine(), s.getBeginCol());
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            check(node.beginLine, node.beginColumn);
+            checkSpecials(node.specialsBefore);
+            checkSpecials(node.specialsAfter);
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+    }
+
+    /**
+     * @return for each statement, the line (0-based) where it starts if it's at the first column (i.e.: it may
+     * start a chunk) or -1 otherwise.
+     */
+    private static int[] computeChunkLines(stmtType[] body) {
+        int[] chunkLines = new int[body.length];
+        FirstPositionVisitor visitor = new FirstPositionVisitor();
+        int lastLine = -1;
+        for (int i = 0; i < body.length; i++) {
+            visitor.reset();
+            try {
+                body[i].accept(visitor);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            int line = visitor.line - 1;
+            if (visitor.col == 1 && line > lastLine) {
+                chunkLines[i] = line;
+                lastLine = line;
+            } else {
+                chunkLines[i] = -1;
+            }
+        }
+        return chunkLines;
+    }
+
+    private static int[] computeLineStarts(String doc) {
+        int len = doc.length();
+        int[] lineStarts = new int[16];
+        int lines = 1; // lineStarts[0] == 0
+        for (int i = 0; i < len; i++) {
+            char c = doc.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < len && doc.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (c != '\n') {
+                continue;
+            }
+            if (lines == lineStarts.length) {
+                int[] newLineStarts = new int[lineStarts.length * 2];
+                System.arraycopy(lineStarts, 0, newLineStarts, 0, lines);
+                lineStarts = newLineStarts;
+            }
+            lineStarts[lines++] = i + 1;
+        }
+        // Add the end of the document as the start of a line which doesn't exist.
+        int[] ret = new int[lines + 1];
+        System.arraycopy(lineStarts, 0, ret, 0, lines);
+        ret[lines] = len;
+        return ret;
+    }
+
+    private static int countLines(String str, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < end && str.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lines++;
+            } else if (c == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -73,7 +73,7 @@ import org.python.pydev.shared_core.structure.Tuple3;
  * PyParser uses org.python.parser to parse the document (lexical analysis) It
  * is attached to PyEdit (a view), and it listens to document changes On every
  * document change, the syntax tree is regenerated The reparsing of the document
- * is done on a ParsingThread
+ * is done by the workers shared among all the parsers (see ParserScheduler)
  *
  * Clients that need to know when new parse tree has been generated should
  * register as parseListeners.
@@ -97,11 +97,22 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public static boolean ENABLE_TRACING = false;
 
+    /**
+     * Defines whether edits confined to a top-level statement should only reparse that statement
+     * (see IncrementalReparser).
+     */
+    public static boolean USE_INCREMENTAL_REPARSE = true;
+
     /**
      * This is the version of the grammar that should be used for this parser
      */
     private final IGrammarVersionProvider grammarVersionProvider;
 
+    /**
+     * Keeps the last tree to reparse only the part of the document which changed.
+     */
+    private final IncrementalReparser incrementalReparser = new IncrementalReparser();
+
     public static String getGrammarVersionStr(int grammarVersion) {
         if (grammarVersion == IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_5) {
             return "grammar: Python 2.5";
@@ -283,7 +294,17 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true, additionalGrammarsToCheck));
+        ParserInfo parserInfo = new ParserInfo(document, version, true, additionalGrammarsToCheck);
+        ParseOutput obj;
+        if (USE_INCREMENTAL_REPARSE) {
+            synchronized (incrementalReparser) {
+                //See comments on reparseDocument(ParserInfo) regarding getting the stamp before the contents.
+                long modifiedTime = ((IDocumentExtension4) document).getModificationStamp();
+                obj = incrementalReparser.reparse(parserInfo, modifiedTime, document.get());
+            }
+        } else {
+            obj = reparseDocument(parserInfo);
+        }
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -522,6 +543,19 @@ public class PyParser extends BaseParser implements IPyParser {
         return new Tuple<SimpleNode, IGrammar>(grammar.file_input(), grammar); // parses the file
     }
 
+    /**
+     * Same as reparseDocument(ParserInfo), but the ast may be shared with other clients which parsed the same
+     * contents (see AstCache), so, the returned ast must not be changed.
+     */
+    public static ParseOutput reparseDocumentUsingCache(ParserInfo info) {
+        if (info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
+            return reparseDocument(info);
+        }
+        //See comments on reparseDocument(ParserInfo) regarding getting the stamp before the contents.
+        long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
+        return AstCache.get().reparseDocument(info, modifiedTime, info.document.get());
+    }
+
     /**
      * @return a tuple with the SimpleNode root(if parsed) and the error (if any).
      *         if we are able to recover from a reparse, we have both, the root and the error.
@@ -539,7 +573,14 @@ public class PyParser extends BaseParser implements IPyParser {
         //reason for this stamp).
         long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
         String startDoc = info.document.get();
+        return reparseDocument(info, modifiedTime, startDoc);
+    }
 
+    /**
+     * Same as reparseDocument(ParserInfo) but with the contents of the document (and its modification stamp)
+     * already gotten.
+     */
+    static ParseOutput reparseDocument(ParserInfo info, long modifiedTime, String startDoc) {
         if (startDoc.trim().length() == 0) {
             //If empty, don't bother to parse!
             return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
@@ -26,6 +26,13 @@ public class PyDevBuilderPreferences {
     public static final int PYC_NEVER_DELETE = 2;
     public static final int DEFAULT_PYC_DELETE_HANDLING = PYC_ALWAYS_DELETE;
 
+    /**
+     * The maximum number of analysis jobs which can run at the same time (0 means it's computed based on the
+     * number of processors available).
+     */
+    public static final String ANALYSIS_WORKERS = "ANALYSIS_WORKERS";
+    public static final int DEFAULT_ANALYSIS_WORKERS = 0;
+
     public static boolean usePydevBuilders() {
         return PydevPrefs.getEclipsePreferences().getBoolean(USE_PYDEV_BUILDERS, DEFAULT_USE_PYDEV_BUILDERS);
     }
@@ -56,4 +63,8 @@ public class PyDevBuilderPreferences {
         return PydevPrefs.getEclipsePreferences().getInt(PYC_DELETE_HANDLING, DEFAULT_PYC_DELETE_HANDLING);
     }
 
+    public static int getAnalysisWorkers() {
+        return PydevPrefs.getEclipsePreferences().getInt(ANALYSIS_WORKERS, DEFAULT_ANALYSIS_WORKERS);
+    }
+
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.model.ISimpleNode;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple3;
+
+import junit.framework.TestCase;
+
+public class AstCacheTest extends TestCase {
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    private final ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> countParses = new ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>() {
+
+        @Override
+        public Object call(Tuple3<ISimpleNode, Throwable, ParserInfo> arg) {
+            parses.incrementAndGet();
+            return null;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PyParser.successfulParseListeners.add(countParses);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PyParser.successfulParseListeners.remove(countParses);
+        super.tearDown();
+    }
+
+    private static String createContents(int functions) {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < functions; i++) {
+            buf.append("def method").append(i).append("(a, b):\n    return a + b\n\n");
+        }
+        return buf.toString();
+    }
+
+    private static ParseOutput parse(AstCache cache, String contents, int grammarVersion) {
+        ParserInfo info = new ParserInfo(new Document(contents), grammarVersion, null);
+        return cache.reparseDocument(info, 0, contents);
+    }
+
+    public void testCache() throws Exception {
+        AstCache cache = new AstCache(10 * 1024 * 1024);
+        String contents = createContents(20);
+
+        ParseOutput output = parse(cache, contents, IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertNull(output.error);
+        // A different string with the same contents.
+        ParseOutput output2 = parse(cache, new String(contents.toCharArray()),
+                IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertSame(output.ast, output2.ast);
+        assertEquals(1, parses.get());
+
+        // Different grammar: parse again.
+        assertNotSame(output.ast, parse(cache, contents, IPythonNature.GRAMMAR_PYTHON_VERSION_2_7).ast);
+        assertEquals(2, parses.get());
+
+        // Different contents: parse again.
+        assertNotSame(output.ast, parse(cache, contents + "\n", IPythonNature.GRAMMAR_PYTHON_VERSION_3_6).ast);
+        assertEquals(3, parses.get());
+
+        AstCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(3, stats.misses);
+        assertEquals(3, stats.size);
+        assertEquals(0.25, stats.getHitRate());
+    }
+
+    public void testErrorsCached() throws Exception {
+        AstCache cache = new AstCache(10 * 1024 * 1024);
+        String contents = createContents(20) + "class A(:\n    pass\n";
+        ParseOutput output = parse(cache, contents, IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertNotNull(output.error);
+        assertNotNull(output.ast);
+        ParseOutput output2 = parse(cache, contents, IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertSame(output.error, output2.error);
+        assertSame(output.ast, output2.ast);
+    }
+
+    public void testBoundedByRetainedSize() throws Exception {
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            contents.add(createContents(20 + i));
+        }
+        long maxRetainedSize = AstCache.estimateRetainedSize(contents.get(9)) * 5;
+        AstCache cache = new AstCache(maxRetainedSize);
+        for (String c : contents) {
+            parse(cache, c, IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        }
+        AstCache.Stats stats = cache.getStats();
+        assertTrue(stats.toString(), stats.retainedSize <= maxRetainedSize);
+        assertTrue(stats.toString(), stats.evictions >= 5);
+
+        // The last one is still there but the first one isn't.
+        parses.set(0);
+        parse(cache, contents.get(9), IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertEquals(0, parses.get());
+        parse(cache, contents.get(0), IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertEquals(1, parses.get());
+    }
+
+    public void testConcurrentParsesShared() throws Exception {
+        final AstCache cache = new AstCache(10 * 1024 * 1024);
+        final String contents = createContents(3000);
+        final ISimpleNode[] asts = new ISimpleNode[4];
+        Thread[] threads = new Thread[asts.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    asts[index] = parse(cache, contents, IPythonNature.GRAMMAR_PYTHON_VERSION_3_6).ast;
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (ISimpleNode ast : asts) {
+            assertSame(asts[0], ast);
+        }
+        assertEquals(1, parses.get());
+    }
+}
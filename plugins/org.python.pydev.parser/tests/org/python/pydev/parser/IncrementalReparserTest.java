@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class IncrementalReparserTest extends TestCase {
+
+    private static final String SOURCE = "" +
+            "# header\n" +
+            "import os  # trailing\n" +
+            "\n" +
+            "CONST = (1,\n" +
+            "    2)\n" +
+            "\n" +
+            "# before f\n" +
+            "@decorator\n" +
+            "def f(a, b=10):\n" +
+            "    '''doc'''\n" +
+            "    if a:\n" +
+            "        return a + b\n" +
+            "    # end of f\n" +
+            "\n" +
+            "a = 1; b = 2\n" +
+            "class A(object):\n" +
+            "    x = '''\n" +
+            "multi\n" +
+            "'''\n" +
+            "\n" +
+            "    def m(self):\n" +
+            "        return [i for i in range(10)]\n" +
+            "# dedented comment\n" +
+            "\n" +
+            "try:\n" +
+            "    y = 2\n" +
+            "except Exception:\n" +
+            "    pass\n" +
+            "\n" +
+            "def g():\n" +
+            "    print(f(1))\n" +
+            "# eof comment\n";
+
+    private IncrementalReparser reparser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        reparser = new IncrementalReparser();
+    }
+
+    private static void dumpSpecials(FastStringBuffer buf, List<Object> specials) {
+        if (specials != null) {
+            for (Object o : specials) {
+                if (o instanceof commentType) {
+                    commentType c = (commentType) o;
+                    buf.append(" C(").append(c.id).append('@').append(c.beginLine).append(':')
+                            .append(c.beginColumn).append(')');
+                } else if (o instanceof ISpecialStr) {
+                    ISpecialStr s = (ISpecialStr) o;
+                    buf.append(" S(").append(s.toString()).append('@').append(s.getBeginLine()).append(':')
+                            .append(s.getBeginCol()).append(')');
+                }
+            }
+        }
+    }
+
+    /**
+     * Dumps the tree with the positions of the nodes and the specials (which aren't in the toString()).
+     */
+    private static String dump(SimpleNode root) throws Exception {
+        final FastStringBuffer buf = new FastStringBuffer();
+        VisitorBase visitor = new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                buf.append(node.getClass().getSimpleName()).append('@').append(node.beginLine).append(':')
+                        .append(node.beginColumn).append(" B[");
+                dumpSpecials(buf, node.specialsBefore);
+                buf.append("] A[");
+                dumpSpecials(buf, node.specialsAfter);
+                buf.append("]\n");
+                return null;
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        };
+        Module module = (Module) root;
+        buf.append("Module B[");
+        dumpSpecials(buf, module.specialsBefore);
+        buf.append("] A[");
+        dumpSpecials(buf, module.specialsAfter);
+        buf.append("]\n");
+        for (stmtType stmt : module.body) {
+            stmt.accept(visitor);
+        }
+        return buf.toString();
+    }
+
+    private ParseOutput reparse(String doc) {
+        return reparser.reparse(createInfo(doc), 0, doc);
+    }
+
+    private ParserInfo createInfo(String doc) {
+        return new ParserInfo(new Document(doc), IPythonNature.GRAMMAR_PYTHON_VERSION_3_6, null);
+    }
+
+    /**
+     * Reparses the given doc and checks that the result is the same one we'd have with a full parse.
+     */
+    private void check(String doc) throws Exception {
+        ParseOutput output = reparse(doc);
+        ParseOutput expected = PyParser.reparseDocument(createInfo(doc));
+        if (expected.error != null) {
+            assertNotNull(output.error);
+            return;
+        }
+        assertNull(output.error);
+        assertEquals(dump((SimpleNode) expected.ast), dump((SimpleNode) output.ast));
+        assertEquals(expected.ast.toString(), output.ast.toString());
+    }
+
+    public void testEditsInsideStatement() throws Exception {
+        check(SOURCE);
+        assertEquals(1, reparser.fullParses);
+
+        String doc = SOURCE;
+        // Type a new name inside f (the number of lines doesn't change).
+        String typed = "_value";
+        int offset = doc.indexOf("a + b") + "a + b".length();
+        for (int i = 1; i <= typed.length(); i++) {
+            check(doc.substring(0, offset) + typed.substring(0, i) + doc.substring(offset));
+        }
+        doc = doc.substring(0, offset) + typed + doc.substring(offset);
+
+        // Change a method in the class.
+        doc = doc.replace("range(10)", "range(20)");
+        check(doc);
+
+        // Change a comment at the end of a chunk.
+        doc = doc.replace("# dedented comment", "# changed comment");
+        check(doc);
+
+        // Statements sharing a line.
+        doc = doc.replace("a = 1; b = 2", "a = 3; b = 4");
+        check(doc);
+
+        // Add lines at the last statement.
+        doc = doc + "    return 1\n\n\ndef h():\n    pass\n";
+        check(doc);
+
+        // The first chunk.
+        doc = doc.replace("import os", "import sys");
+        check(doc);
+
+        assertEquals(1, reparser.fullParses);
+        assertTrue(reparser.incrementalParses > typed.length());
+    }
+
+    public void testFullParseNeeded() throws Exception {
+        check(SOURCE);
+        assertEquals(1, reparser.fullParses);
+
+        // Changing the number of lines in the middle.
+        String doc = SOURCE.replace("    # end of f\n", "");
+        check(doc);
+        assertEquals(2, reparser.fullParses);
+
+        // Crossing statements.
+        doc = doc.replace("2)\n\n# before f\n@decorator", "3)\n\n# before f2\n@decorator2");
+        check(doc);
+        assertEquals(3, reparser.fullParses);
+
+        // Error (and the next parse needs a full parse too as the last one had errors).
+        check(doc.replace("def m(self):", "def m(self:"));
+        check(doc);
+        assertEquals(5, reparser.fullParses);
+
+        // Indenting the start of a statement.
+        check(doc.replace("\ntry:", "\n  try:"));
+        assertEquals(6, reparser.fullParses);
+
+        // Joining with the next statement.
+        check(doc.replace("    print(f(1))\n", "    print(f(1))"));
+        assertEquals(7, reparser.fullParses);
+    }
+
+    public void testRandomEdits() throws Exception {
+        Random random = new Random(0);
+        String chars = "ab1 (),:.\n#'\"\\=+";
+        String doc = SOURCE;
+        check(doc);
+        for (int i = 0; i < 2000; i++) {
+            int offset = random.nextInt(doc.length());
+            String newDoc;
+            if (random.nextBoolean()) {
+                newDoc = doc.substring(0, offset) + chars.charAt(random.nextInt(chars.length()))
+                        + doc.substring(offset);
+            } else {
+                newDoc = doc.substring(0, offset) + doc.substring(offset + 1);
+            }
+            check(newDoc);
+            if (random.nextInt(10) == 0) {
+                // Go back to the original from time to time (otherwise it ends up with errors most of the time).
+                doc = SOURCE;
+            } else {
+                doc = newDoc;
+            }
+        }
+        assertTrue(reparser.incrementalParses > 0);
+    }
+}
@@ -29,20 +29,29 @@ public class CodeAnalyzer extends Analyzer {
 
     public CodeAnalyzer() {
         super();
-        fieldNameToStreamComponents.put("__default__", createDefaultComponents());
     }
 
+    /**
+     * Note: the Analyzer keeps the components created per-thread (so, this is called once for each thread
+     * which uses a given field).
+     */
     @Override
     protected TokenStreamComponents createComponents(String fieldName) {
         TokenStreamComponents streamComponents = fieldNameToStreamComponents.get(fieldName);
         if (streamComponents != null) {
             return streamComponents;
         }
-        return fieldNameToStreamComponents.get("__default__");
+        return createDefaultComponents();
     }
 
     Map<String, TokenStreamComponents> fieldNameToStreamComponents = new HashMap<>();
 
+    /**
+     * Registers the tokenizer to be used for the given field.
+     *
+     * Note: the same components are shared by all the threads, so, this should only be used if the field
+     * is not analyzed from multiple threads at once (the default components are created for each thread).
+     */
     public void registerTokenizer(String fieldName, TokenStreamComponents tokenStream) {
         fieldNameToStreamComponents.put(fieldName, tokenStream);
     }
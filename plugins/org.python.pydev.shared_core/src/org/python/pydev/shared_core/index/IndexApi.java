@@ -22,9 +22,14 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
 import org.apache.lucene.document.Document;
@@ -54,6 +59,7 @@ import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
@@ -78,6 +84,7 @@ public class IndexApi {
     private SearcherFactory searcherFactory;
     private int maxMatches = Integer.MAX_VALUE;
     private CodeAnalyzer analyzer;
+    private boolean searcherAppliesAllDeletes;
     private final Object lock = new Object();
 
     protected IndexApi(Object /*Directory*/ indexDirObj, boolean applyAllDeletes) throws IOException {
@@ -126,6 +133,17 @@ public class IndexApi {
 
         searcherFactory = new SearcherFactory();
         searchManager = new SearcherManager(writer, applyAllDeletes, false, searcherFactory);
+        searcherAppliesAllDeletes = applyAllDeletes;
+    }
+
+    /**
+     * Makes the changes done in the writer visible to the next searches without blocking (if some other
+     * thread is already refreshing, this is a no-op).
+     */
+    public void refreshSearcher() throws IOException {
+        if (this.searchManager != null) {
+            this.searchManager.maybeRefresh();
+        }
     }
 
     public void registerTokenizer(String fieldName, TokenStreamComponents tokenStream) {
@@ -247,6 +265,172 @@ public class IndexApi {
         this.writer.addDocument(doc);
     }
 
+    /**
+     * Provides the contents of a document to be indexed with indexInParallel.
+     */
+    public static interface IContentsProvider {
+
+        /**
+         * @return the fields to be indexed as strings (not analyzed).
+         */
+        Map<String, String> getFieldsToIndex();
+
+        /**
+         * @return a reader with the contents to be indexed (it's closed after being read). May return null
+         * if there are no contents to index anymore.
+         *
+         * Note: called from multiple threads (so, implementations must be thread-safe).
+         */
+        Reader openReader() throws IOException;
+    }
+
+    /**
+     * @return the default number of threads to be used in indexInParallel.
+     */
+    public static int getDefaultIndexingParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indexes the contents of the given providers using multiple threads (without committing, clients
+     * should commit once when finished).
+     *
+     * Reader threads read the contents and create the documents, which are passed through a bounded
+     * queue to the indexing threads (which actually analyze the contents and add them to the writer,
+     * which is thread-safe).
+     *
+     * @param parallelism the number of reader threads and the number of indexing threads to be used
+     * (if <= 1 or if there are few providers, the contents are indexed in the current thread).
+     * @param monitor used to stop reading new contents when cancelled (may be null).
+     */
+    public void indexInParallel(Collection<? extends IContentsProvider> providers, final String fieldName,
+            int parallelism, final IProgressMonitor monitor) throws IOException {
+        if (this.writer == null || providers.size() == 0) {
+            return;
+        }
+        if (parallelism <= 1 || providers.size() < parallelism * 2) {
+            for (IContentsProvider provider : providers) {
+                if (monitor != null && monitor.isCanceled()) {
+                    return;
+                }
+                Reader reader;
+                try {
+                    reader = provider.openReader();
+                } catch (IOException e) {
+                    Log.log(e);
+                    continue;
+                }
+                if (reader != null) {
+                    try {
+                        index(provider.getFieldsToIndex(), reader, fieldName);
+                    } finally {
+                        reader.close();
+                    }
+                }
+            }
+            return;
+        }
+
+        final Iterator<? extends IContentsProvider> providersIt = providers.iterator();
+        final BlockingQueue<Document> documents = new ArrayBlockingQueue<>(parallelism * 4);
+        final CountDownLatch readersFinished = new CountDownLatch(parallelism);
+        final AtomicReference<IOException> indexingError = new AtomicReference<>();
+        final IndexWriter writer = this.writer;
+
+        Thread[] readers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            readers[i] = new Thread("PyDev index reader " + i) {
+                @Override
+                public void run() {
+                    try {
+                        char[] chars = new char[8192];
+                        FastStringBuffer buf = new FastStringBuffer(8192);
+                        while (true) {
+                            IContentsProvider provider;
+                            synchronized (providersIt) {
+                                if (!providersIt.hasNext() || indexingError.get() != null
+                                        || (monitor != null && monitor.isCanceled())) {
+                                    return;
+                                }
+                                provider = providersIt.next();
+                            }
+                            try (Reader reader = provider.openReader()) {
+                                if (reader == null) {
+                                    continue;
+                                }
+                                buf.clear();
+                                int read;
+                                while ((read = reader.read(chars)) != -1) {
+                                    buf.append(chars, 0, read);
+                                }
+                            } catch (IOException e) {
+                                Log.log(e);
+                                continue;
+                            }
+                            Document doc = createDocument(provider.getFieldsToIndex());
+                            //Note: TextField should be analyzed/normalized in Analyzer.createComponents(String)
+                            doc.add(new TextField(fieldName, buf.toString(), Field.Store.NO));
+                            documents.put(doc);
+                        }
+                    } catch (InterruptedException e) {
+                        Log.log(e);
+                    } finally {
+                        readersFinished.countDown();
+                    }
+                }
+            };
+            readers[i].setDaemon(true);
+            readers[i].start();
+        }
+
+        final Document endMarker = new Document();
+        Thread[] indexers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            indexers[i] = new Thread("PyDev index writer " + i) {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Document doc = documents.take();
+                            if (doc == endMarker) {
+                                return;
+                            }
+                            if (indexingError.get() != null) {
+                                continue; // Just consume what's still in the queue.
+                            }
+                            try {
+                                writer.addDocument(doc);
+                            } catch (IOException e) {
+                                indexingError.compareAndSet(null, e);
+                            } catch (RuntimeException e) {
+                                indexingError.compareAndSet(null, new IOException(e));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Log.log(e);
+                    }
+                }
+            };
+            indexers[i].setDaemon(true);
+            indexers[i].start();
+        }
+
+        try {
+            readersFinished.await();
+            for (int i = 0; i < parallelism; i++) {
+                documents.put(endMarker);
+            }
+            for (Thread indexer : indexers) {
+                indexer.join();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        if (indexingError.get() != null) {
+            throw indexingError.get();
+        }
+    }
+
     /**
      * We index based on what we want to search later on!
      *
@@ -430,32 +614,46 @@ public class IndexApi {
         }
     }
 
+    /**
+     * Searches using the near-real-time searcher kept by the SearcherManager (which is only reopened
+     * if there were changes in the writer since the last search). Note that the index is not committed
+     * on a search: clients are responsible for calling commit() to persist their changes.
+     */
     public SearchResult search(Query query, boolean applyAllDeletes, IDocumentsVisitor visitor, String... fields)
             throws IOException {
+        if (applyAllDeletes && !searcherAppliesAllDeletes) {
+            // The shared searcher doesn't apply deletes, so, we need a new reader for this search.
+            try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
+                return search(searcherFactory.newSearcher(reader, null), query, visitor, fields);
+            }
+        }
+        searchManager.maybeRefreshBlocking();
+        IndexSearcher searcher = searchManager.acquire();
         try {
-            this.writer.commit();
-        } catch (Exception e) {
-            Log.log(e);
+            return search(searcher, query, visitor, fields);
+        } finally {
+            searchManager.release(searcher);
         }
-        try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
+    }
 
-            TopDocs search = searcher.search(query, maxMatches);
-            ScoreDoc[] scoreDocs = search.scoreDocs;
-
-            if (visitor != null) {
-                int length = scoreDocs.length;
-                for (int i = 0; i < length; i++) {
-                    ScoreDoc scoreDoc = scoreDocs[i];
-                    DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
-                    reader.document(scoreDoc.doc, fieldVisitor);
-                    Document document = fieldVisitor.getDocument();
-                    visitor.visit(new DocumentInfo(document, scoreDoc.doc));
-                }
-            }
+    private SearchResult search(IndexSearcher searcher, Query query, IDocumentsVisitor visitor, String... fields)
+            throws IOException {
+        IndexReader reader = searcher.getIndexReader();
+        TopDocs search = searcher.search(query, maxMatches);
+        ScoreDoc[] scoreDocs = search.scoreDocs;
 
-            return new SearchResult(scoreDocs);
+        if (visitor != null) {
+            int length = scoreDocs.length;
+            for (int i = 0; i < length; i++) {
+                ScoreDoc scoreDoc = scoreDocs[i];
+                DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
+                reader.document(scoreDoc.doc, fieldVisitor);
+                Document document = fieldVisitor.getDocument();
+                visitor.visit(new DocumentInfo(document, scoreDoc.doc));
+            }
         }
+
+        return new SearchResult(scoreDocs);
     }
 
     public void removeDocs(Map<String, Collection<String>> fieldToValuesToRemove) throws IOException {
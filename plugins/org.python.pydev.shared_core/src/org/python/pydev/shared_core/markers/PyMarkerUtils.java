@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
@@ -30,6 +31,23 @@ import org.python.pydev.shared_core.utils.ArrayUtils;
  */
 public class PyMarkerUtils {
 
+    /**
+     * When set for a thread, the markers replaced in that thread are applied by the given executor (i.e.: the full
+     * build sets it in its pool of threads so that the markers are only changed in the builder thread).
+     */
+    private static final ThreadLocal<Executor> markersExecutor = new ThreadLocal<Executor>();
+
+    /**
+     * Sets the executor which should apply the markers replaced in the current thread (null to apply them directly).
+     */
+    public static void setMarkersExecutorForThread(Executor executor) {
+        if (executor == null) {
+            markersExecutor.remove();
+        } else {
+            markersExecutor.set(executor);
+        }
+    }
+
     /**
      * This class represents the information to create a marker.
      *
@@ -227,7 +245,23 @@ public class PyMarkerUtils {
      */
     public static void replaceMarkers(final Map<String, Object>[] lst, final IResource resource,
             final String markerType,
-            final boolean removeUserEditable, IProgressMonitor monitor) {
+            final boolean removeUserEditable, final IProgressMonitor monitor) {
+        Executor executor = markersExecutor.get();
+        if (executor != null) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    doReplaceMarkers(lst, resource, markerType, removeUserEditable, monitor);
+                }
+            });
+        } else {
+            doReplaceMarkers(lst, resource, markerType, removeUserEditable, monitor);
+        }
+    }
+
+    private static void doReplaceMarkers(final Map<String, Object>[] lst, final IResource resource,
+            final String markerType, final boolean removeUserEditable, IProgressMonitor monitor) {
         IWorkspaceRunnable r = new IWorkspaceRunnable() {
 
             @Override
@@ -11,12 +11,17 @@
  */
 package org.python.pydev.shared_core.parsing;
 
+import java.util.concurrent.ScheduledFuture;
+
+import org.python.pydev.shared_core.log.Log;
+
+/**
+ * Schedules the parses of a document (the actual parse is done in the threads shared among all the
+ * schedulers -- see ParserWorkerPool -- so, no thread is created for each request/document).
+ */
 public class ParserScheduler {
 
-    /**
-     * used to do parsings in a thread - is null when not doing parsings
-     */
-    public volatile ParsingThread parsingThread;
+    private static final Object[] EMPTY_ARGS = new Object[0];
 
     /**
      * indicates that currently nothing is happening
@@ -29,12 +34,12 @@ public class ParserScheduler {
     public static final int STATE_PARSE_LATER = 1;
 
     /**
-     * indicates if a thread is currently waiting for an elapse cycle to end
+     * indicates if we're currently waiting for an elapse cycle to end
      */
     public static final int STATE_WAITING_FOR_ELAPSE = 2;
 
     /**
-     * indicates if a thread is currently doing a parse action
+     * indicates if a worker is currently doing a parse action
      */
     public static final int STATE_DOING_PARSE = 3;
 
@@ -43,19 +48,49 @@ public class ParserScheduler {
      */
     volatile int state = STATE_WAITING;
 
+    private final Object lock = new Object();
+
     /**
-     * this is the exact time a parse later was requested
+     * The timer waiting for the elapse time (null if not waiting).
      */
-    private volatile long timeParseLaterRequested = 0;
+    private ScheduledFuture<?> elapseTimer;
 
     /**
-     * this is the exact time the last parse was requested
+     * Identifies the current elapse timer (a timer which was already running when it was canceled must not
+     * do anything).
      */
-    private volatile long timeLastParse = 0;
+    private long elapseTimerId;
+
+    /**
+     * The request waiting for a worker (null if there's none).
+     */
+    private Request pendingRequest;
+
+    /**
+     * Whether a (not forced) parse was requested while a parse was already running.
+     */
+    private boolean parseRequestedWhileParsing;
+
+    private volatile boolean disposed;
 
     private volatile IParser parser;
 
-    private BaseParserManager parserManager;
+    private final BaseParserManager parserManager;
+
+    private final class Request extends ParserWorkerPool.ParseRequest {
+
+        private volatile Object[] argsToReparse;
+
+        private Request(boolean force, Object[] argsToReparse) {
+            super(force);
+            this.argsToReparse = argsToReparse;
+        }
+
+        @Override
+        public void run() {
+            doParse(this);
+        }
+    }
 
     public ParserScheduler(IParser parser, BaseParserManager parserManager) {
         super();
@@ -73,82 +108,160 @@ public class ParserScheduler {
      * @return false if we asked a forced reparse and it will not be scheduled because a reparse is already in action.
      */
     public boolean parseNow(boolean force, Object... argsToReparse) {
-        if (!force) {
-            if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_DOING_PARSE) {
-                //waiting or parse later
-                state = STATE_WAITING_FOR_ELAPSE; // the parser will reset it later
-                timeLastParse = System.currentTimeMillis();
-                checkCreateAndStartParsingThread();
-            } else {
-                //another request... we keep waiting until the user stops adding requests
-                boolean created = checkCreateAndStartParsingThread();
-                if (!created) {
-                    parsingThread.okToGo = false;
-                }
+        synchronized (lock) {
+            if (disposed) {
+                return true;
             }
-        } else {
-            ParsingThread parserThreadLocal = parsingThread; //if it dies suddenly, we don't want to get it as null...
-            if (state == ParserScheduler.STATE_DOING_PARSE) {
-                //a parse is already in action
-                return false;
+            if (!force) {
+                if (state == STATE_DOING_PARSE) {
+                    //it'll be rescheduled when the current parse finishes
+                    parseRequestedWhileParsing = true;
+
+                } else if (pendingRequest == null) {
+                    //another request... we keep waiting until the user stops adding requests
+                    state = STATE_WAITING_FOR_ELAPSE;
+                    startElapseTimer(false);
+                }
             } else {
-                if (parserThreadLocal == null) {
-                    parserThreadLocal = new ParsingThread(parserManager, this, argsToReparse);
-                    parsingThread = parserThreadLocal;
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
-                    parserThreadLocal.start();
-                } else {
-                    //force it to run
-                    if (argsToReparse.length > 0) {
-                        parserThreadLocal.updateArgsToReparse(argsToReparse);
+                if (state == STATE_DOING_PARSE) {
+                    //a parse is already in action
+                    return false;
+                }
+                cancelElapseTimer();
+                Request request = pendingRequest;
+                if (request != null) {
+                    if (request.force) {
+                        if (argsToReparse.length > 0) {
+                            request.argsToReparse = argsToReparse;
+                        }
+                        return true;
+                    }
+                    if (!remove(request)) {
+                        //a parse is just starting
+                        return false;
                     }
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.interrupt();
                 }
+                //force it to run (without waiting for the elapse time)
+                pendingRequest = new Request(true, argsToReparse);
+                execute(pendingRequest);
             }
         }
         return true;
     }
 
+    public void parseLater() {
+        synchronized (lock) {
+            if (disposed) {
+                return;
+            }
+            if (state == STATE_DOING_PARSE) {
+                parseRequestedWhileParsing = true;
+
+            } else if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_PARSE_LATER && pendingRequest == null) {
+                state = STATE_PARSE_LATER;
+                startElapseTimer(true);
+            }
+        }
+    }
+
     /**
-     * @return whether we really created the thread (returns false if the thread already exists)
+     * Must be called with the lock held.
+     *
+     * @param parseLater if true, when the time elapses, parseNow() is called (which will wait for another
+     * elapse before actually parsing), otherwise, the parse is requested to the workers.
      */
-    private boolean checkCreateAndStartParsingThread() {
-        ParsingThread p = parsingThread;
-        if (p == null) {
-            p = new ParsingThread(parserManager, this);
-            p.setPriority(Thread.MIN_PRIORITY); //parsing is low priority
-            p.start();
-            parsingThread = p;
-            return true;
+    private void startElapseTimer(final boolean parseLater) {
+        cancelElapseTimer();
+        final long id = elapseTimerId;
+        elapseTimer = schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                onElapsed(id, parseLater);
+            }
+        }, parserManager.getElapseMillisBeforeAnalysis());
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void cancelElapseTimer() {
+        elapseTimerId++;
+        ScheduledFuture<?> timer = elapseTimer;
+        if (timer != null) {
+            timer.cancel(false);
+            elapseTimer = null;
         }
-        return false;
     }
 
-    public void parseLater() {
-        if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_PARSE_LATER) {
-            state = STATE_PARSE_LATER;
-            //ok, the time for this request is:
-            timeParseLaterRequested = System.currentTimeMillis();
-            Thread thread = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        sleep(parserManager.getElapseMillisBeforeAnalysis());
-                    } catch (Exception e) {
-                        //that's ok
-                    }
-                    //ok, no parse happened while we were sleeping
-                    if (state == STATE_PARSE_LATER && timeLastParse < timeParseLaterRequested) {
-                        parseNow();
-                    }
+    /**
+     * Runs the given runnable in the timer thread after the given delay (overridden in tests).
+     */
+    /*default*/ ScheduledFuture<?> schedule(Runnable runnable, long delayMillis) {
+        return ParserWorkerPool.schedule(runnable, delayMillis);
+    }
+
+    /**
+     * Requests the workers to run the given request (overridden in tests).
+     */
+    /*default*/ void execute(ParserWorkerPool.ParseRequest request) {
+        ParserWorkerPool.execute(request);
+    }
+
+    /**
+     * @return whether the request was removed before a worker started running it (overridden in tests).
+     */
+    /*default*/ boolean remove(ParserWorkerPool.ParseRequest request) {
+        return ParserWorkerPool.remove(request);
+    }
+
+    private void onElapsed(long id, boolean parseLater) {
+        synchronized (lock) {
+            if (id != elapseTimerId || disposed) {
+                return;
+            }
+            elapseTimer = null;
+            if (parseLater) {
+                //ok, no parse happened while we were waiting
+                if (state == STATE_PARSE_LATER) {
+                    state = STATE_WAITING_FOR_ELAPSE;
+                    startElapseTimer(false);
                 }
-            };
-            thread.setName("ParserScheduler");
-            thread.start();
+                return;
+            }
+            if (state == STATE_WAITING_FOR_ELAPSE && pendingRequest == null) {
+                pendingRequest = new Request(false, EMPTY_ARGS);
+                execute(pendingRequest);
+            }
         }
+    }
 
+    private void doParse(Request request) {
+        synchronized (lock) {
+            if (pendingRequest == request) {
+                pendingRequest = null;
+            }
+            if (disposed) {
+                return;
+            }
+            state = STATE_DOING_PARSE;
+        }
+        try {
+            //ok, now we parse it
+            reparseDocument(request.argsToReparse);
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            synchronized (lock) {
+                //reset the state
+                state = STATE_WAITING;
+                if (parseRequestedWhileParsing && !disposed) {
+                    parseRequestedWhileParsing = false;
+                    state = STATE_WAITING_FOR_ELAPSE;
+                    startElapseTimer(false);
+                }
+            }
+        }
     }
 
     /**
@@ -164,9 +277,14 @@ public class ParserScheduler {
     }
 
     public void dispose() {
-        ParsingThread p = this.parsingThread;
-        if (p != null) {
-            p.dispose();
+        synchronized (lock) {
+            disposed = true;
+            cancelElapseTimer();
+            Request request = pendingRequest;
+            if (request != null) {
+                remove(request);
+                pendingRequest = null;
+            }
         }
         this.parser = null;
     }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Threads shared by all the ParserSchedulers: a single timer thread (used to wait for the elapse time before
+ * a parse) and a bounded number of workers (which actually do the parses).
+ *
+ * Requests waiting for a worker are prioritized: forced requests (i.e.: initial parse/save) come first, followed
+ * by the most recently requested (which should be the ones from the editor the user is currently typing in).
+ */
+final class ParserWorkerPool {
+
+    /**
+     * A request to do a parse in a worker.
+     */
+    static abstract class ParseRequest implements Runnable, Comparable<ParseRequest> {
+
+        private static final AtomicLong sequence = new AtomicLong();
+
+        final boolean force;
+        private final long order = sequence.incrementAndGet();
+
+        ParseRequest(boolean force) {
+            this.force = force;
+        }
+
+        @Override
+        public int compareTo(ParseRequest o) {
+            if (force != o.force) {
+                return force ? -1 : 1;
+            }
+            // Newer requests first.
+            return Long.compare(o.order, order);
+        }
+    }
+
+    private static final ScheduledThreadPoolExecutor timer;
+
+    private static final ThreadPoolExecutor workers;
+
+    static {
+        timer = new ScheduledThreadPoolExecutor(1, createThreadFactory("ParserScheduler", Thread.NORM_PRIORITY));
+        timer.setRemoveOnCancelPolicy(true);
+
+        int nThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        workers = new ThreadPoolExecutor(nThreads, nThreads, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                createThreadFactory("ParsingThread", Thread.NORM_PRIORITY - 1)); //parsing is lower than normal priority
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    private static ThreadFactory createThreadFactory(final String name, final int priority) {
+        return new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(priority);
+                return thread;
+            }
+        };
+    }
+
+    private ParserWorkerPool() {
+    }
+
+    /**
+     * Runs the given runnable in the timer thread after the given delay (it should be fast as a single
+     * thread is shared by all the schedulers).
+     */
+    static ScheduledFuture<?> schedule(Runnable runnable, long delayMillis) {
+        return timer.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a request to be run by the workers.
+     */
+    static void execute(ParseRequest request) {
+        workers.execute(request);
+    }
+
+    /**
+     * Removes a request which is still waiting for a worker.
+     *
+     * @return whether it was actually removed (false if it already started running).
+     */
+    static boolean remove(ParseRequest request) {
+        return workers.remove(request);
+    }
+}
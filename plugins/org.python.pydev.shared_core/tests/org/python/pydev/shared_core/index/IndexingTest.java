@@ -13,10 +13,12 @@ package org.python.pydev.shared_core.index;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +28,7 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
+import org.python.pydev.shared_core.index.IndexApi.IContentsProvider;
 import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
 import org.python.pydev.shared_core.partitioner.CustomRuleBasedPartitionScanner;
 import org.python.pydev.shared_core.partitioner.IToken;
@@ -218,4 +221,60 @@ public class IndexingTest extends TestCase {
         result = indexApi.searchWildcard(fieldNameToValues, true, visitor, null, IFields.FILENAME);
         assertEquals(2, result.getNumberOfDocumentMatches());
     }
+
+    public void testSearchSeesChangesWithoutCommit() throws Exception {
+        Map<String, String> map = new HashMap<>();
+        map.put(IFields.FILENAME, "my.mod");
+        indexApi.index(map, new StringReader("ab"), IFields.GENERAL_CONTENTS);
+
+        SearchResult result = indexApi.searchExact("ab", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+
+        // Replace the contents of the module (remove and index again) without committing.
+        HashMap<String, Collection<String>> toRemove = new HashMap<>();
+        toRemove.put(IFields.FILENAME, Arrays.asList("my.mod"));
+        indexApi.removeDocs(toRemove);
+        indexApi.index(map, new StringReader("cd"), IFields.GENERAL_CONTENTS);
+
+        result = indexApi.searchExact("ab", IFields.GENERAL_CONTENTS, true);
+        assertEquals(0, result.getNumberOfDocumentMatches());
+        result = indexApi.searchExact("cd", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+    }
+
+    public void testIndexInParallel() throws Exception {
+        List<IContentsProvider> providers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int id = i;
+            providers.add(new IContentsProvider() {
+
+                @Override
+                public Reader openReader() {
+                    return new StringReader("common contents" + id);
+                }
+
+                @Override
+                public Map<String, String> getFieldsToIndex() {
+                    Map<String, String> map = new HashMap<>();
+                    map.put(IFields.FILENAME, "mod" + id);
+                    return map;
+                }
+            });
+        }
+        indexApi.indexInParallel(providers, IFields.GENERAL_CONTENTS, 4, null);
+
+        SearchResult result = indexApi.searchExact("common", IFields.GENERAL_CONTENTS, true);
+        assertEquals(50, result.getNumberOfDocumentMatches());
+
+        final Set<String> found = new HashSet<>();
+        IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                found.add(documentInfo.get(IFields.FILENAME));
+            }
+        };
+        indexApi.searchExact("contents13", IFields.GENERAL_CONTENTS, true, visitor, IFields.FILENAME);
+        assertEquals(new HashSet<>(Arrays.asList("mod13")), found);
+    }
 }
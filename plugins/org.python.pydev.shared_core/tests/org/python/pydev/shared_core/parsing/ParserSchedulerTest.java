@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.editor.IBaseEditor;
+
+import junit.framework.TestCase;
+
+public class ParserSchedulerTest extends TestCase {
+
+    private static final class ParserManagerStub extends BaseParserManager {
+
+        private ParserManagerStub(int millisBeforeAnalysis) {
+            this.millisBeforeAnalysis = millisBeforeAnalysis;
+        }
+
+        @Override
+        protected IParser createParser(IBaseEditor edit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class ParserStub implements IParser {
+
+        private final AtomicInteger parses = new AtomicInteger();
+
+        /**
+         * The args of each parse (added when the parse starts).
+         */
+        private final BlockingQueue<Object[]> started = new LinkedBlockingQueue<>();
+
+        /**
+         * If set, the parse only finishes when it's released.
+         */
+        private volatile CountDownLatch release;
+
+        @Override
+        public Object reparseDocument(Object... argsToReparse) {
+            started.add(argsToReparse);
+            CountDownLatch r = release;
+            if (r != null) {
+                try {
+                    r.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+            }
+            parses.incrementAndGet();
+            return null;
+        }
+
+        private Object[] awaitStarted() throws InterruptedException {
+            Object[] args = started.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Parse not started.", args);
+            return args;
+        }
+
+        @Override
+        public void setDocument(IDocument document, Object input) {
+        }
+
+        @Override
+        public void notifySaved() {
+        }
+
+        @Override
+        public void removeParseListener(IParserObserver parserObserver) {
+        }
+
+        @Override
+        public void addParseListener(IParserObserver parserObserver) {
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public void resetTimeoutPreferences(boolean useAnalysisOnlyOnDocSave) {
+        }
+
+        @Override
+        public boolean forceReparse(Object... argsToReparse) {
+            return false;
+        }
+    }
+
+    /**
+     * An elapse timer which is only run when the test fires it.
+     */
+    private static final class ManualTimerTask extends FutureTask<Object> implements ScheduledFuture<Object> {
+
+        private final Runnable runnable;
+        private final long delayMillis;
+
+        private ManualTimerTask(Runnable runnable, long delayMillis) {
+            super(runnable, null);
+            this.runnable = runnable;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * A scheduler whose elapse timers and parse requests are only run when the test asks for it.
+     */
+    private static final class ManualScheduler extends ParserScheduler {
+
+        private final BlockingQueue<ManualTimerTask> timers = new LinkedBlockingQueue<>();
+        private final LinkedBlockingDeque<ParserWorkerPool.ParseRequest> requests = new LinkedBlockingDeque<>();
+
+        private ManualScheduler(IParser parser, int millisBeforeAnalysis) {
+            super(parser, new ParserManagerStub(millisBeforeAnalysis));
+        }
+
+        @Override
+        ScheduledFuture<?> schedule(Runnable runnable, long delayMillis) {
+            ManualTimerTask task = new ManualTimerTask(runnable, delayMillis);
+            timers.add(task);
+            return task;
+        }
+
+        @Override
+        void execute(ParserWorkerPool.ParseRequest request) {
+            requests.add(request);
+        }
+
+        @Override
+        boolean remove(ParserWorkerPool.ParseRequest request) {
+            return requests.remove(request);
+        }
+
+        /**
+         * @return the timers which weren't canceled nor run.
+         */
+        private List<ManualTimerTask> liveTimers() {
+            List<ManualTimerTask> live = new ArrayList<>();
+            for (ManualTimerTask task : timers) {
+                if (!task.isDone()) {
+                    live.add(task);
+                }
+            }
+            return live;
+        }
+
+        /**
+         * Runs the only live timer (as if its elapse time passed).
+         */
+        private ManualTimerTask fireTimer() {
+            List<ManualTimerTask> live = liveTimers();
+            assertEquals(1, live.size());
+            ManualTimerTask task = live.get(0);
+            task.run();
+            return task;
+        }
+
+        /**
+         * Waits for a timer to be started from another thread and runs it.
+         */
+        private void awaitAndFireTimer() throws InterruptedException {
+            ManualTimerTask task;
+            do {
+                task = timers.poll(10, TimeUnit.SECONDS);
+                assertNotNull("Timer not started.", task);
+            } while (task.isDone());
+            task.run();
+        }
+
+        /**
+         * Takes the request which would be run by a worker.
+         */
+        private ParserWorkerPool.ParseRequest takeRequest() {
+            assertEquals(1, requests.size());
+            return requests.poll();
+        }
+
+        private Thread runInThread(final ParserWorkerPool.ParseRequest request) {
+            Thread thread = new Thread(request, "ParserSchedulerTest worker");
+            thread.start();
+            return thread;
+        }
+    }
+
+    public void testRequestsCoalesced() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 100);
+        for (int i = 0; i < 10; i++) {
+            scheduler.parseNow();
+            scheduler.parseLater();
+        }
+        // Each request restarts the elapse time.
+        assertEquals(ParserScheduler.STATE_WAITING_FOR_ELAPSE, scheduler.state);
+        assertEquals(100, scheduler.fireTimer().getDelay(TimeUnit.MILLISECONDS));
+        assertEquals(0, scheduler.liveTimers().size());
+
+        scheduler.parseNow(); // A request for a parse is already there.
+        scheduler.takeRequest().run();
+        assertEquals(1, parser.parses.get());
+        assertEquals(0, scheduler.requests.size());
+        assertEquals(0, scheduler.liveTimers().size());
+        assertEquals(ParserScheduler.STATE_WAITING, scheduler.state);
+    }
+
+    public void testParseLater() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 100);
+        scheduler.parseLater();
+        scheduler.parseLater();
+        assertEquals(ParserScheduler.STATE_PARSE_LATER, scheduler.state);
+
+        // After the first elapse it still waits for another one before requesting the parse.
+        scheduler.fireTimer();
+        assertEquals(ParserScheduler.STATE_WAITING_FOR_ELAPSE, scheduler.state);
+        assertEquals(0, scheduler.requests.size());
+        scheduler.fireTimer();
+
+        scheduler.takeRequest().run();
+        assertEquals(1, parser.parses.get());
+        assertEquals(0, scheduler.liveTimers().size());
+    }
+
+    public void testForce() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 10000);
+        scheduler.parseNow(); // Waiting for a long time...
+        assertTrue(scheduler.parseNow(true, "arg"));
+        assertEquals(0, scheduler.liveTimers().size());
+        scheduler.takeRequest().run();
+        assertEquals("arg", parser.awaitStarted()[0]);
+
+        // A forced request still waiting for a worker is reused (with the new args).
+        assertTrue(scheduler.parseNow(true, "a"));
+        assertTrue(scheduler.parseNow(true, "b"));
+        scheduler.takeRequest().run();
+        assertEquals("b", parser.awaitStarted()[0]);
+
+        // A forced parse while a parse is running is not accepted.
+        parser.release = new CountDownLatch(1);
+        assertTrue(scheduler.parseNow(true));
+        Thread worker = scheduler.runInThread(scheduler.takeRequest());
+        parser.awaitStarted();
+        assertEquals(ParserScheduler.STATE_DOING_PARSE, scheduler.state);
+        assertFalse(scheduler.parseNow(true));
+        parser.release.countDown();
+        worker.join(10000);
+        assertEquals(3, parser.parses.get());
+        assertEquals(0, scheduler.requests.size());
+    }
+
+    public void testForceWhileRequestStarting() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 100);
+        scheduler.parseNow();
+        scheduler.fireTimer();
+
+        // A worker took the request but didn't start the parse yet: the forced parse is not accepted.
+        ParserWorkerPool.ParseRequest request = scheduler.takeRequest();
+        assertFalse(scheduler.parseNow(true));
+        request.run();
+        assertEquals(1, parser.parses.get());
+        assertEquals(0, scheduler.requests.size());
+    }
+
+    public void testRequestWhileParsing() throws Exception {
+        ParserStub parser = new ParserStub();
+        parser.release = new CountDownLatch(1);
+        ManualScheduler scheduler = new ManualScheduler(parser, 50);
+        scheduler.parseNow(true);
+        Thread worker = scheduler.runInThread(scheduler.takeRequest());
+        parser.awaitStarted();
+
+        // The document changed while parsing: it must be parsed again afterwards.
+        scheduler.parseNow();
+        scheduler.parseLater();
+        assertEquals(0, scheduler.liveTimers().size());
+        parser.release.countDown();
+
+        // The elapse timer is started when the parse finishes.
+        scheduler.awaitAndFireTimer();
+        worker.join(10000);
+        scheduler.takeRequest().run();
+        assertEquals(2, parser.parses.get());
+        assertEquals(0, scheduler.liveTimers().size());
+    }
+
+    public void testDispose() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 50);
+        scheduler.parseNow();
+        ManualTimerTask timer = scheduler.liveTimers().get(0);
+        scheduler.dispose();
+        assertTrue(timer.isCancelled());
+
+        // A timer which was already running when disposed doesn't request a parse.
+        timer.runnable.run();
+        assertEquals(0, scheduler.requests.size());
+
+        // Nor do new requests.
+        scheduler.parseNow();
+        scheduler.parseLater();
+        assertTrue(scheduler.parseNow(true));
+        assertEquals(0, scheduler.requests.size());
+        assertEquals(0, scheduler.liveTimers().size());
+        assertEquals(0, parser.parses.get());
+    }
+
+    public void testDisposeWithPendingRequest() throws Exception {
+        ParserStub parser = new ParserStub();
+        ManualScheduler scheduler = new ManualScheduler(parser, 50);
+        scheduler.parseNow(true);
+        ParserWorkerPool.ParseRequest request = scheduler.requests.peek();
+        scheduler.dispose();
+        assertEquals(0, scheduler.requests.size());
+
+        // Even if a worker had already taken it, it doesn't parse.
+        request.run();
+        assertEquals(0, parser.parses.get());
+    }
+
+    public void testWorkerPool() throws Exception {
+        ParserStub parser = new ParserStub();
+        ParserScheduler scheduler = new ParserScheduler(parser, new ParserManagerStub(10));
+        assertTrue(scheduler.parseNow(true, "arg"));
+        assertEquals("arg", parser.awaitStarted()[0]);
+
+        scheduler.parseNow();
+        assertEquals(0, parser.awaitStarted().length);
+        scheduler.dispose();
+    }
+}
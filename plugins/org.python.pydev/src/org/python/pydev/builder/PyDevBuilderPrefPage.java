@@ -118,6 +118,9 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
         addField(new ComboFieldEditor(PyDevBuilderPreferences.PYC_DELETE_HANDLING, "How to handle .pyc/$py.class deletion?",
                 ENTRIES_AND_VALUES, p));
 
+        addField(new IntegerFieldEditor(PyDevBuilderPreferences.ANALYSIS_WORKERS,
+                "Maximum number of concurrent analysis jobs (0 = automatic)", p));
+
     }
 
     /* (non-Javadoc)
@@ -7,6 +7,7 @@ import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -59,6 +60,11 @@ public class MypyPrefPage extends FieldEditorPreferencePage implements IWorkbenc
 
         addField(new BooleanFieldEditor(MypyPreferences.USE_MYPY, "Use Mypy?", parent));
         addField(new BooleanFieldEditor(MypyPreferences.MYPY_USE_CONSOLE, "Redirect Mypy output to console?", parent));
+        addField(new BooleanFieldEditor(MypyPreferences.MYPY_USE_DAEMON,
+                "Run Mypy in a long-running process (if the location is the mypy of the project interpreter)?",
+                parent));
+        addField(new IntegerFieldEditor(MypyPreferences.MYPY_BATCH_SIZE,
+                "Files analyzed in a single Mypy invocation in a full build (1 = no batching):", parent));
 
         searchMypyLocation = new RadioGroupFieldEditor(MypyPreferences.SEARCH_MYPY_LOCATION,
                 "Mypy to use", 2, SEARCH_MYPY_LOCATION_OPTIONS, parent);
@@ -15,6 +15,7 @@ import org.eclipse.core.resources.IMarker;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -70,6 +71,11 @@ public class PyLintPrefPage extends FieldEditorPreferencePage implements IWorkbe
 
         addField(new BooleanFieldEditor(PyLintPreferences.USE_PYLINT, "Use PyLint?", parent));
         addField(new BooleanFieldEditor(PyLintPreferences.USE_CONSOLE, "Redirect PyLint output to console?", parent));
+        addField(new BooleanFieldEditor(PyLintPreferences.USE_PYLINT_DAEMON,
+                "Run PyLint in a long-running process (if the location is the pylint of the project interpreter)?",
+                parent));
+        addField(new IntegerFieldEditor(PyLintPreferences.PYLINT_BATCH_SIZE,
+                "Files analyzed in a single PyLint invocation in a full build (1 = no batching):", parent));
         searchPyLintLocation = new RadioGroupFieldEditor(PyLintPreferences.SEARCH_PYLINT_LOCATION,
                 "PyLint to use", 2, SEARCH_PYLINT_LOCATION_OPTIONS, parent);
 
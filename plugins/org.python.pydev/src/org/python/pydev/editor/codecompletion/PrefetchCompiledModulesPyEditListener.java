@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion;
+
+import java.util.LinkedHashSet;
+import java.util.ListResourceBundle;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesPrefetcher;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.docutils.ImportHandle;
+import org.python.pydev.core.docutils.ImportHandle.ImportHandleInfo;
+import org.python.pydev.core.docutils.PyImportsHandling;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.PyEdit;
+import org.python.pydev.shared_ui.editor.BaseEditor;
+import org.python.pydev.shared_ui.editor.IPyEditListener;
+
+/**
+ * When a document is set in the editor (or saved), the modules it imports are passed to the
+ * CompiledModulesPrefetcher (so that the compiled modules among those are already cached when the user
+ * requests a code-completion).
+ */
+public class PrefetchCompiledModulesPyEditListener implements IPyEditListener {
+
+    @Override
+    public void onCreateActions(ListResourceBundle resources, BaseEditor baseEditor, IProgressMonitor monitor) {
+    }
+
+    @Override
+    public void onDispose(BaseEditor baseEditor, IProgressMonitor monitor) {
+    }
+
+    @Override
+    public void onSave(BaseEditor baseEditor, IProgressMonitor monitor) {
+        schedulePrefetch(baseEditor.getDocument(), baseEditor);
+    }
+
+    @Override
+    public void onSetDocument(IDocument document, BaseEditor baseEditor, IProgressMonitor monitor) {
+        schedulePrefetch(document, baseEditor);
+    }
+
+    private void schedulePrefetch(final IDocument document, BaseEditor baseEditor) {
+        if (document == null || !(baseEditor instanceof PyEdit)) {
+            return;
+        }
+        final PyEdit edit = (PyEdit) baseEditor;
+        Job job = new Job("Prefetch compiled modules") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    IPythonNature nature = edit.getPythonNature();
+                    if (nature != null) {
+                        CompiledModulesPrefetcher.getSingleton().prefetch(nature, getImportedModules(document));
+                    }
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule(100);
+    }
+
+    /**
+     * @return the modules which may be imported by the given document (for 'from xxx import yyy' both xxx and
+     * xxx.yyy are returned as yyy may be a module). Relative imports are not considered.
+     */
+    private static Set<String> getImportedModules(IDocument document) {
+        Set<String> modules = new LinkedHashSet<String>();
+        for (ImportHandle importHandle : new PyImportsHandling(document, false, true)) {
+            for (ImportHandleInfo info : importHandle.getImportInfo()) {
+                String from = info.getFromImportStrWithoutUnwantedChars();
+                if (from != null && from.startsWith(".")) {
+                    continue;
+                }
+                if (from != null) {
+                    modules.add(from);
+                }
+                for (String imported : info.getImportedStr()) {
+                    imported = removeAlias(imported);
+                    if (imported.length() == 0 || imported.equals("*")) {
+                        continue;
+                    }
+                    modules.add(from != null ? from + "." + imported : imported);
+                }
+            }
+        }
+        return modules;
+    }
+
+    private static String removeAlias(String imported) {
+        imported = imported.trim();
+        int i = imported.indexOf(" as ");
+        if (i == -1) {
+            i = imported.indexOf("\tas");
+        }
+        if (i != -1) {
+            imported = imported.substring(0, i);
+        }
+        return imported.trim();
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import junit.framework.TestCase;
+
+public class FullBuildPipelineTest extends TestCase {
+
+    private static List<Integer> createItems(int n) {
+        List<Integer> items = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    /**
+     * Prepares each item in a random time, visits the even ones and runs a concurrent task for each visited item
+     * (which records its result in the builder thread).
+     */
+    private static class TestPipeline extends FullBuildPipeline<Integer, String> {
+
+        private final Thread builderThread = Thread.currentThread();
+        private final List<Integer> visited = new ArrayList<Integer>();
+        private final List<Integer> indexes = new ArrayList<Integer>();
+        private final List<String> fromConcurrent = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger prepared = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+
+        private TestPipeline(int nThreads, NullProgressMonitor monitor) {
+            super(nThreads, monitor);
+        }
+
+        private void check(boolean inBuilderThread) {
+            if ((Thread.currentThread() == builderThread) != inBuilderThread) {
+                errors.incrementAndGet();
+            }
+        }
+
+        @Override
+        protected String prepare(Integer item) {
+            check(false);
+            prepared.incrementAndGet();
+            sleepRandom();
+            return item % 2 == 0 ? "item" + item : null;
+        }
+
+        @Override
+        protected void visit(int i, Integer item, final String prepared) {
+            check(true);
+            visited.add(item);
+            indexes.add(i);
+            if (prepared == null) {
+                return;
+            }
+            submitConcurrent(new Runnable() {
+
+                @Override
+                public void run() {
+                    running.incrementAndGet();
+                    try {
+                        check(false);
+                        sleepRandom();
+                        runInBuilderThread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                check(true);
+                                fromConcurrent.add(prepared);
+                            }
+                        });
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        }
+
+        private static void sleepRandom() {
+            try {
+                Thread.sleep((long) (Math.random() * 3));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public void testOrder() throws Exception {
+        TestPipeline pipeline = new TestPipeline(4, new NullProgressMonitor());
+        pipeline.run(createItems(100).iterator());
+
+        assertEquals(0, pipeline.errors.get());
+        assertEquals(100, pipeline.prepared.get());
+        assertEquals(createItems(100), pipeline.visited);
+        assertEquals(createItems(100), pipeline.indexes);
+        assertEquals(0, pipeline.running.get());
+
+        // All the tasks run in the builder thread finished before run() returned (in any order).
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 100; i += 2) {
+            expected.add("item" + i);
+        }
+        List<String> found = new ArrayList<String>(pipeline.fromConcurrent);
+        Collections.sort(found);
+        Collections.sort(expected);
+        assertEquals(expected, found);
+    }
+
+    public void testEmpty() throws Exception {
+        TestPipeline pipeline = new TestPipeline(2, new NullProgressMonitor());
+        pipeline.run(Collections.<Integer> emptyList().iterator());
+        assertEquals(0, pipeline.visited.size());
+    }
+
+    public void testCancel() throws Exception {
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        TestPipeline pipeline = new TestPipeline(2, monitor) {
+            @Override
+            protected void visit(int i, Integer item, String prepared) {
+                super.visit(i, item, prepared);
+                if (i == 10) {
+                    monitor.setCanceled(true);
+                }
+            }
+        };
+        pipeline.run(createItems(1000).iterator());
+
+        assertEquals(0, pipeline.errors.get());
+        assertEquals(createItems(11), pipeline.visited);
+        // Only the items in flight were prepared.
+        assertTrue("Prepared: " + pipeline.prepared.get(), pipeline.prepared.get() <= 11 + 2 * 4);
+        // Nothing is running when run() returns.
+        assertEquals(0, pipeline.running.get());
+    }
+
+    public void testCancelWhileWaiting() throws Exception {
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch visitedFirst = new CountDownLatch(1);
+        final List<Integer> visited = new ArrayList<Integer>();
+        FullBuildPipeline<Integer, Integer> pipeline = new FullBuildPipeline<Integer, Integer>(2, monitor) {
+
+            @Override
+            protected Integer prepare(Integer item) {
+                if (item == 1) {
+                    blocked.countDown();
+                    try {
+                        // Only finishes after the builder thread stopped waiting.
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return item;
+            }
+
+            @Override
+            protected void visit(int i, Integer item, Integer prepared) {
+                visited.add(item);
+                visitedFirst.countDown();
+            }
+        };
+
+        Thread cancelThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                    visitedFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                monitor.setCanceled(true);
+                release.countDown();
+            }
+        };
+        cancelThread.start();
+        pipeline.run(createItems(10).iterator());
+        cancelThread.join();
+
+        // The item being prepared when the monitor was canceled (and the ones after it) are not visited.
+        assertEquals(Collections.singletonList(0), visited);
+    }
+
+    public void testFailureInPrepare() throws Exception {
+        final List<Integer> visited = new ArrayList<Integer>();
+        final List<Integer> prepared = new ArrayList<Integer>();
+        new FullBuildPipeline<Integer, Integer>(2, new NullProgressMonitor()) {
+
+            @Override
+            protected Integer prepare(Integer item) {
+                if (item == 2) {
+                    throw new RuntimeException("Expected error in test.");
+                }
+                return item;
+            }
+
+            @Override
+            protected void visit(int i, Integer item, Integer p) {
+                visited.add(item);
+                prepared.add(p);
+            }
+        }.run(createItems(4).iterator());
+
+        assertEquals(createItems(4), visited);
+        assertEquals(Arrays.asList(0, 1, null, 3), prepared);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.structure.Tuple3;
+
+import junit.framework.TestCase;
+
+public class VisitorMemoTest extends TestCase {
+
+    private final PythonNature nature1 = new PythonNature();
+    private final PythonNature nature2 = new PythonNature();
+    private final List<String> external = Arrays.asList("/ext");
+    private final List<String> nonExternal = Arrays.asList("/src");
+
+    public void testMergeWithNull() throws Exception {
+        Object state = new Tuple3<Object, Object, Object>(nature1, external, null);
+        assertSame(state, VisitorMemo.mergeSharedProjectStates(state, null));
+        assertSame(state, VisitorMemo.mergeSharedProjectStates(null, state));
+        assertNull(VisitorMemo.mergeSharedProjectStates(null, null));
+
+        // A memo which didn't compute anything yet has no nature.
+        Object empty = new VisitorMemo().getSharedProjectState();
+        assertSame(state, VisitorMemo.mergeSharedProjectStates(state, empty));
+    }
+
+    public void testMergeSameNature() throws Exception {
+        Object withExternal = new Tuple3<Object, Object, Object>(nature1, external, null);
+        Object withNonExternal = new Tuple3<Object, Object, Object>(nature1, null, nonExternal);
+
+        // Nothing new: the same instance is kept.
+        assertSame(withExternal, VisitorMemo.mergeSharedProjectStates(withExternal,
+                new Tuple3<Object, Object, Object>(nature1, Arrays.asList("/other"), null)));
+
+        Tuple3<?, ?, ?> merged = (Tuple3<?, ?, ?>) VisitorMemo.mergeSharedProjectStates(withExternal, withNonExternal);
+        assertSame(nature1, merged.o1);
+        assertSame(external, merged.o2);
+        assertSame(nonExternal, merged.o3);
+
+        merged = (Tuple3<?, ?, ?>) VisitorMemo.mergeSharedProjectStates(withNonExternal, withExternal);
+        assertSame(external, merged.o2);
+        assertSame(nonExternal, merged.o3);
+    }
+
+    public void testMergeOtherNature() throws Exception {
+        Object state1 = new Tuple3<Object, Object, Object>(nature1, external, nonExternal);
+        Object state2 = new Tuple3<Object, Object, Object>(nature2, null, null);
+        assertSame(state2, VisitorMemo.mergeSharedProjectStates(state1, state2));
+    }
+
+    public void testSharedStateCopiedToMemo() throws Exception {
+        VisitorMemo memo = new VisitorMemo();
+        memo.setSharedProjectState(new Tuple3<Object, Object, Object>(nature1, external, nonExternal));
+        memo.put("key", "value");
+
+        VisitorMemo copy = new VisitorMemo(memo);
+        assertEquals("value", copy.get("key"));
+        Tuple3<?, ?, ?> state = (Tuple3<?, ?, ?>) copy.getSharedProjectState();
+        assertSame(nature1, state.o1);
+        assertSame(external, state.o2);
+        assertSame(nonExternal, state.o3);
+
+        // The cached paths are used without asking the nature.
+        assertSame(external, copy.getOnlyProjectPythonPathStr(nature1, true));
+        assertSame(nonExternal, copy.getOnlyProjectPythonPathStr(nature1, false));
+    }
+}
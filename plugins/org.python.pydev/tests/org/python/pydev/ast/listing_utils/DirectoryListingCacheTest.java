@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.listing_utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class DirectoryListingCacheTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_directory_listing_cache_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    private void setOld(File dir) {
+        // Directories changed just now aren't cached.
+        assertTrue(dir.setLastModified(System.currentTimeMillis() - 60000));
+    }
+
+    public void testListingCached() throws Exception {
+        File pack = new File(baseDir, "pack");
+        pack.mkdir();
+        FileUtils.writeStrToFile("", new File(pack, "__init__.py"));
+        FileUtils.writeStrToFile("", new File(pack, "mod.py"));
+        new File(pack, "sub").mkdir();
+        setOld(pack);
+        setOld(baseDir);
+
+        DirectoryListingCache cache = new DirectoryListingCache();
+        DirectoryListingCache.Listing listing = cache.list(pack);
+        assertEquals(3, listing.children.length);
+        assertEquals(1, cache.size());
+
+        // Save / restore and check that the cached listing is used (the directory is changed but the time is kept).
+        File cacheFile = new File(baseDir, "dirListing");
+        cache.saveToFile(cacheFile);
+        DirectoryListingCache restored = new DirectoryListingCache();
+        restored.loadFromFile(cacheFile);
+        assertEquals(1, restored.size());
+
+        long lastModified = pack.lastModified();
+        FileUtils.writeStrToFile("", new File(pack, "mod2.py"));
+        assertTrue(pack.setLastModified(lastModified));
+        listing = restored.list(pack);
+        assertEquals(3, listing.children.length);
+        for (int i = 0; i < listing.children.length; i++) {
+            if (listing.children[i].getName().equals("sub")) {
+                assertEquals(DirectoryListingCache.TYPE_DIRECTORY, listing.types[i]);
+            } else {
+                assertEquals(DirectoryListingCache.TYPE_FILE, listing.types[i]);
+            }
+        }
+
+        // Changing the time lists it again.
+        setOld(pack);
+        listing = restored.list(pack);
+        assertEquals(4, listing.children.length);
+    }
+
+    public void testRecentlyChangedNotCached() throws Exception {
+        File pack = new File(baseDir, "pack");
+        pack.mkdir();
+        FileUtils.writeStrToFile("", new File(pack, "mod.py"));
+
+        DirectoryListingCache cache = new DirectoryListingCache();
+        assertEquals(1, cache.list(pack).children.length);
+        assertEquals(0, cache.size());
+    }
+
+    public void testRemoveNotUsed() throws Exception {
+        File pack = new File(baseDir, "pack");
+        File pack2 = new File(baseDir, "pack2");
+        pack.mkdir();
+        pack2.mkdir();
+        setOld(pack);
+        setOld(pack2);
+
+        DirectoryListingCache cache = new DirectoryListingCache();
+        cache.startWalk();
+        cache.list(pack);
+        cache.list(pack2);
+        assertEquals(2, cache.size());
+
+        int walk = cache.startWalk();
+        cache.list(pack);
+        cache.removeNotUsedSince(walk);
+        assertEquals(1, cache.size());
+    }
+
+    public void testParallelListingWithCache() throws Exception {
+        File pack = new File(baseDir, "pack");
+        File sub = new File(pack, "sub");
+        sub.mkdirs();
+        FileUtils.writeStrToFile("", new File(pack, "__init__.py"));
+        FileUtils.writeStrToFile("", new File(sub, "__init__.py"));
+        FileUtils.writeStrToFile("", new File(sub, "mod.py"));
+        FileUtils.writeStrToFile("", new File(sub, "mod.txt"));
+        setOld(sub);
+        setOld(pack);
+        setOld(baseDir);
+
+        FileFilter filter = new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isDirectory() || pathname.getName().endsWith(".py");
+            }
+        };
+        DirectoryListingCache cache = new DirectoryListingCache();
+        PyFileListing expected = PyFileListing.getPyFilesBelow(baseDir, filter, null);
+        for (int i = 0; i < 2; i++) { // 2nd time uses the cache.
+            PyFileListing found = PyFileListing.getPyFilesBelowInParallel(new File[] { baseDir },
+                    new FileFilter[] { filter }, null, cache)[0];
+            assertEquals(expected.getFoundPyFileInfos().toString(), found.getFoundPyFileInfos().toString());
+            assertEquals(new HashSet<>(expected.getFoundFolders()), new HashSet<>(found.getFoundFolders()));
+        }
+        assertEquals(3, cache.size());
+        assertEquals(Arrays.asList(baseDir, pack, sub), expected.getFoundFolders());
+    }
+}
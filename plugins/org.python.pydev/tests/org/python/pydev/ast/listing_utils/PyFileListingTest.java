@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.listing_utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class PyFileListingTest extends TestCase {
+
+    private File baseDir;
+    private File outsideDir;
+
+    private final FileFilter filter = new FileFilter() {
+
+        @Override
+        public boolean accept(File pathname) {
+            return pathname.isDirectory() || pathname.getName().endsWith(".py");
+        }
+    };
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        File tempDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "py_file_listing_test");
+        baseDir = new File(tempDir, "root");
+        outsideDir = new File(tempDir, "outside");
+        baseDir.mkdirs();
+        outsideDir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        delete(baseDir.getParentFile());
+        super.tearDown();
+    }
+
+    /**
+     * Deletes the given file (without following the links).
+     */
+    private static void delete(File file) {
+        if (!Files.isSymbolicLink(file.toPath())) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    delete(f);
+                }
+            }
+        }
+        file.delete();
+    }
+
+    private static void createModule(File dir, String name) throws Exception {
+        dir.mkdirs();
+        FileUtils.writeStrToFile("", new File(dir, "__init__.py"));
+        FileUtils.writeStrToFile("", new File(dir, name));
+    }
+
+    private static void link(File link, File target) throws Exception {
+        Files.createSymbolicLink(link.toPath(), target.toPath());
+    }
+
+    private static List<String> getModules(PyFileListing listing) {
+        FastStringBuffer buf = new FastStringBuffer();
+        List<String> modules = new ArrayList<String>();
+        for (PyFileInfo info : listing.getFoundPyFileInfos()) {
+            modules.add(info.getModuleName(buf));
+        }
+        Collections.sort(modules);
+        return modules;
+    }
+
+    /**
+     * @return the modules found (checking that the result is the same in all the listings, with and without a
+     * cache).
+     */
+    private List<String> listInParallel(File... roots) {
+        FileFilter[] filters = new FileFilter[roots.length];
+        Arrays.fill(filters, filter);
+        List<String> modules = null;
+        DirectoryListingCache cache = new DirectoryListingCache();
+        for (int i = 0; i < 20; i++) {
+            PyFileListing[] listings = PyFileListing.getPyFilesBelowInParallel(roots, filters, null,
+                    i % 2 == 0 ? null : cache);
+            List<String> found = new ArrayList<String>();
+            for (PyFileListing listing : listings) {
+                found.addAll(getModules(listing));
+                found.add("--");
+            }
+            if (modules == null) {
+                modules = found;
+            } else {
+                assertEquals(modules, found);
+            }
+        }
+        return modules;
+    }
+
+    public void testWithoutLinks() throws Exception {
+        createModule(new File(baseDir, "pack"), "mod.py");
+        createModule(new File(baseDir, "pack/sub"), "mod2.py");
+
+        List<String> expected = getModules(PyFileListing.getPyFilesBelow(baseDir, filter, null));
+        expected.add("--");
+        assertEquals(expected, listInParallel(baseDir));
+    }
+
+    public void testLinkToListedFolder() throws Exception {
+        createModule(new File(baseDir, "real/pack"), "mod.py");
+        // The link is before the real folder in the lexicographic order, but the real folder is still preferred.
+        link(new File(baseDir, "alias"), new File(baseDir, "real/pack"));
+        link(new File(baseDir, "real/zalias"), new File(baseDir, "real/pack"));
+
+        assertEquals(Arrays.asList("real.pack.__init__", "real.pack.mod", "--"), listInParallel(baseDir));
+    }
+
+    public void testLinksToOutsideFolder() throws Exception {
+        createModule(outsideDir, "mod.py");
+        link(new File(baseDir, "b_link"), outsideDir);
+        link(new File(baseDir, "a_link"), outsideDir);
+        link(new File(baseDir, "c_link"), outsideDir);
+
+        assertEquals(Arrays.asList("a_link.__init__", "a_link.mod", "--"), listInParallel(baseDir));
+    }
+
+    public void testNestedLinks() throws Exception {
+        createModule(outsideDir, "mod.py");
+        createModule(new File(outsideDir, "sub"), "mod2.py");
+        // The sub folder is reached through a link to its parent, which is listed first.
+        link(new File(baseDir, "a_sub"), new File(outsideDir, "sub"));
+        link(new File(baseDir, "a_parent"), outsideDir);
+        link(new File(outsideDir, "loop"), outsideDir);
+
+        assertEquals(Arrays.asList("a_parent.__init__", "a_parent.mod", "a_parent.sub.__init__",
+                "a_parent.sub.mod2", "--"), listInParallel(baseDir));
+    }
+
+    public void testLinkLoop() throws Exception {
+        createModule(new File(baseDir, "pack"), "mod.py");
+        link(new File(baseDir, "pack/loop"), new File(baseDir, "pack"));
+        link(new File(baseDir, "pack/root_loop"), baseDir);
+
+        assertEquals(Arrays.asList("pack.__init__", "pack.mod", "--"), listInParallel(baseDir));
+    }
+
+    public void testNestedRoots() throws Exception {
+        createModule(new File(baseDir, "pack"), "mod.py");
+
+        // Each root is listed on its own (as in the sequential version).
+        assertEquals(Arrays.asList("pack.__init__", "pack.mod", "--", "__init__", "mod", "--"),
+                listInParallel(baseDir, new File(baseDir, "pack")));
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+import org.python.pydev.shared_core.structure.Tuple3;
+
+import junit.framework.TestCase;
+
+public class AdditionalTokensInfoTest extends TestCase {
+
+    /**
+     * Info which isn't related to any nature (and is only persisted in the file passed to save).
+     */
+    private static final class TokensInfoStub extends AbstractAdditionalTokensInfo {
+
+        @Override
+        protected IPythonNature getNature() {
+            return null;
+        }
+
+        @Override
+        protected File getPersistingLocation() {
+            return null;
+        }
+
+        @Override
+        protected File getPersistingFolder() {
+            return null;
+        }
+
+        /**
+         * Restores the info saved in the given file (in the same way it's done in AbstractAdditionalDependencyInfo).
+         */
+        private void load(File file) throws Exception {
+            String contents = FileUtils.getFileContents(file);
+            int i = contents.indexOf(TREES_FILE_PREFIX);
+            long stamp = Long.parseLong(contents.substring(i + TREES_FILE_PREFIX.length()).trim());
+            Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> trees = loadTreesFromFile(
+                    file, stamp, null);
+            restoreSavedInfo(new Tuple3<Object, Object, Object>(trees.o1, trees.o2, null));
+        }
+    }
+
+    private File baseDir;
+
+    public static void main(String[] args) throws Exception {
+        // Benchmark: concurrent getTokensStartingWith while a writer keeps re-indexing modules (removeInfoFromModule
+        // + addAstInfo), with the queries on the read path vs. holding the info lock (as they did before).
+        int modulesCount = 300;
+        SimpleNode[] asts = new SimpleNode[modulesCount];
+        TokensInfoStub info = new TokensInfoStub();
+        for (int i = 0; i < modulesCount; i++) {
+            FastStringBuffer contents = new FastStringBuffer();
+            for (int j = 0; j < 10; j++) {
+                contents.append("class Cls").append(j).append("_").append(i).append("(object):\n");
+                contents.append("    attr").append(j).append(" = 1\n");
+                contents.append("    def method").append(j).append("(self, a):\n");
+                contents.append("        self.attr_inst").append(j).append(" = a\n");
+                contents.append("def func").append(j).append("_").append(i).append("(a, b):\n");
+                contents.append("    return a\n");
+                contents.append("CONST").append(j).append(" = 1\n");
+            }
+            asts[i] = (SimpleNode) PyParser.reparseDocument(new PyParser.ParserInfo(new Document(contents.toString()),
+                    IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION, null)).ast;
+            info.addAstInfo(asts[i], new ModulesKey("mod" + i, null), false);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            runConcurrentQueries(info, asts, false);
+            runConcurrentQueries(info, asts, true);
+        }
+    }
+
+    private static void runConcurrentQueries(final TokensInfoStub info, final SimpleNode[] asts,
+            final boolean holdInfoLock) throws Exception {
+        final String[] qualifiers = new String[] { "cl", "func1", "me", "at", "c", "CONST" };
+        final int getWhat = AbstractAdditionalTokensInfo.TOP_LEVEL | AbstractAdditionalTokensInfo.INNER;
+        final AtomicBoolean finished = new AtomicBoolean();
+        final AtomicLong queries = new AtomicLong();
+        final AtomicLong changes = new AtomicLong();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                long count = 0;
+                while (!finished.get()) {
+                    int i = (int) (count % asts.length);
+                    info.removeInfoFromModule("mod" + i, false);
+                    info.addAstInfo(asts[i], new ModulesKey("mod" + i, null), false);
+                    count++;
+                }
+                changes.set(count);
+            }
+        };
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    while (!finished.get()) {
+                        String qualifier = qualifiers[(int) (count % qualifiers.length)];
+                        if (holdInfoLock) {
+                            synchronized (info.lock) {
+                                info.getTokensStartingWith(qualifier, getWhat);
+                            }
+                        } else {
+                            info.getTokensStartingWith(qualifier, getWhat);
+                        }
+                        count++;
+                    }
+                    queries.addAndGet(count);
+                }
+            };
+        }
+
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        Thread.sleep(3000);
+        finished.set(true);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        System.out.println((holdInfoLock ? "Queries holding the info lock" : "Queries on the read path") + ": "
+                + queries.get() + " queries and " + changes.get() + " modules re-indexed in 3 secs");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_tokens_info_test");
+        baseDir.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static void addInfos(TokensInfoStub info, String moduleName) {
+        info.add(new ClassInfo("Cls", moduleName, null, null, null, 1, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        info.add(new FuncInfo("func_" + moduleName, moduleName, null, null, null, 2, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        info.add(new FuncInfo("method", moduleName, "Cls", null, null, 3, 1), AbstractAdditionalTokensInfo.INNER);
+        info.add(new AttrInfo("attr", moduleName, "Cls", null, null, 4, 1), AbstractAdditionalTokensInfo.INNER);
+    }
+
+    private static int countInfosFromModule(TokensInfoStub info, String moduleName) {
+        int found = 0;
+        for (Set<IInfo> infos : info.topLevelInitialsToInfo.values()) {
+            for (IInfo i : infos) {
+                if (i.getDeclaringModuleName().equals(moduleName)) {
+                    found++;
+                }
+            }
+        }
+        for (Set<IInfo> infos : info.innerInitialsToInfo.values()) {
+            for (IInfo i : infos) {
+                if (i.getDeclaringModuleName().equals(moduleName)) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    public void testRemoveModule() throws Exception {
+        TokensInfoStub info = new TokensInfoStub();
+        addInfos(info, "mod1");
+        addInfos(info, "mod2");
+        assertEquals(4, countInfosFromModule(info, "mod1"));
+
+        info.removeInfoFromModule("mod1", false);
+        assertEquals(0, countInfosFromModule(info, "mod1"));
+        assertEquals(4, countInfosFromModule(info, "mod2"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), info.getAllModulesWithTokens());
+        assertEquals(4, info.getAllTokens().size());
+
+        info.removeInfoFromModule("mod2", false);
+        assertTrue(info.topLevelInitialsToInfo.isEmpty());
+        assertTrue(info.innerInitialsToInfo.isEmpty());
+        assertTrue(info.getAllModulesWithTokens().isEmpty());
+
+        //removing a module which isn't there is a no-op.
+        info.removeInfoFromModule("mod1", false);
+        assertTrue(info.getAllTokens().isEmpty());
+    }
+
+    public void testConcurrentChangesAndQueries() throws Exception {
+        final TokensInfoStub info = new TokensInfoStub();
+        addInfos(info, "stable");
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        String moduleName = "mod" + (i % 10);
+                        addInfos(info, moduleName);
+                        //more infos in the buckets of the stable module (so that its infos are moved around).
+                        for (int j = 0; j < 30; j++) {
+                            info.add(new ClassInfo("Cls" + j, moduleName, null, null, null, 1, 1),
+                                    AbstractAdditionalTokensInfo.TOP_LEVEL);
+                        }
+                        if (i % 3 != 0) {
+                            info.removeInfoFromModule(moduleName, false);
+                        }
+                    }
+                    for (int i = 0; i < 10; i++) {
+                        info.removeInfoFromModule("mod" + i, false);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    finished.set(true);
+                }
+            }
+        };
+
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!finished.get()) {
+                            //queries may see the infos of a module which is still being added/removed, but the
+                            //infos of other modules must always be there (and all the infos must match the query).
+                            int stable = 0;
+                            for (IInfo i : info.getTokensStartingWith("cl", AbstractAdditionalTokensInfo.TOP_LEVEL)) {
+                                assertTrue(i.getName().startsWith("Cls"));
+                                if (i.getName().equals("Cls") && i.getDeclaringModuleName().equals("stable")) {
+                                    stable++;
+                                }
+                            }
+                            assertEquals(1, stable);
+
+                            stable = 0;
+                            for (IInfo i : info.getTokensEqualTo("method", AbstractAdditionalTokensInfo.INNER)) {
+                                assertEquals("method", i.getName());
+                                if (i.getDeclaringModuleName().equals("stable")) {
+                                    stable++;
+                                }
+                            }
+                            assertEquals(1, stable);
+                            assertTrue(info.getAllModulesWithTokens().contains("stable"));
+                            assertTrue(info.getAllTokens().size() >= 4);
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        assertEquals(new HashSet<String>(Arrays.asList("stable")), info.getAllModulesWithTokens());
+        assertEquals(4, info.getAllTokens().size());
+    }
+
+    public void testRemoveAfterRestore() throws Exception {
+        TokensInfoStub info = new TokensInfoStub();
+        addInfos(info, "mod1");
+        addInfos(info, "mod2");
+        info.add(new ClassInfo("Other", "mod2", null, null, null, 1, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        File file = new File(baseDir, "info.pydevinfo");
+        info.save(file);
+
+        TokensInfoStub restored = new TokensInfoStub();
+        restored.load(file);
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "mod2")), restored.getAllModulesWithTokens());
+        assertFalse(((InfoBucket) restored.topLevelInitialsToInfo.get("cls")).isDecoded());
+
+        restored.removeInfoFromModule("mod1", false);
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), restored.getAllModulesWithTokens());
+        //only the buckets with infos from mod1 are decoded.
+        assertTrue(((InfoBucket) restored.topLevelInitialsToInfo.get("cls")).isDecoded());
+        assertFalse(((InfoBucket) restored.topLevelInitialsToInfo.get("oth")).isDecoded());
+        assertEquals(1, restored.topLevelInitialsToInfo.get("fun").size());
+        assertEquals(1, restored.getTokensEqualTo("Cls", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(1, restored.getTokensEqualTo("method", AbstractAdditionalTokensInfo.INNER).size());
+
+        //the module index is kept when saving the restored info.
+        restored.save(file);
+        TokensInfoStub restored2 = new TokensInfoStub();
+        restored2.load(file);
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), restored2.getAllModulesWithTokens());
+        restored2.removeInfoFromModule("mod2", false);
+        assertEquals(0, restored2.getAllTokens().size());
+        assertTrue(restored2.topLevelInitialsToInfo.isEmpty());
+        assertTrue(restored2.innerInitialsToInfo.isEmpty());
+    }
+}
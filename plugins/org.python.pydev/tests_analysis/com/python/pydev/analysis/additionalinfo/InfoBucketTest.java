@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.python.pydev.core.IInfo;
+
+import junit.framework.TestCase;
+
+public class InfoBucketTest extends TestCase {
+
+    private static Set<String> names(List<IInfo> infos) {
+        Set<String> names = new HashSet<String>();
+        for (IInfo info : infos) {
+            names.add(info.getName() + "(" + info.getDeclaringModuleName() + ")");
+        }
+        return names;
+    }
+
+    public void testAddRemove() throws Exception {
+        InfoBucket bucket = new InfoBucket();
+        assertTrue(bucket.add(new FuncInfo("getA", "mod1", null, null, null, 1, 1)));
+        assertTrue(bucket.add(new FuncInfo("getA", "mod2", null, null, null, 1, 1)));
+        assertTrue(bucket.add(new ClassInfo("getA", "mod1", null, null, null, 1, 1)));
+        assertTrue(bucket.add(new FuncInfo("getA", "mod1", "Cls", null, null, 1, 1)));
+        assertFalse(bucket.add(new FuncInfo("getA", "mod1", null, null, null, 2, 2)));
+        assertEquals(4, bucket.size());
+
+        assertTrue(bucket.contains(new FuncInfo("getA", "mod2", null, null, null, 1, 1)));
+        assertTrue(bucket.remove(new FuncInfo("getA", "mod2", null, null, null, 1, 1)));
+        assertFalse(bucket.remove(new FuncInfo("getA", "mod2", null, null, null, 1, 1)));
+        assertEquals(3, bucket.size());
+
+        Iterator<IInfo> it = bucket.iterator();
+        while (it.hasNext()) {
+            if (it.next() instanceof ClassInfo) {
+                it.remove();
+            }
+        }
+        assertEquals(2, bucket.size());
+        assertEquals(new HashSet<IInfo>(Arrays.asList(new FuncInfo("getA", "mod1", null, null, null, 1, 1),
+                new FuncInfo("getA", "mod1", "Cls", null, null, 1, 1))), new HashSet<IInfo>(bucket));
+    }
+
+    public void testQueries() throws Exception {
+        List<IInfo> infos = new ArrayList<IInfo>();
+        infos.add(new FuncInfo("getattr", "mod1", null, null, null, 1, 1));
+        infos.add(new FuncInfo("getAttr", "mod1", null, null, null, 1, 1));
+        infos.add(new FuncInfo("GetAttribute", "mod1", null, null, null, 1, 1));
+        infos.add(new FuncInfo("getB", "mod1", null, null, null, 1, 1));
+        infos.add(new FuncInfo("get", "mod1", null, null, null, 1, 1));
+        infos.add(new FuncInfo("getattr", "mod2", null, null, null, 1, 1));
+        infos.add(new FuncInfo("getattr", "mod2", null, null, null, 1, 1));
+        InfoBucket bucket = new InfoBucket(infos);
+        assertEquals(6, bucket.size());
+
+        List<IInfo> found = new ArrayList<IInfo>();
+        bucket.addStartingWith("getattr", found);
+        assertEquals(new HashSet<String>(
+                Arrays.asList("getattr(mod1)", "getAttr(mod1)", "GetAttribute(mod1)", "getattr(mod2)")), names(found));
+
+        found.clear();
+        bucket.addStartingWith("get", found);
+        assertEquals(6, found.size());
+
+        found.clear();
+        bucket.addStartingWith("getz", found);
+        assertEquals(0, found.size());
+
+        found.clear();
+        bucket.addEqualTo("getattr", found);
+        assertEquals(new HashSet<String>(Arrays.asList("getattr(mod1)", "getattr(mod2)")), names(found));
+
+        found.clear();
+        bucket.addEqualTo("getAttr", found);
+        assertEquals(new HashSet<String>(Arrays.asList("getAttr(mod1)")), names(found));
+    }
+}
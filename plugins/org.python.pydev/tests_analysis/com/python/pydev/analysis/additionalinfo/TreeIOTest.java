@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.shared_core.structure.Tuple3;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.ModuleInitials;
+
+import junit.framework.TestCase;
+
+public class TreeIOTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("tree_io_test", ".trees");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testDumpAndLoad() throws Exception {
+        PyPublicTreeMap<String, Set<IInfo>> tree1 = new PyPublicTreeMap<String, Set<IInfo>>();
+        InfoBucket bucket = new InfoBucket();
+        bucket.add(new ClassInfo("Class", "mod1", null, null, "/tmp/mod1.py", 1, 2));
+        bucket.add(new FuncInfo("classify", "mod2", null, null, null, 3, 4));
+        tree1.put("cla", bucket);
+        bucket = new InfoBucket();
+        bucket.add(new ModInfo("mod1", null, "/tmp/mod1.py", 1, 1));
+        tree1.put("mod", bucket);
+
+        PyPublicTreeMap<String, Set<IInfo>> tree2 = new PyPublicTreeMap<String, Set<IInfo>>();
+        bucket = new InfoBucket();
+        bucket.add(new AttrInfo("attr", "mod1", "Class", null, "/tmp/mod1.py", 5, 9));
+        bucket.add(new NameInfo("attr", "mod2", "Foo.Bar", null, null, 6, 1));
+        tree2.put("att", bucket);
+
+        Map<String, ModuleInitials> moduleToInitials = new HashMap<String, ModuleInitials>();
+        moduleToInitials.put("mod1", new ModuleInitials(new String[] { "cla", "mod" }, new String[] { "att" }));
+        moduleToInitials.put("mod2", new ModuleInitials(new String[] { "cla" }, new String[] { "att" }));
+
+        TreeIO.dumpTreesToFile(tree1, tree2, moduleToInitials, 10, file);
+        Tuple3<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>, Map<String, ModuleInitials>> loaded = TreeIO
+                .loadTreesFromFile(file, 10, null);
+
+        assertEquals(moduleToInitials.keySet(), loaded.o3.keySet());
+        assertEquals(Arrays.asList("cla", "mod"), Arrays.asList(loaded.o3.get("mod1").topLevel));
+        assertEquals(Arrays.asList("att"), Arrays.asList(loaded.o3.get("mod1").inner));
+        assertEquals(Arrays.asList("cla"), Arrays.asList(loaded.o3.get("mod2").topLevel));
+        assertFalse(((InfoBucket) loaded.o1.get("cla")).isDecoded());
+
+        assertEquals(Arrays.asList("cla", "mod"), new ArrayList<String>(loaded.o1.keySet()));
+        assertEquals(2, loaded.o1.get("cla").size());
+        assertEquals(tree1, loaded.o1);
+        assertEquals(tree2, loaded.o2);
+
+        IInfo info = loaded.o2.get("att").iterator().next();
+        assertEquals("attr", info.getName());
+        assertEquals("mod1", info.getDeclaringModuleName());
+        assertEquals("Class", info.getPath());
+        assertEquals("/tmp/mod1.py", info.getFile());
+        assertEquals(5, info.getLine());
+        assertEquals(9, info.getCol());
+        assertEquals(IInfo.ATTRIBUTE_WITH_IMPORT_TYPE, info.getType());
+
+        List<IInfo> found = new ArrayList<IInfo>();
+        ((InfoBucket) loaded.o1.get("cla")).addStartingWith("class", found);
+        assertEquals(new HashSet<IInfo>(tree1.get("cla")), new HashSet<IInfo>(found));
+    }
+
+    public void testStampMismatch() throws Exception {
+        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
+        TreeIO.dumpTreesToFile(tree, tree, new HashMap<String, ModuleInitials>(), 10, file);
+        assertTrue(TreeIO.loadTreesFromFile(file, 10, null).o1.isEmpty());
+        try {
+            TreeIO.loadTreesFromFile(file, 11, null);
+            fail("Expected the stamp not to match.");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.builders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import junit.framework.TestCase;
+
+public class AnalysisSchedulerTest extends TestCase {
+
+    private final List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * A runnable which records its name when run (and optionally blocks until released).
+     */
+    private class FakeRunnable implements IAnalysisBuilderRunnable {
+
+        private final String name;
+        private final KeyForAnalysisRunnable key;
+        private final int analysisCause;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private FakeRunnable(String name, String moduleName, int analysisCause, CountDownLatch release) {
+            this.name = name;
+            this.key = moduleName != null ? new KeyForAnalysisRunnable("project", moduleName, analysisCause) : null;
+            this.analysisCause = analysisCause;
+            this.release = release;
+        }
+
+        private FakeRunnable(String name, String moduleName) {
+            this(name, moduleName, IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, null);
+        }
+
+        @Override
+        public void run() {
+            runOrder.add(name);
+            started.countDown();
+            try {
+                if (release != null) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void setMonitor(IProgressMonitor monitor) {
+        }
+
+        @Override
+        public int getAnalysisCause() {
+            return analysisCause;
+        }
+
+        @Override
+        public void stopAnalysis() {
+        }
+
+        @Override
+        public boolean getForceAnalysis() {
+            return false;
+        }
+
+        @Override
+        public boolean getRunFinished() {
+            return finished.getCount() == 0;
+        }
+
+        @Override
+        public String getModuleName() {
+            return key != null ? key.moduleName : null;
+        }
+
+        @Override
+        public String getAnalysisCauseStr() {
+            return "test";
+        }
+
+        @Override
+        public long getDocumentTime() {
+            return 0;
+        }
+
+        @Override
+        public long getResourceModificationStamp() {
+            return 0;
+        }
+
+        @Override
+        public KeyForAnalysisRunnable getKey() {
+            return key;
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Schedules a runnable which blocks the only worker until released (so that the next requests are queued).
+     */
+    private FakeRunnable blockWorker(AnalysisScheduler scheduler, CountDownLatch release) throws Exception {
+        FakeRunnable blocker = new FakeRunnable("blocker", "blocker", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER,
+                release);
+        scheduler.scheduleToRun(blocker, "blocker", AnalysisScheduler.PRIORITY_DEFAULT);
+        await(blocker.started);
+        return blocker;
+    }
+
+    public void testPriorityOrder() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(scheduler, release);
+
+        FakeRunnable default1 = new FakeRunnable("default1", "mod1");
+        FakeRunnable dependent = new FakeRunnable("dependent", "mod2");
+        FakeRunnable default2 = new FakeRunnable("default2", "mod3");
+        FakeRunnable editor = new FakeRunnable("editor", "mod4", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER,
+                null);
+        scheduler.scheduleToRun(default1, "default1");
+        scheduler.scheduleToRun(dependent, "dependent", AnalysisScheduler.PRIORITY_DEPENDENT);
+        scheduler.scheduleToRun(default2, "default2");
+        scheduler.scheduleToRun(editor, "editor"); // Parser requests have the editor priority by default.
+        assertEquals(4, scheduler.getStats().queueDepth);
+
+        release.countDown();
+        await(default2.finished);
+        assertEquals(Arrays.asList("blocker", "editor", "dependent", "default1", "default2"), runOrder);
+
+        AnalysisScheduler.Stats stats = scheduler.getStats();
+        assertEquals(5, stats.scheduled);
+        assertEquals(0, stats.coalesced);
+        assertEquals(4, stats.maxQueueDepth);
+    }
+
+    public void testCoalesce() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(scheduler, release);
+
+        FakeRunnable first = new FakeRunnable("first", "mod1");
+        FakeRunnable other = new FakeRunnable("other", "mod2");
+        FakeRunnable second = new FakeRunnable("second", "mod1");
+        FakeRunnable third = new FakeRunnable("third", "mod1");
+        scheduler.scheduleToRun(first, "first");
+        scheduler.scheduleToRun(other, "other");
+        scheduler.scheduleToRun(second, "second");
+        scheduler.scheduleToRun(third, "third");
+        assertEquals(2, scheduler.getStats().queueDepth);
+
+        release.countDown();
+        await(other.finished);
+        // The superseded runnables still run (so that they're marked as finished) right before the one which
+        // replaced them, which keeps the position of the first request.
+        assertEquals(Arrays.asList("blocker", "first", "second", "third", "other"), runOrder);
+
+        AnalysisScheduler.Stats stats = scheduler.getStats();
+        assertEquals(5, stats.scheduled);
+        assertEquals(2, stats.coalesced);
+    }
+
+    public void testCoalesceWithHigherPriority() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(scheduler, release);
+
+        FakeRunnable first = new FakeRunnable("first", "mod1");
+        FakeRunnable other = new FakeRunnable("other", "mod2");
+        FakeRunnable second = new FakeRunnable("second", "mod1");
+        scheduler.scheduleToRun(first, "first");
+        scheduler.scheduleToRun(other, "other", AnalysisScheduler.PRIORITY_DEPENDENT);
+        // The new request moves the module ahead of "other" (which would otherwise run first).
+        scheduler.scheduleToRun(second, "second", AnalysisScheduler.PRIORITY_EDITOR);
+
+        release.countDown();
+        await(other.finished);
+        assertEquals(Arrays.asList("blocker", "first", "second", "other"), runOrder);
+    }
+
+    public void testRequestsWithoutKeyNotCoalesced() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(scheduler, release);
+
+        FakeRunnable first = new FakeRunnable("first", null);
+        FakeRunnable second = new FakeRunnable("second", null);
+        scheduler.scheduleToRun(first, "first");
+        scheduler.scheduleToRun(second, "second");
+
+        release.countDown();
+        await(second.finished);
+        assertEquals(Arrays.asList("blocker", "first", "second"), runOrder);
+        assertEquals(0, scheduler.getStats().coalesced);
+    }
+
+    public void testWorkerCount() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<FakeRunnable> runnables = new ArrayList<FakeRunnable>();
+        for (int i = 0; i < 5; i++) {
+            FakeRunnable runnable = new FakeRunnable("r" + i, "mod" + i,
+                    IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, release) {
+                @Override
+                public void run() {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        super.run();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            };
+            runnables.add(runnable);
+            scheduler.scheduleToRun(runnable, "r" + i);
+        }
+        await(runnables.get(0).started);
+        await(runnables.get(1).started);
+        AnalysisScheduler.Stats stats = scheduler.getStats();
+        assertEquals(2, stats.activeWorkers);
+        assertEquals(3, stats.queueDepth);
+        assertEquals(2, runOrder.size());
+
+        release.countDown();
+        for (FakeRunnable runnable : runnables) {
+            await(runnable.finished);
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(5, runOrder.size());
+    }
+}
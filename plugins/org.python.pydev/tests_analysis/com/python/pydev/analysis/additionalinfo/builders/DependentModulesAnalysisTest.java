@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.builders;
+
+import junit.framework.TestCase;
+
+public class DependentModulesAnalysisTest extends TestCase {
+
+    public void testFingerprintChanged() throws Exception {
+        assertFalse(DependentModulesAnalysis.fingerprintChanged(10L, 10L));
+        assertTrue(DependentModulesAnalysis.fingerprintChanged(10L, 11L));
+
+        // When the module is removed from the index its fingerprint is no longer available.
+        assertTrue(DependentModulesAnalysis.fingerprintChanged(10L, null));
+    }
+
+    public void testFingerprintUnknown() throws Exception {
+        // A module indexed for the first time (or after the fingerprints were cleared) doesn't trigger the
+        // analysis of its dependents.
+        assertFalse(DependentModulesAnalysis.fingerprintChanged(null, 10L));
+        assertFalse(DependentModulesAnalysis.fingerprintChanged(null, null));
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo.dependencies;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
+
+import junit.framework.TestCase;
+
+public class ModuleDependenciesTest extends TestCase {
+
+    private ModuleDependencies dependencies;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dependencies = new ModuleDependencies();
+    }
+
+    /**
+     * @return the fingerprint for the given module contents (with the infos indexed as in the interpreter/project
+     * info).
+     */
+    private static long fingerprint(String contents) throws Exception {
+        ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(new Document(contents),
+                IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION, null));
+        assertNull(output.error);
+        SimpleNode ast = (SimpleNode) output.ast;
+
+        AbstractAdditionalTokensInfo info = new AbstractAdditionalTokensInfo() {
+
+            @Override
+            protected IPythonNature getNature() {
+                return null;
+            }
+
+            @Override
+            protected File getPersistingLocation() throws MisconfigurationException {
+                return null;
+            }
+
+            @Override
+            protected File getPersistingFolder() {
+                return null;
+            }
+        };
+        List<IInfo> infos = info.addAstInfo(ast, new ModulesKey("mod", null), false);
+        return ModuleDependencies.computeFingerprint(infos, ast);
+    }
+
+    private static final String BASE = ""
+            + "import os\n"
+            + "CONSTANT = 1\n"
+            + "class Foo(object):\n"
+            + "    attr = 2\n"
+            + "    def method(self, a, b=1):\n"
+            + "        return a\n"
+            + "def func(x, *args, **kwargs):\n"
+            + "    return x\n";
+
+    public void testFingerprintBodyChange() throws Exception {
+        long fingerprint = fingerprint(BASE);
+        assertEquals(fingerprint, fingerprint(BASE));
+
+        // Changing bodies, comments and positions keeps the fingerprint.
+        assertEquals(fingerprint, fingerprint(BASE.replace("return a", "print(a)\n        return a + 1")));
+        assertEquals(fingerprint, fingerprint(BASE.replace("return x", "y = x * 2\n    return y")));
+        assertEquals(fingerprint, fingerprint("# comment\n\n" + BASE));
+        assertEquals(fingerprint, fingerprint(BASE.replace("CONSTANT = 1", "CONSTANT = 2")));
+    }
+
+    public void testFingerprintSignatureChange() throws Exception {
+        long fingerprint = fingerprint(BASE);
+
+        // Parameters.
+        assertFalse(fingerprint == fingerprint(BASE.replace("def func(x, ", "def func(x, y, ")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("def func(x, ", "def func(y, ")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("*args, ", "")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("**kwargs", "**kw")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("b=1", "b")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("def method(self, a, b=1)",
+                "def method(self, a, b=1, *, c=2)")));
+        String kwOnly = BASE.replace("def func(x, *args, **kwargs)", "def func(x, *args, c=1, **kwargs)");
+        assertFalse(fingerprint(kwOnly) == fingerprint(kwOnly.replace("c=1", "c")));
+
+        // Names.
+        assertFalse(fingerprint == fingerprint(BASE.replace("CONSTANT", "CONSTANT2")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("attr = 2", "attr2 = 2")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("def method", "def method2")));
+        assertFalse(fingerprint == fingerprint(BASE + "def other():\n    pass\n"));
+    }
+
+    public void testFingerprintBaseChange() throws Exception {
+        long fingerprint = fingerprint(BASE);
+        assertFalse(fingerprint == fingerprint(BASE.replace("class Foo(object)", "class Foo(dict)")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("class Foo(object)", "class Foo(object, dict)")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("class Foo(object)", "class Foo")));
+    }
+
+    public void testFingerprintImportChange() throws Exception {
+        long fingerprint = fingerprint(BASE);
+        assertFalse(fingerprint == fingerprint(BASE.replace("import os", "import sys")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("import os", "import os as os2")));
+        assertFalse(fingerprint == fingerprint(BASE.replace("import os", "from os import path")));
+        assertFalse(fingerprint == fingerprint("import sys\n" + BASE));
+    }
+
+    public void testFingerprint() throws Exception {
+        assertNull(dependencies.getFingerprint("mod"));
+        dependencies.setFingerprint("mod", 10);
+        assertEquals(Long.valueOf(10), dependencies.getFingerprint("mod"));
+        dependencies.clearFingerprints();
+        assertNull(dependencies.getFingerprint("mod"));
+    }
+
+    public void testSetImports() throws Exception {
+        File fileA = new File("a.py");
+        dependencies.setImports("a", fileA, Arrays.asList("b", "c", "a"));
+        dependencies.setImports("d", new File("d.py"), Arrays.asList("b"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("a", "d")), dependencies.getDependents("b"));
+        assertEquals(Collections.singleton("a"), dependencies.getDependents("c"));
+        // A module importing itself is not its own dependent.
+        assertEquals(Collections.emptySet(), dependencies.getDependents("a"));
+        assertEquals(fileA, dependencies.getFile("a"));
+
+        // The previous imports are replaced.
+        dependencies.setImports("a", fileA, Arrays.asList("c", "e"));
+        assertEquals(Collections.singleton("d"), dependencies.getDependents("b"));
+        assertEquals(Collections.singleton("a"), dependencies.getDependents("c"));
+        assertEquals(Collections.singleton("a"), dependencies.getDependents("e"));
+
+        // Without imports the file isn't kept.
+        dependencies.setImports("a", fileA, Collections.<String> emptyList());
+        assertEquals(Collections.emptySet(), dependencies.getDependents("c"));
+        assertEquals(Collections.emptySet(), dependencies.getDependents("e"));
+        assertNull(dependencies.getFile("a"));
+
+        // Without a file the dependents are still available.
+        dependencies.setImports("f", null, Arrays.asList("b"));
+        assertEquals(new HashSet<String>(Arrays.asList("d", "f")), dependencies.getDependents("b"));
+        assertNull(dependencies.getFile("f"));
+    }
+
+    public void testGetDependentsReturnsCopy() throws Exception {
+        dependencies.setImports("a", new File("a.py"), Arrays.asList("b"));
+        dependencies.getDependents("b").clear();
+        assertEquals(Collections.singleton("a"), dependencies.getDependents("b"));
+    }
+
+    public void testRemoveModule() throws Exception {
+        dependencies.setImports("a", new File("a.py"), Arrays.asList("b"));
+        dependencies.setImports("b", new File("b.py"), Arrays.asList("c"));
+        dependencies.setFingerprint("b", 10);
+
+        dependencies.removeModule("b");
+        assertNull(dependencies.getFingerprint("b"));
+        assertNull(dependencies.getFile("b"));
+        assertEquals(Collections.emptySet(), dependencies.getDependents("c"));
+        // The modules which import the removed module are still its dependents.
+        assertEquals(Collections.singleton("a"), dependencies.getDependents("b"));
+    }
+}
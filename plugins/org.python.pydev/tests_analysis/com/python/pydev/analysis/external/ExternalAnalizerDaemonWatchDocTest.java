@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ExternalAnalizerDaemonWatchDocTest extends TestCase {
+
+    private File baseDir;
+    private String interpreter;
+    private List<String> pythonPath;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "daemon_watchdoc_test");
+        new File(baseDir, "env/bin").mkdirs();
+        new File(baseDir, "env/Scripts").mkdirs();
+        new File(baseDir, "env/lib/site-packages/pylint").mkdirs();
+        new File(baseDir, "other/bin").mkdirs();
+        new File(baseDir, "other/site-packages/pylint").mkdirs();
+        interpreter = new File(baseDir, "env/bin/python").toString();
+        pythonPath = Arrays.asList(new File(baseDir, "env/lib/site-packages").toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private boolean isFromInterpreter(String location, String analyzer) {
+        return ExternalAnalizerDaemonWatchDoc.isAnalyzerFromInterpreter(new File(baseDir, location), analyzer,
+                interpreter, pythonPath);
+    }
+
+    public void testExecutable() throws Exception {
+        assertTrue(isFromInterpreter("env/bin/pylint", "pylint"));
+        assertTrue(isFromInterpreter("env/bin/../bin/mypy", "mypy"));
+        assertFalse(isFromInterpreter("other/bin/pylint", "pylint"));
+        assertFalse(isFromInterpreter("env/pylint", "pylint"));
+        assertFalse(ExternalAnalizerDaemonWatchDoc.isAnalyzerFromInterpreter(null, "pylint", interpreter,
+                pythonPath));
+
+        // Windows layout: python.exe at the root and the executables at the Scripts dir.
+        interpreter = new File(baseDir, "env/python.exe").toString();
+        assertTrue(isFromInterpreter("env/Scripts/pylint.exe", "pylint"));
+        assertFalse(isFromInterpreter("env/bin/pylint", "pylint"));
+    }
+
+    public void testScript() throws Exception {
+        assertTrue(isFromInterpreter("env/lib/site-packages/pylint/__main__.py", "pylint"));
+        assertFalse(isFromInterpreter("env/lib/site-packages/pylint/__main__.py", "mypy"));
+        assertFalse(isFromInterpreter("other/site-packages/pylint/__main__.py", "pylint"));
+        assertFalse(isFromInterpreter("env/bin/lint.py", "pylint"));
+    }
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.BatchRunInfo;
+
+import junit.framework.TestCase;
+
+public class ExternalAnalysisBatcherTest extends TestCase {
+
+    /**
+     * A process which outputs the given contents (and which only finishes when finish() or destroy() is called
+     * if it's created with finished == false).
+     */
+    private static final class ProcessStub extends Process {
+
+        private final String stdout;
+        private final String stderr;
+        private final CountDownLatch finished;
+        private volatile boolean destroyed;
+
+        private ProcessStub(String stdout, String stderr, boolean finished) {
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.finished = new CountDownLatch(finished ? 0 : 1);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(stdout.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(stderr.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            finished.await();
+            return 0;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return finished.getCount() > 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (isAlive()) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Keeps the output received (and the number of times it was called).
+     */
+    private static final class AnalyzerStub implements IExternalAnalyzer {
+
+        private final List<Tuple<String, String>> received = new ArrayList<Tuple<String, String>>();
+
+        @Override
+        public synchronized void afterRunProcess(String output, String errors, IExternalCodeAnalysisStream out) {
+            received.add(new Tuple<String, String>(output, errors));
+        }
+
+        @Override
+        public void join() {
+        }
+    }
+
+    private ExternalAnalysisBatcher batcher;
+    private File workingDir;
+    private final List<List<String>> processesCreated = new ArrayList<List<String>>();
+    private String stdout;
+    private ProcessStub lastProcess;
+    private boolean processFinished;
+    private CountDownLatch processCreated;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        batcher = new ExternalAnalysisBatcher();
+        workingDir = new File("proj_dir").getAbsoluteFile();
+        stdout = "";
+        processFinished = true;
+        processCreated = new CountDownLatch(1);
+    }
+
+    /**
+     * Splits lines in the format: path|message
+     */
+    private BatchRunInfo createRunInfo(int batchSize) {
+        return new BatchRunInfo("Stub", null, null, workingDir, batchSize, null, (targets) -> {
+            synchronized (processesCreated) {
+                processesCreated.add(targets);
+            }
+            lastProcess = new ProcessStub(stdout, "some error", processFinished);
+            processCreated.countDown();
+            return lastProcess;
+        }, (line) -> {
+            int i = line.indexOf('|');
+            return i == -1 ? null : new Tuple<String, String>(line.substring(0, i), line.substring(i + 1));
+        });
+    }
+
+    private String path(String name) {
+        return new File(workingDir, name).toString();
+    }
+
+    public void testDispatchOutputToEachFile() throws Exception {
+        stdout = path("mod1.py") + "|mod1 error 1\n"
+                + "mod2.py|mod2 error\n" // relative to the working dir
+                + path("mod1.py") + "|mod1 error 2\n"
+                + path("other.py") + "|not in the batch\n"
+                + "Summary line\n";
+        BatchRunInfo info = createRunInfo(10);
+        AnalyzerStub analyzer1 = new AnalyzerStub();
+        AnalyzerStub analyzer2 = new AnalyzerStub();
+        AnalyzerStub analyzer3 = new AnalyzerStub();
+        final List<String> finished = new ArrayList<String>();
+        batcher.add(info, path("mod1.py"), analyzer1, new NullProgressMonitor(), () -> finished.add("mod1"));
+        batcher.add(info, path("mod2.py"), analyzer2, new NullProgressMonitor(), () -> finished.add("mod2"));
+        batcher.add(info, path("mod3.py"), analyzer3, new NullProgressMonitor(), () -> finished.add("mod3"));
+        assertEquals(0, processesCreated.size());
+
+        batcher.flushAll();
+        assertEquals(1, processesCreated.size());
+        assertEquals(Arrays.asList(path("mod1.py"), path("mod2.py"), path("mod3.py")), processesCreated.get(0));
+
+        assertEquals(Arrays.asList(new Tuple<String, String>("mod1 error 1\nmod1 error 2\n", "some error")),
+                analyzer1.received);
+        // The stderr is only reported once.
+        assertEquals(Arrays.asList(new Tuple<String, String>("mod2 error\n", "")), analyzer2.received);
+        assertEquals(Arrays.asList(new Tuple<String, String>("", "")), analyzer3.received);
+        assertEquals(Arrays.asList("mod1", "mod2", "mod3"), finished);
+
+        // Nothing else pending.
+        batcher.flushAll();
+        assertEquals(1, processesCreated.size());
+    }
+
+    public void testBatchSizeTrigger() throws Exception {
+        stdout = path("mod1.py") + "|error\n";
+        BatchRunInfo info = createRunInfo(2);
+        AnalyzerStub analyzer1 = new AnalyzerStub();
+        AnalyzerStub analyzer2 = new AnalyzerStub();
+        AnalyzerStub analyzer3 = new AnalyzerStub();
+        batcher.add(info, path("mod1.py"), analyzer1, new NullProgressMonitor(), () -> {
+        });
+        assertEquals(0, processesCreated.size());
+
+        // The batch is full: run in the current thread.
+        batcher.add(info, path("mod2.py"), analyzer2, new NullProgressMonitor(), () -> {
+        });
+        assertEquals(1, processesCreated.size());
+        assertEquals(1, analyzer1.received.size());
+        assertEquals(1, analyzer2.received.size());
+
+        batcher.add(info, path("mod3.py"), analyzer3, new NullProgressMonitor(), () -> {
+        });
+        assertEquals(1, processesCreated.size());
+        assertEquals(0, analyzer3.received.size());
+        batcher.flushAll();
+        assertEquals(Arrays.asList(path("mod3.py")), processesCreated.get(1));
+        assertEquals(1, analyzer3.received.size());
+    }
+
+    public void testDifferentRunInfosAreNotBatchedTogether() throws Exception {
+        BatchRunInfo info1 = createRunInfo(10);
+        workingDir = new File("proj_dir2").getAbsoluteFile();
+        BatchRunInfo info2 = createRunInfo(10);
+        batcher.add(info1, "mod1.py", new AnalyzerStub(), new NullProgressMonitor(), () -> {
+        });
+        batcher.add(info2, "mod1.py", new AnalyzerStub(), new NullProgressMonitor(), () -> {
+        });
+        batcher.flushAll();
+        assertEquals(2, processesCreated.size());
+    }
+
+    public void testScheduleFlush() throws Exception {
+        long initial = ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS;
+        ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS = 60000;
+        try {
+            final CountDownLatch finished = new CountDownLatch(1);
+            AnalyzerStub analyzer = new AnalyzerStub();
+            batcher.add(createRunInfo(10), path("mod1.py"), analyzer, new NullProgressMonitor(),
+                    () -> finished.countDown());
+            assertEquals(0, processesCreated.size());
+
+            // Runs in a job (not in the current thread).
+            batcher.scheduleFlush();
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            assertEquals(1, analyzer.received.size());
+        } finally {
+            ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS = initial;
+        }
+    }
+
+    public void testFlushAfterDelay() throws Exception {
+        long initial = ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS;
+        ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS = 10;
+        try {
+            final CountDownLatch finished = new CountDownLatch(1);
+            batcher.add(createRunInfo(10), path("mod1.py"), new AnalyzerStub(), new NullProgressMonitor(),
+                    () -> finished.countDown());
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        } finally {
+            ExternalAnalysisBatcher.FLUSH_DELAY_MILLIS = initial;
+        }
+    }
+
+    public void testCanceledBeforeRun() throws Exception {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        AnalyzerStub analyzer = new AnalyzerStub();
+        batcher.add(createRunInfo(10), path("mod1.py"), analyzer, monitor, () -> fail("Should not be called."));
+        batcher.flushAll();
+        assertEquals(0, processesCreated.size());
+        assertEquals(0, analyzer.received.size());
+    }
+
+    public void testOnlyCanceledEntriesSkipped() throws Exception {
+        stdout = path("mod1.py") + "|error1\n" + path("mod2.py") + "|error2\n";
+        NullProgressMonitor canceled = new NullProgressMonitor();
+        canceled.setCanceled(true);
+        BatchRunInfo info = createRunInfo(10);
+        AnalyzerStub analyzer1 = new AnalyzerStub();
+        AnalyzerStub analyzer2 = new AnalyzerStub();
+        batcher.add(info, path("mod1.py"), analyzer1, canceled, () -> fail("Should not be called."));
+        batcher.add(info, path("mod2.py"), analyzer2, new NullProgressMonitor(), () -> {
+        });
+        batcher.flushAll();
+        assertEquals(1, processesCreated.size());
+        assertEquals(0, analyzer1.received.size());
+        assertEquals(Arrays.asList(new Tuple<String, String>("error2\n", "some error")), analyzer2.received);
+    }
+
+    public void testCancelRunningBatch() throws Exception {
+        processFinished = false;
+        final NullProgressMonitor monitor1 = new NullProgressMonitor();
+        final NullProgressMonitor monitor2 = new NullProgressMonitor();
+        BatchRunInfo info = createRunInfo(10);
+        AnalyzerStub analyzer1 = new AnalyzerStub();
+        AnalyzerStub analyzer2 = new AnalyzerStub();
+        batcher.add(info, path("mod1.py"), analyzer1, monitor1, () -> {
+        });
+        batcher.add(info, path("mod2.py"), analyzer2, monitor2, () -> {
+        });
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                batcher.flushAll();
+            }
+        };
+        thread.start();
+        assertTrue(processCreated.await(10, TimeUnit.SECONDS));
+
+        // Still running if only some of the entries are canceled.
+        monitor1.setCanceled(true);
+        thread.join(200);
+        assertTrue(thread.isAlive());
+        assertFalse(lastProcess.destroyed);
+
+        monitor2.setCanceled(true);
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertTrue(lastProcess.destroyed);
+        assertEquals(0, analyzer1.received.size());
+        assertEquals(0, analyzer2.received.size());
+    }
+}
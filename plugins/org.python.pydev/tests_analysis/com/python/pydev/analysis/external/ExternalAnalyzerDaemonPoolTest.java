@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.TestDependent;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon.DaemonNotSupportedException;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs pysrc/pydev_external_analyzer.py with a fake pylint (which outputs its pid and the arguments received and
+ * sleeps when a target named "sleep" is passed).
+ */
+public class ExternalAnalyzerDaemonPoolTest extends TestCase {
+
+    private static final String FAKE_LINT = ""
+            + "import os, sys, time\n"
+            + "\n"
+            + "def Run(args, exit=True):\n"
+            + "    if 'sleep' in args:\n"
+            + "        time.sleep(30)\n"
+            + "    sys.stdout.write('pid: %s\\n' % (os.getpid(),))\n"
+            + "    sys.stdout.write('args: %s\\n' % (' '.join(args),))\n"
+            + "    sys.stderr.write('warning\\n')\n";
+
+    private File baseDir;
+    private ExternalAnalyzerDaemonPool pool;
+    private int maxDaemons;
+    private int maxRequests;
+    private long maxMemory;
+    private long idleTimeout;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "daemon_pool_test");
+        File pylintDir = new File(baseDir, "pylint");
+        pylintDir.mkdirs();
+        FileUtils.writeStrToFile("", new File(pylintDir, "__init__.py"));
+        FileUtils.writeStrToFile(FAKE_LINT, new File(pylintDir, "lint.py"));
+        pool = new ExternalAnalyzerDaemonPool();
+
+        maxDaemons = ExternalAnalyzerDaemonPool.MAX_DAEMONS_PER_KEY;
+        maxRequests = ExternalAnalyzerDaemonPool.MAX_REQUESTS_PER_DAEMON;
+        maxMemory = ExternalAnalyzerDaemonPool.MAX_DAEMON_MEMORY_KB;
+        idleTimeout = ExternalAnalyzerDaemonPool.IDLE_TIMEOUT_MILLIS;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.disposeAll();
+        ExternalAnalyzerDaemonPool.MAX_DAEMONS_PER_KEY = maxDaemons;
+        ExternalAnalyzerDaemonPool.MAX_REQUESTS_PER_DAEMON = maxRequests;
+        ExternalAnalyzerDaemonPool.MAX_DAEMON_MEMORY_KB = maxMemory;
+        ExternalAnalyzerDaemonPool.IDLE_TIMEOUT_MILLIS = idleTimeout;
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private String[] createCommandLine(String analyzer) {
+        return new String[] { TestDependent.PYTHON_EXE, "-u", TestDependent.PYSRC_LOC + "pydev_external_analyzer.py",
+                analyzer, "--rcfile=foo" };
+    }
+
+    private Tuple<String, String> analyze(String analyzer, NullProgressMonitor monitor, String... targets)
+            throws Exception {
+        return pool.analyze(createCommandLine(analyzer), new String[] { "PYTHONPATH=" + baseDir }, baseDir,
+                Arrays.asList(targets), monitor);
+    }
+
+    private Tuple<String, String> analyze(String... targets) throws Exception {
+        return analyze("pylint", new NullProgressMonitor(), targets);
+    }
+
+    private static String getPid(Tuple<String, String> output) {
+        String line = output.o1.split("\n")[0];
+        assertTrue(line, line.startsWith("pid: "));
+        return line;
+    }
+
+    public void testAnalyze() throws Exception {
+        Tuple<String, String> output = analyze("a.py", "b.py");
+        assertTrue(output.o1, output.o1.endsWith("args: --rcfile=foo a.py b.py\n"));
+        assertEquals("warning\n", output.o2);
+
+        // The same process serves the next request.
+        Tuple<String, String> output2 = analyze("c.py");
+        assertEquals(getPid(output), getPid(output2));
+        assertTrue(output2.o1, output2.o1.endsWith("args: --rcfile=foo c.py\n"));
+    }
+
+    public void testImportError() throws Exception {
+        try {
+            analyze("unknown", new NullProgressMonitor(), "a.py");
+            fail("Expected DaemonNotSupportedException.");
+        } catch (DaemonNotSupportedException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unexpected analyzer: unknown"));
+        }
+        // Not retried while the key is marked as not supported.
+        try {
+            analyze("unknown", new NullProgressMonitor(), "a.py");
+            fail("Expected DaemonNotSupportedException.");
+        } catch (DaemonNotSupportedException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Previously"));
+        }
+    }
+
+    public void testRecycleByRequests() throws Exception {
+        ExternalAnalyzerDaemonPool.MAX_REQUESTS_PER_DAEMON = 2;
+        String pid1 = getPid(analyze("a.py"));
+        assertEquals(pid1, getPid(analyze("a.py")));
+        String pid2 = getPid(analyze("a.py"));
+        assertFalse(pid1.equals(pid2));
+        assertEquals(pid2, getPid(analyze("a.py")));
+    }
+
+    public void testRecycleByMemory() throws Exception {
+        // The END line reports the max rss of the process (always above 1kb).
+        ExternalAnalyzerDaemonPool.MAX_DAEMON_MEMORY_KB = 1;
+        String pid1 = getPid(analyze("a.py"));
+        assertFalse(pid1.equals(getPid(analyze("a.py"))));
+    }
+
+    public void testIdleTimeout() throws Exception {
+        String pid1 = getPid(analyze("a.py"));
+        ExternalAnalyzerDaemonPool.IDLE_TIMEOUT_MILLIS = 0;
+        Thread.sleep(5);
+        assertFalse(pid1.equals(getPid(analyze("a.py"))));
+    }
+
+    public void testIdleProcessesStoppedWithoutRequests() throws Exception {
+        ExternalAnalyzerDaemonPool.IDLE_TIMEOUT_MILLIS = 200;
+        getPid(analyze("a.py"));
+        assertEquals(1, pool.getDaemonsCount());
+
+        // The idle process is stopped by the reaper job (no new request is needed).
+        long timeout = System.currentTimeMillis() + 10000;
+        while (pool.getDaemonsCount() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, pool.getDaemonsCount());
+
+        // And the pool may still be used afterwards.
+        getPid(analyze("a.py"));
+        assertEquals(1, pool.getDaemonsCount());
+    }
+
+    /**
+     * Starts an analysis which only finishes when the given monitor is canceled.
+     */
+    private Thread startSleepAnalysis(final NullProgressMonitor monitor, final CountDownLatch finished) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    analyze("pylint", monitor, "sleep");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    public void testReleaseAfterDisposeAll() throws Exception {
+        ExternalAnalyzerDaemonPool.MAX_DAEMONS_PER_KEY = 1;
+        getPid(analyze("a.py"));
+
+        NullProgressMonitor sleepMonitor = new NullProgressMonitor();
+        CountDownLatch sleepFinished = new CountDownLatch(1);
+        startSleepAnalysis(sleepMonitor, sleepFinished);
+        // Wait for the process to be busy.
+        long timeout = System.currentTimeMillis() + 10000;
+        while (pool.getIdleCount() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getIdleCount());
+
+        // The busy process is no longer accounted in the pool, so, a new one is started for the next request.
+        pool.disposeAll();
+        String pid = getPid(analyze("a.py"));
+        assertEquals(1, pool.getDaemonsCount());
+
+        // When the busy process is released it doesn't change the accounting of the new process.
+        sleepMonitor.setCanceled(true);
+        assertTrue(sleepFinished.await(10, TimeUnit.SECONDS));
+        assertEquals(1, pool.getDaemonsCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(pid, getPid(analyze("a.py")));
+    }
+
+    public void testCancelWhileWaitingForRelease() throws Exception {
+        ExternalAnalyzerDaemonPool.MAX_DAEMONS_PER_KEY = 1;
+        getPid(analyze("a.py"));
+        NullProgressMonitor sleepMonitor = new NullProgressMonitor();
+        CountDownLatch sleepFinished = new CountDownLatch(1);
+        startSleepAnalysis(sleepMonitor, sleepFinished);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (pool.getIdleCount() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        // The waiting request notices the cancellation even if no process is released.
+        final NullProgressMonitor waitMonitor = new NullProgressMonitor();
+        final CountDownLatch waited = new CountDownLatch(1);
+        final Object[] result = new Object[] { "not set" };
+        Thread waitThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = analyze("pylint", waitMonitor, "b.py");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    waited.countDown();
+                }
+            }
+        };
+        waitThread.start();
+        assertFalse(waited.await(200, TimeUnit.MILLISECONDS));
+        waitMonitor.setCanceled(true);
+        assertTrue(waited.await(5, TimeUnit.SECONDS));
+        assertNull(result[0]);
+        assertEquals(1, sleepFinished.getCount());
+
+        sleepMonitor.setCanceled(true);
+        assertTrue(sleepFinished.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testKillOnCancel() throws Exception {
+        String pid1 = getPid(analyze("a.py"));
+
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        Thread cancelThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+                monitor.setCanceled(true);
+            }
+        };
+        cancelThread.start();
+        long initial = System.currentTimeMillis();
+        assertNull(analyze("pylint", monitor, "sleep"));
+        assertTrue(System.currentTimeMillis() - initial < 10000);
+
+        // The process in the middle of the analysis was killed (so, a new one is used).
+        assertFalse(pid1.equals(getPid(analyze("a.py"))));
+    }
+
+    public void testWaitForRelease() throws Exception {
+        ExternalAnalyzerDaemonPool.MAX_DAEMONS_PER_KEY = 1;
+        final String pid1 = getPid(analyze("a.py"));
+
+        // While the only process is busy, other requests wait for it to be released.
+        final NullProgressMonitor sleepMonitor = new NullProgressMonitor();
+        final CountDownLatch sleepFinished = new CountDownLatch(1);
+        Thread sleepThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    analyze("pylint", sleepMonitor, "sleep");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    sleepFinished.countDown();
+                }
+            }
+        };
+        sleepThread.start();
+        Thread.sleep(300);
+
+        final String[] waitedPid = new String[1];
+        final CountDownLatch waited = new CountDownLatch(1);
+        Thread waitThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waitedPid[0] = getPid(analyze("b.py"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    waited.countDown();
+                }
+            }
+        };
+        waitThread.start();
+        assertFalse(waited.await(300, TimeUnit.MILLISECONDS));
+
+        // Canceling the analysis kills the busy process and the waiting request gets a new one.
+        sleepMonitor.setCanceled(true);
+        assertTrue(sleepFinished.await(10, TimeUnit.SECONDS));
+        assertTrue(waited.await(10, TimeUnit.SECONDS));
+        assertNotNull(waitedPid[0]);
+        assertFalse(pid1.equals(waitedPid[0]));
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.mypy;
+
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class MypyAnalysisTest extends TestCase {
+
+    public void testSplitBatchLine() throws Exception {
+        String line = "/home/user/proj/mod1.py:10:5: error: Incompatible types in assignment  [assignment]";
+        Tuple<String, String> split = MypyAnalysis.splitBatchLine(line);
+        assertEquals("/home/user/proj/mod1.py", split.o1);
+        assertEquals(line, split.o2); // The line is kept as is (the analysis of a single file expects the path).
+
+        line = "C:\\proj\\mod2.py:3:1: note: Revealed type is \"builtins.int\"";
+        split = MypyAnalysis.splitBatchLine(line);
+        assertEquals("C:\\proj\\mod2.py", split.o1);
+        assertEquals(line, split.o2);
+    }
+
+    public void testSplitBatchLineNotRelatedToFile() throws Exception {
+        assertNull(MypyAnalysis.splitBatchLine("Found 2 errors in 1 file (checked 2 source files)"));
+        assertNull(MypyAnalysis.splitBatchLine("Success: no issues found in 2 source files"));
+        assertNull(MypyAnalysis.splitBatchLine(""));
+    }
+}
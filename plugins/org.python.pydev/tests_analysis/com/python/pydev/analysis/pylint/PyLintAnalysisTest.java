@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.pylint;
+
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class PyLintAnalysisTest extends TestCase {
+
+    public void testSplitBatchLine() throws Exception {
+        Tuple<String, String> split = PyLintAnalysis
+                .splitBatchLine("/home/user/proj/mod1.py|@|W:  3, 0: Unused import os (unused-import)");
+        assertEquals("/home/user/proj/mod1.py", split.o1);
+        assertEquals("W:  3, 0: Unused import os (unused-import)", split.o2);
+
+        split = PyLintAnalysis
+                .splitBatchLine("C:\\proj\\mod2.py|@|E: 10, 4: Undefined variable 'a' (undefined-variable)");
+        assertEquals("C:\\proj\\mod2.py", split.o1);
+        assertEquals("E: 10, 4: Undefined variable 'a' (undefined-variable)", split.o2);
+    }
+
+    public void testSplitBatchLineWithQuotes() throws Exception {
+        // On Windows the quotes of the msg-template are kept in the output.
+        Tuple<String, String> split = PyLintAnalysis
+                .splitBatchLine("'C:\\proj\\mod1.py|@|C:  1, 0: Missing module docstring (missing-docstring)'  ");
+        assertEquals("C:\\proj\\mod1.py", split.o1);
+        assertEquals("C:  1, 0: Missing module docstring (missing-docstring)", split.o2);
+    }
+
+    public void testSplitBatchLineNotRelatedToFile() throws Exception {
+        assertNull(PyLintAnalysis.splitBatchLine("************* Module mod1"));
+        assertNull(PyLintAnalysis.splitBatchLine(""));
+        assertNull(PyLintAnalysis.splitBatchLine("Your code has been rated at 7.50/10"));
+    }
+}
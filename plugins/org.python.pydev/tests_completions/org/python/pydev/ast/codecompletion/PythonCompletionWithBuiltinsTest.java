@@ -22,6 +22,7 @@ import org.python.pydev.ast.codecompletion.revisited.CompletionCache;
 import org.python.pydev.ast.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesCacheFile;
 import org.python.pydev.ast.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.ast.codecompletion.shell.AbstractShell;
 import org.python.pydev.ast.codecompletion.shell.PythonShell;
@@ -604,8 +605,9 @@ public class PythonCompletionWithBuiltinsTest extends CodeCompletionTestsBase {
         ISystemModulesManager systemModulesManager = nature.getAstManager().getModulesManager()
                 .getSystemModulesManager();
         RunnableAsJobsPoolThread.getSingleton().waitToFinishCurrent();
-        File file = systemModulesManager.getCompiledModuleCacheFile(module.getName());
+        File file = systemModulesManager.getCompiledModulesCacheFile();
         assertTrue(file.exists());
+        assertTrue(CompiledModulesCacheFile.get(file).contains(module.getName()));
     }
 
     public void testAssignToFuncCompletion() throws Exception {
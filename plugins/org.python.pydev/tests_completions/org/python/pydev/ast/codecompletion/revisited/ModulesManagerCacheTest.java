@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.core.ModulesKey;
+
+import junit.framework.TestCase;
+
+public class ModulesManagerCacheTest extends TestCase {
+
+    private static final long EMPTY_SIZE = ModulesManagerCache
+            .estimateRetainedSize(AbstractModule.createEmptyModule(new ModulesKey("m", null)));
+
+    private ProjectModulesManager createManager(String prefix, int modules) {
+        ProjectModulesManager manager = new ProjectModulesManager();
+        for (int i = 0; i < modules; i++) {
+            ModulesKey key = new ModulesKey(prefix + i, null);
+            manager.modulesKeys.put(key, key);
+        }
+        return manager;
+    }
+
+    public void testGetObj() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(1024 * 1024, 1024 * 1024);
+        ProjectModulesManager manager = createManager("mod", 2);
+
+        ModulesKey probe = new ModulesKey("mod0", null);
+        AbstractModule module = cache.getObj(probe, manager);
+        assertTrue(module instanceof EmptyModule);
+        assertSame(module, cache.getObj(probe, manager));
+        assertNull(cache.getObj(new ModulesKey("unknown", null), manager));
+
+        // Another manager with the same module name must not share the entry.
+        ProjectModulesManager manager2 = createManager("mod", 2);
+        assertNotSame(module, cache.getObj(probe, manager2));
+
+        ModulesManagerCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(3, stats.misses);
+        assertEquals(2, stats.size);
+        assertEquals(2 * EMPTY_SIZE, stats.retainedSize);
+        assertEquals(EMPTY_SIZE, manager.cacheEntries.getRetainedSize());
+
+        cache.remove(probe, manager);
+        assertEquals(0, manager.cacheEntries.getRetainedSize());
+        cache.clear();
+        assertEquals(0, manager2.cacheEntries.getRetainedSize());
+        assertEquals(0, cache.getStats().size);
+    }
+
+    public void testBoundedByRetainedSize() throws Exception {
+        long maxRetainedSize = 16 * 10 * EMPTY_SIZE; // i.e.: 10 modules per segment.
+        ModulesManagerCache cache = new ModulesManagerCache(maxRetainedSize, maxRetainedSize);
+        ProjectModulesManager manager = createManager("mod", 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertNotNull(cache.getObj(new ModulesKey("mod" + i, null), manager));
+        }
+        ModulesManagerCache.Stats stats = cache.getStats();
+        assertTrue(stats.toString(), stats.retainedSize <= maxRetainedSize);
+        assertTrue(stats.toString(), stats.evictions >= 1000 - (16 * 10));
+        assertEquals(stats.retainedSize, manager.cacheEntries.getRetainedSize());
+    }
+
+    public void testManagerQuota() throws Exception {
+        long maxRetainedSize = 16 * 100 * EMPTY_SIZE;
+        long quota = 50 * EMPTY_SIZE;
+        ModulesManagerCache cache = new ModulesManagerCache(maxRetainedSize, quota);
+        ProjectModulesManager small = createManager("small", 20);
+        ProjectModulesManager big = createManager("big", 500);
+
+        for (int i = 0; i < 20; i++) {
+            cache.getObj(new ModulesKey("small" + i, null), small);
+        }
+        for (int i = 0; i < 500; i++) {
+            cache.getObj(new ModulesKey("big" + i, null), big);
+        }
+        assertTrue(big.cacheEntries.getRetainedSize() <= quota);
+        // The modules from the other manager are kept.
+        assertEquals(20 * EMPTY_SIZE, small.cacheEntries.getRetainedSize());
+
+        // The last one accessed must be there.
+        long hits = cache.getStats().hits;
+        cache.getObj(new ModulesKey("big499", null), big);
+        assertEquals(hits + 1, cache.getStats().hits);
+    }
+
+    public void testManagerQuotaEvictsLeastRecentlyUsed() throws Exception {
+        long quota = 10 * EMPTY_SIZE;
+        ModulesManagerCache cache = new ModulesManagerCache(16 * 100 * EMPTY_SIZE, quota);
+        ProjectModulesManager manager = createManager("mod", 20);
+        for (int i = 0; i < 10; i++) {
+            cache.getObj(new ModulesKey("mod" + i, null), manager);
+        }
+        // Access the first ones (which are now the most recently used of the manager in all the segments).
+        for (int i = 0; i < 5; i++) {
+            cache.getObj(new ModulesKey("mod" + i, null), manager);
+        }
+        for (int i = 10; i < 15; i++) {
+            cache.getObj(new ModulesKey("mod" + i, null), manager);
+        }
+        assertEquals(quota, manager.cacheEntries.getRetainedSize());
+        assertEquals(5, cache.getStats().evictions);
+
+        long hits = cache.getStats().hits;
+        for (int i = 0; i < 5; i++) {
+            cache.getObj(new ModulesKey("mod" + i, null), manager);
+        }
+        for (int i = 10; i < 15; i++) {
+            cache.getObj(new ModulesKey("mod" + i, null), manager);
+        }
+        assertEquals(hits + 10, cache.getStats().hits);
+        assertEquals(5, cache.getStats().evictions);
+
+        // mod5-mod9 were evicted.
+        cache.getObj(new ModulesKey("mod5", null), manager);
+        assertEquals(hits + 10, cache.getStats().hits);
+    }
+
+    public void testReplaceAndRemoveKeepRetainedSize() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(16 * 100 * EMPTY_SIZE, 100 * EMPTY_SIZE);
+        ProjectModulesManager manager = createManager("mod", 3);
+        ModulesKey key = new ModulesKey("mod0", null);
+        cache.getObj(key, manager);
+        cache.getObj(new ModulesKey("mod1", null), manager);
+
+        SourceModule sourceModule = new SourceModule("mod0", null, null, null, null, 100);
+        cache.add(key, sourceModule, manager);
+        assertSame(sourceModule, cache.getObj(key, manager));
+        long sourceSize = ModulesManagerCache.estimateRetainedSize(sourceModule);
+        assertEquals(sourceSize + EMPTY_SIZE, manager.cacheEntries.getRetainedSize());
+        assertEquals(sourceSize + EMPTY_SIZE, cache.getStats().retainedSize);
+
+        cache.remove(key, manager);
+        assertEquals(EMPTY_SIZE, manager.cacheEntries.getRetainedSize());
+        cache.remove(key, manager);
+        assertEquals(EMPTY_SIZE, manager.cacheEntries.getRetainedSize());
+        cache.clear();
+        assertEquals(0, manager.cacheEntries.getRetainedSize());
+    }
+
+    public void testEstimateFromSourceLength() throws Exception {
+        long withoutLength = ModulesManagerCache.estimateRetainedSize(new SourceModule("m", null, null, null, null));
+        long small = ModulesManagerCache.estimateRetainedSize(new SourceModule("m", null, null, null, null, 10));
+        long big = ModulesManagerCache.estimateRetainedSize(new SourceModule("m", null, null, null, null, 100000));
+        assertTrue(withoutLength > small);
+        assertTrue(big > withoutLength);
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final long quota = 50 * EMPTY_SIZE;
+        final ModulesManagerCache cache = new ModulesManagerCache(16 * 10 * EMPTY_SIZE, quota);
+        final ProjectModulesManager manager1 = createManager("mod", 200);
+        final ProjectModulesManager manager2 = createManager("mod", 200);
+        Thread[] threads = new Thread[4];
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 20000; i++) {
+                            ProjectModulesManager manager = random.nextBoolean() ? manager1 : manager2;
+                            ModulesKey key = new ModulesKey("mod" + random.nextInt(200), null);
+                            if (random.nextInt(10) == 0) {
+                                cache.remove(key, manager);
+                            } else {
+                                assertNotNull(cache.getObj(key, manager));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+        ModulesManagerCache.Stats stats = cache.getStats();
+        assertEquals(stats.retainedSize,
+                manager1.cacheEntries.getRetainedSize() + manager2.cacheEntries.getRetainedSize());
+        assertEquals(stats.size * EMPTY_SIZE, stats.retainedSize);
+        assertTrue(manager1.cacheEntries.getRetainedSize() <= quota);
+        assertTrue(manager2.cacheEntries.getRetainedSize() <= quota);
+        cache.clear();
+        assertEquals(0, manager1.cacheEntries.getRetainedSize() + manager2.cacheEntries.getRetainedSize());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+
+import org.python.pydev.core.IToken;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class CompiledModulesCacheFileTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        baseDir = new File(FileUtils.getFileAbsolutePath(new File("CompiledModulesCacheFileTest.temporary_dir")));
+        try {
+            FileUtils.deleteDirectoryTree(baseDir);
+        } catch (Exception e) {
+            //ignore
+        }
+        if (baseDir.exists()) {
+            throw new AssertionError("Not expecting: " + baseDir + " to exist.");
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtils.deleteDirectoryTree(baseDir);
+        } catch (Exception e) {
+            //ignore
+        }
+    }
+
+    private IToken[] createTokens(String parentPackage, int size) {
+        IToken[] toks = new IToken[size];
+        for (int i = 0; i < size; i++) {
+            toks[i] = new CompiledToken("tok" + i, i % 2 == 0 ? "doc of tok" + i + " á" : "", "(a, b)",
+                    parentPackage, IToken.TYPE_FUNCTION, null);
+        }
+        return toks;
+    }
+
+    private void check(IToken[] expected, Tuple<File, IToken[]> found) {
+        assertNotNull(found);
+        assertEquals(expected.length, found.o2.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getRepresentation(), found.o2[i].getRepresentation());
+            assertEquals(expected[i].getArgs(), found.o2[i].getArgs());
+            assertEquals(expected[i].getParentPackage(), found.o2[i].getParentPackage());
+            assertEquals(expected[i].getType(), found.o2[i].getType());
+            assertEquals(expected[i].getDocStr(), found.o2[i].getDocStr());
+        }
+    }
+
+    public void testWriteAndRead() throws Exception {
+        checkWriteAndRead();
+    }
+
+    public void testWriteAndReadWithoutMemoryMapping() throws Exception {
+        boolean initial = CompiledModulesCacheFile.USE_MEMORY_MAPPING;
+        CompiledModulesCacheFile.USE_MEMORY_MAPPING = false;
+        try {
+            checkWriteAndRead();
+        } finally {
+            CompiledModulesCacheFile.USE_MEMORY_MAPPING = initial;
+        }
+    }
+
+    private void checkWriteAndRead() throws Exception {
+        File file = new File(baseDir, "compiled_modules.cache");
+        CompiledModulesCacheFile cacheFile = new CompiledModulesCacheFile(file);
+        assertNull(cacheFile.read("mod1", null));
+
+        IToken[] toks1 = createTokens("mod1", 20);
+        IToken[] toks2 = createTokens("mod2", 300);
+        cacheFile.write("mod1", new File(baseDir, "mod1.pyd"), toks1);
+        cacheFile.write("mod2", null, toks2);
+
+        Tuple<File, IToken[]> found = cacheFile.read("mod1", null);
+        assertEquals(new File(baseDir, "mod1.pyd"), found.o1);
+        check(toks1, found);
+        found = cacheFile.read("mod2", null);
+        assertNull(found.o1);
+        check(toks2, found);
+
+        //Superseding a module and reading from a new instance (which must build the index from the file).
+        IToken[] toks3 = createTokens("mod1", 15);
+        cacheFile.write("mod1", null, toks3);
+        cacheFile = new CompiledModulesCacheFile(file);
+        check(toks3, cacheFile.read("mod1", null));
+        check(toks2, cacheFile.read("mod2", null));
+
+        cacheFile.clear();
+        assertNull(cacheFile.read("mod1", null));
+        assertNull(new CompiledModulesCacheFile(file).read("mod2", null));
+    }
+
+    public void testCompact() throws Exception {
+        long initialThreshold = CompiledModulesCacheFile.COMPACT_THRESHOLD;
+        CompiledModulesCacheFile.COMPACT_THRESHOLD = 0;
+        try {
+            File file = new File(baseDir, "compiled_modules.cache");
+            CompiledModulesCacheFile cacheFile = new CompiledModulesCacheFile(file);
+            IToken[] toks = createTokens("mod1", 50);
+            for (int i = 0; i < 10; i++) {
+                cacheFile.write("mod1", null, toks);
+            }
+            cacheFile.write("mod2", null, toks);
+            long sizeBefore = file.length();
+
+            //The superseded records are removed when the file is opened again.
+            cacheFile = new CompiledModulesCacheFile(file);
+            check(toks, cacheFile.read("mod1", null));
+            assertTrue(file.length() < sizeBefore / 5);
+            check(toks, cacheFile.read("mod2", null));
+        } finally {
+            CompiledModulesCacheFile.COMPACT_THRESHOLD = initialThreshold;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.shell;
+
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class ShellConvertTest extends TestCase {
+
+    /**
+     * Quotes as pycompletionserver.remove_invalid_chars (which sends a space for empty strings).
+     */
+    private static String quote(String s) throws Exception {
+        return s.isEmpty() ? " " : URLEncoder.encode(s, "UTF-8");
+    }
+
+    /**
+     * @return the completions for a module as written by pycompletionserver.format_completion_message (without the
+     * @@COMPLETIONS and END@@).
+     */
+    private static String completions(String file, String[]... tokens) throws Exception {
+        StringBuilder buf = new StringBuilder("(").append(quote(file));
+        for (String[] token : tokens) {
+            buf.append(",(");
+            for (int i = 0; i < token.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                buf.append(quote(token[i]));
+            }
+            buf.append(')');
+        }
+        return buf.append(')').toString();
+    }
+
+    public void testConvertStringToBatchCompletions() throws Exception {
+        String read = "(" + quote("os") + ":"
+                + quote(completions("/usr/lib/os.py", new String[] { "path", "doc, with comma", "", "4" },
+                        new String[] { "getcwd", "getcwd()", "()", "2" }))
+                + "," + quote("my.mod") + ":" + quote(completions("")) + ")";
+
+        Map<String, Tuple<String, List<String[]>>> result = ShellConvert
+                .convertStringToBatchCompletions(new FastStringBuffer(read, 0));
+        assertEquals(2, result.size());
+
+        Tuple<String, List<String[]>> os = result.get("os");
+        assertEquals("/usr/lib/os.py", os.o1);
+        assertEquals(2, os.o2.size());
+        assertEquals("path", os.o2.get(0)[0]);
+        assertEquals("doc, with comma", os.o2.get(0)[1]);
+        assertEquals(" ", os.o2.get(0)[2]);
+        assertEquals("4", os.o2.get(0)[3]);
+        assertEquals("getcwd", os.o2.get(1)[0]);
+        assertEquals("()", os.o2.get(1)[2]);
+        assertEquals("2", os.o2.get(1)[3]);
+
+        Tuple<String, List<String[]>> myMod = result.get("my.mod");
+        assertEquals(0, myMod.o2.size());
+    }
+
+    public void testConvertStringToBatchCompletionsEmpty() throws Exception {
+        assertTrue(ShellConvert.convertStringToBatchCompletions(null).isEmpty());
+        assertTrue(ShellConvert.convertStringToBatchCompletions(new FastStringBuffer("()", 0)).isEmpty());
+    }
+}